@@ -0,0 +1,115 @@
+package com.currency.books.benchmark;
+
+import com.currency.books.model.Column;
+import com.currency.books.model.ColumnData;
+import com.currency.books.model.ColumnType;
+import com.currency.books.model.Durability;
+import com.currency.books.model.Row;
+import com.currency.books.model.RowBatch;
+import com.currency.books.model.StorageType;
+import com.currency.books.model.TableOptions;
+import com.currency.books.repository.DatabaseRepository;
+import com.currency.books.repository.MetadataRepository;
+import com.currency.books.repository.SchemaCatalog;
+import com.currency.books.repository.TablesRepository;
+import com.currency.books.utils.DatabaseConstants;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Database wired the way Spring wires it, over an empty data folder. Benchmark forks get their own
+ * temporary directory from the build, so the data folder is deleted before and after every trial.
+ */
+final class BenchmarkDatabase implements AutoCloseable {
+    static final String ID_COLUMN = "id";
+    static final String VALUE_COLUMN = "value";
+    static final String AMOUNT_COLUMN = "amount";
+    private static final long CHECKPOINT_INTERVAL_SECONDS = 30;
+    private static final long VACUUM_RECORDS_PER_SECOND = 200_000;
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final MetadataRepository metadataRepository = new MetadataRepository(meterRegistry);
+    private final TablesRepository tablesRepository = new TablesRepository();
+    private final DatabaseRepository databaseRepository;
+
+    BenchmarkDatabase() throws IOException {
+        deleteDataFolder();
+        tablesRepository.createTablesFilesIfDoesNotExist();
+        databaseRepository = new DatabaseRepository(metadataRepository, tablesRepository,
+                new SchemaCatalog(metadataRepository), meterRegistry, CHECKPOINT_INTERVAL_SECONDS, Durability.FSYNC,
+                VACUUM_RECORDS_PER_SECOND);
+        databaseRepository.setupDatabaseDataFolder();
+    }
+
+    static List<Column> columns() {
+        return List.of(new Column(ID_COLUMN, ColumnType.LONG, true),
+                new Column(VALUE_COLUMN, ColumnType.STRING, false),
+                new Column(AMOUNT_COLUMN, ColumnType.LONG, false));
+    }
+
+    static Row row(final long id) {
+        return new Row(List.of(new ColumnData(ID_COLUMN, id), new ColumnData(VALUE_COLUMN, "value" + id),
+                new ColumnData(AMOUNT_COLUMN, id * 100)));
+    }
+
+    static void addRow(final RowBatch rowBatch, final long id) {
+        rowBatch.addRow().setLong(0, id).setString(1, "value" + id).setLong(2, id * 100);
+    }
+
+    static List<Row> rows(final long fromId, final int count) {
+        final List<Row> rows = new ArrayList<>(count);
+        for (long id = fromId; id < fromId + count; id++) {
+            rows.add(row(id));
+        }
+        return rows;
+    }
+
+    DatabaseRepository getDatabaseRepository() {
+        return databaseRepository;
+    }
+
+    MetadataRepository getMetadataRepository() {
+        return metadataRepository;
+    }
+
+    void createTable(final String tableName, final StorageType storageType) {
+        databaseRepository.createTable(tableName, columns(), new TableOptions(storageType, false));
+    }
+
+    /**
+     * Inserts rows with keys from zero in batches, so loading big tables doesn't hold them all in memory.
+     */
+    void load(final String tableName, final long rowCount, final int batchSize) {
+        for (long id = 0; id < rowCount; id += batchSize) {
+            databaseRepository.insertInto(tableName, rows(id, (int) Math.min(batchSize, rowCount - id)));
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        databaseRepository.closeWriters();
+        tablesRepository.close();
+        deleteDataFolder();
+    }
+
+    static void deleteDataFolder() throws IOException {
+        final Path dataFolder = Paths.get(DatabaseConstants.DATABASE_DATA_FOLDER);
+        if (!Files.exists(dataFolder)) {
+            return;
+        }
+        try (Stream<Path> files = Files.walk(dataFolder)) {
+            for (final Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.currency.books.benchmark;
+
+import com.currency.books.model.ColumnType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time of {@link ColumnType#parse(String)} of values read from CSV data files.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ColumnTypeBenchmark {
+    private static final int VALUE_COUNT = 1024;
+
+    @Param({"LONG", "STRING"})
+    private ColumnType columnType;
+
+    private final String[] values = new String[VALUE_COUNT];
+    private int next;
+
+    @Setup
+    public void setUp() {
+        for (int i = 0; i < VALUE_COUNT; i++) {
+            values[i] = Long.toString(ThreadLocalRandom.current().nextLong());
+        }
+    }
+
+    @Benchmark
+    public Object parse() {
+        next = (next + 1) & (VALUE_COUNT - 1);
+        return columnType.parse(values[next]);
+    }
+}
@@ -0,0 +1,79 @@
+package com.currency.books.benchmark;
+
+import com.currency.books.model.RecordPointer;
+import com.currency.books.utils.DatabaseConstants;
+import com.currency.books.utils.MultiThreadCsvPrinter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of concurrent writers appending to one {@link MultiThreadCsvPrinter}. File is truncated
+ * every iteration, so it stays within a few gigabytes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(1)
+public class CsvPrinterBenchmark {
+    private static final String[] LINE = {"123456789", "value123456789", "12345678900"};
+
+    @Param({"1", "100"})
+    private int linesPerWrite;
+
+    private final List<String[]> lines = new ArrayList<>();
+    private Path path;
+    private MultiThreadCsvPrinter printer;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        BenchmarkDatabase.deleteDataFolder();
+        Files.createDirectories(Paths.get(DatabaseConstants.DATABASE_DATA_FOLDER));
+        path = Paths.get(DatabaseConstants.DATABASE_DATA_FOLDER, "csv-printer-benchmark.csv");
+        for (int i = 0; i < linesPerWrite; i++) {
+            lines.add(LINE);
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void openPrinter() throws IOException {
+        printer = new MultiThreadCsvPrinter(path, 0);
+    }
+
+    @Benchmark
+    public RecordPointer[] writeLines() throws IOException {
+        return printer.writeLines(lines);
+    }
+
+    @TearDown(Level.Iteration)
+    public void closePrinter() throws IOException {
+        printer.close();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        BenchmarkDatabase.deleteDataFolder();
+    }
+}
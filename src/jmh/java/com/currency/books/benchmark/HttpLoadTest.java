@@ -0,0 +1,103 @@
+package com.currency.books.benchmark;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures latency of primary key lookups against a running instance. Creates and fills a table, then every
+ * client sends lookups of random keys one after another and latencies of all of them are reported as percentiles.
+ * Arguments: base URL, number of clients, requests per client, rows of the table.
+ */
+public final class HttpLoadTest {
+    private static final String TABLE = "load_test_table";
+    private static final int INSERT_BATCH_SIZE = 1000;
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+
+    private HttpLoadTest() {
+    }
+
+    public static void main(final String[] args) throws Exception {
+        final String baseUrl = args.length > 0 ? args[0] : "http://localhost:8081";
+        final int clients = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+        final int requestsPerClient = args.length > 2 ? Integer.parseInt(args[2]) : 10_000;
+        final int rows = args.length > 3 ? Integer.parseInt(args[3]) : 100_000;
+        // plain HTTP/1.1 keeps connections alive without h2c upgrade attempts
+        final HttpClient httpClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        final String tableUrl = baseUrl + "/tables/" + TABLE;
+
+        // table is kept between runs, conflict means it already exists
+        send(httpClient, post(tableUrl, "{\"columns\": [{\"columnName\": \"id\", \"columnType\": \"LONG\","
+                + " \"primaryIndex\": true}, {\"columnName\": \"value\", \"columnType\": \"STRING\"}]}"), 201, 409);
+        for (int from = 0; from < rows; from += INSERT_BATCH_SIZE) {
+            final StringBuilder batch = new StringBuilder("[");
+            for (int id = from; id < Math.min(from + INSERT_BATCH_SIZE, rows); id++) {
+                batch.append(id == from ? "" : ",").append("{\"id\":").append(id)
+                        .append(",\"value\":\"value").append(id).append("\"}");
+            }
+            send(httpClient, post(tableUrl + "/rows", batch.append(']').toString()), 204);
+        }
+
+        final long[][] latencies = new long[clients][requestsPerClient];
+        final ExecutorService executor = Executors.newFixedThreadPool(clients);
+        final long startedAt = System.nanoTime();
+        try {
+            final List<Future<?>> results = new ArrayList<>(clients);
+            for (int client = 0; client < clients; client++) {
+                final long[] clientLatencies = latencies[client];
+                results.add(executor.submit(() -> {
+                    for (int i = 0; i < requestsPerClient; i++) {
+                        final long id = ThreadLocalRandom.current().nextLong(rows);
+                        final HttpRequest request = HttpRequest.newBuilder(URI.create(tableUrl + "/rows/" + id))
+                                .build();
+                        final long requestedAt = System.nanoTime();
+                        send(httpClient, request, 200);
+                        clientLatencies[i] = System.nanoTime() - requestedAt;
+                    }
+                    return null;
+                }));
+            }
+            for (final Future<?> result : results) {
+                result.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        final long elapsedNanos = System.nanoTime() - startedAt;
+
+        final long[] sorted = Arrays.stream(latencies).flatMapToLong(Arrays::stream).sorted().toArray();
+        System.out.printf("%d requests by %d clients, %d requests/s%n", sorted.length, clients,
+                sorted.length * TimeUnit.SECONDS.toNanos(1) / elapsedNanos);
+        for (final double percentile : PERCENTILES) {
+            final int index = (int) Math.ceil(percentile / 100 * sorted.length) - 1;
+            System.out.printf("p%s: %d us%n", percentile, TimeUnit.NANOSECONDS.toMicros(sorted[index]));
+        }
+        System.out.printf("max: %d us%n", TimeUnit.NANOSECONDS.toMicros(sorted[sorted.length - 1]));
+    }
+
+    private static HttpRequest post(final String url, final String body) {
+        return HttpRequest.newBuilder(URI.create(url))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+    }
+
+    private static void send(final HttpClient httpClient, final HttpRequest request,
+                             final int... expectedStatuses) throws IOException, InterruptedException {
+        final HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+        if (Arrays.stream(expectedStatuses).noneMatch(status -> status == response.statusCode())) {
+            throw new IOException(request.method() + " " + request.uri() + " returned " + response.statusCode()
+                    + ": " + response.body());
+        }
+    }
+}
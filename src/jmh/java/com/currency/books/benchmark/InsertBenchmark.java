@@ -0,0 +1,83 @@
+package com.currency.books.benchmark;
+
+import com.currency.books.model.Row;
+import com.currency.books.model.RowBatch;
+import com.currency.books.model.StorageType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time of {@code insertInto} of one batch of new keys. Every batch is forced to disk, so small batches
+ * show the cost of a sync and big ones the cost of encoding and indexing rows.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class InsertBenchmark {
+    private static final String TABLE_NAME = "insert_benchmark";
+
+    @Param({"1", "100", "1000", "10000"})
+    private int batchSize;
+
+    @Param({"CSV", "BINARY_PAGE", "COLUMNAR", "COMPRESSED", "LSM"})
+    private StorageType storageType;
+
+    private BenchmarkDatabase database;
+    private List<Row> batch;
+    private RowBatch rowBatch;
+    private long nextId;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        database = new BenchmarkDatabase();
+        database.createTable(TABLE_NAME, storageType);
+        rowBatch = new RowBatch(database.getDatabaseRepository().getSchema(TABLE_NAME), batchSize);
+    }
+
+    /**
+     * Batch of the next keys is built in both forms outside of the measured call. Per-invocation setup adds timer overhead,
+     * which is small next to a sync of the data file.
+     */
+    @Setup(Level.Invocation)
+    public void nextBatch() {
+        batch = BenchmarkDatabase.rows(nextId, batchSize);
+        rowBatch.clear();
+        for (long id = nextId; id < nextId + batchSize; id++) {
+            BenchmarkDatabase.addRow(rowBatch, id);
+        }
+        nextId += batchSize;
+    }
+
+    @Benchmark
+    public void insertInto() {
+        database.getDatabaseRepository().insertInto(TABLE_NAME, batch);
+    }
+
+    @Benchmark
+    public void insertRowBatch() {
+        database.getDatabaseRepository().insertInto(TABLE_NAME, rowBatch);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        database.close();
+    }
+}
@@ -0,0 +1,68 @@
+package com.currency.books.benchmark;
+
+import com.currency.books.model.Column;
+import com.currency.books.model.ColumnType;
+import com.currency.books.repository.MetadataRepository;
+import com.currency.books.utils.DatabaseConstants;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time of {@link MetadataRepository#readMetadata(String)}, which parses the metadata file on every call.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MetadataBenchmark {
+    private static final String TABLE_NAME = "metadata_benchmark";
+
+    @Param({"3", "30"})
+    private int columnCount;
+
+    private final MetadataRepository metadataRepository = new MetadataRepository(new SimpleMeterRegistry());
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        BenchmarkDatabase.deleteDataFolder();
+        Files.createDirectories(Paths.get(DatabaseConstants.DATABASE_DATA_FOLDER));
+        final List<Column> columns = new ArrayList<>(columnCount);
+        columns.add(new Column(BenchmarkDatabase.ID_COLUMN, ColumnType.LONG, true));
+        for (int i = 1; i < columnCount; i++) {
+            columns.add(new Column("column" + i, i % 2 == 0 ? ColumnType.LONG : ColumnType.STRING, false));
+        }
+        metadataRepository.saveTableMetadata(TABLE_NAME, columns);
+    }
+
+    @Benchmark
+    public Map<String, Column> readMetadata() {
+        return metadataRepository.readMetadata(TABLE_NAME);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        BenchmarkDatabase.deleteDataFolder();
+    }
+}
@@ -0,0 +1,71 @@
+package com.currency.books.benchmark;
+
+import com.currency.books.model.Row;
+import com.currency.books.model.RowView;
+import com.currency.books.model.StorageType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time of {@code selectById} of a random existing key. Table is loaded once per trial, the biggest one
+ * takes a while to load and doesn't fit the page cache of small machines.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SelectByIdBenchmark {
+    private static final String TABLE_NAME = "select_benchmark";
+    private static final int LOAD_BATCH_SIZE = 10_000;
+
+    @Param({"1000", "100000", "10000000"})
+    private long rowCount;
+
+    @Param({"CSV", "BINARY_PAGE", "COLUMNAR", "COMPRESSED", "LSM"})
+    private StorageType storageType;
+
+    private BenchmarkDatabase database;
+    private final RowView view = new RowView();
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        database = new BenchmarkDatabase();
+        database.createTable(TABLE_NAME, storageType);
+        database.load(TABLE_NAME, rowCount, LOAD_BATCH_SIZE);
+    }
+
+    @Benchmark
+    public Optional<Row> selectById() {
+        return database.getDatabaseRepository().selectById(TABLE_NAME,
+                ThreadLocalRandom.current().nextLong(rowCount));
+    }
+
+    @Benchmark
+    public RowView selectByIdView() {
+        database.getDatabaseRepository().selectById(TABLE_NAME, ThreadLocalRandom.current().nextLong(rowCount), view);
+        return view;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        database.close();
+    }
+}
@@ -0,0 +1,18 @@
+package com.currency.books;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+
+/**
+ * HTTP front end of the database. Tables are kept in the files of the data folder, so the JPA data source
+ * isn't configured.
+ */
+@SpringBootApplication(excludeName = {
+        "org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration",
+        "org.springframework.boot.autoconfigure.orm.jpa.HibernateJpaAutoConfiguration"})
+public class SimpleDatabaseApplication {
+
+    public static void main(final String[] args) {
+        SpringApplication.run(SimpleDatabaseApplication.class, args);
+    }
+}
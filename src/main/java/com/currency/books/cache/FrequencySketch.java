@@ -0,0 +1,82 @@
+package com.currency.books.cache;
+
+/**
+ * Count-min sketch with 4-bit counters estimating how often a key was accessed recently. Every key maps to
+ * one counter in each of four rows, estimate is the minimum of them. When number of increments reaches
+ * the sample size all counters are halved, so old popularity fades away.
+ * <p>
+ * Sixteen counters are packed into a {@code long}. Instances are not thread safe.
+ */
+final class FrequencySketch {
+    static final int MAX_FREQUENCY = 15;
+    private static final int MIN_TABLE_SIZE = 16;
+    private static final int MAX_TABLE_SIZE = 1 << 24;
+    private static final int SAMPLE_SIZE_FACTOR = 10;
+    private static final long RESET_MASK = 0x7777777777777777L;
+    private static final long[] SEEDS = {
+            0xC3A5C85C97CB3127L, 0xB492B66FBE98F273L, 0x9AE16A3B2F90404FL, 0xCBF29CE484222325L};
+
+    private final long[] table;
+    private final int tableMask;
+    private final int sampleSize;
+    private int additions;
+
+    FrequencySketch(final long expectedEntries) {
+        int tableSize = MIN_TABLE_SIZE;
+        while (tableSize < expectedEntries && tableSize < MAX_TABLE_SIZE) {
+            tableSize <<= 1;
+        }
+        this.table = new long[tableSize];
+        this.tableMask = tableSize - 1;
+        this.sampleSize = tableSize * SAMPLE_SIZE_FACTOR;
+    }
+
+    int frequency(final long key) {
+        int frequency = MAX_FREQUENCY;
+        for (int row = 0; row < SEEDS.length; row++) {
+            final long hash = hash(key, row);
+            frequency = Math.min(frequency, (int) (table[index(hash)] >>> offset(hash, row)) & MAX_FREQUENCY);
+        }
+        return frequency;
+    }
+
+    void increment(final long key) {
+        boolean incremented = false;
+        for (int row = 0; row < SEEDS.length; row++) {
+            final long hash = hash(key, row);
+            final int index = index(hash);
+            final int offset = offset(hash, row);
+            if (((table[index] >>> offset) & MAX_FREQUENCY) < MAX_FREQUENCY) {
+                table[index] += 1L << offset;
+                incremented = true;
+            }
+        }
+        if (incremented && ++additions >= sampleSize) {
+            reset();
+        }
+    }
+
+    private void reset() {
+        for (int i = 0; i < table.length; i++) {
+            table[i] = (table[i] >>> 1) & RESET_MASK;
+        }
+        additions /= 2;
+    }
+
+    private static long hash(final long key, final int row) {
+        long hash = (key + SEEDS[row]) * SEEDS[(row + 1) % SEEDS.length];
+        hash ^= hash >>> 29;
+        return hash;
+    }
+
+    private int index(final long hash) {
+        return (int) (hash >>> 32) & tableMask;
+    }
+
+    /**
+     * Every row uses its own quarter of the counters in a {@code long}.
+     */
+    private static int offset(final long hash, final int row) {
+        return ((row << 2) + (int) (hash & 3)) << 2;
+    }
+}
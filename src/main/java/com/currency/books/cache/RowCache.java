@@ -0,0 +1,255 @@
+package com.currency.books.cache;
+
+import com.currency.books.model.RowCacheStatistics;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded cache of decoded records by primary key with W-TinyLFU eviction.
+ * <p>
+ * New records enter a small LRU window. Records leaving the window compete with the least recently used
+ * record of the probation segment of the main space, the one accessed more often according to
+ * {@link FrequencySketch} stays. Record hit in probation is promoted to the protected segment. One-off
+ * lookups, like a scan over many keys, don't get past the window, so they don't push out hot records.
+ * <p>
+ * Every cached record keeps the packed pointer it was read from and is returned only for the same pointer,
+ * so a record replaced in the data file is never served even if its cache entry wasn't updated yet.
+ * <p>
+ * Lookups don't block: map is concurrent and access is recorded only if the policy lock is free.
+ * Memory is accounted by an estimate of the record size.
+ */
+public class RowCache {
+    private static final int WINDOW_PERCENT = 1;
+    private static final int PROTECTED_PERCENT = 80;
+    private static final int NODE_OVERHEAD_BYTES = 96;
+    private static final int LONG_BYTES = 24;
+    private static final int STRING_OVERHEAD_BYTES = 56;
+    private static final int AVERAGE_ENTRY_BYTES = 256;
+    private static final int WINDOW = 0;
+    private static final int PROBATION = 1;
+    private static final int PROTECTED = 2;
+
+    private final long maximumBytes;
+    private final long windowMaximumBytes;
+    private final long protectedMaximumBytes;
+    private final Map<Long, Node> nodes = new ConcurrentHashMap<>();
+    private final FrequencySketch sketch;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Node[] queues = {new Node(), new Node(), new Node()};
+    private final long[] queueBytes = new long[queues.length];
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public RowCache(final long maximumBytes) {
+        this.maximumBytes = maximumBytes;
+        this.windowMaximumBytes = Math.max(1, maximumBytes * WINDOW_PERCENT / 100);
+        this.protectedMaximumBytes = (maximumBytes - windowMaximumBytes) * PROTECTED_PERCENT / 100;
+        this.sketch = new FrequencySketch(maximumBytes / AVERAGE_ENTRY_BYTES);
+    }
+
+    /**
+     * Returns cached values of the record or {@code null} if the record at the pointer isn't cached.
+     */
+    public Object[] get(final long key, final long packedPointer) {
+        final Node node = nodes.get(key);
+        final boolean hit = node != null && node.packedPointer == packedPointer;
+        if (hit) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+        // access history is best effort, lookup doesn't wait for writers
+        if (lock.tryLock()) {
+            try {
+                sketch.increment(key);
+                // node may be evicted or replaced meanwhile
+                if (hit && node.prev != null) {
+                    onAccess(node);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        return hit ? node.values : null;
+    }
+
+    /**
+     * Caches values of the record read from the pointer.
+     */
+    public void put(final long key, final long packedPointer, final Object[] values) {
+        final Node node = new Node(key, packedPointer, values, weigh(values));
+        if (node.weight > maximumBytes) {
+            return;
+        }
+        lock.lock();
+        try {
+            final Node existing = nodes.put(key, node);
+            if (existing != null) {
+                unlink(existing);
+            }
+            link(node, existing == null ? WINDOW : existing.queue);
+            evict();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Replaces values of the key if it is cached, so a written record stays hot. Absent keys are not added,
+     * writes don't pollute the cache.
+     */
+    public void update(final long key, final long packedPointer, final Object[] values) {
+        if (nodes.containsKey(key)) {
+            lock.lock();
+            try {
+                if (nodes.containsKey(key)) {
+                    put(key, packedPointer, values);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    public void invalidate(final long key) {
+        lock.lock();
+        try {
+            final Node node = nodes.remove(key);
+            if (node != null) {
+                unlink(node);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Drops all records, pointers they were read from don't locate them anymore once the data file is replaced.
+     * Unlinked nodes keep no links, so a lookup which found one before doesn't move it.
+     */
+    public void clear() {
+        lock.lock();
+        try {
+            for (int queue = 0; queue < queues.length; queue++) {
+                final Node head = queues[queue];
+                while (head.next != head) {
+                    unlink(head.next);
+                }
+            }
+            nodes.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public RowCacheStatistics getStatistics() {
+        lock.lock();
+        try {
+            return new RowCacheStatistics(hits.sum(), misses.sum(), evictions.sum(), nodes.size(),
+                    queueBytes[WINDOW] + queueBytes[PROBATION] + queueBytes[PROTECTED], maximumBytes);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void onAccess(final Node node) {
+        if (node.queue == PROBATION) {
+            unlink(node);
+            link(node, PROTECTED);
+            // protected segment overflow goes back to probation
+            while (queueBytes[PROTECTED] > protectedMaximumBytes) {
+                final Node demoted = queues[PROTECTED].next;
+                unlink(demoted);
+                link(demoted, PROBATION);
+            }
+        } else {
+            unlink(node);
+            link(node, node.queue);
+        }
+    }
+
+    private void evict() {
+        // records leaving the window become candidates at the most recent end of probation
+        while (queueBytes[WINDOW] > windowMaximumBytes) {
+            final Node candidate = queues[WINDOW].next;
+            unlink(candidate);
+            link(candidate, PROBATION);
+        }
+        while (queueBytes[WINDOW] + queueBytes[PROBATION] + queueBytes[PROTECTED] > maximumBytes) {
+            final Node victim = queues[PROBATION].next;
+            final Node candidate = queues[PROBATION].prev;
+            if (victim == queues[PROBATION]) {
+                remove(queues[PROTECTED].next != queues[PROTECTED] ? queues[PROTECTED].next : queues[WINDOW].next);
+            } else if (victim == candidate || sketch.frequency(candidate.key) > sketch.frequency(victim.key)) {
+                remove(victim);
+            } else {
+                remove(candidate);
+            }
+        }
+    }
+
+    private void remove(final Node node) {
+        unlink(node);
+        nodes.remove(node.key, node);
+        evictions.increment();
+    }
+
+    /**
+     * Adds node to the most recently used end of the queue.
+     */
+    private void link(final Node node, final int queue) {
+        final Node head = queues[queue];
+        node.prev = head.prev;
+        node.next = head;
+        head.prev.next = node;
+        head.prev = node;
+        node.queue = queue;
+        queueBytes[queue] += node.weight;
+    }
+
+    private void unlink(final Node node) {
+        node.prev.next = node.next;
+        node.next.prev = node.prev;
+        node.prev = null;
+        node.next = null;
+        queueBytes[node.queue] -= node.weight;
+    }
+
+    private static long weigh(final Object[] values) {
+        long weight = NODE_OVERHEAD_BYTES + (long) values.length * Long.BYTES;
+        for (final Object value : values) {
+            weight += value instanceof String string ? STRING_OVERHEAD_BYTES + string.length() : LONG_BYTES;
+        }
+        return weight;
+    }
+
+    private static final class Node {
+        private final long key;
+        private final long packedPointer;
+        private final Object[] values;
+        private final long weight;
+        private int queue;
+        private Node prev;
+        private Node next;
+
+        /**
+         * Creates head of an empty queue.
+         */
+        private Node() {
+            this(0, 0, null, 0);
+            prev = this;
+            next = this;
+        }
+
+        private Node(final long key, final long packedPointer, final Object[] values, final long weight) {
+            this.key = key;
+            this.packedPointer = packedPointer;
+            this.values = values;
+            this.weight = weight;
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.currency.books.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.coyote.ProtocolHandler;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Runs HTTP requests on virtual threads, so a request blocked on file I/O doesn't hold a platform thread and
+ * thousands of concurrent clients don't need thousands of platform threads. Virtual threads are looked up
+ * reflectively, on a runtime without them requests run on the default Tomcat pool.
+ */
+@Slf4j
+@Configuration
+public class VirtualThreadConfiguration {
+
+    @Bean
+    public TomcatProtocolHandlerCustomizer<ProtocolHandler> virtualThreadProtocolHandlerCustomizer(
+            @Value("${simple-database.http.virtual-threads:true}") final boolean virtualThreads) {
+        final ExecutorService executor = virtualThreads ? newVirtualThreadPerTaskExecutor() : null;
+        if (executor == null) {
+            log.info("HTTP requests run on platform threads, virtual threads are {}",
+                    virtualThreads ? "not supported by the runtime" : "disabled");
+            return protocolHandler -> {
+            };
+        }
+        return protocolHandler -> protocolHandler.setExecutor(executor);
+    }
+
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (NoSuchMethodException e) {
+            return null;
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Unable to create virtual thread executor", e);
+        }
+    }
+}
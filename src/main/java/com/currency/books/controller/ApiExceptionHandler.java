@@ -0,0 +1,42 @@
+package com.currency.books.controller;
+
+import com.currency.books.exception.IndexIsNotSupportedException;
+import com.currency.books.exception.SimpleDatabaseException;
+import com.currency.books.exception.TableAlreadyExistsException;
+import com.currency.books.exception.TableDoesNotExistException;
+import com.currency.books.exception.TypeMismatchException;
+import com.currency.books.exception.UniqueConstraintViolationException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ProblemDetail;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+/**
+ * Maps database exceptions to problem details with the status of the cause.
+ */
+@Slf4j
+@RestControllerAdvice
+public class ApiExceptionHandler {
+
+    @ExceptionHandler(TableDoesNotExistException.class)
+    public ProblemDetail handleNotFound(final SimpleDatabaseException e) {
+        return ProblemDetail.forStatusAndDetail(HttpStatus.NOT_FOUND, e.getMessage());
+    }
+
+    @ExceptionHandler({TableAlreadyExistsException.class, UniqueConstraintViolationException.class})
+    public ProblemDetail handleConflict(final SimpleDatabaseException e) {
+        return ProblemDetail.forStatusAndDetail(HttpStatus.CONFLICT, e.getMessage());
+    }
+
+    @ExceptionHandler({TypeMismatchException.class, IndexIsNotSupportedException.class})
+    public ProblemDetail handleBadRequest(final SimpleDatabaseException e) {
+        return ProblemDetail.forStatusAndDetail(HttpStatus.BAD_REQUEST, e.getMessage());
+    }
+
+    @ExceptionHandler(SimpleDatabaseException.class)
+    public ProblemDetail handleDatabaseError(final SimpleDatabaseException e) {
+        log.error("Request failed", e);
+        return ProblemDetail.forStatusAndDetail(HttpStatus.INTERNAL_SERVER_ERROR, e.getMessage());
+    }
+}
@@ -0,0 +1,17 @@
+package com.currency.books.controller;
+
+import com.currency.books.model.Column;
+import com.currency.books.model.TableOptions;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class CreateTableRequest {
+    private List<Column> columns;
+    private TableOptions tableOptions = new TableOptions();
+}
@@ -0,0 +1,187 @@
+package com.currency.books.controller;
+
+import com.currency.books.exception.TypeMismatchException;
+import com.currency.books.model.ColumnData;
+import com.currency.books.model.ColumnPredicate;
+import com.currency.books.model.ColumnType;
+import com.currency.books.model.PredicateOperator;
+import com.currency.books.model.Row;
+import com.currency.books.model.RowBatch;
+import com.currency.books.model.RowBuffer;
+import com.currency.books.model.TableSchema;
+import com.currency.books.repository.DatabaseRepository;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.util.MinimalPrettyPrinter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/**
+ * REST endpoints over {@link DatabaseRepository}. Rows are JSON objects keyed by column names, scans are
+ * streamed as newline-delimited JSON.
+ */
+@RestController
+@RequestMapping("/tables")
+public class TableController {
+    static final String NDJSON = "application/x-ndjson";
+    /**
+     * Rows of a scan written between flushes, so the client gets rows while the scan goes on.
+     */
+    private static final int SCAN_FLUSH_ROWS = 1024;
+    private static final String FILTER_SEPARATOR = ":";
+
+    private final DatabaseRepository databaseRepository;
+    private final ObjectMapper objectMapper;
+
+    public TableController(final DatabaseRepository databaseRepository, final ObjectMapper objectMapper) {
+        this.databaseRepository = databaseRepository;
+        this.objectMapper = objectMapper;
+    }
+
+    @PostMapping("/{tableName}")
+    @ResponseStatus(HttpStatus.CREATED)
+    public void createTable(@PathVariable final String tableName, @RequestBody final CreateTableRequest request) {
+        databaseRepository.createTable(tableName, request.getColumns(), request.getTableOptions());
+    }
+
+    /**
+     * Inserts rows of the body as one batch.
+     */
+    @PostMapping("/{tableName}/rows")
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    public void insertInto(@PathVariable final String tableName, @RequestBody final List<Map<String, Object>> rows) {
+        final TableSchema schema = databaseRepository.getSchema(tableName);
+        final RowBatch rowBatch = new RowBatch(schema, rows.size());
+        for (final Map<String, Object> row : rows) {
+            final RowBuffer rowBuffer = rowBatch.addRow();
+            for (final Map.Entry<String, Object> value : row.entrySet()) {
+                setValue(schema, rowBuffer, value.getKey(), value.getValue());
+            }
+        }
+        databaseRepository.insertInto(tableName, rowBatch);
+    }
+
+    @GetMapping("/{tableName}/rows/{primaryKey}")
+    public ResponseEntity<Map<String, Object>> selectById(@PathVariable final String tableName,
+                                                          @PathVariable final long primaryKey) {
+        return ResponseEntity.of(databaseRepository.selectById(tableName, primaryKey).map(TableController::toJson));
+    }
+
+    /**
+     * Returns rows of the keys in the order of keys, missing row is {@code null}.
+     */
+    @GetMapping("/{tableName}/rows")
+    public List<Map<String, Object>> selectByIds(@PathVariable final String tableName,
+                                                 @RequestParam("id") final List<Long> primaryKeys) {
+        final List<Optional<Row>> rows = databaseRepository.selectByIds(tableName, primaryKeys);
+        final List<Map<String, Object>> result = new ArrayList<>(rows.size());
+        for (final Optional<Row> row : rows) {
+            result.add(row.map(TableController::toJson).orElse(null));
+        }
+        return result;
+    }
+
+    /**
+     * Streams rows matching all filters of the form {@code column:OPERATOR:value}, only the given columns are
+     * returned if there are any. Rows are read lazily while the response is written, so a slow client holds
+     * back the scan instead of rows piling up in memory.
+     */
+    @GetMapping(value = "/{tableName}/scan", produces = NDJSON)
+    public void scan(@PathVariable final String tableName,
+                     @RequestParam(name = "filter", required = false) final List<String> filters,
+                     @RequestParam(name = "column", required = false) final List<String> projection,
+                     final HttpServletResponse response) throws IOException {
+        final TableSchema schema = databaseRepository.getSchema(tableName);
+        final List<ColumnPredicate> predicates = new ArrayList<>();
+        if (filters != null) {
+            for (final String filter : filters) {
+                predicates.add(parseFilter(schema, filter));
+            }
+        }
+        try (Stream<Row> rows = databaseRepository.scan(tableName, predicates,
+                projection == null ? List.of() : projection)) {
+            final Iterator<Row> iterator = rows.iterator();
+            response.setContentType(NDJSON);
+            final JsonGenerator generator = objectMapper.getFactory().createGenerator(response.getOutputStream());
+            // rows are separated by line ends instead of the default space between root values
+            generator.setPrettyPrinter(new MinimalPrettyPrinter(""));
+            int unflushedRows = 0;
+            while (iterator.hasNext()) {
+                writeRow(generator, iterator.next());
+                if (++unflushedRows == SCAN_FLUSH_ROWS) {
+                    generator.flush();
+                    unflushedRows = 0;
+                }
+            }
+            generator.close();
+        }
+    }
+
+    private static void setValue(final TableSchema schema, final RowBuffer rowBuffer, final String columnName,
+                                 final Object value) {
+        final int ordinal = schema.getOrdinal(columnName);
+        if (ordinal == TableSchema.NO_ORDINAL) {
+            throw new TypeMismatchException("Column " + columnName + " doesn't exist");
+        }
+        final ColumnType columnType = schema.getColumnType(ordinal);
+        if (columnType == ColumnType.LONG && (value instanceof Integer || value instanceof Long)) {
+            rowBuffer.setLong(ordinal, ((Number) value).longValue());
+        } else if (columnType == ColumnType.STRING && value instanceof String string) {
+            rowBuffer.setString(ordinal, string);
+        } else {
+            throw new TypeMismatchException("Column " + columnName + " must have " + columnType + " type");
+        }
+    }
+
+    private static ColumnPredicate parseFilter(final TableSchema schema, final String filter) {
+        final String[] parts = filter.split(FILTER_SEPARATOR, 3);
+        if (parts.length != 3) {
+            throw new TypeMismatchException("Filter " + filter + " must be column:OPERATOR:value");
+        }
+        final int ordinal = schema.getOrdinal(parts[0]);
+        if (ordinal == TableSchema.NO_ORDINAL) {
+            throw new TypeMismatchException("Column " + parts[0] + " doesn't exist");
+        }
+        try {
+            return new ColumnPredicate(parts[0], PredicateOperator.valueOf(parts[1]),
+                    schema.getColumnType(ordinal).parse(parts[2]));
+        } catch (IllegalArgumentException e) {
+            throw new TypeMismatchException("Filter " + filter + " has unknown operator or value of wrong type");
+        }
+    }
+
+    private static void writeRow(final JsonGenerator generator, final Row row) throws IOException {
+        generator.writeStartObject();
+        for (final ColumnData columnData : row.getColumns()) {
+            generator.writeObjectField(columnData.getColumnName(), columnData.getData());
+        }
+        generator.writeEndObject();
+        generator.writeRaw('\n');
+    }
+
+    private static Map<String, Object> toJson(final Row row) {
+        final Map<String, Object> json = new LinkedHashMap<>();
+        for (final ColumnData columnData : row.getColumns()) {
+            json.put(columnData.getColumnName(), columnData.getData());
+        }
+        return json;
+    }
+}
@@ -0,0 +1,7 @@
+package com.currency.books.exception;
+
+public class DatabaseOverloadedException extends SimpleDatabaseException {
+    public DatabaseOverloadedException(final String message) {
+        super(message);
+    }
+}
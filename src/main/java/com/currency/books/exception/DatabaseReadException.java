@@ -5,4 +5,8 @@ public class DatabaseReadException extends SimpleDatabaseException {
         super(message, cause);
     }
 
+    public DatabaseReadException(String message) {
+        super(message);
+    }
+
 }
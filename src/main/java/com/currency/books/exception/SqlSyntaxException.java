@@ -0,0 +1,7 @@
+package com.currency.books.exception;
+
+public class SqlSyntaxException extends SimpleDatabaseException {
+    public SqlSyntaxException(final String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package com.currency.books.exception;
+
+public class UniqueConstraintViolationException extends SimpleDatabaseException {
+    public UniqueConstraintViolationException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,734 @@
+package com.currency.books.index;
+
+import com.currency.books.exception.DatabaseReadException;
+import com.currency.books.exception.DatabaseWriteException;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32C;
+
+/**
+ * Persistent B+tree from {@code long} key to {@code long} value stored in fixed-size pages.
+ * <p>
+ * Page 0 keeps tree metadata, other pages are leaf or internal nodes. Every page has a type, entry count and
+ * a CRC32C checksum in the header. Leaves keep sorted key-value pairs and a link to the next leaf for range
+ * iteration. Internal nodes keep {@code n} separator keys and {@code n + 1} children, child {@code i + 1}
+ * contains keys greater or equal to key {@code i}. With 8 KB pages fan-out is 511, so a billion keys fit into
+ * four levels and with the root cached a lookup takes three or four page reads.
+ * <p>
+ * Pages are cached in LRU order, modified pages stay in memory until {@link #checkpoint(long)}, so the file
+ * always contains the tree as of the last checkpoint. Checkpoint first writes all modified pages to a
+ * doublewrite file and only then overwrites them in place, so a crash in the middle of a checkpoint is repaired
+ * on the next open. Writers are exclusive, readers run in parallel.
+ * <p>
+ * Removal doesn't merge underfull leaves, emptied leaves stay in the leaf chain until the tree is rebuilt.
+ */
+public class BPlusTree implements AutoCloseable {
+    public static final int PAGE_SIZE = 8192;
+    public static final long NO_VALUE = -1;
+    public static final int DEFAULT_CACHED_PAGES = 4096;
+    static final int LEAF_CAPACITY = (PAGE_SIZE - 16) / 16;
+    static final int INTERNAL_CAPACITY = (PAGE_SIZE - 16 - Long.BYTES) / 16;
+
+    private static final long MAGIC = 0x5344425F42505452L;
+    private static final int MIN_CACHED_PAGES = 64;
+    private static final long META_PAGE_ID = 0;
+    private static final long NO_PAGE = -1;
+    private static final byte META = 0;
+    private static final byte LEAF = 1;
+    private static final byte INTERNAL = 2;
+
+    private static final int TYPE_OFFSET = 0;
+    private static final int COUNT_OFFSET = 2;
+    private static final int CHECKSUM_OFFSET = 4;
+    private static final int NEXT_LEAF_OFFSET = 8;
+    private static final int ENTRIES_OFFSET = 16;
+    private static final int ENTRY_SIZE = 16;
+
+    private static final int MAGIC_OFFSET = 8;
+    private static final int ROOT_OFFSET = 16;
+    private static final int PAGE_COUNT_OFFSET = 24;
+    private static final int SIZE_OFFSET = 32;
+    private static final int CHECKPOINT_POSITION_OFFSET = 40;
+    private static final String DOUBLE_WRITE_SUFFIX = ".dwb";
+    private static final long DOUBLE_WRITE_COMMIT_MARKER = -1;
+
+    private final FileChannel channel;
+    private final Path doubleWritePath;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final int cachedPagesLimit;
+    private final Map<Long, ByteBuffer> cachedPages = new LinkedHashMap<>(16, 0.75f, true);
+    private final Set<Long> dirtyPages = new HashSet<>();
+    private long rootPageId;
+    private long pageCount;
+    private long size;
+    private long checkpointPosition;
+
+    /**
+     * Consumer of tree entries.
+     */
+    @FunctionalInterface
+    public interface EntryConsumer {
+        void accept(long key, long value) throws IOException;
+    }
+
+    public BPlusTree(final Path path) throws IOException {
+        this(path, DEFAULT_CACHED_PAGES);
+    }
+
+    public BPlusTree(final Path path, final int cachedPagesLimit) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        this.doubleWritePath = Paths.get(path + DOUBLE_WRITE_SUFFIX);
+        this.cachedPagesLimit = Math.max(cachedPagesLimit, MIN_CACHED_PAGES);
+        restoreFromDoubleWrite();
+        if (channel.size() == 0) {
+            pageCount = 1;
+            rootPageId = allocatePage(LEAF);
+            checkpoint(0);
+        } else {
+            final ByteBuffer meta = readPage(META_PAGE_ID);
+            if (meta.get(TYPE_OFFSET) != META || meta.getLong(MAGIC_OFFSET) != MAGIC) {
+                throw new DatabaseReadException("File " + path + " is not a B+tree index");
+            }
+            rootPageId = meta.getLong(ROOT_OFFSET);
+            pageCount = meta.getLong(PAGE_COUNT_OFFSET);
+            size = meta.getLong(SIZE_OFFSET);
+            checkpointPosition = meta.getLong(CHECKPOINT_POSITION_OFFSET);
+        }
+    }
+
+    /**
+     * Returns value for the key or {@link #NO_VALUE} if key is absent.
+     */
+    public long get(final long key) throws IOException {
+        lock.readLock().lock();
+        try {
+            final ByteBuffer leaf = page(findLeaf(key));
+            final int position = lowerBound(leaf, key);
+            if (position < count(leaf) && leafKey(leaf, position) == key) {
+                return leafValue(leaf, position);
+            }
+            return NO_VALUE;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Inserts entry or replaces value of the existing key.
+     */
+    public void put(final long key, final long value) throws IOException {
+        lock.writeLock().lock();
+        try {
+            final Split split = insert(rootPageId, key, value);
+            if (split != null) {
+                final long newRootPageId = allocatePage(INTERNAL);
+                final ByteBuffer newRoot = page(newRootPageId);
+                setChild(newRoot, 0, rootPageId);
+                setInternalKey(newRoot, 0, split.key);
+                setChild(newRoot, 1, split.pageId);
+                setCount(newRoot, 1);
+                markDirty(newRootPageId, newRoot);
+                rootPageId = newRootPageId;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes entry of the key, returns false if the key is absent.
+     */
+    public boolean remove(final long key) throws IOException {
+        lock.writeLock().lock();
+        try {
+            final long leafId = findLeaf(key);
+            final ByteBuffer leaf = page(leafId);
+            final int count = count(leaf);
+            final int position = lowerBound(leaf, key);
+            if (position == count || leafKey(leaf, position) != key) {
+                return false;
+            }
+            System.arraycopy(leaf.array(), ENTRIES_OFFSET + (position + 1) * ENTRY_SIZE, leaf.array(),
+                    ENTRIES_OFFSET + position * ENTRY_SIZE, (count - position - 1) * ENTRY_SIZE);
+            setCount(leaf, count - 1);
+            markDirty(leafId, leaf);
+            size--;
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Calls consumer for every entry with key in the inclusive range in ascending key order. Entries are
+     * collected one leaf at a time, consumer is called without holding tree lock, so it can do blocking I/O.
+     */
+    public void forEachInRange(final long fromKey, final long toKey, final EntryConsumer consumer)
+            throws IOException {
+        forEachInRange(fromKey, toKey, Integer.MAX_VALUE, consumer);
+    }
+
+    /**
+     * Calls consumer for at most {@code limit} first entries with key in the inclusive range, leaves after
+     * the last of them aren't read.
+     */
+    public void forEachInRange(final long fromKey, final long toKey, final int limit, final EntryConsumer consumer)
+            throws IOException {
+        final long[] keys = new long[LEAF_CAPACITY];
+        final long[] values = new long[LEAF_CAPACITY];
+        long nextKey = fromKey;
+        int remaining = limit;
+        boolean hasMore = fromKey <= toKey && remaining > 0;
+        while (hasMore) {
+            int collected = 0;
+            lock.readLock().lock();
+            try {
+                final ByteBuffer leaf = page(findLeaf(nextKey));
+                final int count = count(leaf);
+                for (int i = lowerBound(leaf, nextKey); i < count && collected < remaining && leafKey(leaf, i) <= toKey;
+                     i++) {
+                    keys[collected] = leafKey(leaf, i);
+                    values[collected] = leafValue(leaf, i);
+                    collected++;
+                }
+                // leaf is exhausted, range continues from the first key of the next leaf
+                remaining -= collected;
+                hasMore = remaining > 0 && (count == 0 || leafKey(leaf, count - 1) <= toKey);
+                long nextLeafId = leaf.getLong(NEXT_LEAF_OFFSET);
+                ByteBuffer nextLeaf = null;
+                while (hasMore && nextLeafId != NO_PAGE) {
+                    nextLeaf = page(nextLeafId);
+                    if (count(nextLeaf) > 0) {
+                        break;
+                    }
+                    // leaves emptied by removals are skipped
+                    nextLeafId = nextLeaf.getLong(NEXT_LEAF_OFFSET);
+                }
+                hasMore = hasMore && nextLeafId != NO_PAGE && leafKey(nextLeaf, 0) <= toKey;
+                if (hasMore) {
+                    nextKey = leafKey(nextLeaf, 0);
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+            for (int i = 0; i < collected; i++) {
+                consumer.accept(keys[i], values[i]);
+            }
+        }
+    }
+
+    /**
+     * Builds tree from entries sorted by key, tree must be empty. Pages are written sequentially bottom-up
+     * without going through the page cache.
+     */
+    public void bulkLoad(final long[] sortedKeys, final long[] values, final int count) throws IOException {
+        lock.writeLock().lock();
+        try {
+            if (size != 0) {
+                throw new DatabaseWriteException("Bulk load is supported only for empty index");
+            }
+            if (count == 0) {
+                return;
+            }
+            cachedPages.clear();
+            dirtyPages.clear();
+            pageCount = 1;
+
+            final ByteBuffer page = ByteBuffer.allocate(PAGE_SIZE);
+            final int leafCount = (count + LEAF_CAPACITY - 1) / LEAF_CAPACITY;
+            long[] levelKeys = new long[leafCount];
+            long[] levelPageIds = new long[leafCount];
+            for (int leafNumber = 0; leafNumber < leafCount; leafNumber++) {
+                final int from = leafNumber * LEAF_CAPACITY;
+                final int to = Math.min(from + LEAF_CAPACITY, count);
+                clearPage(page, LEAF);
+                for (int i = from; i < to; i++) {
+                    if (i > 0 && sortedKeys[i] <= sortedKeys[i - 1]) {
+                        throw new DatabaseWriteException("Keys for bulk load must be unique and sorted");
+                    }
+                    setLeafEntry(page, i - from, sortedKeys[i], values[i]);
+                }
+                setCount(page, to - from);
+                levelKeys[leafNumber] = sortedKeys[from];
+                levelPageIds[leafNumber] = pageCount;
+                page.putLong(NEXT_LEAF_OFFSET, leafNumber + 1 < leafCount ? pageCount + 1 : NO_PAGE);
+                writePage(pageCount++, page);
+            }
+
+            int levelSize = leafCount;
+            while (levelSize > 1) {
+                final int nodeCount = (levelSize + INTERNAL_CAPACITY) / (INTERNAL_CAPACITY + 1);
+                final long[] parentKeys = new long[nodeCount];
+                final long[] parentPageIds = new long[nodeCount];
+                for (int nodeNumber = 0; nodeNumber < nodeCount; nodeNumber++) {
+                    final int from = nodeNumber * (INTERNAL_CAPACITY + 1);
+                    final int to = Math.min(from + INTERNAL_CAPACITY + 1, levelSize);
+                    clearPage(page, INTERNAL);
+                    setChild(page, 0, levelPageIds[from]);
+                    for (int i = from + 1; i < to; i++) {
+                        setInternalKey(page, i - from - 1, levelKeys[i]);
+                        setChild(page, i - from, levelPageIds[i]);
+                    }
+                    setCount(page, to - from - 1);
+                    parentKeys[nodeNumber] = levelKeys[from];
+                    parentPageIds[nodeNumber] = pageCount;
+                    writePage(pageCount++, page);
+                }
+                levelKeys = parentKeys;
+                levelPageIds = parentPageIds;
+                levelSize = nodeCount;
+            }
+            rootPageId = levelPageIds[0];
+            size = count;
+            writePage(META_PAGE_ID, metaPage());
+            channel.force(false);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public long size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns data file position recorded by the last checkpoint, records appended after it are not guaranteed
+     * to be in the persisted tree.
+     */
+    public long getCheckpointPosition() {
+        lock.readLock().lock();
+        try {
+            return checkpointPosition;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int dirtyPageCount() {
+        synchronized (cachedPages) {
+            return dirtyPages.size();
+        }
+    }
+
+    /**
+     * Atomically persists all modified pages together with the data file position covered by the tree.
+     */
+    public void checkpoint(final long dataPosition) throws IOException {
+        lock.writeLock().lock();
+        try {
+            checkpointPosition = dataPosition;
+            synchronized (cachedPages) {
+                final List<Long> pageIds = new ArrayList<>(dirtyPages);
+                pageIds.sort(Long::compare);
+                final List<ByteBuffer> pages = new ArrayList<>();
+                for (final Long pageId : pageIds) {
+                    pages.add(cachedPages.get(pageId));
+                }
+                pageIds.add(META_PAGE_ID);
+                pages.add(metaPage());
+
+                writeDoubleWrite(pageIds, pages);
+                for (int i = 0; i < pageIds.size(); i++) {
+                    writePage(pageIds.get(i), pages.get(i));
+                }
+                channel.force(false);
+                Files.delete(doubleWritePath);
+                dirtyPages.clear();
+                evictPages();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        checkpoint(getCheckpointPosition());
+        channel.close();
+    }
+
+    /**
+     * Closes the tree without checkpoint, used when its file was replaced and changes mustn't reach the path.
+     */
+    public void discard() throws IOException {
+        channel.close();
+    }
+
+    private Split insert(final long pageId, final long key, final long value) throws IOException {
+        final ByteBuffer node = page(pageId);
+        if (node.get(TYPE_OFFSET) == LEAF) {
+            return insertIntoLeaf(pageId, node, key, value);
+        }
+        final int childIndex = upperBound(node, key);
+        final Split childSplit = insert(child(node, childIndex), key, value);
+        if (childSplit == null) {
+            return null;
+        }
+        return insertIntoInternal(pageId, node, childIndex, childSplit);
+    }
+
+    private Split insertIntoLeaf(final long pageId, final ByteBuffer leaf, final long key, final long value)
+            throws IOException {
+        final int count = count(leaf);
+        final int position = lowerBound(leaf, key);
+        if (position < count && leafKey(leaf, position) == key) {
+            setLeafEntry(leaf, position, key, value);
+            markDirty(pageId, leaf);
+            return null;
+        }
+        size++;
+        if (count < LEAF_CAPACITY) {
+            shiftRight(leaf, ENTRIES_OFFSET + position * ENTRY_SIZE, ENTRIES_OFFSET + count * ENTRY_SIZE);
+            setLeafEntry(leaf, position, key, value);
+            setCount(leaf, count + 1);
+            markDirty(pageId, leaf);
+            return null;
+        }
+
+        final long[] keys = new long[count + 1];
+        final long[] values = new long[count + 1];
+        for (int i = 0, source = 0; i <= count; i++) {
+            if (i == position) {
+                keys[i] = key;
+                values[i] = value;
+            } else {
+                keys[i] = leafKey(leaf, source);
+                values[i] = leafValue(leaf, source);
+                source++;
+            }
+        }
+        final int leftCount = (count + 1) / 2;
+        final long rightPageId = allocatePage(LEAF);
+        final ByteBuffer right = page(rightPageId);
+        for (int i = leftCount; i <= count; i++) {
+            setLeafEntry(right, i - leftCount, keys[i], values[i]);
+        }
+        setCount(right, count + 1 - leftCount);
+        right.putLong(NEXT_LEAF_OFFSET, leaf.getLong(NEXT_LEAF_OFFSET));
+
+        for (int i = 0; i < leftCount; i++) {
+            setLeafEntry(leaf, i, keys[i], values[i]);
+        }
+        setCount(leaf, leftCount);
+        leaf.putLong(NEXT_LEAF_OFFSET, rightPageId);
+        markDirty(pageId, leaf);
+        markDirty(rightPageId, right);
+        return new Split(keys[leftCount], rightPageId);
+    }
+
+    private Split insertIntoInternal(final long pageId, final ByteBuffer node, final int childIndex,
+                                     final Split childSplit) throws IOException {
+        final int count = count(node);
+        if (count < INTERNAL_CAPACITY) {
+            // key i and child i + 1 are stored together, so they are shifted as a single entry
+            shiftRight(node, ENTRIES_OFFSET + Long.BYTES + childIndex * ENTRY_SIZE,
+                    ENTRIES_OFFSET + Long.BYTES + count * ENTRY_SIZE);
+            setInternalKey(node, childIndex, childSplit.key);
+            setChild(node, childIndex + 1, childSplit.pageId);
+            setCount(node, count + 1);
+            markDirty(pageId, node);
+            return null;
+        }
+
+        final long[] keys = new long[count + 1];
+        final long[] children = new long[count + 2];
+        children[0] = child(node, 0);
+        for (int i = 0, source = 0; i <= count; i++) {
+            if (i == childIndex) {
+                keys[i] = childSplit.key;
+                children[i + 1] = childSplit.pageId;
+            } else {
+                keys[i] = internalKey(node, source);
+                children[i + 1] = child(node, source + 1);
+                source++;
+            }
+        }
+        final int middle = (count + 1) / 2;
+        final long rightPageId = allocatePage(INTERNAL);
+        final ByteBuffer right = page(rightPageId);
+        setChild(right, 0, children[middle + 1]);
+        for (int i = middle + 1; i <= count; i++) {
+            setInternalKey(right, i - middle - 1, keys[i]);
+            setChild(right, i - middle, children[i + 1]);
+        }
+        setCount(right, count - middle);
+
+        for (int i = 0; i < middle; i++) {
+            setInternalKey(node, i, keys[i]);
+            setChild(node, i + 1, children[i + 1]);
+        }
+        setCount(node, middle);
+        markDirty(pageId, node);
+        markDirty(rightPageId, right);
+        return new Split(keys[middle], rightPageId);
+    }
+
+    private long findLeaf(final long key) throws IOException {
+        long pageId = rootPageId;
+        ByteBuffer node = page(pageId);
+        while (node.get(TYPE_OFFSET) == INTERNAL) {
+            pageId = child(node, upperBound(node, key));
+            node = page(pageId);
+        }
+        return pageId;
+    }
+
+    /**
+     * Returns position of the first leaf key greater or equal to the key.
+     */
+    private static int lowerBound(final ByteBuffer leaf, final long key) {
+        int low = 0;
+        int high = count(leaf);
+        while (low < high) {
+            final int middle = (low + high) >>> 1;
+            if (leafKey(leaf, middle) < key) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Returns number of internal node keys less or equal to the key, which is the index of the child to follow.
+     */
+    private static int upperBound(final ByteBuffer node, final long key) {
+        int low = 0;
+        int high = count(node);
+        while (low < high) {
+            final int middle = (low + high) >>> 1;
+            if (internalKey(node, middle) <= key) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private ByteBuffer page(final long pageId) throws IOException {
+        synchronized (cachedPages) {
+            ByteBuffer page = cachedPages.get(pageId);
+            if (page == null) {
+                page = readPage(pageId);
+                cachedPages.put(pageId, page);
+                evictPages();
+            }
+            return page;
+        }
+    }
+
+    private void markDirty(final long pageId, final ByteBuffer page) {
+        synchronized (cachedPages) {
+            // page is put back in case it was evicted while being modified
+            cachedPages.put(pageId, page);
+            dirtyPages.add(pageId);
+            evictPages();
+        }
+    }
+
+    /**
+     * Evicts least recently used clean pages, modified pages stay in memory until the next checkpoint.
+     */
+    private void evictPages() {
+        final Iterator<Map.Entry<Long, ByteBuffer>> iterator = cachedPages.entrySet().iterator();
+        while (cachedPages.size() - dirtyPages.size() > cachedPagesLimit && iterator.hasNext()) {
+            if (!dirtyPages.contains(iterator.next().getKey())) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private long allocatePage(final byte type) {
+        final long pageId = pageCount++;
+        final ByteBuffer page = ByteBuffer.allocate(PAGE_SIZE);
+        clearPage(page, type);
+        page.putLong(NEXT_LEAF_OFFSET, NO_PAGE);
+        markDirty(pageId, page);
+        return pageId;
+    }
+
+    private ByteBuffer readPage(final long pageId) throws IOException {
+        final ByteBuffer page = ByteBuffer.allocate(PAGE_SIZE);
+        while (page.hasRemaining()) {
+            if (channel.read(page, pageId * PAGE_SIZE + page.position()) < 0) {
+                throw new EOFException("Index page " + pageId + " is out of file bounds");
+            }
+        }
+        if (page.getInt(CHECKSUM_OFFSET) != checksum(page)) {
+            throw new DatabaseReadException("Checksum mismatch for index page " + pageId);
+        }
+        return page;
+    }
+
+    private void writePage(final long pageId, final ByteBuffer page) throws IOException {
+        page.putInt(CHECKSUM_OFFSET, checksum(page));
+        final ByteBuffer source = page.duplicate().clear();
+        while (source.hasRemaining()) {
+            channel.write(source, pageId * PAGE_SIZE + source.position());
+        }
+    }
+
+    private ByteBuffer metaPage() {
+        final ByteBuffer meta = ByteBuffer.allocate(PAGE_SIZE);
+        clearPage(meta, META);
+        meta.putLong(MAGIC_OFFSET, MAGIC);
+        meta.putLong(ROOT_OFFSET, rootPageId);
+        meta.putLong(PAGE_COUNT_OFFSET, pageCount);
+        meta.putLong(SIZE_OFFSET, size);
+        meta.putLong(CHECKPOINT_POSITION_OFFSET, checkpointPosition);
+        return meta;
+    }
+
+    private void writeDoubleWrite(final List<Long> pageIds, final List<ByteBuffer> pages) throws IOException {
+        try (final FileChannel doubleWriteChannel = FileChannel.open(doubleWritePath, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            final ByteBuffer pageIdBuffer = ByteBuffer.allocate(Long.BYTES);
+            for (int i = 0; i < pageIds.size(); i++) {
+                final ByteBuffer page = pages.get(i);
+                page.putInt(CHECKSUM_OFFSET, checksum(page));
+                writeFully(doubleWriteChannel, pageIdBuffer.clear().putLong(pageIds.get(i)).flip());
+                writeFully(doubleWriteChannel, page.duplicate().clear());
+            }
+            writeFully(doubleWriteChannel, pageIdBuffer.clear().putLong(DOUBLE_WRITE_COMMIT_MARKER).flip());
+            doubleWriteChannel.force(false);
+        }
+    }
+
+    /**
+     * Applies pages of a checkpoint which was interrupted after its doublewrite file was completely written.
+     */
+    private void restoreFromDoubleWrite() throws IOException {
+        if (!Files.exists(doubleWritePath)) {
+            return;
+        }
+        final List<Long> pageIds = new ArrayList<>();
+        final List<ByteBuffer> pages = new ArrayList<>();
+        boolean committed = false;
+        try (final FileChannel doubleWriteChannel = FileChannel.open(doubleWritePath, StandardOpenOption.READ)) {
+            final ByteBuffer pageIdBuffer = ByteBuffer.allocate(Long.BYTES);
+            while (!committed && readFully(doubleWriteChannel, pageIdBuffer.clear())) {
+                final long pageId = pageIdBuffer.flip().getLong();
+                final ByteBuffer page = ByteBuffer.allocate(PAGE_SIZE);
+                if (pageId == DOUBLE_WRITE_COMMIT_MARKER) {
+                    committed = true;
+                } else if (readFully(doubleWriteChannel, page) && page.getInt(CHECKSUM_OFFSET) == checksum(page)) {
+                    pageIds.add(pageId);
+                    pages.add(page);
+                } else {
+                    break;
+                }
+            }
+        }
+        // without commit marker pages in the tree file weren't touched yet
+        if (committed) {
+            for (int i = 0; i < pageIds.size(); i++) {
+                writePage(pageIds.get(i), pages.get(i));
+            }
+            channel.force(false);
+        }
+        Files.delete(doubleWritePath);
+    }
+
+    private static void writeFully(final FileChannel target, final ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            target.write(buffer);
+        }
+    }
+
+    private static boolean readFully(final FileChannel source, final ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (source.read(buffer) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int checksum(final ByteBuffer page) {
+        final CRC32C crc = new CRC32C();
+        crc.update(page.array(), 0, CHECKSUM_OFFSET);
+        crc.update(page.array(), CHECKSUM_OFFSET + Integer.BYTES, PAGE_SIZE - CHECKSUM_OFFSET - Integer.BYTES);
+        return (int) crc.getValue();
+    }
+
+    private static void clearPage(final ByteBuffer page, final byte type) {
+        Arrays.fill(page.array(), (byte) 0);
+        page.put(TYPE_OFFSET, type);
+    }
+
+    private static void shiftRight(final ByteBuffer page, final int from, final int to) {
+        System.arraycopy(page.array(), from, page.array(), from + ENTRY_SIZE, to - from);
+    }
+
+    private static int count(final ByteBuffer page) {
+        return Short.toUnsignedInt(page.getShort(COUNT_OFFSET));
+    }
+
+    private static void setCount(final ByteBuffer page, final int count) {
+        page.putShort(COUNT_OFFSET, (short) count);
+    }
+
+    private static long leafKey(final ByteBuffer leaf, final int position) {
+        return leaf.getLong(ENTRIES_OFFSET + position * ENTRY_SIZE);
+    }
+
+    private static long leafValue(final ByteBuffer leaf, final int position) {
+        return leaf.getLong(ENTRIES_OFFSET + position * ENTRY_SIZE + Long.BYTES);
+    }
+
+    private static void setLeafEntry(final ByteBuffer leaf, final int position, final long key, final long value) {
+        leaf.putLong(ENTRIES_OFFSET + position * ENTRY_SIZE, key);
+        leaf.putLong(ENTRIES_OFFSET + position * ENTRY_SIZE + Long.BYTES, value);
+    }
+
+    private static long internalKey(final ByteBuffer node, final int position) {
+        return node.getLong(ENTRIES_OFFSET + Long.BYTES + position * ENTRY_SIZE);
+    }
+
+    private static void setInternalKey(final ByteBuffer node, final int position, final long key) {
+        node.putLong(ENTRIES_OFFSET + Long.BYTES + position * ENTRY_SIZE, key);
+    }
+
+    private static long child(final ByteBuffer node, final int position) {
+        return node.getLong(ENTRIES_OFFSET + position * ENTRY_SIZE);
+    }
+
+    private static void setChild(final ByteBuffer node, final int position, final long pageId) {
+        node.putLong(ENTRIES_OFFSET + position * ENTRY_SIZE, pageId);
+    }
+
+    private static final class Split {
+        private final long key;
+        private final long pageId;
+
+        private Split(final long key, final long pageId) {
+            this.key = key;
+            this.pageId = pageId;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.currency.books.index;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Set of long keys with false positives and no false negatives. Hashes of a key are derived from two halves
+ * of a single mixed 64-bit hash.
+ */
+public class BloomFilter {
+    private static final int HASH_FUNCTIONS = 7;
+
+    private final long[] words;
+    private final long bitCount;
+
+    public BloomFilter(final long expectedKeys, final int bitsPerKey) {
+        this(new long[(int) Math.max(1, (Math.max(1, expectedKeys) * bitsPerKey + Long.SIZE - 1) / Long.SIZE)]);
+    }
+
+    private BloomFilter(final long[] words) {
+        this.words = words;
+        this.bitCount = (long) words.length * Long.SIZE;
+    }
+
+    public void add(final long key) {
+        final long hash = mix(key);
+        final long firstHash = hash & 0xFFFFFFFFL;
+        final long secondHash = hash >>> 32;
+        for (int i = 0; i < HASH_FUNCTIONS; i++) {
+            final long bit = Math.floorMod(firstHash + i * secondHash, bitCount);
+            words[(int) (bit >>> 6)] |= 1L << bit;
+        }
+    }
+
+    public boolean mightContain(final long key) {
+        final long hash = mix(key);
+        final long firstHash = hash & 0xFFFFFFFFL;
+        final long secondHash = hash >>> 32;
+        for (int i = 0; i < HASH_FUNCTIONS; i++) {
+            final long bit = Math.floorMod(firstHash + i * secondHash, bitCount);
+            if ((words[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public int serializedSize() {
+        return Integer.BYTES + words.length * Long.BYTES;
+    }
+
+    public void writeTo(final ByteBuffer buffer) {
+        buffer.putInt(words.length);
+        for (final long word : words) {
+            buffer.putLong(word);
+        }
+    }
+
+    public static BloomFilter readFrom(final ByteBuffer buffer) {
+        final long[] words = new long[buffer.getInt()];
+        for (int i = 0; i < words.length; i++) {
+            words[i] = buffer.getLong();
+        }
+        return new BloomFilter(words);
+    }
+
+    /**
+     * Finalizer of MurmurHash3, spreads sequential keys over all bits.
+     */
+    private static long mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb3fe1a85ec53L;
+        key ^= key >>> 33;
+        return key;
+    }
+}
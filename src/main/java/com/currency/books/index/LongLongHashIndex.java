@@ -0,0 +1,237 @@
+package com.currency.books.index;
+
+import com.currency.books.exception.DatabaseWriteException;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * Open addressing hash map from {@code long} key to non-negative {@code long} value without boxing.
+ * <p>
+ * Keys and values are interleaved in a single {@code long[]} arena and collisions are resolved with linear
+ * probing. Zero is used as empty key marker, so value of zero key is kept in a separate field. Writes are
+ * serialized by the instance monitor, reads never lock: value is published before key with release semantics
+ * and read after key with acquire semantics.
+ * <p>
+ * Resize doesn't copy the whole table at once. New table becomes current immediately and every subsequent
+ * write migrates a few slots of the previous table. Until migration is finished lookups fall back to the
+ * previous table for keys missing in the current one.
+ * <p>
+ * Removed key keeps its slot with {@link #NO_VALUE}, so probe sequences of other keys stay intact for readers.
+ * The slot is reused when the key is put again and is dropped by the next resize.
+ */
+public class LongLongHashIndex {
+    public static final long NO_VALUE = -1;
+    public static final int DEFAULT_CAPACITY = 1024;
+    private static final long EMPTY_KEY = 0;
+    private static final int LOAD_FACTOR_PERCENT = 75;
+    // with this step migration is finished long before the new table reaches load factor
+    private static final int MIGRATION_STEP = 8;
+    private static final int MAX_CAPACITY = 1 << 30;
+    private static final long ARRAY_HEADER_BYTES = 16;
+    private static final long GOLDEN_RATIO = 0x9E3779B97F4A7C15L;
+    private static final VarHandle SLOTS = MethodHandles.arrayElementVarHandle(long[].class);
+
+    private volatile long[] table;
+    private volatile long[] migratingTable;
+    private volatile long zeroKeyValue = NO_VALUE;
+    private volatile int size;
+    private int occupiedSlots;
+    private int migrationPosition;
+
+    public LongLongHashIndex() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public LongLongHashIndex(final int expectedSize) {
+        int capacity = DEFAULT_CAPACITY;
+        while (capacity < MAX_CAPACITY && (long) capacity * LOAD_FACTOR_PERCENT / 100 < expectedSize) {
+            capacity <<= 1;
+        }
+        this.table = new long[capacity * 2];
+    }
+
+    /**
+     * Returns value for the key or {@link #NO_VALUE} if key is absent.
+     */
+    public long get(final long key) {
+        if (key == EMPTY_KEY) {
+            return zeroKeyValue;
+        }
+        final long[] current = table;
+        final long[] previous = migratingTable;
+        final int slot = find(current, key);
+        if (slot >= 0) {
+            return (long) SLOTS.getAcquire(current, slot + 1);
+        }
+        if (previous != null && previous != current) {
+            final int previousSlot = find(previous, key);
+            if (previousSlot >= 0) {
+                return (long) SLOTS.getAcquire(previous, previousSlot + 1);
+            }
+        }
+        return NO_VALUE;
+    }
+
+    /**
+     * Returns previous value of the key or {@link #NO_VALUE} if key was absent.
+     */
+    public synchronized long put(final long key, final long value) {
+        if (value < 0) {
+            throw new DatabaseWriteException("Only non-negative values are supported by index, got " + value);
+        }
+        if (key == EMPTY_KEY) {
+            final long previousValue = zeroKeyValue;
+            if (previousValue == NO_VALUE) {
+                size++;
+            }
+            zeroKeyValue = value;
+            return previousValue;
+        }
+
+        final long[] previous = migratingTable;
+        if (previous != null) {
+            migrate(previous);
+        }
+        if (occupiedSlots >= capacity(table) - 1) {
+            throw new DatabaseWriteException("Index reached maximum capacity of " + MAX_CAPACITY + " entries");
+        }
+        final long previousValue = get(key);
+        if (insert(table, key, value, true)) {
+            occupiedSlots++;
+        }
+        if (previousValue == NO_VALUE) {
+            size++;
+        }
+        if (migratingTable == null && occupiedSlots > capacity(table) * LOAD_FACTOR_PERCENT / 100) {
+            startResize();
+        }
+        return previousValue;
+    }
+
+    public synchronized void remove(final long key) {
+        if (key == EMPTY_KEY) {
+            if (zeroKeyValue != NO_VALUE) {
+                size--;
+            }
+            zeroKeyValue = NO_VALUE;
+            return;
+        }
+        if (get(key) == NO_VALUE) {
+            return;
+        }
+        size--;
+        final long[] current = table;
+        final int slot = find(current, key);
+        if (slot >= 0) {
+            SLOTS.setRelease(current, slot + 1, NO_VALUE);
+        }
+        // key may be only in the previous table until it is migrated
+        final long[] previous = migratingTable;
+        final int previousSlot = previous == null ? -1 : find(previous, key);
+        if (previousSlot >= 0) {
+            SLOTS.setRelease(previous, previousSlot + 1, NO_VALUE);
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return capacity(table);
+    }
+
+    /**
+     * Returns number of bytes occupied by the slot arrays including the previous table during resize.
+     */
+    public long memoryUsageBytes() {
+        final long[] current = table;
+        final long[] previous = migratingTable;
+        long bytes = ARRAY_HEADER_BYTES + (long) current.length * Long.BYTES;
+        if (previous != null && previous != current) {
+            bytes += ARRAY_HEADER_BYTES + (long) previous.length * Long.BYTES;
+        }
+        return bytes;
+    }
+
+    private void startResize() {
+        final long[] current = table;
+        if (capacity(current) >= MAX_CAPACITY) {
+            return;
+        }
+        migrationPosition = 0;
+        occupiedSlots = 0;
+        // previous table must be visible for readers before new table becomes current
+        migratingTable = current;
+        table = new long[current.length * 2];
+    }
+
+    private void migrate(final long[] previous) {
+        final int previousCapacity = capacity(previous);
+        final int end = Math.min(migrationPosition + MIGRATION_STEP, previousCapacity);
+        final long[] current = table;
+        for (int i = migrationPosition; i < end; i++) {
+            final long key = previous[i * 2];
+            final long value = previous[i * 2 + 1];
+            // keys updated after resize already have newer value in the current table
+            if (key != EMPTY_KEY && value != NO_VALUE && insert(current, key, value, false)) {
+                occupiedSlots++;
+            }
+        }
+        migrationPosition = end;
+        if (migrationPosition == previousCapacity) {
+            migratingTable = null;
+        }
+    }
+
+    /**
+     * Returns true if key was added to an empty slot.
+     */
+    private static boolean insert(final long[] slots, final long key, final long value, final boolean replace) {
+        final int mask = capacity(slots) - 1;
+        int index = hash(key) & mask;
+        while (true) {
+            final long slotKey = (long) SLOTS.getAcquire(slots, index * 2);
+            if (slotKey == key) {
+                if (replace) {
+                    SLOTS.setRelease(slots, index * 2 + 1, value);
+                }
+                return false;
+            }
+            if (slotKey == EMPTY_KEY) {
+                SLOTS.setRelease(slots, index * 2 + 1, value);
+                SLOTS.setRelease(slots, index * 2, key);
+                return true;
+            }
+            index = (index + 1) & mask;
+        }
+    }
+
+    /**
+     * Returns array position of the key slot or -1 if key is absent.
+     */
+    private static int find(final long[] slots, final long key) {
+        final int mask = capacity(slots) - 1;
+        int index = hash(key) & mask;
+        while (true) {
+            final long slotKey = (long) SLOTS.getAcquire(slots, index * 2);
+            if (slotKey == key) {
+                return index * 2;
+            }
+            if (slotKey == EMPTY_KEY) {
+                return -1;
+            }
+            index = (index + 1) & mask;
+        }
+    }
+
+    private static int capacity(final long[] slots) {
+        return slots.length / 2;
+    }
+
+    private static int hash(final long key) {
+        final long mixed = key * GOLDEN_RATIO;
+        return (int) (mixed ^ (mixed >>> 32));
+    }
+}
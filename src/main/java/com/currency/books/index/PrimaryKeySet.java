@@ -0,0 +1,138 @@
+package com.currency.books.index;
+
+/**
+ * Primary keys of records having one value of a secondary index. Open addressing hash set of {@code long}
+ * without boxing which grows by doubling, so adding and removing a key doesn't depend on the number of keys.
+ * Zero is used as empty slot marker, so presence of zero key is kept in a separate field. Removal shifts
+ * following keys of the probe sequence back instead of leaving a tombstone.
+ * <p>
+ * Set emptied by a removal is dropped and rejects further keys, so the index replaces it with a new one
+ * instead of adding to a set which is no longer in the index.
+ */
+final class PrimaryKeySet {
+    private static final long EMPTY_KEY = 0;
+    private static final int INITIAL_CAPACITY = 2;
+    private static final int LOAD_FACTOR_PERCENT = 75;
+    private static final long GOLDEN_RATIO = 0x9E3779B97F4A7C15L;
+
+    private long[] slots = new long[INITIAL_CAPACITY];
+    private boolean containsZeroKey;
+    private int size;
+    private boolean dropped;
+
+    /**
+     * Adds the key, returns {@code false} if the set was dropped and the key wasn't added.
+     */
+    synchronized boolean add(final long primaryKey) {
+        if (dropped) {
+            return false;
+        }
+        if (primaryKey == EMPTY_KEY) {
+            if (!containsZeroKey) {
+                containsZeroKey = true;
+                size++;
+            }
+            return true;
+        }
+        if ((long) (size + 1) * 100 > (long) slots.length * LOAD_FACTOR_PERCENT) {
+            resize(slots.length * 2);
+        }
+        if (insert(slots, primaryKey)) {
+            size++;
+        }
+        return true;
+    }
+
+    /**
+     * Removes the key, returns {@code true} if the set became empty and was dropped.
+     */
+    synchronized boolean remove(final long primaryKey) {
+        if (primaryKey == EMPTY_KEY) {
+            if (containsZeroKey) {
+                containsZeroKey = false;
+                size--;
+            }
+        } else {
+            final int mask = slots.length - 1;
+            int index = hash(primaryKey) & mask;
+            while (slots[index] != EMPTY_KEY && slots[index] != primaryKey) {
+                index = (index + 1) & mask;
+            }
+            if (slots[index] == EMPTY_KEY) {
+                return false;
+            }
+            removeSlot(index);
+            size--;
+        }
+        if (size == 0) {
+            dropped = true;
+        }
+        return dropped;
+    }
+
+    /**
+     * Returns copy of the keys in no particular order.
+     */
+    synchronized long[] toArray() {
+        final long[] primaryKeys = new long[size];
+        int position = 0;
+        if (containsZeroKey) {
+            primaryKeys[position++] = EMPTY_KEY;
+        }
+        for (final long slot : slots) {
+            if (slot != EMPTY_KEY) {
+                primaryKeys[position++] = slot;
+            }
+        }
+        return primaryKeys;
+    }
+
+    private void resize(final int capacity) {
+        final long[] resized = new long[capacity];
+        for (final long slot : slots) {
+            if (slot != EMPTY_KEY) {
+                insert(resized, slot);
+            }
+        }
+        slots = resized;
+    }
+
+    /**
+     * Moves keys following the removed one back into the hole unless their probe sequence starts after it.
+     */
+    private void removeSlot(final int index) {
+        final int mask = slots.length - 1;
+        int hole = index;
+        int next = (hole + 1) & mask;
+        while (slots[next] != EMPTY_KEY) {
+            final int home = hash(slots[next]) & mask;
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                slots[hole] = slots[next];
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        slots[hole] = EMPTY_KEY;
+    }
+
+    /**
+     * Returns true if key was added to an empty slot.
+     */
+    private static boolean insert(final long[] slots, final long key) {
+        final int mask = slots.length - 1;
+        int index = hash(key) & mask;
+        while (slots[index] != EMPTY_KEY) {
+            if (slots[index] == key) {
+                return false;
+            }
+            index = (index + 1) & mask;
+        }
+        slots[index] = key;
+        return true;
+    }
+
+    private static int hash(final long key) {
+        final long mixed = key * GOLDEN_RATIO;
+        return (int) (mixed ^ (mixed >>> 32));
+    }
+}
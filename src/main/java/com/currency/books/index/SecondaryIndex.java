@@ -0,0 +1,242 @@
+package com.currency.books.index;
+
+import com.currency.books.exception.IndexIsNotSupportedException;
+import com.currency.books.model.ColumnType;
+import com.currency.books.model.IndexDefinition;
+import com.currency.books.model.IndexType;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.LongConsumer;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * In-memory index from values of a column to primary keys of records having the value.
+ * {@link IndexType#HASH} index supports only equality lookups, {@link IndexType#ORDERED} keeps values sorted.
+ * <p>
+ * Index may return primary keys whose record has another value by now: entry of the previous value is removed
+ * after the new record is written, so callers check the value of the record they read.
+ * <p>
+ * Snapshot of the index is saved together with the data position it covers, like the primary index checkpoint.
+ */
+public class SecondaryIndex {
+    private static final int MAGIC = 0x53494458;
+    private static final long[] NO_KEYS = new long[0];
+
+    private final IndexDefinition definition;
+    private final int ordinal;
+    private final ColumnType columnType;
+    private final ConcurrentMap<Object, PrimaryKeySet> primaryKeysByValue;
+    private volatile boolean built;
+    private volatile boolean modified = true;
+    private long savedPosition = -1;
+
+    public SecondaryIndex(final IndexDefinition definition, final int ordinal, final ColumnType columnType) {
+        this.definition = definition;
+        this.ordinal = ordinal;
+        this.columnType = columnType;
+        this.primaryKeysByValue = definition.getIndexType() == IndexType.ORDERED
+                ? new ConcurrentSkipListMap<>() : new ConcurrentHashMap<>();
+    }
+
+    public IndexDefinition getDefinition() {
+        return definition;
+    }
+
+    /**
+     * Position of the indexed column in the record.
+     */
+    public int getOrdinal() {
+        return ordinal;
+    }
+
+    public boolean isUnique() {
+        return definition.isUnique();
+    }
+
+    /**
+     * Returns {@code true} when all records written before the index was created are indexed.
+     */
+    public boolean isBuilt() {
+        return built;
+    }
+
+    public void markBuilt() {
+        built = true;
+    }
+
+    public void add(final Object value, final long primaryKey) {
+        PrimaryKeySet primaryKeys = primaryKeysByValue.computeIfAbsent(value, key -> new PrimaryKeySet());
+        while (!primaryKeys.add(primaryKey)) {
+            // set emptied by a concurrent remove is replaced
+            primaryKeysByValue.remove(value, primaryKeys);
+            primaryKeys = primaryKeysByValue.computeIfAbsent(value, key -> new PrimaryKeySet());
+        }
+        modified = true;
+    }
+
+    public void remove(final Object value, final long primaryKey) {
+        final PrimaryKeySet primaryKeys = primaryKeysByValue.get(value);
+        if (primaryKeys != null && primaryKeys.remove(primaryKey)) {
+            primaryKeysByValue.remove(value, primaryKeys);
+        }
+        modified = true;
+    }
+
+    /**
+     * Returns primary keys of the value in no particular order.
+     */
+    public long[] get(final Object value) {
+        final PrimaryKeySet primaryKeys = primaryKeysByValue.get(value);
+        return primaryKeys == null ? NO_KEYS : primaryKeys.toArray();
+    }
+
+    /**
+     * Calls consumer for primary keys of values in the inclusive range in the order of values.
+     */
+    public void forEachInRange(final Object fromValue, final Object toValue, final LongConsumer consumer) {
+        for (final PrimaryKeySet primaryKeys : ordered().subMap(fromValue, true, toValue, true).values()) {
+            for (final long primaryKey : primaryKeys.toArray()) {
+                consumer.accept(primaryKey);
+            }
+        }
+    }
+
+    /**
+     * Calls consumer for primary keys of string values starting with the prefix in the order of values.
+     */
+    public void forEachWithPrefix(final String prefix, final LongConsumer consumer) {
+        for (final Map.Entry<Object, PrimaryKeySet> entry : ordered().tailMap(prefix, true).entrySet()) {
+            if (!((String) entry.getKey()).startsWith(prefix)) {
+                break;
+            }
+            for (final long primaryKey : entry.getValue().toArray()) {
+                consumer.accept(primaryKey);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private NavigableMap<Object, PrimaryKeySet> ordered() {
+        if (definition.getIndexType() != IndexType.ORDERED) {
+            throw new IndexIsNotSupportedException("Index on " + definition.getColumnName()
+                    + " isn't ordered, it supports only equality lookups");
+        }
+        return (NavigableMap<Object, PrimaryKeySet>) primaryKeysByValue;
+    }
+
+    public int size() {
+        return primaryKeysByValue.size();
+    }
+
+    /**
+     * Writes snapshot of the index to a temporary file and moves it in place, so a crash keeps the previous one.
+     * Caller guarantees that index isn't modified meanwhile. Unchanged index isn't written again.
+     */
+    public void save(final Path path, final long dataPosition) throws IOException {
+        if (!built || (!modified && savedPosition == dataPosition)) {
+            return;
+        }
+        final Path tempPath = path.resolveSibling(path.getFileName() + ".tmp");
+        final CRC32 crc = new CRC32();
+        try (DataOutputStream output = new DataOutputStream(new CheckedOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(tempPath)), crc))) {
+            output.writeInt(MAGIC);
+            output.writeLong(dataPosition);
+            output.writeInt(primaryKeysByValue.size());
+            for (final Map.Entry<Object, PrimaryKeySet> entry : primaryKeysByValue.entrySet()) {
+                final long[] primaryKeys = entry.getValue().toArray();
+                writeValue(output, entry.getKey());
+                output.writeInt(primaryKeys.length);
+                for (final long primaryKey : primaryKeys) {
+                    output.writeLong(primaryKey);
+                }
+            }
+            output.flush();
+            output.writeLong(crc.getValue());
+        }
+        try (FileChannel channel = FileChannel.open(tempPath, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        savedPosition = dataPosition;
+        modified = false;
+    }
+
+    /**
+     * Fills the index from the snapshot if it was saved at the data position, index stays empty otherwise.
+     *
+     * @return {@code true} when the snapshot was loaded and the index is built
+     */
+    public boolean load(final Path path, final long dataPosition) throws IOException {
+        if (!Files.exists(path)) {
+            return false;
+        }
+        final CRC32 crc = new CRC32();
+        try (DataInputStream input = new DataInputStream(new CheckedInputStream(
+                new BufferedInputStream(Files.newInputStream(path)), crc))) {
+            if (input.readInt() != MAGIC || input.readLong() != dataPosition) {
+                return false;
+            }
+            final int size = input.readInt();
+            for (int i = 0; i < size; i++) {
+                final Object value = readValue(input);
+                final int count = input.readInt();
+                final PrimaryKeySet primaryKeys = new PrimaryKeySet();
+                for (int j = 0; j < count; j++) {
+                    primaryKeys.add(input.readLong());
+                }
+                primaryKeysByValue.put(value, primaryKeys);
+            }
+            final long expectedCrc = crc.getValue();
+            if (input.readLong() != expectedCrc) {
+                // damaged snapshot is rebuilt from the data file
+                primaryKeysByValue.clear();
+                return false;
+            }
+        } catch (EOFException e) {
+            primaryKeysByValue.clear();
+            return false;
+        }
+        savedPosition = dataPosition;
+        modified = false;
+        built = true;
+        return true;
+    }
+
+    private void writeValue(final DataOutputStream output, final Object value) throws IOException {
+        if (columnType == ColumnType.LONG) {
+            output.writeLong((Long) value);
+        } else {
+            final byte[] bytes = ((String) value).getBytes(StandardCharsets.UTF_8);
+            output.writeInt(bytes.length);
+            output.write(bytes);
+        }
+    }
+
+    private Object readValue(final DataInputStream input) throws IOException {
+        if (columnType == ColumnType.LONG) {
+            return input.readLong();
+        }
+        final byte[] bytes = new byte[input.readInt()];
+        input.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
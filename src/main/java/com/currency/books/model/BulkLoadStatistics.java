@@ -0,0 +1,18 @@
+package com.currency.books.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.concurrent.TimeUnit;
+
+@Data
+@AllArgsConstructor
+public class BulkLoadStatistics {
+    private long rows;
+    private long sourceBytes;
+    private long elapsedNanos;
+
+    public long getRowsPerSecond() {
+        return elapsedNanos == 0 ? 0 : rows * TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+    }
+}
@@ -2,9 +2,11 @@ package com.currency.books.model;
 
 import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.NoArgsConstructor;
 
 @Data
 @AllArgsConstructor
+@NoArgsConstructor
 public class Column {
     private String columnName;
     private ColumnType columnType;
@@ -0,0 +1,15 @@
+package com.currency.books.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * Condition on a single column evaluated by scans before the row is built.
+ */
+@Data
+@AllArgsConstructor
+public class ColumnPredicate {
+    private String columnName;
+    private PredicateOperator operator;
+    private Object value;
+}
@@ -1,5 +1,10 @@
 package com.currency.books.model;
 
+import com.currency.books.utils.BinaryUtils;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
 public enum ColumnType {
     LONG {
         @Override
@@ -11,6 +16,21 @@ public enum ColumnType {
         public Object parse(final String data) {
             return Long.parseLong(data);
         }
+
+        @Override
+        public void write(final Object data, final ByteBuffer buffer) {
+            buffer.putLong((Long) data);
+        }
+
+        @Override
+        public Object read(final ByteBuffer buffer) {
+            return buffer.getLong();
+        }
+
+        @Override
+        public void skip(final ByteBuffer buffer) {
+            buffer.position(buffer.position() + Long.BYTES);
+        }
     }, STRING {
         @Override
         public Class getClazz() {
@@ -21,9 +41,53 @@ public enum ColumnType {
         public Object parse(final String data) {
             return data;
         }
+
+        @Override
+        public void write(final Object data, final ByteBuffer buffer) {
+            final byte[] bytes = ((String) data).getBytes(StandardCharsets.UTF_8);
+            BinaryUtils.putVarInt(buffer, bytes.length);
+            buffer.put(bytes);
+        }
+
+        @Override
+        public Object read(final ByteBuffer buffer) {
+            final int length = BinaryUtils.getVarInt(buffer);
+            final String value;
+            if (buffer.hasArray()) {
+                value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length,
+                        StandardCharsets.UTF_8);
+                buffer.position(buffer.position() + length);
+            } else {
+                final byte[] bytes = new byte[length];
+                buffer.get(bytes);
+                value = new String(bytes, StandardCharsets.UTF_8);
+            }
+            return value;
+        }
+
+        @Override
+        public void skip(final ByteBuffer buffer) {
+            final int length = BinaryUtils.getVarInt(buffer);
+            buffer.position(buffer.position() + length);
+        }
     };
 
     public abstract Class getClazz();
 
     public abstract Object parse(final String data);
+
+    /**
+     * Writes binary representation of the value at the current buffer position.
+     */
+    public abstract void write(final Object data, final ByteBuffer buffer);
+
+    /**
+     * Reads value written by {@link #write(Object, ByteBuffer)} from the current buffer position.
+     */
+    public abstract Object read(final ByteBuffer buffer);
+
+    /**
+     * Moves buffer position past the value without decoding it.
+     */
+    public abstract void skip(final ByteBuffer buffer);
 }
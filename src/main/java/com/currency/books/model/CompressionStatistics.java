@@ -0,0 +1,20 @@
+package com.currency.books.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class CompressionStatistics {
+    private long uncompressedBytes;
+    /**
+     * Size of the data file including block headers.
+     */
+    private long compressedBytes;
+    private long decompressedBlocks;
+    private long totalDecompressionNanos;
+
+    public double getCompressionRatio() {
+        return compressedBytes == 0 ? 1 : (double) uncompressedBytes / compressedBytes;
+    }
+}
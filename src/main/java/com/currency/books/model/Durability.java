@@ -0,0 +1,19 @@
+package com.currency.books.model;
+
+/**
+ * Guarantee given for an insert when it returns.
+ */
+public enum Durability {
+    /**
+     * No write-ahead log, inserts since the last checkpoint are recovered only if data file survived.
+     */
+    NONE,
+    /**
+     * Write-ahead log is written to the operating system, inserts survive process crash.
+     */
+    FLUSH,
+    /**
+     * Write-ahead log is forced to the storage device, inserts survive power loss.
+     */
+    FSYNC
+}
@@ -0,0 +1,12 @@
+package com.currency.books.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class IndexDefinition {
+    private String columnName;
+    private IndexType indexType;
+    private boolean unique;
+}
@@ -0,0 +1,12 @@
+package com.currency.books.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class IndexMemoryUsage {
+    private int entries;
+    private int capacity;
+    private long bytes;
+}
@@ -0,0 +1,12 @@
+package com.currency.books.model;
+
+public enum IndexType {
+    /**
+     * Equality lookups only.
+     */
+    HASH,
+    /**
+     * Values are kept sorted, supports equality, range and prefix lookups.
+     */
+    ORDERED
+}
@@ -0,0 +1,50 @@
+package com.currency.books.model;
+
+public enum PredicateOperator {
+    EQUALS {
+        @Override
+        public boolean test(final Object value, final Object operand) {
+            return value.equals(operand);
+        }
+    }, NOT_EQUALS {
+        @Override
+        public boolean test(final Object value, final Object operand) {
+            return !value.equals(operand);
+        }
+    }, LESS_THAN {
+        @Override
+        public boolean test(final Object value, final Object operand) {
+            return compare(value, operand) < 0;
+        }
+    }, LESS_THAN_OR_EQUALS {
+        @Override
+        public boolean test(final Object value, final Object operand) {
+            return compare(value, operand) <= 0;
+        }
+    }, GREATER_THAN {
+        @Override
+        public boolean test(final Object value, final Object operand) {
+            return compare(value, operand) > 0;
+        }
+    }, GREATER_THAN_OR_EQUALS {
+        @Override
+        public boolean test(final Object value, final Object operand) {
+            return compare(value, operand) >= 0;
+        }
+    }, STARTS_WITH {
+        @Override
+        public boolean test(final Object value, final Object operand) {
+            return ((String) value).startsWith((String) operand);
+        }
+    };
+
+    /**
+     * Compares column value with the operand of the predicate, both have type of the column.
+     */
+    public abstract boolean test(final Object value, final Object operand);
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static int compare(final Object value, final Object operand) {
+        return ((Comparable) value).compareTo(operand);
+    }
+}
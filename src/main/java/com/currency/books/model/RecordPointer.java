@@ -0,0 +1,39 @@
+package com.currency.books.model;
+
+import com.currency.books.exception.DatabaseWriteException;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * Location of a single record inside a table data file.
+ */
+@Data
+@AllArgsConstructor
+public class RecordPointer {
+    static final int LENGTH_BITS = 24;
+    static final int OFFSET_BITS = 39;
+    static final long MAX_LENGTH = (1L << LENGTH_BITS) - 1;
+    static final long MAX_OFFSET = (1L << OFFSET_BITS) - 1;
+
+    private long offset;
+    private int length;
+
+    /**
+     * Packs pointer into a single non-negative long, so it can be kept in primitive indexes.
+     */
+    public static long pack(final long offset, final int length) {
+        if (offset < 0 || offset > MAX_OFFSET || length < 0 || length > MAX_LENGTH) {
+            throw new DatabaseWriteException("Record at offset " + offset + " with length " + length
+                    + " can't be indexed");
+        }
+        return offset << LENGTH_BITS | length;
+    }
+
+    public static RecordPointer unpack(final long packedPointer) {
+        return new RecordPointer(packedPointer >>> LENGTH_BITS, (int) (packedPointer & MAX_LENGTH));
+    }
+
+    public long pack() {
+        return pack(offset, length);
+    }
+}
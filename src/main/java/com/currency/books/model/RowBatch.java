@@ -0,0 +1,72 @@
+package com.currency.books.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Reusable container of records of one table. Rows are appended by {@link #addRow()} for an insert or by
+ * the repository for a read, {@link #clear()} keeps the capacity for the next batch. Insert takes over the
+ * records of the batch and clears it, so records handed to the table can't be changed afterwards.
+ */
+public class RowBatch {
+    private final TableSchema schema;
+    private final List<Object[]> records;
+    private final List<Object[]> readOnlyRecords;
+    private final RowBuffer rowBuffer;
+
+    public RowBatch(final TableSchema schema) {
+        this(schema, 0);
+    }
+
+    public RowBatch(final TableSchema schema, final int expectedRows) {
+        this.schema = schema;
+        this.records = new ArrayList<>(expectedRows);
+        this.readOnlyRecords = Collections.unmodifiableList(records);
+        this.rowBuffer = new RowBuffer(schema);
+    }
+
+    public TableSchema getSchema() {
+        return schema;
+    }
+
+    /**
+     * Appends an empty row and returns buffer filling it, the same buffer is returned for every row.
+     */
+    public RowBuffer addRow() {
+        final Object[] values = new Object[schema.getColumnCount()];
+        records.add(values);
+        rowBuffer.wrap(values);
+        return rowBuffer;
+    }
+
+    /**
+     * Appends values of a stored record in the order of columns of the schema.
+     */
+    public void add(final Object[] values) {
+        records.add(values);
+    }
+
+    public int size() {
+        return records.size();
+    }
+
+    /**
+     * Points the view at the row with the index.
+     */
+    public RowView get(final int index, final RowView view) {
+        return view.wrap(schema, records.get(index));
+    }
+
+    /**
+     * Returns records of the batch in the order they were added.
+     */
+    public List<Object[]> getRecords() {
+        return readOnlyRecords;
+    }
+
+    public void clear() {
+        records.clear();
+        rowBuffer.wrap(null);
+    }
+}
@@ -0,0 +1,39 @@
+package com.currency.books.model;
+
+import com.currency.books.exception.TypeMismatchException;
+
+/**
+ * Writable row of a {@link RowBatch}. Setters take column ordinals of the batch schema and check the column type
+ * against the ordinal only, so filling a row doesn't look up column names.
+ */
+public class RowBuffer {
+    private final TableSchema schema;
+    private Object[] values;
+
+    RowBuffer(final TableSchema schema) {
+        this.schema = schema;
+    }
+
+    void wrap(final Object[] values) {
+        this.values = values;
+    }
+
+    public RowBuffer setLong(final int ordinal, final long value) {
+        checkType(ordinal, ColumnType.LONG);
+        values[ordinal] = value;
+        return this;
+    }
+
+    public RowBuffer setString(final int ordinal, final String value) {
+        checkType(ordinal, ColumnType.STRING);
+        values[ordinal] = value;
+        return this;
+    }
+
+    private void checkType(final int ordinal, final ColumnType columnType) {
+        if (schema.getColumnType(ordinal) != columnType) {
+            throw new TypeMismatchException("Column " + schema.getColumnName(ordinal) + " must have "
+                    + schema.getColumnType(ordinal) + " type");
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.currency.books.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class RowCacheStatistics {
+    private long hits;
+    private long misses;
+    private long evictions;
+    private int entries;
+    /**
+     * Estimated memory occupied by cached rows.
+     */
+    private long bytes;
+    private long maximumBytes;
+}
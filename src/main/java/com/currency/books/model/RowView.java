@@ -0,0 +1,54 @@
+package com.currency.books.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Read-only view of a record bound to the schema of its table. Accessors take column ordinals, so reading
+ * a column doesn't look up its name or copy its value. View is reused by pointing it at the next record,
+ * record seen through the view may be shared with the row cache and must not be changed.
+ */
+public class RowView {
+    private TableSchema schema;
+    private Object[] values;
+
+    /**
+     * Points view at values of a record in the order of columns of the schema.
+     */
+    public RowView wrap(final TableSchema schema, final Object[] values) {
+        this.schema = schema;
+        this.values = values;
+        return this;
+    }
+
+    public TableSchema getSchema() {
+        return schema;
+    }
+
+    public int getColumnCount() {
+        return values.length;
+    }
+
+    public long getLong(final int ordinal) {
+        return (Long) values[ordinal];
+    }
+
+    public String getString(final int ordinal) {
+        return (String) values[ordinal];
+    }
+
+    public Object getValue(final int ordinal) {
+        return values[ordinal];
+    }
+
+    /**
+     * Copies the record into a {@link Row} of named columns.
+     */
+    public Row toRow() {
+        final List<ColumnData> columns = new ArrayList<>(values.length);
+        for (int i = 0; i < values.length; i++) {
+            columns.add(new ColumnData(schema.getColumnName(i), values[i]));
+        }
+        return new Row(columns);
+    }
+}
@@ -0,0 +1,22 @@
+package com.currency.books.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * Result of a SQL statement: rows of a query with values in the order of column names or number of rows
+ * changed by a modification.
+ */
+@Data
+@AllArgsConstructor
+public class SqlResult {
+    private List<String> columnNames;
+    private List<Object[]> rows;
+    private long affectedRows;
+
+    public static SqlResult affected(final long affectedRows) {
+        return new SqlResult(List.of(), List.of(), affectedRows);
+    }
+}
@@ -0,0 +1,80 @@
+package com.currency.books.model;
+
+import com.currency.books.storage.BinaryPageStorageEngine;
+import com.currency.books.storage.ColumnarStorageEngine;
+import com.currency.books.storage.CompressedBlockStorageEngine;
+import com.currency.books.storage.CsvStorageEngine;
+import com.currency.books.storage.LsmStorageEngine;
+import com.currency.books.storage.StorageEngine;
+import com.currency.books.utils.DatabaseConstants;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+public enum StorageType {
+    CSV {
+        @Override
+        public String getDataPostFix() {
+            return DatabaseConstants.DATA_POSTFIX;
+        }
+
+        @Override
+        public StorageEngine openEngine(final Path dataPath, final List<Column> columns,
+                                         final TableOptions tableOptions) throws IOException {
+            return new CsvStorageEngine(dataPath, columns, tableOptions);
+        }
+    }, BINARY_PAGE {
+        @Override
+        public String getDataPostFix() {
+            return DatabaseConstants.BINARY_DATA_POST_FIX;
+        }
+
+        @Override
+        public StorageEngine openEngine(final Path dataPath, final List<Column> columns,
+                                         final TableOptions tableOptions) throws IOException {
+            return new BinaryPageStorageEngine(dataPath, columns, tableOptions);
+        }
+    }, COLUMNAR {
+        @Override
+        public String getDataPostFix() {
+            return DatabaseConstants.COLUMNAR_DATA_POST_FIX;
+        }
+
+        @Override
+        public StorageEngine openEngine(final Path dataPath, final List<Column> columns,
+                                         final TableOptions tableOptions) throws IOException {
+            return new ColumnarStorageEngine(dataPath, columns, tableOptions);
+        }
+    }, COMPRESSED {
+        @Override
+        public String getDataPostFix() {
+            return DatabaseConstants.COMPRESSED_DATA_POST_FIX;
+        }
+
+        @Override
+        public StorageEngine openEngine(final Path dataPath, final List<Column> columns,
+                                         final TableOptions tableOptions) throws IOException {
+            return new CompressedBlockStorageEngine(dataPath, columns, tableOptions);
+        }
+    }, LSM {
+        @Override
+        public String getDataPostFix() {
+            return DatabaseConstants.LSM_DATA_POST_FIX;
+        }
+
+        @Override
+        public StorageEngine openEngine(final Path dataPath, final List<Column> columns,
+                                         final TableOptions tableOptions) throws IOException {
+            return new LsmStorageEngine(dataPath, columns, tableOptions);
+        }
+    };
+
+    public abstract String getDataPostFix();
+
+    /**
+     * Opens engine for the data file, file is created if it doesn't exist yet.
+     */
+    public abstract StorageEngine openEngine(final Path dataPath, final List<Column> columns,
+                                             final TableOptions tableOptions) throws IOException;
+}
@@ -0,0 +1,24 @@
+package com.currency.books.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class TableOptions {
+    private StorageType storageType = StorageType.BINARY_PAGE;
+    /**
+     * Data file is read through memory-mapped segments instead of positional reads.
+     */
+    private boolean memoryMapped;
+    /**
+     * Memory budget of the row cache in front of primary key lookups, zero disables the cache.
+     */
+    private long rowCacheBytes;
+
+    public TableOptions(final StorageType storageType, final boolean memoryMapped) {
+        this(storageType, memoryMapped, 0);
+    }
+}
@@ -0,0 +1,84 @@
+package com.currency.books.model;
+
+import com.currency.books.exception.IndexIsNotSupportedException;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable compiled schema of a table. Columns are kept in declared order, ordinal of a column is its
+ * position in the stored record.
+ */
+@Getter
+public class TableSchema {
+    public static final int NO_ORDINAL = -1;
+
+    private final String tableName;
+    private final List<Column> columns;
+    private final ColumnType[] columnTypes;
+    private final int primaryKeyOrdinal;
+    private final Map<String, Integer> ordinalsByName;
+
+    public TableSchema(final String tableName, final List<Column> declaredColumns) {
+        final List<Column> columns = new ArrayList<>(declaredColumns.size());
+        final Map<String, Integer> ordinalsByName = new HashMap<>();
+        final ColumnType[] columnTypes = new ColumnType[declaredColumns.size()];
+        int primaryKeyOrdinal = NO_ORDINAL;
+        for (int i = 0; i < declaredColumns.size(); i++) {
+            final Column column = declaredColumns.get(i);
+            // columns are copied because Column is mutable
+            columns.add(new Column(column.getColumnName(), column.getColumnType(), column.isPrimaryIndex()));
+            ordinalsByName.put(column.getColumnName(), i);
+            columnTypes[i] = column.getColumnType();
+            if (column.isPrimaryIndex()) {
+                if (column.getColumnType() != ColumnType.LONG) {
+                    throw new IndexIsNotSupportedException("Currently only Long is possible type for index");
+                }
+                primaryKeyOrdinal = i;
+            }
+        }
+        if (primaryKeyOrdinal == NO_ORDINAL) {
+            throw new IndexIsNotSupportedException("Index should be defined for table " + tableName);
+        }
+        this.tableName = tableName;
+        this.columns = Collections.unmodifiableList(columns);
+        this.ordinalsByName = Collections.unmodifiableMap(ordinalsByName);
+        this.columnTypes = columnTypes;
+        this.primaryKeyOrdinal = primaryKeyOrdinal;
+    }
+
+    public int getColumnCount() {
+        return columnTypes.length;
+    }
+
+    public ColumnType getColumnType(final int ordinal) {
+        return columnTypes[ordinal];
+    }
+
+    public String getColumnName(final int ordinal) {
+        return columns.get(ordinal).getColumnName();
+    }
+
+    /**
+     * Returns ordinal of the column or {@link #NO_ORDINAL} if table doesn't have such column.
+     */
+    public int getOrdinal(final String columnName) {
+        final Integer ordinal = ordinalsByName.get(columnName);
+        return ordinal == null ? NO_ORDINAL : ordinal;
+    }
+
+    /**
+     * Returns {@code true} if the other schema has columns of the same names and types in the same order.
+     */
+    public boolean hasSameColumns(final TableSchema other) {
+        return this == other || columns.equals(other.columns);
+    }
+
+    public ColumnType[] getColumnTypes() {
+        return columnTypes.clone();
+    }
+}
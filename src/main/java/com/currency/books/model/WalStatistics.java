@@ -0,0 +1,16 @@
+package com.currency.books.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class WalStatistics {
+    private long commits;
+    /**
+     * Writes of grouped entries to the log file, less than commits when concurrent commits are grouped.
+     */
+    private long syncs;
+    private long totalCommitLatencyNanos;
+    private long maxCommitLatencyNanos;
+}
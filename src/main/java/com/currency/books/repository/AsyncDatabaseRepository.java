@@ -0,0 +1,234 @@
+package com.currency.books.repository;
+
+import com.currency.books.exception.DatabaseOverloadedException;
+import com.currency.books.model.Row;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Non-blocking API over {@link DatabaseRepository}. File I/O runs on a dedicated pool of I/O threads, so
+ * the caller never blocks. Operations in flight are bounded: once the limit is reached a new operation is
+ * parked in a bounded queue and started when an earlier operation completes, once that queue is full too the
+ * returned future fails with {@link DatabaseOverloadedException}, so a fast producer can't queue unbounded work.
+ * <p>
+ * Lookups of a table are pipelined: pending keys are drained by up to a quarter of the I/O threads, so one hot
+ * table leaves threads to inserts and other tables. A drain reads queued keys in batches of at most
+ * {@link #MAX_LOOKUP_BATCH}, each batch by a single {@link DatabaseRepository#selectByIds} with sorted and
+ * coalesced reads, until the queue is empty. Under light load a lookup is read alone, under heavy load lookups
+ * are batched.
+ */
+@Component
+public class AsyncDatabaseRepository {
+    /**
+     * Keys read by one drain of the lookup queue of a table.
+     */
+    static final int MAX_LOOKUP_BATCH = 256;
+
+    private final DatabaseRepository databaseRepository;
+    private final ExecutorService ioExecutor;
+    private final int maxDrainsPerTable;
+    private final Semaphore inFlight;
+    private final Queue<Runnable> waiting;
+    private final Map<String, LookupQueue> lookupQueuesByTable = new ConcurrentHashMap<>();
+
+    private record Lookup(long primaryKey, CompletableFuture<Optional<Row>> result) {
+    }
+
+    /**
+     * Lookups of a table waiting for a drain and the number of drains running.
+     */
+    private static final class LookupQueue {
+        private final Queue<Lookup> pending = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger drains = new AtomicInteger();
+    }
+
+    public AsyncDatabaseRepository(final DatabaseRepository databaseRepository, final MeterRegistry meterRegistry,
+                                   @Value("${simple-database.async.io-threads:16}") final int ioThreads,
+                                   @Value("${simple-database.async.max-in-flight:4096}") final int maxInFlight,
+                                   @Value("${simple-database.async.max-waiting:4096}") final int maxWaiting) {
+        this.databaseRepository = databaseRepository;
+        this.maxDrainsPerTable = Math.max(1, ioThreads / 4);
+        this.inFlight = new Semaphore(maxInFlight);
+        this.waiting = new LinkedBlockingQueue<>(maxWaiting);
+        final AtomicInteger threadNumber = new AtomicInteger();
+        this.ioExecutor = Executors.newFixedThreadPool(ioThreads, runnable -> {
+            final Thread thread = new Thread(runnable, "database-io-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        Gauge.builder("simple-database.async.in-flight", inFlight, permits -> maxInFlight - permits.availablePermits())
+                .description("Asynchronous operations submitted and not completed yet")
+                .register(meterRegistry);
+        Gauge.builder("simple-database.async.waiting", waiting, Queue::size)
+                .description("Asynchronous operations waiting for an operation in flight to complete")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Inserts rows on an I/O thread. Concurrent inserts of a table share log writes like blocking inserts do.
+     */
+    public CompletableFuture<Void> insertIntoAsync(final String tableName, final List<Row> rows) {
+        final CompletableFuture<Void> result = new CompletableFuture<>();
+        submit(result, () -> {
+            try {
+                ioExecutor.execute(() -> {
+                    try {
+                        databaseRepository.insertInto(tableName, rows);
+                        result.complete(null);
+                    } catch (RuntimeException e) {
+                        result.completeExceptionally(e);
+                    }
+                });
+            } catch (RuntimeException e) {
+                result.completeExceptionally(e);
+            }
+        });
+        return result;
+    }
+
+    public CompletableFuture<Optional<Row>> selectByIdAsync(final String tableName, final long primaryKey) {
+        final CompletableFuture<Optional<Row>> result = new CompletableFuture<>();
+        try {
+            // unknown tables fail before they get a queue
+            databaseRepository.getSchema(tableName);
+        } catch (RuntimeException e) {
+            result.completeExceptionally(e);
+            return result;
+        }
+        submit(result, () -> {
+            final LookupQueue queue = lookupQueuesByTable.computeIfAbsent(tableName, name -> new LookupQueue());
+            queue.pending.add(new Lookup(primaryKey, result));
+            startDrain(tableName, queue);
+        });
+        return result;
+    }
+
+    /**
+     * Starts the operation if a permit is free, parks it otherwise. The permit is released once the result
+     * completes.
+     */
+    private void submit(final CompletableFuture<?> result, final Runnable operation) {
+        final Runnable start = () -> {
+            result.whenComplete((ignored, e) -> release());
+            operation.run();
+        };
+        if (inFlight.tryAcquire()) {
+            start.run();
+            return;
+        }
+        if (!waiting.offer(start)) {
+            result.completeExceptionally(new DatabaseOverloadedException("Too many operations in flight"));
+            return;
+        }
+        // every permit may have been released between tryAcquire and offer
+        startWaiting();
+    }
+
+    private void release() {
+        inFlight.release();
+        startWaiting();
+    }
+
+    private void startWaiting() {
+        while (!waiting.isEmpty() && inFlight.tryAcquire()) {
+            final Runnable start = waiting.poll();
+            if (start == null) {
+                inFlight.release();
+            } else {
+                start.run();
+            }
+        }
+    }
+
+    private void startDrain(final String tableName, final LookupQueue queue) {
+        while (true) {
+            final int drains = queue.drains.get();
+            if (drains >= maxDrainsPerTable) {
+                // a running drain picks the lookup up
+                return;
+            }
+            if (queue.drains.compareAndSet(drains, drains + 1)) {
+                break;
+            }
+        }
+        try {
+            ioExecutor.execute(() -> drain(tableName, queue));
+        } catch (RuntimeException e) {
+            queue.drains.decrementAndGet();
+            failPending(queue, e);
+        }
+    }
+
+    private void drain(final String tableName, final LookupQueue queue) {
+        final List<Lookup> batch = new ArrayList<>(MAX_LOOKUP_BATCH);
+        while (true) {
+            Lookup lookup;
+            while (batch.size() < MAX_LOOKUP_BATCH && (lookup = queue.pending.poll()) != null) {
+                batch.add(lookup);
+            }
+            if (batch.isEmpty()) {
+                queue.drains.decrementAndGet();
+                // lookup added after the last poll but before the decrement found the drain still running
+                if (queue.pending.isEmpty() || !restartDrain(queue)) {
+                    return;
+                }
+                continue;
+            }
+            read(tableName, batch);
+            batch.clear();
+        }
+    }
+
+    private boolean restartDrain(final LookupQueue queue) {
+        final int drains = queue.drains.get();
+        return drains < maxDrainsPerTable && queue.drains.compareAndSet(drains, drains + 1);
+    }
+
+    private void read(final String tableName, final List<Lookup> batch) {
+        final List<Long> primaryKeys = new ArrayList<>(batch.size());
+        for (final Lookup lookup : batch) {
+            primaryKeys.add(lookup.primaryKey());
+        }
+        final List<Optional<Row>> rows;
+        try {
+            rows = databaseRepository.selectByIds(tableName, primaryKeys);
+        } catch (RuntimeException e) {
+            for (final Lookup lookup : batch) {
+                lookup.result().completeExceptionally(e);
+            }
+            return;
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            batch.get(i).result().complete(rows.get(i));
+        }
+    }
+
+    private static void failPending(final LookupQueue queue, final RuntimeException e) {
+        Lookup lookup;
+        while ((lookup = queue.pending.poll()) != null) {
+            lookup.result().completeExceptionally(e);
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        ioExecutor.shutdown();
+    }
+}
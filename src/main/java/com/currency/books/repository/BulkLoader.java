@@ -0,0 +1,231 @@
+package com.currency.books.repository;
+
+import com.currency.books.exception.DatabaseReadException;
+import com.currency.books.exception.TypeMismatchException;
+import com.currency.books.model.RecordPointer;
+import com.currency.books.model.TableSchema;
+import com.opencsv.CSVParser;
+import com.opencsv.CSVReader;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loads a CSV file into the data file of a table. File is read sequentially in chunks cut at record boundaries,
+ * chunks are parsed on all cores and appended in the order of the file as large batches, so a later row of
+ * a key wins like it does for inserts. Keys and pointers of appended records are collected for the primary
+ * index, which is built once the load is over.
+ */
+@Slf4j
+@Getter
+class BulkLoader {
+    private static final int CHUNK_BYTES = 8 * 1024 * 1024;
+    private static final int INITIAL_KEYS_CAPACITY = 1024;
+    private static final long PROGRESS_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(10);
+    private static final byte QUOTE = '"';
+    private static final byte LINE_END = '\n';
+
+    private final Table table;
+    private final Path source;
+    private final int parallelism;
+    private final RecordWriter writer;
+    private final long startedAt = System.nanoTime();
+    private long[] keys = new long[INITIAL_KEYS_CAPACITY];
+    private long[] pointers = new long[INITIAL_KEYS_CAPACITY];
+    private int keyCount;
+    private long rows;
+    private long sourceBytes;
+    private long reportedAt = startedAt;
+
+    /**
+     * Appends a batch of parsed records, returns pointers in the order of records.
+     */
+    interface RecordWriter {
+        RecordPointer[] write(List<Object[]> records) throws IOException;
+    }
+
+    BulkLoader(final Table table, final Path source, final int parallelism, final RecordWriter writer) {
+        this.table = table;
+        this.source = source;
+        this.parallelism = parallelism;
+        this.writer = writer;
+    }
+
+    /**
+     * Loads the file, parsed chunks waiting to be appended are limited, so memory doesn't depend on the file size.
+     */
+    void load() throws IOException {
+        read(true);
+    }
+
+    /**
+     * Parses the whole file without appending anything, so a malformed file is rejected before the table changes.
+     */
+    void validate() throws IOException {
+        read(false);
+    }
+
+    private void read(final boolean appendRecords) throws IOException {
+        sourceBytes = 0;
+        final ForkJoinPool parsePool = new ForkJoinPool(parallelism);
+        final Deque<CompletableFuture<List<Object[]>>> parsedChunks = new ArrayDeque<>();
+        try (FileChannel channel = FileChannel.open(source, StandardOpenOption.READ)) {
+            final long sourceSize = channel.size();
+            byte[] pending = new byte[0];
+            boolean endOfFile = false;
+            while (!endOfFile) {
+                final byte[] chunk = Arrays.copyOf(pending, pending.length + CHUNK_BYTES);
+                final ByteBuffer buffer = ByteBuffer.wrap(chunk, pending.length, CHUNK_BYTES);
+                while (buffer.hasRemaining() && !endOfFile) {
+                    endOfFile = channel.read(buffer) < 0;
+                }
+                final int length = buffer.position();
+                final int boundary = endOfFile ? length : findLastRecordEnd(chunk, length);
+                if (boundary < 0) {
+                    // record is longer than the chunk
+                    pending = Arrays.copyOf(chunk, length);
+                    continue;
+                }
+                pending = Arrays.copyOfRange(chunk, boundary, length);
+                final long chunkOffset = sourceBytes;
+                sourceBytes += boundary;
+                parsedChunks.add(CompletableFuture.supplyAsync(() -> parse(chunk, boundary, chunkOffset), parsePool));
+                if (parsedChunks.size() > parallelism * 2) {
+                    consume(join(parsedChunks.poll()), appendRecords, sourceSize);
+                }
+            }
+            while (!parsedChunks.isEmpty()) {
+                consume(join(parsedChunks.poll()), appendRecords, sourceSize);
+            }
+        } finally {
+            parsePool.shutdownNow();
+        }
+    }
+
+    /**
+     * Returns position after the last line end outside of quotes or -1 if there is none. Chunk starts
+     * at a record boundary, so quote parity counted from its start tells whether a line end ends a record.
+     */
+    private static int findLastRecordEnd(final byte[] chunk, final int length) {
+        boolean inQuotes = false;
+        int recordEnd = -1;
+        for (int i = 0; i < length; i++) {
+            if (chunk[i] == QUOTE) {
+                inQuotes = !inQuotes;
+            } else if (chunk[i] == LINE_END && !inQuotes) {
+                recordEnd = i + 1;
+            }
+        }
+        return recordEnd;
+    }
+
+    private List<Object[]> parse(final byte[] chunk, final int length, final long chunkOffset) {
+        final TableSchema schema = table.getSchema();
+        final List<Object[]> records = new ArrayList<>();
+        try (CSVReader reader = new CSVReader(new InputStreamReader(new ByteArrayInputStream(chunk, 0, length),
+                StandardCharsets.UTF_8), CSVParser.DEFAULT_SEPARATOR, CSVParser.DEFAULT_QUOTE_CHARACTER,
+                CSVParser.NULL_CHARACTER)) {
+            String[] line;
+            while ((line = reader.readNext()) != null) {
+                if (line.length == 1 && line[0].isEmpty()) {
+                    continue;
+                }
+                if (line.length != schema.getColumnCount()) {
+                    throw new TypeMismatchException("Record of " + source + " after byte " + chunkOffset + " has "
+                            + line.length + " values, table " + table.getName() + " has "
+                            + schema.getColumnCount() + " columns");
+                }
+                final Object[] values = new Object[line.length];
+                for (int i = 0; i < line.length; i++) {
+                    values[i] = parseValue(schema, i, line[i]);
+                }
+                table.getStorageEngine().validate(values);
+                records.add(values);
+            }
+        } catch (IOException e) {
+            throw new DatabaseReadException("Unable to parse " + source + " after byte " + chunkOffset, e);
+        }
+        return records;
+    }
+
+    private static Object parseValue(final TableSchema schema, final int ordinal, final String value) {
+        try {
+            return schema.getColumnType(ordinal).parse(value);
+        } catch (NumberFormatException e) {
+            throw new TypeMismatchException("Column " + schema.getColumnName(ordinal) + " must have "
+                    + schema.getColumnType(ordinal) + " type, but has value " + value);
+        }
+    }
+
+    private static List<Object[]> join(final CompletableFuture<List<Object[]>> parsedChunk) {
+        try {
+            return parsedChunk.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private void consume(final List<Object[]> records, final boolean appendRecords, final long sourceSize)
+            throws IOException {
+        if (appendRecords) {
+            append(records);
+            reportProgress(sourceSize);
+        }
+    }
+
+    private void append(final List<Object[]> records) throws IOException {
+        if (records.isEmpty()) {
+            return;
+        }
+        final RecordPointer[] recordPointers = writer.write(records);
+        rows += records.size();
+        if (table.getIndex() == null) {
+            return;
+        }
+        if (keyCount + records.size() > keys.length) {
+            final int capacity = Math.max(keys.length * 2, keyCount + records.size());
+            keys = Arrays.copyOf(keys, capacity);
+            pointers = Arrays.copyOf(pointers, capacity);
+        }
+        final int primaryKeyOrdinal = table.getSchema().getPrimaryKeyOrdinal();
+        long bytes = 0;
+        for (int i = 0; i < recordPointers.length; i++) {
+            keys[keyCount] = (Long) records.get(i)[primaryKeyOrdinal];
+            pointers[keyCount] = recordPointers[i].pack();
+            keyCount++;
+            bytes += recordPointers[i].getLength();
+        }
+        table.getMetrics().getBytesWritten().increment(bytes);
+    }
+
+    private void reportProgress(final long sourceSize) {
+        final long now = System.nanoTime();
+        if (now - reportedAt < PROGRESS_INTERVAL_NANOS) {
+            return;
+        }
+        reportedAt = now;
+        log.info("Bulk load of table {}: {} rows, {} rows/s, {}% of {}", table.getName(), rows,
+                rows * TimeUnit.SECONDS.toNanos(1) / (now - startedAt),
+                sourceSize == 0 ? 100 : sourceBytes * 100 / sourceSize, source);
+    }
+}
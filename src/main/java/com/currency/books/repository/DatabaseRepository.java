@@ -1,5 +1,6 @@
 package com.currency.books.repository;
 
+import com.currency.books.cache.RowCache;
 import com.currency.books.exception.DatabaseInitializationException;
 import com.currency.books.exception.DatabaseReadException;
 import com.currency.books.exception.DatabaseWriteException;
@@ -7,37 +8,140 @@ import com.currency.books.exception.IndexIsNotSupportedException;
 import com.currency.books.exception.TableAlreadyExistsException;
 import com.currency.books.exception.TableDoesNotExistException;
 import com.currency.books.exception.TypeMismatchException;
+import com.currency.books.exception.UniqueConstraintViolationException;
+import com.currency.books.index.BPlusTree;
+import com.currency.books.index.LongLongHashIndex;
+import com.currency.books.index.SecondaryIndex;
+import com.currency.books.model.BulkLoadStatistics;
 import com.currency.books.model.Column;
 import com.currency.books.model.ColumnData;
+import com.currency.books.model.ColumnPredicate;
+import com.currency.books.model.ColumnType;
+import com.currency.books.model.CompressionStatistics;
+import com.currency.books.model.Durability;
+import com.currency.books.model.IndexDefinition;
+import com.currency.books.model.IndexMemoryUsage;
+import com.currency.books.model.IndexType;
+import com.currency.books.model.PredicateOperator;
+import com.currency.books.model.RecordPointer;
 import com.currency.books.model.Row;
+import com.currency.books.model.RowBatch;
+import com.currency.books.model.RowCacheStatistics;
+import com.currency.books.model.RowView;
+import com.currency.books.model.TableOptions;
+import com.currency.books.model.TableSchema;
+import com.currency.books.model.WalStatistics;
+import com.currency.books.storage.CompressedBlockStorageEngine;
+import com.currency.books.storage.KeyValueStorageEngine;
+import com.currency.books.storage.PositionalStorageEngine;
+import com.currency.books.storage.RecordConsumer;
+import com.currency.books.storage.RecordFilter;
+import com.currency.books.storage.StorageEngine;
+import com.currency.books.storage.WriteAheadLog;
 import com.currency.books.utils.DatabaseConstants;
-import com.currency.books.utils.MultiThreadCsvPrinter;
-import com.opencsv.CSVParser;
-import com.opencsv.CSVReader;
+import io.micrometer.core.instrument.MeterRegistry;
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
-import java.io.FileReader;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
+@Slf4j
 @Component
 public class DatabaseRepository {
+    /**
+     * Index pages changed since the last checkpoint which trigger a checkpoint after insert.
+     */
+    static final int CHECKPOINT_DIRTY_PAGES_THRESHOLD = 1024;
+    /**
+     * Records read by one task of a secondary index build.
+     */
+    static final int INDEX_BUILD_CHUNK_SIZE = 4096;
+    /**
+     * Records copied by vacuum between index updates and throttling pauses.
+     */
+    static final int VACUUM_BATCH_SIZE = 1024;
+    /**
+     * Dead records which start background vacuum once they also outnumber live records.
+     */
+    static final long VACUUM_DEAD_RECORDS_THRESHOLD = 100_000;
+    private static final long VACUUM_TERMINATION_TIMEOUT_SECONDS = 60;
+    private static final long VACUUM_SNAPSHOT_WAIT_MILLIS = 100;
+    private static final long SNAPSHOT_WAIT_NANOS = TimeUnit.MICROSECONDS.toNanos(10);
+    /**
+     * Timestamp reading the latest versions of rows.
+     */
+    static final long LATEST = Long.MAX_VALUE;
+
     private final MetadataRepository metadataRepository;
-    private final Map<String, Map<Long, Integer>> indexesByTableName = new ConcurrentHashMap<>();
-    private final Map<String, MultiThreadCsvPrinter> dataWritersByTableName = new ConcurrentHashMap<>();
-    private final Map<String, MultiThreadCsvPrinter> indexWritersByTableName = new ConcurrentHashMap<>();
+    private final TablesRepository tablesRepository;
+    private final SchemaCatalog schemaCatalog;
+    private final long checkpointIntervalSeconds;
+    private final Durability durability;
+    private final long vacuumRecordsPerSecond;
+    private final Map<String, Table> tablesByName = new ConcurrentHashMap<>();
+    private final MeterRegistry meterRegistry;
+    private ScheduledExecutorService checkpointExecutor;
+    private volatile ExecutorService vacuumExecutor;
+    /**
+     * Timestamp of the last commit which kept versions for snapshots.
+     */
+    private final AtomicLong commitClock = new AtomicLong();
+    private final AtomicInteger openSnapshotCount = new AtomicInteger();
+    private final Set<Snapshot> openSnapshots = ConcurrentHashMap.newKeySet();
 
-    public DatabaseRepository(final MetadataRepository metadataRepository) {
+    public DatabaseRepository(final MetadataRepository metadataRepository,
+                              final TablesRepository tablesRepository,
+                              final SchemaCatalog schemaCatalog,
+                              final MeterRegistry meterRegistry,
+                              @Value("${simple-database.checkpoint-interval-seconds:30}") final long checkpointIntervalSeconds,
+                              @Value("${simple-database.durability:FSYNC}") final Durability durability,
+                              @Value("${simple-database.vacuum-records-per-second:200000}") final long vacuumRecordsPerSecond) {
         this.metadataRepository = metadataRepository;
+        this.tablesRepository = tablesRepository;
+        this.schemaCatalog = schemaCatalog;
+        this.meterRegistry = meterRegistry;
+        this.checkpointIntervalSeconds = checkpointIntervalSeconds;
+        this.durability = durability;
+        this.vacuumRecordsPerSecond = vacuumRecordsPerSecond;
     }
 
     @PostConstruct
@@ -51,158 +155,1917 @@ public class DatabaseRepository {
             }
         }
 
-        // iterate over files in directory and init data writers
-        // TODO: init indexes
-        // TODO: init data writers
-        // TODO: init index writers
+        final List<String> tableNames = findTableNames(path);
+        // tables don't share any files, so they are recovered in parallel
+        final ForkJoinPool recoveryPool = new ForkJoinPool(Math.max(1, Math.min(tableNames.size(),
+                Runtime.getRuntime().availableProcessors())));
+        try {
+            recoveryPool.submit(() -> tableNames.parallelStream()
+                    .filter(tableName -> !tablesByName.containsKey(tableName))
+                    .forEach(tableName -> tablesByName.put(tableName, recoverTable(tableName)))).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DatabaseInitializationException("Interrupted during tables recovery", e);
+        } catch (ExecutionException e) {
+            throw new DatabaseInitializationException("Unable to recover tables", e.getCause());
+        } finally {
+            recoveryPool.shutdown();
+        }
+
+        startCheckpoints();
+    }
+
+    private static List<String> findTableNames(final Path dataFolder) {
+        try (Stream<Path> files = Files.list(dataFolder)) {
+            return files.map(file -> file.getFileName().toString())
+                    .filter(fileName -> fileName.endsWith(DatabaseConstants.METADATA_POST_FIX))
+                    .map(fileName -> fileName.substring(0, fileName.length() - DatabaseConstants.METADATA_POST_FIX.length()))
+                    .toList();
+        } catch (IOException e) {
+            throw new DatabaseInitializationException("Unable to list database data folder", e);
+        }
+    }
+
+    /**
+     * Opens table files, loads hash index from the index checkpoint, replays data appended after it
+     * and then batches from the write-ahead log which didn't reach the data file. Table whose storage engine
+     * finds records by primary key has no index and gets the whole log applied again.
+     */
+    private Table recoverTable(final String tableName) {
+        final long startedAt = System.nanoTime();
+        final TableOptions tableOptions = metadataRepository.readTableOptions(tableName);
+        final var storageType = tableOptions.getStorageType();
+        final Path dataPath = Paths.get(getDataFileName(tableName, storageType.getDataPostFix()));
+        final Path indexPath = Paths.get(getIndexFileName(tableName));
+        final Path walPath = Paths.get(getWalFileName(tableName));
+        final TableSchema schema = schemaCatalog.getSchema(tableName);
+        try {
+            finishVacuum(tableName, dataPath, indexPath);
+            final StorageEngine storageEngine = storageType.openEngine(dataPath, schema.getColumns(), tableOptions);
+            final boolean keyValue = !(storageEngine instanceof PositionalStorageEngine);
+            final BPlusTree indexTree = keyValue ? null : openIndexTree(indexPath);
+            final LongLongHashIndex index = keyValue ? null
+                    : new LongLongHashIndex((int) Math.min(indexTree.size(), Integer.MAX_VALUE / 2));
+            if (index != null) {
+                indexTree.forEachInRange(Long.MIN_VALUE, Long.MAX_VALUE, index::put);
+            }
+
+            final WriteAheadLog writeAheadLog = Files.exists(walPath) || durability != Durability.NONE
+                    ? new WriteAheadLog(walPath, schema.getColumnTypes(), durability == Durability.NONE ? Durability.FLUSH : durability)
+                    : null;
+            final long checkpointPosition = keyValue ? storageEngine.checkpointPosition() : indexTree.getCheckpointPosition();
+            // log started before the index checkpoint is left from a crash during checkpoint, all its batches are in the index,
+            // replacing records by primary key again leaves the same records, so such log is applied by key-value engines
+            final boolean replayLog = writeAheadLog != null
+                    && (keyValue || writeAheadLog.getStartPosition() >= checkpointPosition);
+            final long[] replayedRecords = new long[1];
+            final long[] deadRecords = new long[1];
+            if (storageEngine instanceof PositionalStorageEngine positionalEngine) {
+                if (replayLog) {
+                    // concurrent writers may leave holes after the log start, records there are applied again from the log
+                    positionalEngine.truncate(writeAheadLog.getStartPosition());
+                }
+                final long validEnd = positionalEngine.scan(checkpointPosition, new RecordConsumer() {
+                    @Override
+                    public void accept(final RecordPointer recordPointer, final Object[] values) throws IOException {
+                        final long primaryKey = (Long) values[schema.getPrimaryKeyOrdinal()];
+                        indexTree.put(primaryKey, recordPointer.pack());
+                        if (index.put(primaryKey, recordPointer.pack()) != LongLongHashIndex.NO_VALUE) {
+                            deadRecords[0]++;
+                        }
+                        replayedRecords[0]++;
+                    }
+
+                    @Override
+                    public void acceptTombstone(final long primaryKey) throws IOException {
+                        indexTree.remove(primaryKey);
+                        index.remove(primaryKey);
+                        deadRecords[0] += 2;
+                        replayedRecords[0]++;
+                    }
+                });
+                // tail after the last complete record is a torn write of a crashed insert
+                positionalEngine.truncate(validEnd);
+            }
+
+            final long walRecords = replayLog ? replayWriteAheadLog(schema, storageEngine, indexTree, index, writeAheadLog) : 0;
+
+            Table table = new Table(schema, storageEngine, indexTree, index, writeAheadLog,
+                    keyValue ? null : createRowCache(tableOptions), createTableMetrics(tableName));
+            table.getDeadRecords().add(deadRecords[0]);
+            // snapshots are taken at checkpoint, records replayed after it are indexed by a rebuild
+            final boolean loadSnapshots = replayedRecords[0] == 0 && walRecords == 0;
+            for (final IndexDefinition indexDefinition : metadataRepository.readIndexDefinitions(tableName)) {
+                final SecondaryIndex secondaryIndex = newSecondaryIndex(schema, indexDefinition);
+                if (loadSnapshots) {
+                    secondaryIndex.load(Paths.get(getSecondaryIndexFileName(tableName, indexDefinition.getColumnName())),
+                            checkpointPosition);
+                }
+                table.getSecondaryIndexesByColumn().put(indexDefinition.getColumnName(), secondaryIndex);
+            }
+            checkpoint(table);
+            if (writeAheadLog != null && durability == Durability.NONE) {
+                writeAheadLog.close();
+                Files.delete(walPath);
+                final Table recoveredTable = table;
+                table = new Table(schema, storageEngine, indexTree, index, null, table.getRowCache(),
+                        table.getMetrics());
+                table.getSecondaryIndexesByColumn().putAll(recoveredTable.getSecondaryIndexesByColumn());
+                table.getDeadRecords().add(deadRecords[0]);
+            }
+            for (final SecondaryIndex secondaryIndex : table.getSecondaryIndexesByColumn().values()) {
+                if (!secondaryIndex.isBuilt()) {
+                    startIndexBuild(table, secondaryIndex);
+                }
+            }
+            log.info("Table {} recovered in {} ms, {} records replayed from data file, {} from write-ahead log",
+                    tableName, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt), replayedRecords[0], walRecords);
+            return table;
+        } catch (IOException | RuntimeException e) {
+            throw new DatabaseInitializationException("Unable to recover table " + tableName, e);
+        }
+    }
+
+    private static long replayWriteAheadLog(final TableSchema schema, final StorageEngine storageEngine,
+                                            final BPlusTree indexTree, final LongLongHashIndex index,
+                                            final WriteAheadLog writeAheadLog) throws IOException {
+        final long[] replayed = new long[1];
+        writeAheadLog.replay((rows, tombstones) -> {
+            final RecordPointer[] recordPointers = storageEngine.append(rows);
+            for (int i = 0; index != null && i < recordPointers.length; i++) {
+                final long primaryKey = (Long) rows.get(i)[schema.getPrimaryKeyOrdinal()];
+                indexTree.put(primaryKey, recordPointers[i].pack());
+                index.put(primaryKey, recordPointers[i].pack());
+            }
+            for (final long primaryKey : tombstones) {
+                storageEngine.appendTombstone(primaryKey);
+                if (index != null) {
+                    indexTree.remove(primaryKey);
+                    index.remove(primaryKey);
+                }
+            }
+            replayed[0] += rows.size() + tombstones.length;
+        });
+        storageEngine.flush();
+        return replayed[0];
+    }
+
+    private static BPlusTree openIndexTree(final Path indexPath) throws IOException {
+        try {
+            return new BPlusTree(indexPath);
+        } catch (DatabaseReadException e) {
+            // index is rebuilt from the data file when its checkpoint is damaged
+            log.warn("Index {} is damaged and will be rebuilt", indexPath, e);
+            Files.delete(indexPath);
+            return new BPlusTree(indexPath);
+        }
+    }
+
+    private synchronized void startCheckpoints() {
+        if (vacuumExecutor == null) {
+            vacuumExecutor = Executors.newSingleThreadExecutor(runnable -> {
+                final Thread thread = new Thread(runnable, "database-vacuum");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        if (checkpointExecutor != null || checkpointIntervalSeconds <= 0) {
+            return;
+        }
+        checkpointExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "database-checkpoint");
+            thread.setDaemon(true);
+            return thread;
+        });
+        checkpointExecutor.scheduleWithFixedDelay(this::checkpointAll,
+                checkpointIntervalSeconds, checkpointIntervalSeconds, TimeUnit.SECONDS);
+    }
+
+    private void checkpointAll() {
+        for (final Table table : tablesByName.values()) {
+            try {
+                checkpoint(table);
+                final var index = table.getIndex();
+                final long deadRecords = table.getDeadRecords().sum();
+                if (index != null && deadRecords >= VACUUM_DEAD_RECORDS_THRESHOLD && deadRecords >= index.size()) {
+                    vacuum(table);
+                }
+            } catch (IOException | RuntimeException e) {
+                log.error("Unable to checkpoint table {}", table.getName(), e);
+            }
+        }
+    }
+
+    /**
+     * Makes data durable and persists index together with the data position it covers,
+     * so restart replays only records appended after the checkpoint.
+     */
+    private static void checkpoint(final Table table) throws IOException {
+        final var lock = table.getCheckpointLock().writeLock();
+        lock.lock();
+        try {
+            final var storageEngine = table.getStorageEngine();
+            storageEngine.force();
+            final long checkpointPosition = storageEngine.checkpointPosition();
+            if (table.getIndexTree() != null) {
+                table.getIndexTree().checkpoint(checkpointPosition);
+            }
+            if (table.getWriteAheadLog() != null) {
+                table.getWriteAheadLog().reset(checkpointPosition);
+            }
+            for (final SecondaryIndex secondaryIndex : table.getSecondaryIndexesByColumn().values()) {
+                secondaryIndex.save(Paths.get(getSecondaryIndexFileName(table.getName(),
+                        secondaryIndex.getDefinition().getColumnName())), checkpointPosition);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Rewrites data file of the table in background keeping only current records, so space of replaced
+     * and deleted records is reclaimed. Copying is throttled and doesn't block writers, records written
+     * meanwhile are copied under the checkpoint lock right before the files are swapped. Returned future
+     * completes when the new files are in place. Key-value engines drop old records by their own compaction,
+     * so vacuum doesn't touch such tables.
+     */
+    public CompletableFuture<Void> vacuum(final String tableName) {
+        return vacuum(getTable(tableName));
+    }
+
+    private CompletableFuture<Void> vacuum(final Table table) {
+        synchronized (table) {
+            if (table.getVacuum() != null && !table.getVacuum().isDone()) {
+                return table.getVacuum();
+            }
+            final ExecutorService executor = vacuumExecutor;
+            if (table.getIndex() == null || executor == null) {
+                return CompletableFuture.completedFuture(null);
+            }
+            final CompletableFuture<Void> vacuum = CompletableFuture.runAsync(() -> {
+                final long startedAt = System.nanoTime();
+                final long copiedRecords;
+                try {
+                    copiedRecords = vacuumTable(table);
+                } catch (IOException e) {
+                    throw new DatabaseWriteException("Unable to vacuum table " + table.getName(), e);
+                }
+                log.info("Table {} vacuumed in {} ms, {} records kept", table.getName(),
+                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt), copiedRecords);
+            }, executor).whenComplete((result, e) -> {
+                if (e != null) {
+                    log.error("Unable to vacuum table {}", table.getName(), e);
+                }
+            });
+            table.setVacuum(vacuum);
+            return vacuum;
+        }
+    }
+
+    /**
+     * Copies current records into files next to the table files and swaps them in. Log is reset to a position
+     * beyond any data file before the swap, so recovery from a crash during it rebuilds index from the data file.
+     * Marker file tells recovery the copy is complete and its files must be moved in place.
+     */
+    private long vacuumTable(final Table table) throws IOException {
+        final String tableName = table.getName();
+        final TableOptions tableOptions = metadataRepository.readTableOptions(tableName);
+        final var storageType = tableOptions.getStorageType();
+        final TableSchema schema = table.getSchema();
+        final Path dataPath = Paths.get(getDataFileName(tableName, storageType.getDataPostFix()));
+        final Path indexPath = Paths.get(getIndexFileName(tableName));
+        deleteVacuumFiles(dataPath, indexPath);
+        // only vacuum replaces storage, so the source stays open while it runs
+        final TableStorage source = table.getStorage();
+        final VacuumCopy copy = new VacuumCopy(source.getIndex(), schema.getPrimaryKeyOrdinal(),
+                storageType.openEngine(getVacuumPath(dataPath), schema.getColumns(), tableOptions),
+                new BPlusTree(getVacuumPath(indexPath)), vacuumRecordsPerSecond);
+        boolean copyClosed = false;
+        boolean swapped = false;
+        boolean replaced = false;
+        try {
+            long copiedPosition = source.getPositionalEngine().scan(0, copy);
+            copy.flush();
+
+            final var lock = table.getCheckpointLock().writeLock();
+            lock.lock();
+            try {
+                copy.setThrottled(false);
+                copiedPosition = source.getPositionalEngine().scan(copiedPosition, copy);
+                copy.flush();
+                // open snapshots read records of the source, the swap waits for them without blocking writers
+                while (openSnapshotCount.get() > 0) {
+                    lock.unlock();
+                    try {
+                        copy.setThrottled(true);
+                        waitForSnapshots();
+                    } finally {
+                        lock.lock();
+                    }
+                    copy.setThrottled(false);
+                    copiedPosition = source.getPositionalEngine().scan(copiedPosition, copy);
+                    copy.flush();
+                }
+                copy.getStorageEngine().force();
+                copy.getIndexTree().checkpoint(copy.getStorageEngine().checkpointPosition());
+                copy.close();
+                copyClosed = true;
+
+                source.getStorageEngine().force();
+                if (table.getWriteAheadLog() != null) {
+                    table.getWriteAheadLog().reset(Long.MAX_VALUE);
+                }
+                // snapshots refer to positions of the replaced data file
+                for (final SecondaryIndex secondaryIndex : table.getSecondaryIndexesByColumn().values()) {
+                    Files.deleteIfExists(Paths.get(getSecondaryIndexFileName(tableName,
+                            secondaryIndex.getDefinition().getColumnName())));
+                }
+                final Path markerPath = Paths.get(getVacuumMarkerFileName(tableName));
+                Files.createFile(markerPath);
+                swapped = true;
+                moveVacuumFiles(dataPath, indexPath);
+                Files.delete(markerPath);
+
+                table.replaceStorage(new TableStorage(
+                        storageType.openEngine(dataPath, schema.getColumns(), tableOptions),
+                        new BPlusTree(indexPath), copy.getIndex()));
+                table.getDeadRecords().reset();
+                // versions point into the replaced data file and no snapshot needs them
+                table.getVersions().clear();
+                replaced = true;
+            } finally {
+                // log reset above is replaced by a regular checkpoint, unless the files in use were moved away
+                // and only recovery can pick up the new ones
+                if (replaced || !swapped) {
+                    checkpoint(table);
+                }
+                lock.unlock();
+            }
+        } finally {
+            if (!swapped) {
+                if (!copyClosed) {
+                    copy.close();
+                }
+                deleteVacuumFiles(dataPath, indexPath);
+            }
+        }
+        return copy.getCopiedRecords();
     }
 
+    private static void waitForSnapshots() throws InterruptedIOException {
+        try {
+            TimeUnit.MILLISECONDS.sleep(VACUUM_SNAPSHOT_WAIT_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Vacuum was interrupted");
+        }
+    }
 
     public void createTable(final String tableName, final List<Column> columns) {
-        final Path dataPath = Paths.get(getDataFileName(tableName));
+        createTable(tableName, columns, new TableOptions());
+    }
+
+    public void createTable(final String tableName, final List<Column> columns, final TableOptions tableOptions) {
+        final var storageType = tableOptions.getStorageType();
+        final Path dataPath = Paths.get(getDataFileName(tableName, storageType.getDataPostFix()));
         final Path indexPath = Paths.get(getIndexFileName(tableName));
 
         if (Files.exists(dataPath)) {
             throw new TableAlreadyExistsException("Table " + tableName + " already exists");
         }
 
+        // schema is compiled before anything is saved, so invalid definition doesn't leave table files
+        final TableSchema schema = new TableSchema(tableName, columns);
         metadataRepository.saveTableMetadata(tableName, columns);
-        // save tableName to tables.csv
-
+        metadataRepository.saveTableOptions(tableName, tableOptions);
+        tablesRepository.saveTableNameAndRowIndex(tableName);
+        schemaCatalog.invalidate(tableName);
 
         try {
-            dataWritersByTableName.put(tableName, new MultiThreadCsvPrinter(dataPath, 0));
-            indexWritersByTableName.put(tableName, new MultiThreadCsvPrinter(indexPath, 0));
-            indexesByTableName.put(tableName, new HashMap<>());
+            final WriteAheadLog writeAheadLog = durability == Durability.NONE ? null
+                    : new WriteAheadLog(Paths.get(getWalFileName(tableName)), schema.getColumnTypes(), durability);
+            final StorageEngine storageEngine = storageType.openEngine(dataPath, schema.getColumns(), tableOptions);
+            if (storageEngine instanceof PositionalStorageEngine) {
+                tablesByName.put(tableName, new Table(schema, storageEngine, new BPlusTree(indexPath),
+                        new LongLongHashIndex(), writeAheadLog, createRowCache(tableOptions),
+                        createTableMetrics(tableName)));
+            } else {
+                tablesByName.put(tableName, new Table(schema, storageEngine, null, null, writeAheadLog, null,
+                        createTableMetrics(tableName)));
+            }
         } catch (IOException e) {
             throw new DatabaseWriteException("Unable to create writer for table " + tableName, e);
         }
     }
 
-    private static String getDataFileName(final String tableName) {
-        return DatabaseConstants.DATABASE_DATA_FOLDER + "/" + tableName + DatabaseConstants.DATA_POSTFIX;
+    private static RowCache createRowCache(final TableOptions tableOptions) {
+        return tableOptions.getRowCacheBytes() > 0 ? new RowCache(tableOptions.getRowCacheBytes()) : null;
+    }
+
+    private static String getDataFileName(final String tableName, final String dataPostFix) {
+        return DatabaseConstants.DATABASE_DATA_FOLDER + "/" + tableName + dataPostFix;
     }
 
     private static String getIndexFileName(final String tableName) {
         return DatabaseConstants.DATABASE_DATA_FOLDER + "/" + tableName + DatabaseConstants.INDEX_POST_FIX;
     }
 
-    //TODO: Consider atomicity issues. For example, data is saved, but index is not updated
+    private static String getWalFileName(final String tableName) {
+        return DatabaseConstants.DATABASE_DATA_FOLDER + "/" + tableName + DatabaseConstants.WAL_POST_FIX;
+    }
+
+    private static String getSecondaryIndexFileName(final String tableName, final String columnName) {
+        return DatabaseConstants.DATABASE_DATA_FOLDER + "/" + tableName + "-" + columnName
+                + DatabaseConstants.SECONDARY_INDEX_POST_FIX;
+    }
+
+    private static String getVacuumMarkerFileName(final String tableName) {
+        return DatabaseConstants.DATABASE_DATA_FOLDER + "/" + tableName + DatabaseConstants.VACUUM_MARKER_POST_FIX;
+    }
+
+    /**
+     * Returns path of the vacuum copy of a file, files derived from the path by storage engines share the prefix.
+     */
+    private static Path getVacuumPath(final Path path) {
+        return path.resolveSibling(path.getFileName() + DatabaseConstants.VACUUM_POST_FIX);
+    }
+
+    /**
+     * Moves files of a complete vacuum in place if the process stopped while they were being swapped,
+     * files of an incomplete one are deleted.
+     */
+    private static void finishVacuum(final String tableName, final Path dataPath, final Path indexPath) throws IOException {
+        final Path markerPath = Paths.get(getVacuumMarkerFileName(tableName));
+        if (Files.exists(markerPath)) {
+            moveVacuumFiles(dataPath, indexPath);
+            Files.delete(markerPath);
+        } else {
+            deleteVacuumFiles(dataPath, indexPath);
+        }
+    }
+
+    private static void moveVacuumFiles(final Path dataPath, final Path indexPath) throws IOException {
+        for (final Path path : List.of(dataPath, indexPath)) {
+            final String vacuumPrefix = getVacuumPath(path).getFileName().toString();
+            for (final Path file : listFilesWithPrefix(path.resolveSibling(vacuumPrefix))) {
+                final String fileName = file.getFileName().toString();
+                Files.move(file, path.resolveSibling(path.getFileName() + fileName.substring(vacuumPrefix.length())),
+                        StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+        }
+    }
+
+    private static void deleteVacuumFiles(final Path dataPath, final Path indexPath) throws IOException {
+        for (final Path path : List.of(dataPath, indexPath)) {
+            for (final Path file : listFilesWithPrefix(getVacuumPath(path))) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    private static List<Path> listFilesWithPrefix(final Path prefix) throws IOException {
+        final String prefixName = prefix.getFileName().toString();
+        try (Stream<Path> files = Files.list(prefix.toAbsolutePath().getParent())) {
+            return files.filter(file -> file.getFileName().toString().startsWith(prefixName)).toList();
+        }
+    }
+
+    /**
+     * Creates index on the column. Existing records are indexed in background, the returned future completes
+     * when the index can be queried. Future fails and the index is dropped if existing records violate
+     * the unique constraint. Records inserted meanwhile are indexed by the inserts.
+     */
+    public CompletableFuture<Void> createIndex(final String tableName, final String columnName,
+                                               final IndexType indexType, final boolean unique) {
+        final Table table = getTable(tableName);
+        final IndexDefinition indexDefinition = new IndexDefinition(columnName, indexType, unique);
+        final SecondaryIndex secondaryIndex = newSecondaryIndex(table.getSchema(), indexDefinition);
+        synchronized (table) {
+            if (table.getSecondaryIndexesByColumn().putIfAbsent(columnName, secondaryIndex) != null) {
+                throw new IndexIsNotSupportedException("Index on column " + columnName + " already exists");
+            }
+            metadataRepository.saveIndexDefinition(tableName, indexDefinition);
+        }
+        return startIndexBuild(table, secondaryIndex);
+    }
+
+    private static SecondaryIndex newSecondaryIndex(final TableSchema schema, final IndexDefinition indexDefinition) {
+        final int ordinal = schema.getOrdinal(indexDefinition.getColumnName());
+        if (ordinal == TableSchema.NO_ORDINAL) {
+            throw new TypeMismatchException("Column " + indexDefinition.getColumnName() + " doesn't exist");
+        }
+        if (ordinal == schema.getPrimaryKeyOrdinal()) {
+            throw new IndexIsNotSupportedException("Column " + indexDefinition.getColumnName() + " is primary key");
+        }
+        return new SecondaryIndex(indexDefinition, ordinal, schema.getColumnType(ordinal));
+    }
+
+    private CompletableFuture<Void> startIndexBuild(final Table table, final SecondaryIndex secondaryIndex) {
+        final String columnName = secondaryIndex.getDefinition().getColumnName();
+        return CompletableFuture.runAsync(() -> {
+            final long startedAt = System.nanoTime();
+            try {
+                buildIndex(table, secondaryIndex);
+            } catch (RuntimeException e) {
+                dropIndex(table, secondaryIndex);
+                throw e;
+            }
+            log.info("Index on {}.{} built in {} ms", table.getName(), columnName,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt));
+        }).whenComplete((result, e) -> {
+            if (e != null) {
+                log.error("Unable to build index on {}.{}", table.getName(), columnName, e);
+            }
+        });
+    }
+
+    /**
+     * Indexes records existing when the build started. Chunks of records are read and indexed in parallel.
+     */
+    private static void buildIndex(final Table table, final SecondaryIndex secondaryIndex) {
+        final TableStorage storage = table.acquireStorage();
+        try {
+            buildIndex(table, secondaryIndex, storage);
+        } finally {
+            storage.release();
+        }
+    }
+
+    private static void buildIndex(final Table table, final SecondaryIndex secondaryIndex, final TableStorage storage) {
+        if (storage.getStorageEngine() instanceof KeyValueStorageEngine keyValueEngine) {
+            buildIndex(table, secondaryIndex, keyValueEngine);
+            return;
+        }
+        final List<Long> primaryKeys = new ArrayList<>();
+        final List<RecordPointer> recordPointers = new ArrayList<>();
+        try {
+            storage.getIndexTree().forEachInRange(Long.MIN_VALUE, Long.MAX_VALUE, (primaryKey, packedPointer) -> {
+                primaryKeys.add(primaryKey);
+                recordPointers.add(RecordPointer.unpack(packedPointer));
+            });
+        } catch (IOException e) {
+            throw new DatabaseReadException("Unable to read index of table " + table.getName(), e);
+        }
+        final int chunks = (primaryKeys.size() + INDEX_BUILD_CHUNK_SIZE - 1) / INDEX_BUILD_CHUNK_SIZE;
+        IntStream.range(0, chunks).parallel().forEach(chunk -> {
+            final int from = chunk * INDEX_BUILD_CHUNK_SIZE;
+            final int to = Math.min(primaryKeys.size(), from + INDEX_BUILD_CHUNK_SIZE);
+            final List<Object[]> records;
+            try {
+                records = Arrays.asList(storage.getPositionalEngine().read(recordPointers.subList(from, to)));
+            } catch (IOException e) {
+                throw new DatabaseReadException("Unable to read data for table " + table.getName(), e);
+            }
+            addToSecondaryIndexes(table, List.of(secondaryIndex), primaryKeys.subList(from, to), records);
+        });
+        secondaryIndex.markBuilt();
+    }
+
+    /**
+     * Indexes records of key-value engine in chunks in the order of primary keys.
+     */
+    private static void buildIndex(final Table table, final SecondaryIndex secondaryIndex,
+                                   final KeyValueStorageEngine keyValueEngine) {
+        final int primaryKeyOrdinal = table.getSchema().getPrimaryKeyOrdinal();
+        final List<Long> primaryKeys = new ArrayList<>(INDEX_BUILD_CHUNK_SIZE);
+        final List<Object[]> records = new ArrayList<>(INDEX_BUILD_CHUNK_SIZE);
+        try {
+            keyValueEngine.forEachInRange(Long.MIN_VALUE, Long.MAX_VALUE, values -> {
+                primaryKeys.add((Long) values[primaryKeyOrdinal]);
+                records.add(values);
+                if (records.size() == INDEX_BUILD_CHUNK_SIZE) {
+                    addToSecondaryIndexes(table, List.of(secondaryIndex), primaryKeys, records);
+                    primaryKeys.clear();
+                    records.clear();
+                }
+            });
+        } catch (IOException e) {
+            throw new DatabaseReadException("Unable to read data for table " + table.getName(), e);
+        }
+        addToSecondaryIndexes(table, List.of(secondaryIndex), primaryKeys, records);
+        secondaryIndex.markBuilt();
+    }
+
+    private void dropIndex(final Table table, final SecondaryIndex secondaryIndex) {
+        final String columnName = secondaryIndex.getDefinition().getColumnName();
+        synchronized (table) {
+            table.getSecondaryIndexesByColumn().remove(columnName, secondaryIndex);
+            final List<IndexDefinition> indexDefinitions = new ArrayList<>();
+            for (final SecondaryIndex remaining : table.getSecondaryIndexesByColumn().values()) {
+                indexDefinitions.add(remaining.getDefinition());
+            }
+            metadataRepository.saveIndexDefinitions(table.getName(), indexDefinitions);
+        }
+        try {
+            Files.deleteIfExists(Paths.get(getSecondaryIndexFileName(table.getName(), columnName)));
+        } catch (IOException e) {
+            log.warn("Unable to delete snapshot of index on {}.{}", table.getName(), columnName, e);
+        }
+    }
+
+    /**
+     * Starts snapshot of all tables which sees writes committed before it and none of the later ones.
+     * It waits for writes started before any snapshot was open, reads through it never wait.
+     */
+    public Snapshot beginSnapshot() {
+        final Snapshot snapshot = new Snapshot(this);
+        openSnapshots.add(snapshot);
+        openSnapshotCount.incrementAndGet();
+        for (final Table table : tablesByName.values()) {
+            while (table.getUntrackedWriters().get() > 0) {
+                LockSupport.parkNanos(SNAPSHOT_WAIT_NANOS);
+            }
+        }
+        snapshot.start(commitClock.get());
+        return snapshot;
+    }
+
+    /**
+     * Drops versions which remaining snapshots don't see.
+     */
+    void closeSnapshot(final Snapshot snapshot) {
+        openSnapshots.remove(snapshot);
+        openSnapshotCount.decrementAndGet();
+        long oldestTimestamp = commitClock.get();
+        for (final Snapshot openSnapshot : openSnapshots) {
+            // snapshot which is still starting has zero timestamp and keeps all versions
+            oldestTimestamp = Math.min(oldestTimestamp, openSnapshot.getTimestamp());
+        }
+        for (final Table table : tablesByName.values()) {
+            table.getVersions().prune(oldestTimestamp);
+        }
+    }
+
+    /**
+     * Returns pointer of the record of the key seen at the timestamp. Index is read before versions,
+     * so a concurrent write is either not seen at all or its version is found.
+     */
+    private static long getVisiblePointer(final Table table, final LongLongHashIndex index, final long primaryKey,
+                                          final long timestamp) {
+        final long packedPointer = index.get(primaryKey);
+        if (timestamp == LATEST) {
+            return packedPointer;
+        }
+        final VersionStore.Version version = table.getVersions().find(primaryKey, timestamp);
+        return version == null ? packedPointer : version.packedPointer();
+    }
+
+    private static Object[] getVisibleValues(final Table table, final KeyValueStorageEngine keyValueEngine,
+                                             final long primaryKey, final long timestamp) throws IOException {
+        final Object[] values = keyValueEngine.get(primaryKey);
+        if (timestamp == LATEST) {
+            return values;
+        }
+        final VersionStore.Version version = table.getVersions().find(primaryKey, timestamp);
+        return version == null ? values : version.values();
+    }
+
     public void insertInto(final String tableName, final List<Row> rows) {
-        final Map<String, Column> columnsByName = metadataRepository.readMetadata(tableName);
-        saveData(tableName, rows, columnsByName);
+        saveData(tableName, rows);
     }
 
-    public Optional<Row> selectById(final String tableName, final Long primaryKey) {
-        final var indexMap = indexesByTableName.get(tableName);
-        if (indexMap == null) {
-            throw new TableDoesNotExistException("Unable to find index for table " + tableName);
+    /**
+     * Inserts records of the batch without converting them from rows of named columns. Table takes over
+     * the records, so the batch is cleared even if the insert fails.
+     */
+    public void insertInto(final String tableName, final RowBatch rowBatch) {
+        final long startedAt = System.nanoTime();
+        final Table table = getTable(tableName);
+        try {
+            checkBatchSchema(table, rowBatch);
+            final List<Object[]> records = rowBatch.getRecords();
+            for (int i = 0; i < records.size(); i++) {
+                checkValues(table.getSchema(), records.get(i));
+            }
+            saveRecords(table, records, startedAt);
+        } finally {
+            rowBatch.clear();
         }
-        final var rowIndex = indexMap.get(primaryKey);
-        if (rowIndex == null) {
-            return Optional.empty();
+    }
+
+    /**
+     * Returns schema of the table, ordinals of its columns are used by {@link RowBatch} and {@link RowView}.
+     */
+    public TableSchema getSchema(final String tableName) {
+        return getTable(tableName).getSchema();
+    }
+
+    private static void checkBatchSchema(final Table table, final RowBatch rowBatch) {
+        if (!table.getSchema().hasSameColumns(rowBatch.getSchema())) {
+            throw new TypeMismatchException("Batch doesn't match columns of table " + table.getName());
+        }
+    }
+
+    /**
+     * Loads CSV file with values of all columns in the order of the table schema, a later row of a key replaces
+     * an earlier one. Rows bypass the write-ahead log and are appended to the data file directly, primary index
+     * is built once all of them are appended. Writers wait until the load is over. Load fails if a snapshot is
+     * open when it starts, snapshots opened during the load don't see it. Failed load is rolled back to the data
+     * file position it started from. Key-value engines can't drop appended records, so the file is parsed once
+     * before their load. Tables with secondary indexes aren't supported.
+     */
+    public BulkLoadStatistics bulkLoad(final String tableName, final Path source) {
+        final Table table = getTable(tableName);
+        if (!table.getSecondaryIndexesByColumn().isEmpty()) {
+            throw new IndexIsNotSupportedException("Table " + tableName + " with secondary indexes can't be bulk loaded");
         }
+        final StorageEngine storageEngine = table.getStorageEngine();
+        final PositionalStorageEngine positionalEngine = table.getPositionalEngine();
+        final BulkLoader loader = new BulkLoader(table, source, Runtime.getRuntime().availableProcessors(),
+                positionalEngine == null ? records -> appendVersioned(table, records) : storageEngine::append);
         try {
-            final var metadata = new ArrayList<>(metadataRepository.
-                    readMetadata(tableName).values());
-            String[] readLine = readLine(tableName, rowIndex);
-            List<ColumnData> rowData = new ArrayList<>();
-            for (int i = 0; i < readLine.length; i++) {
-                final String data = readLine[i];
-                final var columMetadata = metadata.get(i);
+            if (positionalEngine == null) {
+                loader.validate();
+            }
+            final var lock = table.getCheckpointLock().writeLock();
+            lock.lock();
+            try {
+                // open snapshot would keep versions of all loaded keys
+                if (openSnapshotCount.get() > 0) {
+                    throw new DatabaseWriteException("Table " + tableName
+                            + " can't be bulk loaded while snapshots are open");
+                }
+                // log is empty from now on, so recovery finds loaded records in the data file
+                checkpoint(table);
+                final long loadStart = storageEngine.checkpointPosition();
+                boolean loaded = false;
+                try {
+                    loader.load();
+                    storageEngine.flush();
+                    loaded = true;
+                } finally {
+                    if (!loaded && positionalEngine != null) {
+                        positionalEngine.truncate(loadStart);
+                    }
+                }
+                indexLoadedRecords(table, loader);
+                checkpoint(table);
+            } finally {
+                lock.unlock();
+            }
+            final BulkLoadStatistics statistics = new BulkLoadStatistics(loader.getRows(), loader.getSourceBytes(),
+                    System.nanoTime() - loader.getStartedAt());
+            log.info("Table {} bulk loaded from {}: {} rows in {} ms, {} rows/s", tableName, source,
+                    statistics.getRows(), TimeUnit.NANOSECONDS.toMillis(statistics.getElapsedNanos()),
+                    statistics.getRowsPerSecond());
+            return statistics;
+        } catch (IOException e) {
+            throw new DatabaseWriteException("Unable to bulk load table " + tableName + " from " + source, e);
+        }
+    }
+
+    /**
+     * Appends loaded records of a key-value table, which become visible at once, so versions of their keys
+     * are kept for snapshots opened during the load.
+     */
+    private RecordPointer[] appendVersioned(final Table table, final List<Object[]> records) throws IOException {
+        final VersionStore.Commit commit = beginWrite(table);
+        final List<Long> primaryKeys = new ArrayList<>(commit == null ? 0 : records.size());
+        try {
+            if (commit != null) {
+                for (final Object[] values : records) {
+                    primaryKeys.add((Long) values[table.getSchema().getPrimaryKeyOrdinal()]);
+                }
+                addVersions(table, primaryKeys, commit);
+            }
+            return table.getStorageEngine().append(records);
+        } finally {
+            endWrite(table, commit, primaryKeys);
+        }
+    }
+
+    /**
+     * Indexes records appended by bulk load, loaded records become visible at once, so versions of their keys
+     * are kept for snapshots opened during the load.
+     */
+    private void indexLoadedRecords(final Table table, final BulkLoader loader) throws IOException {
+        if (table.getIndex() == null || loader.getKeyCount() == 0) {
+            return;
+        }
+        final long[] sortedKeys = sortedDistinctKeys(loader.getKeys(), loader.getKeyCount());
+        final VersionStore.Commit commit = beginWrite(table);
+        final List<Long> primaryKeys = commit == null ? List.of() : Arrays.stream(sortedKeys).boxed().toList();
+        try {
+            if (commit != null) {
+                addVersions(table, primaryKeys, commit);
+            }
+            buildPrimaryIndex(table, loader.getKeys(), loader.getPointers(), loader.getKeyCount(), sortedKeys);
+        } finally {
+            endWrite(table, commit, primaryKeys);
+        }
+    }
+
+    private static long[] sortedDistinctKeys(final long[] keys, final int keyCount) {
+        final long[] sortedKeys = Arrays.copyOf(keys, keyCount);
+        Arrays.parallelSort(sortedKeys);
+        int distinctKeys = 0;
+        for (int i = 0; i < keyCount; i++) {
+            if (i == 0 || sortedKeys[i] != sortedKeys[distinctKeys - 1]) {
+                sortedKeys[distinctKeys++] = sortedKeys[i];
+            }
+        }
+        return Arrays.copyOf(sortedKeys, distinctKeys);
+    }
+
+    /**
+     * Indexes records appended by bulk load, keys are in the order of the data file. Empty tree is written
+     * bottom-up from sorted keys, otherwise keys are put in sorted order, so each tree page is changed once.
+     */
+    private static void buildPrimaryIndex(final Table table, final long[] keys, final long[] pointers,
+                                          final int keyCount, final long[] sortedKeys) throws IOException {
+        final var index = table.getIndex();
+        final RowCache rowCache = table.getRowCache();
+        for (int i = 0; i < keyCount; i++) {
+            if (index.put(keys[i], pointers[i]) != LongLongHashIndex.NO_VALUE) {
+                table.getDeadRecords().increment();
+            }
+            if (rowCache != null) {
+                rowCache.invalidate(keys[i]);
+            }
+        }
+        final long[] values = new long[sortedKeys.length];
+        IntStream.range(0, sortedKeys.length).parallel().forEach(i -> values[i] = index.get(sortedKeys[i]));
+        final var indexTree = table.getIndexTree();
+        if (indexTree.size() == 0) {
+            indexTree.bulkLoad(sortedKeys, values, sortedKeys.length);
+            return;
+        }
+        for (int i = 0; i < sortedKeys.length; i++) {
+            indexTree.put(sortedKeys[i], values[i]);
+            // keeps the previous data position, recovery from a crash meanwhile indexes the loaded records again
+            if (indexTree.dirtyPageCount() > CHECKPOINT_DIRTY_PAGES_THRESHOLD) {
+                indexTree.checkpoint(indexTree.getCheckpointPosition());
+            }
+        }
+    }
+
+    public Optional<Row> selectById(final String tableName, final Long primaryKey) {
+        return selectById(tableName, primaryKey, LATEST);
+    }
+
+    Optional<Row> selectById(final String tableName, final Long primaryKey, final long timestamp) {
+        final long startedAt = System.nanoTime();
+        final Table table = getTable(tableName);
+        final TableStorage storage = table.acquireStorage();
+        try {
+            return Optional.ofNullable(readRecord(table, storage, primaryKey, timestamp))
+                    .map(values -> toRow(table.getSchema(), values));
+        } finally {
+            storage.release();
+            TableMetrics.record(table.getMetrics().getSelectLatency(), startedAt);
+        }
+    }
+
+    /**
+     * Points the view at the record of the primary key, returns {@code false} if there is no such record.
+     * Record found in the row cache is returned without allocation.
+     */
+    public boolean selectById(final String tableName, final long primaryKey, final RowView view) {
+        final long startedAt = System.nanoTime();
+        final Table table = getTable(tableName);
+        final TableStorage storage = table.acquireStorage();
+        try {
+            final Object[] values = readRecord(table, storage, primaryKey, LATEST);
+            if (values == null) {
+                return false;
+            }
+            view.wrap(table.getSchema(), values);
+            return true;
+        } finally {
+            storage.release();
+            TableMetrics.record(table.getMetrics().getSelectLatency(), startedAt);
+        }
+    }
 
-                final ColumnData columnData = new ColumnData();
-                columnData.setColumnName(columMetadata.getColumnName());
-                columnData.setData(columMetadata.getColumnType().parse(data));
-                rowData.add(columnData);
+    /**
+     * Returns values of the record of the primary key seen at the timestamp or {@code null} if there is none.
+     */
+    private static Object[] readRecord(final Table table, final TableStorage storage, final long primaryKey,
+                                       final long timestamp) {
+        final String tableName = table.getName();
+        if (storage.getStorageEngine() instanceof KeyValueStorageEngine keyValueEngine) {
+            try {
+                return getVisibleValues(table, keyValueEngine, primaryKey, timestamp);
+            } catch (IOException e) {
+                throw new DatabaseReadException("Unable to read data for table " + tableName, e);
+            }
+        }
+        final long packedPointer = getVisiblePointer(table, storage.getIndex(), primaryKey, timestamp);
+        if (packedPointer == LongLongHashIndex.NO_VALUE) {
+            return null;
+        }
+        final RowCache rowCache = table.getRowCache();
+        try {
+            Object[] values = rowCache == null ? null : rowCache.get(primaryKey, packedPointer);
+            if (values == null) {
+                final RecordPointer recordPointer = RecordPointer.unpack(packedPointer);
+                values = storage.getPositionalEngine().read(recordPointer);
+                table.getMetrics().getBytesRead().increment(recordPointer.getLength());
+                // snapshot may read a replaced record, cache keeps only the latest ones
+                if (rowCache != null && timestamp == LATEST) {
+                    rowCache.put(primaryKey, packedPointer, values);
+                }
             }
-            return Optional.of(new Row(rowData));
+            return values;
         } catch (IOException e) {
             throw new DatabaseReadException("Unable to read data for table " + tableName, e);
         }
     }
 
-    public void closeWriters() {
+    /**
+     * Returns rows for the primary keys in the order of keys, row of a missing key is empty. Records are read
+     * in the order of their position in the data file, so nearby records are fetched by a single read.
+     */
+    public List<Optional<Row>> selectByIds(final String tableName, final Collection<Long> primaryKeys) {
+        return selectByIds(tableName, primaryKeys, LATEST);
+    }
+
+    /**
+     * Batch lookup is recorded as a single select.
+     */
+    List<Optional<Row>> selectByIds(final String tableName, final Collection<Long> primaryKeys, final long timestamp) {
+        final long startedAt = System.nanoTime();
+        final Table table = getTable(tableName);
+        try {
+            return selectByIds(table, primaryKeys, timestamp);
+        } finally {
+            TableMetrics.record(table.getMetrics().getSelectLatency(), startedAt);
+        }
+    }
+
+    private static List<Optional<Row>> selectByIds(final Table table, final Collection<Long> primaryKeys,
+                                                   final long timestamp) {
+        final TableStorage storage = table.acquireStorage();
+        try {
+            return selectByIds(table, storage, primaryKeys, timestamp);
+        } finally {
+            storage.release();
+        }
+    }
+
+    private static List<Optional<Row>> selectByIds(final Table table, final TableStorage storage,
+                                                   final Collection<Long> primaryKeys, final long timestamp) {
+        if (storage.getStorageEngine() instanceof KeyValueStorageEngine) {
+            try {
+                final List<Optional<Row>> rows = new ArrayList<>(primaryKeys.size());
+                for (final Object[] values : readRecords(table, storage, new ArrayList<>(primaryKeys), timestamp)) {
+                    rows.add(values == null ? Optional.empty() : Optional.of(toRow(table.getSchema(), values)));
+                }
+                return rows;
+            } catch (IOException e) {
+                throw new DatabaseReadException("Unable to read data for table " + table.getName(), e);
+            }
+        }
+        final RowCache rowCache = table.getRowCache();
+        final Object[][] cachedRecords = new Object[primaryKeys.size()][];
+        final int[] recordNumbers = new int[primaryKeys.size()];
+        final List<RecordPointer> recordPointers = new ArrayList<>(primaryKeys.size());
+        final List<Long> readKeys = new ArrayList<>(primaryKeys.size());
+        int keyNumber = 0;
+        for (final Long primaryKey : primaryKeys) {
+            final long packedPointer = getVisiblePointer(table, storage.getIndex(), primaryKey, timestamp);
+            recordNumbers[keyNumber] = -1;
+            if (packedPointer != LongLongHashIndex.NO_VALUE) {
+                cachedRecords[keyNumber] = rowCache == null ? null : rowCache.get(primaryKey, packedPointer);
+                if (cachedRecords[keyNumber] == null) {
+                    recordNumbers[keyNumber] = recordPointers.size();
+                    recordPointers.add(RecordPointer.unpack(packedPointer));
+                    readKeys.add(primaryKey);
+                }
+            }
+            keyNumber++;
+        }
+        try {
+            final Object[][] records = storage.getPositionalEngine().read(recordPointers);
+            countBytesRead(table, recordPointers);
+            if (rowCache != null && timestamp == LATEST) {
+                for (int i = 0; i < records.length; i++) {
+                    rowCache.put(readKeys.get(i), recordPointers.get(i).pack(), records[i]);
+                }
+            }
+            final List<Optional<Row>> rows = new ArrayList<>(recordNumbers.length);
+            for (int i = 0; i < recordNumbers.length; i++) {
+                final Object[] values = recordNumbers[i] < 0 ? cachedRecords[i] : records[recordNumbers[i]];
+                rows.add(values == null ? Optional.empty() : Optional.of(toRow(table.getSchema(), values)));
+            }
+            return rows;
+        } catch (IOException e) {
+            throw new DatabaseReadException("Unable to read data for table " + table.getName(), e);
+        }
+    }
+
+    /**
+     * Returns rows having the value in the indexed column.
+     */
+    public List<Row> selectByIndex(final String tableName, final String columnName, final Object value) {
+        final Table table = getTable(tableName);
+        final SecondaryIndex secondaryIndex = getBuiltIndex(table, columnName, value);
+        final Set<Long> primaryKeys = new LinkedHashSet<>();
+        for (final long primaryKey : secondaryIndex.get(value)) {
+            primaryKeys.add(primaryKey);
+        }
+        return selectIndexed(table, secondaryIndex, primaryKeys, value::equals);
+    }
+
+    /**
+     * Returns rows with value of the column in the inclusive range ordered by the value, index must be ordered.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public List<Row> selectByIndexRange(final String tableName, final String columnName,
+                                        final Object fromValue, final Object toValue) {
+        final Table table = getTable(tableName);
+        final SecondaryIndex secondaryIndex = getBuiltIndex(table, columnName, fromValue);
+        getBuiltIndex(table, columnName, toValue);
+        final Set<Long> primaryKeys = new LinkedHashSet<>();
+        secondaryIndex.forEachInRange(fromValue, toValue, primaryKeys::add);
+        return selectIndexed(table, secondaryIndex, primaryKeys, value ->
+                ((Comparable) value).compareTo(fromValue) >= 0 && ((Comparable) value).compareTo(toValue) <= 0);
+    }
+
+    /**
+     * Returns rows with value of the string column starting with the prefix ordered by the value,
+     * index must be ordered.
+     */
+    public List<Row> selectByIndexPrefix(final String tableName, final String columnName, final String prefix) {
+        final Table table = getTable(tableName);
+        final SecondaryIndex secondaryIndex = getBuiltIndex(table, columnName, prefix);
+        final Set<Long> primaryKeys = new LinkedHashSet<>();
+        secondaryIndex.forEachWithPrefix(prefix, primaryKeys::add);
+        return selectIndexed(table, secondaryIndex, primaryKeys, value -> ((String) value).startsWith(prefix));
+    }
+
+    private static SecondaryIndex getBuiltIndex(final Table table, final String columnName, final Object value) {
+        final SecondaryIndex secondaryIndex = table.getSecondaryIndexesByColumn().get(columnName);
+        if (secondaryIndex == null) {
+            throw new IndexIsNotSupportedException("Column " + columnName + " isn't indexed");
+        }
+        if (!secondaryIndex.isBuilt()) {
+            throw new IndexIsNotSupportedException("Index on column " + columnName + " is being built");
+        }
+        final ColumnType columnType = table.getSchema().getColumnType(secondaryIndex.getOrdinal());
+        if (!columnType.getClazz().isInstance(value)) {
+            throw new TypeMismatchException("Column " + columnName + " must have " + columnType + " type");
+        }
+        return secondaryIndex;
+    }
+
+    /**
+     * Reads records of the primary keys and keeps rows whose current value matches, index entries of replaced
+     * values may be removed only after the lookup. Rows are ordered by the value for ordered index.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static List<Row> selectIndexed(final Table table, final SecondaryIndex secondaryIndex,
+                                           final Set<Long> primaryKeys, final Predicate<Object> matches) {
+        final int ordinal = secondaryIndex.getOrdinal();
+        final List<Row> rows = new ArrayList<>(primaryKeys.size());
+        for (final Optional<Row> row : selectByIds(table, primaryKeys, LATEST)) {
+            if (row.isPresent() && matches.test(row.get().getColumns().get(ordinal).getData())) {
+                rows.add(row.get());
+            }
+        }
+        if (secondaryIndex.getDefinition().getIndexType() == IndexType.ORDERED) {
+            rows.sort(Comparator.comparing(row -> (Comparable) row.getColumns().get(ordinal).getData()));
+        }
+        return rows;
+    }
+
+    /**
+     * Returns rows with primary key in the inclusive range ordered by primary key.
+     */
+    public List<Row> selectByIdRange(final String tableName, final long fromPrimaryKey, final long toPrimaryKey) {
+        return selectByIdRange(tableName, fromPrimaryKey, toPrimaryKey, LATEST);
+    }
+
+    /**
+     * Returns rows in the key range seen at the timestamp. Keys changed after it have versions, so they are
+     * looked up one by one after the latest rows of the range are read.
+     */
+    List<Row> selectByIdRange(final String tableName, final long fromPrimaryKey, final long toPrimaryKey,
+                              final long timestamp) {
+        final Table table = getTable(tableName);
+        final List<Row> rows = new ArrayList<>();
+        readIdRange(table, fromPrimaryKey, toPrimaryKey, Integer.MAX_VALUE, timestamp,
+                values -> rows.add(toRow(table.getSchema(), values)));
+        return rows;
+    }
+
+    /**
+     * Appends records with primary key in the inclusive range to the batch in the order of primary key,
+     * returns the number of appended records.
+     */
+    public int selectByIdRange(final String tableName, final long fromPrimaryKey, final long toPrimaryKey,
+                               final RowBatch rowBatch) {
+        return selectByIdRange(tableName, fromPrimaryKey, toPrimaryKey, Integer.MAX_VALUE, rowBatch);
+    }
+
+    /**
+     * Appends at most {@code limit} first records with primary key in the inclusive range to the batch, so a long
+     * range can be read in slices by advancing the lower bound past the last appended key.
+     */
+    public int selectByIdRange(final String tableName, final long fromPrimaryKey, final long toPrimaryKey,
+                               final int limit, final RowBatch rowBatch) {
+        final Table table = getTable(tableName);
+        checkBatchSchema(table, rowBatch);
+        final int size = rowBatch.size();
+        readIdRange(table, fromPrimaryKey, toPrimaryKey, limit, LATEST, rowBatch::add);
+        return rowBatch.size() - size;
+    }
+
+    private static void readIdRange(final Table table, final long fromPrimaryKey, final long toPrimaryKey,
+                                    final int limit, final long timestamp, final Consumer<Object[]> consumer) {
+        final List<RecordPointer> recordPointers = new ArrayList<>();
+        final TableStorage storage = table.acquireStorage();
+        try {
+            if (storage.getStorageEngine() instanceof KeyValueStorageEngine keyValueEngine) {
+                if (timestamp == LATEST) {
+                    keyValueEngine.forEachInRange(fromPrimaryKey, toPrimaryKey, limit, consumer);
+                    return;
+                }
+                final int primaryKeyOrdinal = table.getSchema().getPrimaryKeyOrdinal();
+                final TreeMap<Long, Object[]> recordsByKey = new TreeMap<>();
+                keyValueEngine.forEachInRange(fromPrimaryKey, toPrimaryKey,
+                        values -> recordsByKey.put((Long) values[primaryKeyOrdinal], values));
+                table.getVersions().forEachKey(fromPrimaryKey, toPrimaryKey,
+                        primaryKey -> recordsByKey.putIfAbsent(primaryKey, null));
+                int remaining = limit;
+                for (final Map.Entry<Long, Object[]> entry : recordsByKey.entrySet()) {
+                    if (remaining == 0) {
+                        break;
+                    }
+                    final VersionStore.Version version = table.getVersions().find(entry.getKey(), timestamp);
+                    final Object[] values = version == null ? entry.getValue() : version.values();
+                    if (values != null) {
+                        consumer.accept(values);
+                        remaining--;
+                    }
+                }
+                return;
+            }
+            if (timestamp == LATEST) {
+                storage.getIndexTree().forEachInRange(fromPrimaryKey, toPrimaryKey, limit,
+                        (primaryKey, packedPointer) -> recordPointers.add(RecordPointer.unpack(packedPointer)));
+            } else {
+                final TreeMap<Long, Long> pointersByKey = new TreeMap<>();
+                storage.getIndexTree().forEachInRange(fromPrimaryKey, toPrimaryKey, pointersByKey::put);
+                table.getVersions().forEachKey(fromPrimaryKey, toPrimaryKey,
+                        primaryKey -> pointersByKey.putIfAbsent(primaryKey, LongLongHashIndex.NO_VALUE));
+                for (final Map.Entry<Long, Long> entry : pointersByKey.entrySet()) {
+                    if (recordPointers.size() == limit) {
+                        break;
+                    }
+                    final VersionStore.Version version = table.getVersions().find(entry.getKey(), timestamp);
+                    final long packedPointer = version == null ? entry.getValue() : version.packedPointer();
+                    if (packedPointer != LongLongHashIndex.NO_VALUE) {
+                        recordPointers.add(RecordPointer.unpack(packedPointer));
+                    }
+                }
+            }
+            final Object[][] records = storage.getPositionalEngine().read(recordPointers);
+            countBytesRead(table, recordPointers);
+            for (final Object[] values : records) {
+                consumer.accept(values);
+            }
+        } catch (IOException e) {
+            throw new DatabaseReadException("Unable to read data for table " + table.getName(), e);
+        } finally {
+            storage.release();
+        }
+    }
+
+    /**
+     * Returns lazy stream of rows matching all predicates with projected columns in the order of projection,
+     * empty projection returns all columns. Predicate columns are decoded for every record, projected ones
+     * only for matching records. Stream is sequential, {@code parallel()} splits the data file between threads.
+     */
+    public Stream<Row> scan(final String tableName, final List<ColumnPredicate> predicates,
+                            final List<String> projection) {
+        return scan(tableName, predicates, projection, LATEST);
+    }
+
+    /**
+     * Scans records seen at the timestamp. Key-value engines keep only the latest records in their files,
+     * so their tables are scanned only for the latest state.
+     */
+    Stream<Row> scan(final String tableName, final List<ColumnPredicate> predicates, final List<String> projection,
+                     final long timestamp) {
+        final TableSchema schema = getTable(tableName).getSchema();
+        final int[] projectedOrdinals = new int[projection.isEmpty() ? schema.getColumnCount() : projection.size()];
+        for (int i = 0; i < projectedOrdinals.length; i++) {
+            projectedOrdinals[i] = projection.isEmpty() ? i : getScanOrdinal(schema, projection.get(i));
+        }
+        return scanRecords(tableName, predicates, projectedOrdinals, timestamp)
+                .map(values -> toRow(schema, values, projectedOrdinals));
+    }
+
+    /**
+     * Scans table like {@link #scan(String, List, List)} without building rows, records have values of all columns
+     * in the order of the table schema.
+     */
+    public Stream<Object[]> scanRecords(final String tableName, final List<ColumnPredicate> predicates) {
+        return scanRecords(tableName, predicates, IntStream.range(0, getSchema(tableName).getColumnCount()).toArray(),
+                LATEST);
+    }
+
+    private Stream<Object[]> scanRecords(final String tableName, final List<ColumnPredicate> predicates,
+                                         final int[] projectedOrdinals, final long timestamp) {
+        final Table table = getTable(tableName);
+        final TableSchema schema = table.getSchema();
+        final int primaryKeyOrdinal = schema.getPrimaryKeyOrdinal();
+        final boolean[] filterColumns = new boolean[schema.getColumnCount()];
+        // data file keeps replaced versions of records, only the one referenced by the index is returned,
+        // key-value engines return only current records
+        filterColumns[primaryKeyOrdinal] = true;
+        final int[] predicateOrdinals = new int[predicates.size()];
+        for (int i = 0; i < predicateOrdinals.length; i++) {
+            final ColumnPredicate predicate = predicates.get(i);
+            predicateOrdinals[i] = getScanOrdinal(schema, predicate.getColumnName());
+            final ColumnType columnType = schema.getColumnType(predicateOrdinals[i]);
+            if (!columnType.getClazz().isInstance(predicate.getValue())
+                    || predicate.getOperator() == PredicateOperator.STARTS_WITH && columnType != ColumnType.STRING) {
+                throw new TypeMismatchException("Predicate " + predicate.getOperator() + " can't be applied to column "
+                        + predicate.getColumnName() + " of " + columnType + " type");
+            }
+            filterColumns[predicateOrdinals[i]] = true;
+        }
+        final boolean[] projectedColumns = new boolean[schema.getColumnCount()];
+        for (final int projectedOrdinal : projectedOrdinals) {
+            projectedColumns[projectedOrdinal] = true;
+        }
+
+        final TableStorage storage = table.acquireStorage();
+        final LongLongHashIndex index = storage.getIndex();
+        if (index == null && timestamp != LATEST) {
+            storage.release();
+            throw new IndexIsNotSupportedException("Table " + tableName + " can't be scanned by snapshot, "
+                    + "its storage engine keeps only the latest records");
+        }
+        final RecordFilter filter = (packedPointer, values) -> {
+            if (index != null
+                    && getVisiblePointer(table, index, (Long) values[primaryKeyOrdinal], timestamp) != packedPointer) {
+                return false;
+            }
+            for (int i = 0; i < predicateOrdinals.length; i++) {
+                final ColumnPredicate predicate = predicates.get(i);
+                if (!predicate.getOperator().test(values[predicateOrdinals[i]], predicate.getValue())) {
+                    return false;
+                }
+            }
+            return true;
+        };
+        final AtomicBoolean released = new AtomicBoolean();
+        final Runnable release = () -> {
+            if (released.compareAndSet(false, true)) {
+                storage.release();
+            }
+        };
+        final Spliterator<Object[]> spliterator;
         try {
-            for (final MultiThreadCsvPrinter multiThreadCsvPrinter : dataWritersByTableName.values()) {
-                multiThreadCsvPrinter.close();
+            spliterator = storage.getStorageEngine().spliterator(filterColumns, filter, projectedColumns);
+        } catch (RuntimeException e) {
+            release.run();
+            throw e;
+        }
+        return StreamSupport.stream(new ReleasingSpliterator<>(spliterator, release, new AtomicInteger(1)), false)
+                .onClose(release);
+    }
+
+    private static int getScanOrdinal(final TableSchema schema, final String columnName) {
+        final int ordinal = schema.getOrdinal(columnName);
+        if (ordinal == TableSchema.NO_ORDINAL) {
+            throw new TypeMismatchException("Column " + columnName + " doesn't exist");
+        }
+        return ordinal;
+    }
+
+    private static Row toRow(final TableSchema schema, final Object[] values, final int[] ordinals) {
+        final List<ColumnData> rowData = new ArrayList<>(ordinals.length);
+        for (final int ordinal : ordinals) {
+            final ColumnData columnData = new ColumnData();
+            columnData.setColumnName(schema.getColumnName(ordinal));
+            columnData.setData(values[ordinal]);
+            rowData.add(columnData);
+        }
+        return new Row(rowData);
+    }
+
+    private static Row toRow(final TableSchema schema, final Object[] values) {
+        return new RowView().wrap(schema, values).toRow();
+    }
+
+    public Map<String, IndexMemoryUsage> getIndexMemoryUsage() {
+        final Map<String, IndexMemoryUsage> memoryUsageByTableName = new HashMap<>();
+        for (final Table table : tablesByName.values()) {
+            final var index = table.getIndex();
+            if (index == null) {
+                continue;
             }
-            for (final MultiThreadCsvPrinter multiThreadCsvPrinter : indexWritersByTableName.values()) {
-                multiThreadCsvPrinter.close();
+            memoryUsageByTableName.put(table.getName(),
+                    new IndexMemoryUsage(index.size(), index.capacity(), index.memoryUsageBytes()));
+        }
+        return memoryUsageByTableName;
+    }
+
+    public Map<String, RowCacheStatistics> getRowCacheStatistics() {
+        final Map<String, RowCacheStatistics> statisticsByTableName = new HashMap<>();
+        for (final Table table : tablesByName.values()) {
+            if (table.getRowCache() != null) {
+                statisticsByTableName.put(table.getName(), table.getRowCache().getStatistics());
+            }
+        }
+        return statisticsByTableName;
+    }
+
+    public Map<String, WalStatistics> getWalStatistics() {
+        final Map<String, WalStatistics> statisticsByTableName = new HashMap<>();
+        for (final Table table : tablesByName.values()) {
+            if (table.getWriteAheadLog() != null) {
+                statisticsByTableName.put(table.getName(), table.getWriteAheadLog().getStatistics());
+            }
+        }
+        return statisticsByTableName;
+    }
+
+    public Map<String, CompressionStatistics> getCompressionStatistics() {
+        final Map<String, CompressionStatistics> statisticsByTableName = new HashMap<>();
+        for (final Table table : tablesByName.values()) {
+            if (table.getStorageEngine() instanceof CompressedBlockStorageEngine compressedEngine) {
+                statisticsByTableName.put(table.getName(), compressedEngine.getCompressionStatistics());
+            }
+        }
+        return statisticsByTableName;
+    }
+
+    @PreDestroy
+    public void closeWriters() {
+        final ExecutorService runningVacuums;
+        synchronized (this) {
+            if (checkpointExecutor != null) {
+                checkpointExecutor.shutdownNow();
+                checkpointExecutor = null;
+            }
+            runningVacuums = vacuumExecutor;
+            vacuumExecutor = null;
+        }
+        if (runningVacuums != null) {
+            // interrupted vacuum stops copying and removes its files
+            runningVacuums.shutdownNow();
+            try {
+                if (!runningVacuums.awaitTermination(VACUUM_TERMINATION_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                    log.warn("Vacuum didn't stop in {} seconds", VACUUM_TERMINATION_TIMEOUT_SECONDS);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        try {
+            for (final Table table : tablesByName.values()) {
+                checkpoint(table);
+                table.getStorage().close();
+                for (final TableStorage retiredStorage : table.getRetiredStorages()) {
+                    retiredStorage.close();
+                }
+                if (table.getWriteAheadLog() != null) {
+                    table.getWriteAheadLog().close();
+                }
             }
         } catch (IOException e) {
             throw new DatabaseWriteException("Unable to close writers", e);
         }
+        // closed tables can't be used anymore, so they are forgotten
+        tablesByName.clear();
     }
 
-    private static String[] readLine(final String tableName, final int rowIndex) throws IOException {
-        final CSVReader reader = new CSVReader(new FileReader(getDataFileName(tableName)),
-                CSVParser.DEFAULT_SEPARATOR, CSVParser.DEFAULT_QUOTE_CHARACTER, rowIndex);
-        final var line = reader.readNext();
-        reader.close();
-        return line;
+    private Table getTable(final String tableName) {
+        final Table table = tablesByName.get(tableName);
+        if (table == null) {
+            throw new TableDoesNotExistException("Unable to find table " + tableName);
+        }
+        return table;
     }
 
-    private void saveData(String tableName, List<Row> rows, Map<String, Column> columnsByName) {
+    private void saveData(final String tableName, final List<Row> rows) {
+        final Table table = tablesByName.get(tableName);
+        if (table == null) {
+            throw new DatabaseWriteException("Unable to find storage engine for table " + tableName);
+        }
+        final long startedAt = System.nanoTime();
+        final TableSchema schema = table.getSchema();
+        final List<Object[]> batch = new ArrayList<>(rows.size());
+        for (final Row row : rows) {
+            batch.add(prepareRow(schema, row.getColumns()));
+        }
+        saveRecords(table, batch, startedAt);
+    }
+
+    /**
+     * Writes batch holding row locks of its keys like update and delete do, so writes of a key change the indexes,
+     * dead records and versions of the key one at a time.
+     */
+    private void saveRecords(final Table table, final List<Object[]> batch, final long startedAt) {
+        final List<Lock> rowLocks = table.getRowLocks(batch);
+        int lockedRows = 0;
         try {
-            final var indexWriter = this.indexWritersByTableName.get(tableName);
-            final var dataWriter = this.dataWritersByTableName.get(tableName);
-            final var index = this.indexesByTableName.get(tableName);
+            for (final Lock rowLock : rowLocks) {
+                rowLock.lock();
+                lockedRows++;
+            }
+            final Lock lock = lockForWrite(table);
+            try {
+                table.getMetrics().getBatchRows().record(batch.size());
+                for (int i = 0; i < batch.size(); i++) {
+                    table.getStorageEngine().validate(batch.get(i));
+                }
+                writeRows(table, batch);
+            } catch (IOException e) {
+                throw new DatabaseWriteException("Unable to save data for table " + table.getName(), e);
+            } finally {
+                lock.unlock();
+            }
+        } finally {
+            for (int i = lockedRows - 1; i >= 0; i--) {
+                rowLocks.get(i).unlock();
+            }
+            TableMetrics.record(table.getMetrics().getInsertLatency(), startedAt);
+        }
+        checkpointIfDirty(table);
+    }
 
-            if (indexWriter == null) {
-                throw new DatabaseWriteException("Unable to find index writer for table " + tableName);
+    /**
+     * Replaces values of the given columns in the row of the primary key, other columns keep their values.
+     * Returns {@code false} if there is no row of the primary key. Primary key of a row can't be changed.
+     */
+    public boolean update(final String tableName, final Long primaryKey, final Row row) {
+        final Table table = getTable(tableName);
+        final TableSchema schema = table.getSchema();
+        final Lock rowLock = table.getRowLock(primaryKey);
+        rowLock.lock();
+        try {
+            final Lock lock = lockForWrite(table);
+            try {
+                final Object[] currentValues = readRecords(table, List.of(primaryKey)).get(0);
+                if (currentValues == null) {
+                    return false;
+                }
+                final Object[] values = currentValues.clone();
+                for (final ColumnData columnData : row.getColumns()) {
+                    final int ordinal = getValueOrdinal(schema, columnData);
+                    if (ordinal == schema.getPrimaryKeyOrdinal() && !primaryKey.equals(columnData.getData())) {
+                        throw new DatabaseWriteException("Primary key of table " + tableName + " can't be updated");
+                    }
+                    values[ordinal] = columnData.getData();
+                }
+                table.getStorageEngine().validate(values);
+                writeRows(table, List.<Object[]>of(values));
+            } catch (IOException e) {
+                throw new DatabaseWriteException("Unable to update data for table " + tableName, e);
+            } finally {
+                lock.unlock();
             }
+        } finally {
+            rowLock.unlock();
+        }
+        checkpointIfDirty(table);
+        return true;
+    }
+
+    /**
+     * Deletes row of the primary key, returns {@code false} if there is no such row. Space of deleted rows
+     * is reclaimed by vacuum.
+     */
+    public boolean delete(final String tableName, final Long primaryKey) {
+        final Table table = getTable(tableName);
+        final Lock rowLock = table.getRowLock(primaryKey);
+        rowLock.lock();
+        try {
+            final Lock lock = lockForWrite(table);
+            try {
+                final Object[] currentValues = readRecords(table, List.of(primaryKey)).get(0);
+                if (currentValues == null) {
+                    return false;
+                }
+                writeTombstone(table, primaryKey, currentValues);
+            } catch (IOException e) {
+                throw new DatabaseWriteException("Unable to delete data for table " + tableName, e);
+            } finally {
+                lock.unlock();
+            }
+        } finally {
+            rowLock.unlock();
+        }
+        checkpointIfDirty(table);
+        return true;
+    }
+
+    /**
+     * Takes the checkpoint lock for a write and records how long the writer waited for it.
+     */
+    private static Lock lockForWrite(final Table table) {
+        final Lock lock = table.getCheckpointLock().readLock();
+        final long startedAt = System.nanoTime();
+        lock.lock();
+        TableMetrics.record(table.getMetrics().getWriterWait(), startedAt);
+        return lock;
+    }
+
+    private static void countBytesRead(final Table table, final List<RecordPointer> recordPointers) {
+        long bytes = 0;
+        for (int i = 0; i < recordPointers.size(); i++) {
+            bytes += recordPointers.get(i).getLength();
+        }
+        table.getMetrics().getBytesRead().increment(bytes);
+    }
+
+    private TableMetrics createTableMetrics(final String tableName) {
+        return new TableMetrics(meterRegistry, tableName, tablesByName);
+    }
 
-            if (dataWriter == null) {
-                throw new DatabaseWriteException("Unable to find data writer for table " + tableName);
+    private static void checkpointIfDirty(final Table table) {
+        if (table.getIndexTree() != null && table.getIndexTree().dirtyPageCount() > CHECKPOINT_DIRTY_PAGES_THRESHOLD) {
+            try {
+                checkpoint(table);
+            } catch (IOException e) {
+                throw new DatabaseWriteException("Unable to checkpoint table " + table.getName(), e);
             }
+        }
+    }
 
-            for (final Row row : rows) {
-                final List<ColumnData> columnDataByRows = row.getColumns();
-                final List<String> rowData = new ArrayList<>();
-                final Long primaryIndex = prepareRow(columnsByName, columnDataByRows, rowData);
-                if (primaryIndex == null) {
-                    throw new IndexIsNotSupportedException("Index should be defined for row");
+    private void writeRows(final Table table, final List<Object[]> batch) throws IOException {
+        final List<SecondaryIndex> secondaryIndexes = List.copyOf(table.getSecondaryIndexesByColumn().values());
+        if (secondaryIndexes.isEmpty()) {
+            writeBatch(table, batch);
+        } else {
+            writeIndexedBatch(table, secondaryIndexes, batch);
+        }
+    }
+
+    /**
+     * Writes tombstone of the primary key through the log like a batch, then forgets the key in the indexes.
+     */
+    private void writeTombstone(final Table table, final long primaryKey,
+                                final Object[] currentValues) throws IOException {
+        final var storageEngine = table.getStorageEngine();
+        final var writeAheadLog = table.getWriteAheadLog();
+        final VersionStore.Commit commit = beginWrite(table);
+        try {
+            if (commit != null) {
+                addVersions(table, List.of(primaryKey), commit);
+            }
+            final long lsn = writeAheadLog == null ? 0 : writeAheadLog.appendTombstones(new long[]{primaryKey});
+            storageEngine.appendTombstone(primaryKey);
+            if (writeAheadLog != null) {
+                writeAheadLog.commit(lsn);
+            }
+            storageEngine.flush();
+            if (table.getIndex() != null) {
+                table.getIndexTree().remove(primaryKey);
+                table.getIndex().remove(primaryKey);
+                // deleted record and its tombstone
+                table.getDeadRecords().add(2);
+            }
+        } finally {
+            endWrite(table, commit, List.of(primaryKey));
+        }
+        if (table.getRowCache() != null) {
+            table.getRowCache().invalidate(primaryKey);
+        }
+        for (final SecondaryIndex secondaryIndex : table.getSecondaryIndexesByColumn().values()) {
+            secondaryIndex.remove(currentValues[secondaryIndex.getOrdinal()], primaryKey);
+        }
+    }
+
+    /**
+     * Starts a write, returns commit for versions the write keeps or {@code null} if no snapshot is open.
+     * Writer is counted before it looks at snapshots, so a starting snapshot either is seen here or waits
+     * for the write to finish.
+     */
+    private VersionStore.Commit beginWrite(final Table table) {
+        table.getUntrackedWriters().incrementAndGet();
+        if (openSnapshotCount.get() == 0) {
+            return null;
+        }
+        table.getUntrackedWriters().decrementAndGet();
+        return new VersionStore.Commit();
+    }
+
+    /**
+     * Keeps current versions of the keys before the write changes them.
+     */
+    private static void addVersions(final Table table, final List<Long> primaryKeys,
+                                    final VersionStore.Commit commit) throws IOException {
+        final var index = table.getIndex();
+        for (final Long primaryKey : primaryKeys) {
+            if (index != null) {
+                table.getVersions().add(primaryKey, index.get(primaryKey), null, commit);
+            } else {
+                table.getVersions().add(primaryKey, LongLongHashIndex.NO_VALUE,
+                        ((KeyValueStorageEngine) table.getStorageEngine()).get(primaryKey), commit);
+            }
+        }
+    }
+
+    /**
+     * Stamps versions of the write with the next commit timestamp, versions nobody can see are dropped.
+     */
+    private void endWrite(final Table table, final VersionStore.Commit commit, final List<Long> primaryKeys) {
+        if (commit == null) {
+            table.getUntrackedWriters().decrementAndGet();
+            return;
+        }
+        commit.timestamp = commitClock.incrementAndGet();
+        // snapshot opened from now on gets a later timestamp
+        if (openSnapshotCount.get() == 0) {
+            table.getVersions().remove(primaryKeys, commit);
+        }
+    }
+
+    /**
+     * Writes batch and maintains secondary indexes: entries of new values are added before the write,
+     * so unique check of a concurrent insert sees them, entries of replaced values are removed after it.
+     */
+    private void writeIndexedBatch(final Table table, final List<SecondaryIndex> secondaryIndexes,
+                                   final List<Object[]> batch) throws IOException {
+        final TableSchema schema = table.getSchema();
+        final List<Long> primaryKeys = new ArrayList<>(batch.size());
+        for (final Object[] values : batch) {
+            primaryKeys.add((Long) values[schema.getPrimaryKeyOrdinal()]);
+        }
+        final List<Object[]> previousRecords = readRecords(table, primaryKeys);
+        addToSecondaryIndexes(table, secondaryIndexes, primaryKeys, batch);
+        boolean written = false;
+        try {
+            writeBatch(table, batch);
+            written = true;
+        } finally {
+            for (final SecondaryIndex secondaryIndex : secondaryIndexes) {
+                final int ordinal = secondaryIndex.getOrdinal();
+                for (int i = 0; i < batch.size(); i++) {
+                    final Object value = batch.get(i)[ordinal];
+                    final Object previousValue = previousRecords.get(i) == null ? null : previousRecords.get(i)[ordinal];
+                    if (value.equals(previousValue)) {
+                        continue;
+                    }
+                    // written batch replaced previous values, failed one didn't write new values
+                    if (!written) {
+                        secondaryIndex.remove(value, primaryKeys.get(i));
+                    } else if (previousValue != null) {
+                        secondaryIndex.remove(previousValue, primaryKeys.get(i));
+                    }
+                }
+            }
+        }
+    }
+
+    private void writeBatch(final Table table, final List<Object[]> batch) throws IOException {
+        final TableSchema schema = table.getSchema();
+        final VersionStore.Commit commit = beginWrite(table);
+        final List<Long> primaryKeys = new ArrayList<>(commit == null ? 0 : batch.size());
+        try {
+            if (commit != null) {
+                for (final Object[] values : batch) {
+                    primaryKeys.add((Long) values[schema.getPrimaryKeyOrdinal()]);
                 }
+                addVersions(table, primaryKeys, commit);
+            }
+            applyBatch(table, batch);
+        } finally {
+            endWrite(table, commit, primaryKeys);
+        }
+    }
 
-                final Integer rowIndex = dataWriter.writeLine(convertListToArray(rowData));
+    private static void applyBatch(final Table table, final List<Object[]> batch) throws IOException {
+        final var indexTree = table.getIndexTree();
+        final var storageEngine = table.getStorageEngine();
+        final var index = table.getIndex();
+        final TableSchema schema = table.getSchema();
+        final var writeAheadLog = table.getWriteAheadLog();
+        final long lsn = writeAheadLog == null ? 0 : writeAheadLog.append(batch);
+        // writers reserve space in the data file independently, recovery applies the log again after its start
+        final RecordPointer[] recordPointers = storageEngine.append(batch);
+        final long appendedAt = System.nanoTime();
+        // concurrent inserts waiting here are committed by a single write of the log
+        if (writeAheadLog != null) {
+            writeAheadLog.commit(lsn);
+        }
 
-                indexWriter.writeLine(String.valueOf(primaryIndex), String.valueOf(rowIndex));
-                index.put(primaryIndex, rowIndex);
+        storageEngine.flush();
+        TableMetrics.record(table.getMetrics().getFlushLatency(), appendedAt);
+        if (index == null) {
+            // key-value engine finds the records by itself
+            return;
+        }
+        // records become visible for readers only after they are flushed to the data file
+        final RowCache rowCache = table.getRowCache();
+        for (int i = 0; i < recordPointers.length; i++) {
+            final long primaryKey = (Long) batch.get(i)[schema.getPrimaryKeyOrdinal()];
+            final long packedPointer = recordPointers[i].pack();
+            table.getMetrics().getBytesWritten().increment(recordPointers[i].getLength());
+            indexTree.put(primaryKey, packedPointer);
+            if (index.put(primaryKey, packedPointer) != LongLongHashIndex.NO_VALUE) {
+                table.getDeadRecords().increment();
+            }
+            if (rowCache != null) {
+                rowCache.update(primaryKey, packedPointer, batch.get(i));
             }
+        }
+    }
 
-            indexWriter.flush();
-            dataWriter.flush();
-        } catch (IOException e) {
-            throw new DatabaseWriteException("Unable to save data for table " + tableName, e);
+    /**
+     * Returns stored records of the primary keys in the order of keys, record of a missing key is {@code null}.
+     */
+    private static List<Object[]> readRecords(final Table table, final List<Long> primaryKeys) throws IOException {
+        final TableStorage storage = table.acquireStorage();
+        try {
+            return readRecords(table, storage, primaryKeys, LATEST);
+        } finally {
+            storage.release();
         }
     }
 
-    private static Long prepareRow(final Map<String, Column> columnsByName,
-                                   final List<ColumnData> columnDataByRows, final List<String> rowData) {
-        Long primaryIndex = null;
-        for (final ColumnData columnData : columnDataByRows) {
-            final Column column = columnsByName.get(columnData.getColumnName());
-            if (!columnData.getData().getClass().equals(column.getColumnType().getClazz())) {
-                throw new TypeMismatchException("Column " + columnData.getColumnName() + " must have " + column.getColumnType().toString() + " type");
+    private static List<Object[]> readRecords(final Table table, final TableStorage storage,
+                                              final List<Long> primaryKeys, final long timestamp) throws IOException {
+        final List<Object[]> records = new ArrayList<>(Collections.nCopies(primaryKeys.size(), null));
+        if (storage.getStorageEngine() instanceof KeyValueStorageEngine keyValueEngine) {
+            for (int i = 0; i < primaryKeys.size(); i++) {
+                records.set(i, getVisibleValues(table, keyValueEngine, primaryKeys.get(i), timestamp));
+            }
+            return records;
+        }
+        final List<Integer> recordNumbers = new ArrayList<>(primaryKeys.size());
+        final List<RecordPointer> recordPointers = new ArrayList<>(primaryKeys.size());
+        for (int i = 0; i < primaryKeys.size(); i++) {
+            final long packedPointer = getVisiblePointer(table, storage.getIndex(), primaryKeys.get(i), timestamp);
+            if (packedPointer != LongLongHashIndex.NO_VALUE) {
+                recordNumbers.add(i);
+                recordPointers.add(RecordPointer.unpack(packedPointer));
             }
-            if (column.isPrimaryIndex()) {
-                if (!(columnData.getData() instanceof Long)) {
-                    throw new IndexIsNotSupportedException("Currently only Long is possible type for index");
+        }
+        final Object[][] storedRecords = storage.getPositionalEngine().read(recordPointers);
+        countBytesRead(table, recordPointers);
+        for (int i = 0; i < storedRecords.length; i++) {
+            records.set(recordNumbers.get(i), storedRecords[i]);
+        }
+        return records;
+    }
+
+    /**
+     * Adds entries of the records to the indexes. Nothing is added if a unique index already has the value
+     * of a record for another primary key whose current record still has the value.
+     */
+    private static void addToSecondaryIndexes(final Table table, final List<SecondaryIndex> secondaryIndexes,
+                                              final List<Long> primaryKeys, final List<Object[]> records) {
+        table.getSecondaryIndexLock().lock();
+        try {
+            for (final SecondaryIndex secondaryIndex : secondaryIndexes) {
+                if (secondaryIndex.isUnique()) {
+                    checkUnique(table, secondaryIndex, primaryKeys, records);
                 }
-                primaryIndex = (Long) columnData.getData();
             }
-            rowData.add(String.valueOf(columnData.getData()));
+            for (final SecondaryIndex secondaryIndex : secondaryIndexes) {
+                for (int i = 0; i < records.size(); i++) {
+                    secondaryIndex.add(records.get(i)[secondaryIndex.getOrdinal()], primaryKeys.get(i));
+                }
+            }
+        } finally {
+            table.getSecondaryIndexLock().unlock();
+        }
+    }
+
+    private static void checkUnique(final Table table, final SecondaryIndex secondaryIndex,
+                                    final List<Long> primaryKeys, final List<Object[]> records) {
+        final int ordinal = secondaryIndex.getOrdinal();
+        final Map<Long, Object> valuesByPrimaryKey = new HashMap<>();
+        final Map<Object, Long> primaryKeysByValue = new HashMap<>();
+        for (int i = 0; i < records.size(); i++) {
+            final Object value = records.get(i)[ordinal];
+            valuesByPrimaryKey.put(primaryKeys.get(i), value);
+            final Long duplicate = primaryKeysByValue.putIfAbsent(value, primaryKeys.get(i));
+            if (duplicate != null && !duplicate.equals(primaryKeys.get(i))) {
+                throw uniqueConstraintViolation(table, secondaryIndex, value);
+            }
+        }
+        final List<Long> candidates = new ArrayList<>();
+        for (final Map.Entry<Object, Long> entry : primaryKeysByValue.entrySet()) {
+            for (final long primaryKey : secondaryIndex.get(entry.getKey())) {
+                // record replaced by the same batch doesn't keep its value
+                if (!valuesByPrimaryKey.containsKey(primaryKey)) {
+                    candidates.add(primaryKey);
+                }
+            }
+        }
+        if (candidates.isEmpty()) {
+            return;
+        }
+        // entry may be left from a replaced record, current record decides
+        final List<Object[]> candidateRecords;
+        try {
+            candidateRecords = readRecords(table, candidates);
+        } catch (IOException e) {
+            throw new DatabaseReadException("Unable to read data for table " + table.getName(), e);
+        }
+        for (final Object[] candidateRecord : candidateRecords) {
+            if (candidateRecord != null && primaryKeysByValue.containsKey(candidateRecord[ordinal])) {
+                throw uniqueConstraintViolation(table, secondaryIndex, candidateRecord[ordinal]);
+            }
+        }
+    }
+
+    private static UniqueConstraintViolationException uniqueConstraintViolation(final Table table,
+                                                                                final SecondaryIndex secondaryIndex,
+                                                                                final Object value) {
+        return new UniqueConstraintViolationException("Value " + value + " of column "
+                + secondaryIndex.getDefinition().getColumnName() + " already exists in table " + table.getName());
+    }
+
+    private static Object[] prepareRow(final TableSchema schema, final List<ColumnData> columnDataByRows) {
+        final Object[] values = new Object[schema.getColumnCount()];
+        for (final ColumnData columnData : columnDataByRows) {
+            values[getValueOrdinal(schema, columnData)] = columnData.getData();
+        }
+        checkValues(schema, values);
+        return values;
+    }
+
+    private static void checkValues(final TableSchema schema, final Object[] values) {
+        for (int ordinal = 0; ordinal < values.length; ordinal++) {
+            if (values[ordinal] == null) {
+                throw new TypeMismatchException("Column " + schema.getColumnName(ordinal) + " must have value");
+            }
         }
-        return primaryIndex;
     }
 
-    public static String[] convertListToArray(List<String> list) {
-        String[] array = new String[list.size()];
-        for (int i = 0; i < list.size(); i++) {
-            array[i] = list.get(i);
+    private static int getValueOrdinal(final TableSchema schema, final ColumnData columnData) {
+        final int ordinal = schema.getOrdinal(columnData.getColumnName());
+        if (ordinal == TableSchema.NO_ORDINAL) {
+            throw new TypeMismatchException("Column " + columnData.getColumnName() + " doesn't exist");
         }
-        return array;
+        final ColumnType columnType = schema.getColumnType(ordinal);
+        if (!columnData.getData().getClass().equals(columnType.getClazz())) {
+            throw new TypeMismatchException("Column " + columnData.getColumnName() + " must have " + columnType + " type");
+        }
+        return ordinal;
     }
 
+    /**
+     * Releases storage pinned by a scan when every split is exhausted, closing the stream releases it too.
+     */
+    private static final class ReleasingSpliterator<T> implements Spliterator<T> {
+        private final Spliterator<T> delegate;
+        private final Runnable release;
+        private final AtomicInteger activeSplits;
+        private boolean exhausted;
+
+        private ReleasingSpliterator(final Spliterator<T> delegate, final Runnable release,
+                                     final AtomicInteger activeSplits) {
+            this.delegate = delegate;
+            this.release = release;
+            this.activeSplits = activeSplits;
+        }
+
+        @Override
+        public boolean tryAdvance(final Consumer<? super T> action) {
+            if (exhausted) {
+                return false;
+            }
+            if (delegate.tryAdvance(action)) {
+                return true;
+            }
+            finish();
+            return false;
+        }
+
+        @Override
+        public void forEachRemaining(final Consumer<? super T> action) {
+            if (!exhausted) {
+                delegate.forEachRemaining(action);
+                finish();
+            }
+        }
+
+        @Override
+        public Spliterator<T> trySplit() {
+            final Spliterator<T> split = exhausted ? null : delegate.trySplit();
+            if (split == null) {
+                return null;
+            }
+            activeSplits.incrementAndGet();
+            return new ReleasingSpliterator<>(split, release, activeSplits);
+        }
+
+        @Override
+        public long estimateSize() {
+            return delegate.estimateSize();
+        }
+
+        @Override
+        public int characteristics() {
+            return delegate.characteristics();
+        }
+
+        private void finish() {
+            exhausted = true;
+            if (activeSplits.decrementAndGet() == 0) {
+                release.run();
+            }
+        }
+    }
 }
@@ -6,8 +6,14 @@ import com.currency.books.exception.TableDoesNotExistException;
 import com.currency.books.exception.UnableToReadMetadataException;
 import com.currency.books.model.Column;
 import com.currency.books.model.ColumnType;
+import com.currency.books.model.IndexDefinition;
+import com.currency.books.model.IndexType;
+import com.currency.books.model.StorageType;
+import com.currency.books.model.TableOptions;
 import com.currency.books.utils.MultiThreadCsvPrinter;
 import com.opencsv.CSVReader;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.springframework.stereotype.Component;
 
 import java.io.FileReader;
@@ -15,12 +21,16 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static com.currency.books.utils.DatabaseConstants.DATABASE_DATA_FOLDER;
+import static com.currency.books.utils.DatabaseConstants.INDEXES_POST_FIX;
 import static com.currency.books.utils.DatabaseConstants.METADATA_POST_FIX;
+import static com.currency.books.utils.DatabaseConstants.OPTIONS_POST_FIX;
 
 @Component
 public class MetadataRepository {
@@ -28,6 +38,24 @@ public class MetadataRepository {
     static final int COLUMN_NAME_INDEX = 0;
     static final int COLUMN_TYPE_INDEX = 1;
     static final int COLUMN_PRIMARY_INDEX = 2;
+    static final int OPTION_NAME_INDEX = 0;
+    static final int OPTION_VALUE_INDEX = 1;
+    static final String STORAGE_TYPE_OPTION = "storageType";
+    static final String MEMORY_MAPPED_OPTION = "memoryMapped";
+    static final String ROW_CACHE_BYTES_OPTION = "rowCacheBytes";
+    static final int INDEX_COLUMN_NAME_INDEX = 0;
+    static final int INDEX_TYPE_INDEX = 1;
+    static final int INDEX_UNIQUE_INDEX = 2;
+
+    private final MeterRegistry meterRegistry;
+    /**
+     * Metadata read latency by table name, timer of a table is registered by its first read.
+     */
+    private final Map<String, Timer> readLatencyByTable = new ConcurrentHashMap<>();
+
+    public MetadataRepository(final MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
 
     public void saveTableMetadata(final String tableName,
                                   final List<Column> columns) {
@@ -53,8 +81,20 @@ public class MetadataRepository {
         }
     }
 
-    public Map<String, Column> readMetadata(String tableName) {
-        final Map<String, Column> columnsByName = new HashMap<>();
+    /**
+     * Reads columns of the table in declared order.
+     */
+    public List<Column> readColumns(final String tableName) {
+        final long startedAt = System.nanoTime();
+        try {
+            return readColumnsFile(tableName);
+        } finally {
+            recordRead(tableName, startedAt);
+        }
+    }
+
+    private static List<Column> readColumnsFile(final String tableName) {
+        final List<Column> columns = new ArrayList<>();
         final Path metadataPath = Paths.get(getMetadataFileName(tableName));
         if (!Files.exists(metadataPath)) {
             throw new TableDoesNotExistException("Metadata for table " + tableName + " doesn't exist");
@@ -66,16 +106,143 @@ public class MetadataRepository {
                 final String name = row[COLUMN_NAME_INDEX];
                 final String type = row[COLUMN_TYPE_INDEX];
                 final String primaryIndex = row[COLUMN_PRIMARY_INDEX];
-                columnsByName.put(name, new Column(name,
-                        ColumnType.valueOf(type), Boolean.parseBoolean(primaryIndex)));
+                columns.add(new Column(name, ColumnType.valueOf(type), Boolean.parseBoolean(primaryIndex)));
             }
         } catch (IOException e) {
             throw new UnableToReadMetadataException("Unable to read metadata for table " + tableName, e);
         }
+        return columns;
+    }
+
+    public Map<String, Column> readMetadata(String tableName) {
+        final Map<String, Column> columnsByName = new LinkedHashMap<>();
+        for (final Column column : readColumns(tableName)) {
+            columnsByName.put(column.getColumnName(), column);
+        }
         return columnsByName;
     }
 
+    public void saveTableOptions(final String tableName, final TableOptions tableOptions) {
+        final var optionsPath = Paths.get(getOptionsFileName(tableName));
+        try (final MultiThreadCsvPrinter optionsPrinter =
+                     new MultiThreadCsvPrinter(optionsPath, 0)) {
+            optionsPrinter.writeLine(STORAGE_TYPE_OPTION, tableOptions.getStorageType().name());
+            optionsPrinter.writeLine(MEMORY_MAPPED_OPTION, String.valueOf(tableOptions.isMemoryMapped()));
+            optionsPrinter.writeLine(ROW_CACHE_BYTES_OPTION, String.valueOf(tableOptions.getRowCacheBytes()));
+            optionsPrinter.flush();
+        } catch (IOException e) {
+            throw new DatabaseWriteException("Unable to save options for table " + tableName, e);
+        }
+    }
+
+    public TableOptions readTableOptions(final String tableName) {
+        final long startedAt = System.nanoTime();
+        try {
+            return readOptionsFile(tableName);
+        } finally {
+            recordRead(tableName, startedAt);
+        }
+    }
+
+    private static TableOptions readOptionsFile(final String tableName) {
+        final Path optionsPath = Paths.get(getOptionsFileName(tableName));
+        if (!Files.exists(optionsPath)) {
+            // tables created before options were introduced are stored in csv
+            return new TableOptions(StorageType.CSV, false);
+        }
+        final TableOptions tableOptions = new TableOptions();
+        try (final CSVReader reader = new CSVReader(new FileReader(optionsPath.toFile()))) {
+            for (final String[] row : reader.readAll()) {
+                final String value = row[OPTION_VALUE_INDEX];
+                switch (row[OPTION_NAME_INDEX]) {
+                    case STORAGE_TYPE_OPTION -> tableOptions.setStorageType(StorageType.valueOf(value));
+                    case MEMORY_MAPPED_OPTION -> tableOptions.setMemoryMapped(Boolean.parseBoolean(value));
+                    case ROW_CACHE_BYTES_OPTION -> tableOptions.setRowCacheBytes(Long.parseLong(value));
+                    default -> {
+                        // options of newer versions are ignored
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new UnableToReadMetadataException("Unable to read options for table " + tableName, e);
+        }
+        return tableOptions;
+    }
+
+    /**
+     * Appends definition to the list of table indexes.
+     */
+    public void saveIndexDefinition(final String tableName, final IndexDefinition indexDefinition) {
+        final var indexesPath = Paths.get(getIndexesFileName(tableName));
+        try (final MultiThreadCsvPrinter indexesPrinter =
+                     new MultiThreadCsvPrinter(indexesPath, Files.exists(indexesPath) ? Files.size(indexesPath) : 0)) {
+            final var rowData = new String[3];
+            rowData[INDEX_COLUMN_NAME_INDEX] = indexDefinition.getColumnName();
+            rowData[INDEX_TYPE_INDEX] = indexDefinition.getIndexType().name();
+            rowData[INDEX_UNIQUE_INDEX] = String.valueOf(indexDefinition.isUnique());
+            indexesPrinter.writeLine(rowData);
+        } catch (IOException e) {
+            throw new DatabaseWriteException("Unable to save index for table " + tableName, e);
+        }
+    }
+
+    /**
+     * Rewrites list of table indexes, used when an index is dropped.
+     */
+    public void saveIndexDefinitions(final String tableName, final List<IndexDefinition> indexDefinitions) {
+        try {
+            Files.deleteIfExists(Paths.get(getIndexesFileName(tableName)));
+        } catch (IOException e) {
+            throw new DatabaseWriteException("Unable to save indexes for table " + tableName, e);
+        }
+        for (final IndexDefinition indexDefinition : indexDefinitions) {
+            saveIndexDefinition(tableName, indexDefinition);
+        }
+    }
+
+    public List<IndexDefinition> readIndexDefinitions(final String tableName) {
+        final long startedAt = System.nanoTime();
+        try {
+            return readIndexesFile(tableName);
+        } finally {
+            recordRead(tableName, startedAt);
+        }
+    }
+
+    private static List<IndexDefinition> readIndexesFile(final String tableName) {
+        final List<IndexDefinition> indexDefinitions = new ArrayList<>();
+        final Path indexesPath = Paths.get(getIndexesFileName(tableName));
+        if (!Files.exists(indexesPath)) {
+            return indexDefinitions;
+        }
+        try (final CSVReader reader = new CSVReader(new FileReader(indexesPath.toFile()))) {
+            for (final String[] row : reader.readAll()) {
+                indexDefinitions.add(new IndexDefinition(row[INDEX_COLUMN_NAME_INDEX],
+                        IndexType.valueOf(row[INDEX_TYPE_INDEX]), Boolean.parseBoolean(row[INDEX_UNIQUE_INDEX])));
+            }
+        } catch (IOException e) {
+            throw new UnableToReadMetadataException("Unable to read indexes for table " + tableName, e);
+        }
+        return indexDefinitions;
+    }
+
+    /**
+     * Metadata files are read before table meters exist, so the timer is kept here.
+     */
+    private void recordRead(final String tableName, final long startedAt) {
+        TableMetrics.record(readLatencyByTable.computeIfAbsent(tableName,
+                name -> TableMetrics.latencyTimer(meterRegistry, "simple-database.metadata.read", name)), startedAt);
+    }
+
     private static String getMetadataFileName(final String tableName) {
         return DATABASE_DATA_FOLDER + "/" + tableName + METADATA_POST_FIX;
     }
+
+    private static String getOptionsFileName(final String tableName) {
+        return DATABASE_DATA_FOLDER + "/" + tableName + OPTIONS_POST_FIX;
+    }
+
+    private static String getIndexesFileName(final String tableName) {
+        return DATABASE_DATA_FOLDER + "/" + tableName + INDEXES_POST_FIX;
+    }
 }
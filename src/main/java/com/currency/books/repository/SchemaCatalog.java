@@ -0,0 +1,34 @@
+package com.currency.books.repository;
+
+import com.currency.books.model.TableSchema;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory catalog of compiled table schemas. Metadata file of a table is read once and schema is shared
+ * by write and read paths until it is invalidated by DDL.
+ */
+@Component
+public class SchemaCatalog {
+    private final MetadataRepository metadataRepository;
+    private final Map<String, TableSchema> schemasByTableName = new ConcurrentHashMap<>();
+
+    public SchemaCatalog(final MetadataRepository metadataRepository) {
+        this.metadataRepository = metadataRepository;
+    }
+
+    public TableSchema getSchema(final String tableName) {
+        final TableSchema schema = schemasByTableName.get(tableName);
+        if (schema != null) {
+            return schema;
+        }
+        return schemasByTableName.computeIfAbsent(tableName,
+                name -> new TableSchema(name, metadataRepository.readColumns(name)));
+    }
+
+    public void invalidate(final String tableName) {
+        schemasByTableName.remove(tableName);
+    }
+}
@@ -0,0 +1,64 @@
+package com.currency.books.repository;
+
+import com.currency.books.model.ColumnPredicate;
+import com.currency.books.model.Row;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+/**
+ * Read-only view of all tables as of {@link DatabaseRepository#beginSnapshot()}. Reads take no locks and
+ * don't block writers, rows changed after the snapshot are read from versions kept by writers. Versions
+ * are kept until the oldest open snapshot is closed, so snapshot must be closed when it isn't needed anymore.
+ */
+public class Snapshot implements AutoCloseable {
+    private final DatabaseRepository databaseRepository;
+    private final AtomicBoolean closed = new AtomicBoolean();
+    /**
+     * Commit timestamp seen by the snapshot, zero until the snapshot is started.
+     */
+    private volatile long timestamp;
+
+    Snapshot(final DatabaseRepository databaseRepository) {
+        this.databaseRepository = databaseRepository;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    void start(final long timestamp) {
+        this.timestamp = timestamp;
+    }
+
+    public Optional<Row> selectById(final String tableName, final Long primaryKey) {
+        return databaseRepository.selectById(tableName, primaryKey, timestamp);
+    }
+
+    public List<Optional<Row>> selectByIds(final String tableName, final Collection<Long> primaryKeys) {
+        return databaseRepository.selectByIds(tableName, primaryKeys, timestamp);
+    }
+
+    public List<Row> selectByIdRange(final String tableName, final long fromPrimaryKey, final long toPrimaryKey) {
+        return databaseRepository.selectByIdRange(tableName, fromPrimaryKey, toPrimaryKey, timestamp);
+    }
+
+    /**
+     * Scans table as of the snapshot, see {@link DatabaseRepository#scan(String, List, List)}. Tables of
+     * key-value engines can be read by {@link #selectByIdRange(String, long, long)} only.
+     */
+    public Stream<Row> scan(final String tableName, final List<ColumnPredicate> predicates,
+                            final List<String> projection) {
+        return databaseRepository.scan(tableName, predicates, projection, timestamp);
+    }
+
+    @Override
+    public void close() {
+        if (closed.compareAndSet(false, true)) {
+            databaseRepository.closeSnapshot(this);
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package com.currency.books.repository;
+
+import com.currency.books.cache.RowCache;
+import com.currency.books.index.BPlusTree;
+import com.currency.books.index.LongLongHashIndex;
+import com.currency.books.index.SecondaryIndex;
+import com.currency.books.model.TableSchema;
+import com.currency.books.storage.PositionalStorageEngine;
+import com.currency.books.storage.StorageEngine;
+import com.currency.books.storage.WriteAheadLog;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Runtime state of an opened table.
+ */
+@Getter
+class Table {
+    private static final int ROW_LOCK_STRIPES = 64;
+
+    private final String name;
+    private final TableSchema schema;
+    /**
+     * Writers use storage under the checkpoint lock, other readers pin it by {@link #acquireStorage()}.
+     */
+    private volatile TableStorage storage;
+    /**
+     * Log of writes since the last checkpoint, {@code null} when durability is {@code NONE}.
+     */
+    private final WriteAheadLog writeAheadLog;
+    /**
+     * Cache of records by primary key, {@code null} when it is disabled by table options.
+     */
+    private final RowCache rowCache;
+    private final TableMetrics metrics;
+    /**
+     * Writes hold read lock, so they run in parallel, checkpoint holds write lock to get a consistent cut.
+     */
+    private final ReadWriteLock checkpointLock = new ReentrantReadWriteLock();
+    private final Map<String, SecondaryIndex> secondaryIndexesByColumn = new ConcurrentHashMap<>();
+    /**
+     * Serializes unique checks with additions to secondary indexes.
+     */
+    private final Lock secondaryIndexLock = new ReentrantLock();
+    /**
+     * Serializes updates and deletes of a primary key, so read-modify-write of a row isn't lost.
+     */
+    @Getter(AccessLevel.NONE)
+    private final Lock[] rowLocks = new Lock[ROW_LOCK_STRIPES];
+    /**
+     * Records replaced or deleted since the table was opened or vacuumed, including tombstones.
+     */
+    private final LongAdder deadRecords = new LongAdder();
+    /**
+     * Storages replaced by vacuum which are still pinned by readers.
+     */
+    private final List<TableStorage> retiredStorages = new CopyOnWriteArrayList<>();
+    /**
+     * Previous versions of rows for open snapshots.
+     */
+    private final VersionStore versions = new VersionStore();
+    /**
+     * Writes in progress which don't keep previous versions because no snapshot was open when they started.
+     */
+    private final AtomicInteger untrackedWriters = new AtomicInteger();
+    /**
+     * Running vacuum, guarded by the table monitor.
+     */
+    @Setter
+    private CompletableFuture<Void> vacuum;
+
+    Table(final TableSchema schema, final StorageEngine storageEngine, final BPlusTree indexTree,
+          final LongLongHashIndex index, final WriteAheadLog writeAheadLog, final RowCache rowCache,
+          final TableMetrics metrics) {
+        this.name = schema.getTableName();
+        this.schema = schema;
+        this.storage = new TableStorage(storageEngine, indexTree, index);
+        this.writeAheadLog = writeAheadLog;
+        this.rowCache = rowCache;
+        this.metrics = metrics;
+        for (int i = 0; i < rowLocks.length; i++) {
+            rowLocks[i] = new ReentrantLock();
+        }
+    }
+
+    StorageEngine getStorageEngine() {
+        return storage.getStorageEngine();
+    }
+
+    PositionalStorageEngine getPositionalEngine() {
+        return storage.getPositionalEngine();
+    }
+
+    BPlusTree getIndexTree() {
+        return storage.getIndexTree();
+    }
+
+    LongLongHashIndex getIndex() {
+        return storage.getIndex();
+    }
+
+    /**
+     * Returns current storage pinned for reading, caller releases it.
+     */
+    TableStorage acquireStorage() {
+        while (true) {
+            final TableStorage current = storage;
+            current.pin();
+            // storage replaced meanwhile may be closed already
+            if (current == storage) {
+                return current;
+            }
+            current.release();
+        }
+    }
+
+    /**
+     * Replaces storage under the checkpoint write lock, replaced one is closed when readers release it.
+     * Cached records are dropped, new storage keeps them at other pointers.
+     */
+    void replaceStorage(final TableStorage newStorage) {
+        final TableStorage previous = storage;
+        storage = newStorage;
+        if (rowCache != null) {
+            rowCache.clear();
+        }
+        retiredStorages.add(previous);
+        previous.retire();
+        retiredStorages.removeIf(retired -> retired.getClosed().get());
+    }
+
+    Lock getRowLock(final long primaryKey) {
+        return rowLocks[getRowLockStripe(primaryKey)];
+    }
+
+    /**
+     * Returns row locks of the keys, each stripe once, in the order of stripes. Writers locking several keys take
+     * the locks in this order, so they don't deadlock with each other or with writers of a single key.
+     */
+    List<Lock> getRowLocks(final List<Object[]> batch) {
+        final boolean[] lockedStripes = new boolean[rowLocks.length];
+        for (final Object[] values : batch) {
+            lockedStripes[getRowLockStripe((Long) values[schema.getPrimaryKeyOrdinal()])] = true;
+        }
+        final List<Lock> locks = new ArrayList<>();
+        for (int stripe = 0; stripe < rowLocks.length; stripe++) {
+            if (lockedStripes[stripe]) {
+                locks.add(rowLocks[stripe]);
+            }
+        }
+        return locks;
+    }
+
+    private int getRowLockStripe(final long primaryKey) {
+        return Long.hashCode(primaryKey * 0x9E3779B97F4A7C15L) & (rowLocks.length - 1);
+    }
+}
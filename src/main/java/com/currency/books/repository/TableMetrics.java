@@ -0,0 +1,91 @@
+package com.currency.books.repository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.Getter;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Meters of a table registered once when the table is opened. Hot paths record into the meters they hold,
+ * so recording doesn't look up the registry and doesn't allocate. Index gauges read the table registered
+ * under the name at the time the registry polls them.
+ */
+@Getter
+class TableMetrics {
+    static final String TABLE_TAG = "table";
+    private static final Duration MIN_EXPECTED_LATENCY = Duration.ofNanos(100);
+    private static final Duration MAX_EXPECTED_LATENCY = Duration.ofSeconds(10);
+
+    private final Timer insertLatency;
+    private final Timer selectLatency;
+    /**
+     * Time from the end of the write of a batch until it is committed to the log and flushed to the data file.
+     */
+    private final Timer flushLatency;
+    /**
+     * Time writers wait for the checkpoint lock held by checkpoints and vacuum swaps.
+     */
+    private final Timer writerWait;
+    private final DistributionSummary batchRows;
+    /**
+     * Bytes of records appended to the data file and read from it by primary key, records found in the row cache
+     * and records of key-value engines, which don't expose record locations, aren't counted.
+     */
+    private final Counter bytesWritten;
+    private final Counter bytesRead;
+
+    TableMetrics(final MeterRegistry meterRegistry, final String tableName, final Map<String, Table> tablesByName) {
+        insertLatency = latencyTimer(meterRegistry, "simple-database.insert", tableName);
+        selectLatency = latencyTimer(meterRegistry, "simple-database.select", tableName);
+        flushLatency = latencyTimer(meterRegistry, "simple-database.flush", tableName);
+        writerWait = latencyTimer(meterRegistry, "simple-database.writer.wait", tableName);
+        batchRows = DistributionSummary.builder("simple-database.batch.rows")
+                .description("Rows written by a single insert")
+                .tag(TABLE_TAG, tableName)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        bytesWritten = Counter.builder("simple-database.bytes.written")
+                .baseUnit("bytes")
+                .tag(TABLE_TAG, tableName)
+                .register(meterRegistry);
+        bytesRead = Counter.builder("simple-database.bytes.read")
+                .baseUnit("bytes")
+                .tag(TABLE_TAG, tableName)
+                .register(meterRegistry);
+        Gauge.builder("simple-database.index.entries", tablesByName, tables -> indexEntries(tables.get(tableName)))
+                .description("Keys in the primary index")
+                .tag(TABLE_TAG, tableName)
+                .register(meterRegistry);
+        Gauge.builder("simple-database.index.memory", tablesByName, tables -> indexMemory(tables.get(tableName)))
+                .baseUnit("bytes")
+                .tag(TABLE_TAG, tableName)
+                .register(meterRegistry);
+    }
+
+    static Timer latencyTimer(final MeterRegistry meterRegistry, final String name, final String tableName) {
+        return Timer.builder(name)
+                .tag(TABLE_TAG, tableName)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(MIN_EXPECTED_LATENCY)
+                .maximumExpectedValue(MAX_EXPECTED_LATENCY)
+                .register(meterRegistry);
+    }
+
+    static void record(final Timer timer, final long startedAt) {
+        timer.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+    }
+
+    private static double indexEntries(final Table table) {
+        return table == null || table.getIndex() == null ? Double.NaN : table.getIndex().size();
+    }
+
+    private static double indexMemory(final Table table) {
+        return table == null || table.getIndex() == null ? Double.NaN : table.getIndex().memoryUsageBytes();
+    }
+}
@@ -0,0 +1,90 @@
+package com.currency.books.repository;
+
+import com.currency.books.index.BPlusTree;
+import com.currency.books.index.LongLongHashIndex;
+import com.currency.books.storage.PositionalStorageEngine;
+import com.currency.books.storage.StorageEngine;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Data file of a table together with the primary index pointing into it, vacuum replaces them at once.
+ * Readers pin the storage they use, storage replaced by vacuum is closed when the last reader releases it.
+ */
+@Slf4j
+@Getter
+class TableStorage {
+    private final StorageEngine storageEngine;
+    /**
+     * Storage engine if it locates records by position, {@code null} when it finds records by primary key itself.
+     */
+    private final PositionalStorageEngine positionalEngine;
+    /**
+     * Primary index, {@code null} together with {@link #index} when the storage engine finds records itself.
+     */
+    private final BPlusTree indexTree;
+    private final LongLongHashIndex index;
+    private final LongAdder readers = new LongAdder();
+    private final AtomicBoolean closed = new AtomicBoolean();
+    private volatile boolean retired;
+
+    TableStorage(final StorageEngine storageEngine, final BPlusTree indexTree, final LongLongHashIndex index) {
+        this.storageEngine = storageEngine;
+        this.positionalEngine = storageEngine instanceof PositionalStorageEngine engine ? engine : null;
+        this.indexTree = indexTree;
+        this.index = index;
+    }
+
+    void pin() {
+        readers.increment();
+    }
+
+    /**
+     * Releases storage pinned by a reader.
+     */
+    void release() {
+        readers.decrement();
+        if (retired && readers.sum() == 0) {
+            closeRetired();
+        }
+    }
+
+    /**
+     * Marks storage replaced, it is closed as soon as no reader pins it.
+     */
+    void retire() {
+        retired = true;
+        if (readers.sum() == 0) {
+            closeRetired();
+        }
+    }
+
+    private void closeRetired() {
+        try {
+            close();
+        } catch (IOException e) {
+            log.warn("Unable to close replaced storage {}", storageEngine, e);
+        }
+    }
+
+    /**
+     * Closes files, index file of a retired storage was replaced, so its tree is discarded without checkpoint.
+     */
+    void close() throws IOException {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+        storageEngine.close();
+        if (indexTree != null) {
+            if (retired) {
+                indexTree.discard();
+            } else {
+                indexTree.close();
+            }
+        }
+    }
+}
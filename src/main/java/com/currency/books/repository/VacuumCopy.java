@@ -0,0 +1,110 @@
+package com.currency.books.repository;
+
+import com.currency.books.index.BPlusTree;
+import com.currency.books.index.LongLongHashIndex;
+import com.currency.books.model.RecordPointer;
+import com.currency.books.storage.RecordConsumer;
+import com.currency.books.storage.StorageEngine;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Copy of a table made by vacuum. Scanned records are copied only if the primary index of the source still
+ * points at them, so replaced and deleted records are left behind. Records are applied in the order of the scan,
+ * the same order recovery replays them.
+ */
+@Getter
+class VacuumCopy implements RecordConsumer {
+    private final LongLongHashIndex sourceIndex;
+    private final int primaryKeyOrdinal;
+    private final StorageEngine storageEngine;
+    private final BPlusTree indexTree;
+    private final LongLongHashIndex index;
+    private final long recordsPerSecond;
+    private final long startedAt = System.nanoTime();
+    private final List<Object[]> batch = new ArrayList<>(DatabaseRepository.VACUUM_BATCH_SIZE);
+    private long copiedRecords;
+    /**
+     * Copying is throttled only while writers aren't blocked.
+     */
+    @Setter
+    private boolean throttled = true;
+
+    VacuumCopy(final LongLongHashIndex sourceIndex, final int primaryKeyOrdinal, final StorageEngine storageEngine,
+               final BPlusTree indexTree, final long recordsPerSecond) {
+        this.sourceIndex = sourceIndex;
+        this.primaryKeyOrdinal = primaryKeyOrdinal;
+        this.storageEngine = storageEngine;
+        this.indexTree = indexTree;
+        this.index = new LongLongHashIndex(Math.min(sourceIndex.size(), Integer.MAX_VALUE / 2));
+        this.recordsPerSecond = recordsPerSecond;
+    }
+
+    @Override
+    public void accept(final RecordPointer recordPointer, final Object[] values) throws IOException {
+        if (sourceIndex.get((Long) values[primaryKeyOrdinal]) != recordPointer.pack()) {
+            return;
+        }
+        batch.add(values);
+        if (batch.size() == DatabaseRepository.VACUUM_BATCH_SIZE) {
+            flush();
+        }
+    }
+
+    @Override
+    public void acceptTombstone(final long primaryKey) throws IOException {
+        flush();
+        indexTree.remove(primaryKey);
+        index.remove(primaryKey);
+    }
+
+    /**
+     * Appends pending records to the copy and indexes them.
+     */
+    void flush() throws IOException {
+        if (batch.isEmpty()) {
+            return;
+        }
+        final RecordPointer[] recordPointers = storageEngine.append(batch);
+        for (int i = 0; i < recordPointers.length; i++) {
+            final long primaryKey = (Long) batch.get(i)[primaryKeyOrdinal];
+            indexTree.put(primaryKey, recordPointers[i].pack());
+            index.put(primaryKey, recordPointers[i].pack());
+        }
+        copiedRecords += batch.size();
+        batch.clear();
+        // pages of the copy aren't read before the swap, so they are written out instead of piling up
+        if (indexTree.dirtyPageCount() > DatabaseRepository.CHECKPOINT_DIRTY_PAGES_THRESHOLD) {
+            indexTree.checkpoint(indexTree.getCheckpointPosition());
+        }
+        if (throttled) {
+            throttle();
+        }
+    }
+
+    private void throttle() throws InterruptedIOException {
+        final long aheadNanos = recordsPerSecond <= 0 ? 0
+                : copiedRecords * TimeUnit.SECONDS.toNanos(1) / recordsPerSecond - (System.nanoTime() - startedAt);
+        try {
+            if (aheadNanos > 0) {
+                TimeUnit.NANOSECONDS.sleep(aheadNanos);
+            } else if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Vacuum was interrupted");
+        }
+    }
+
+    void close() throws IOException {
+        storageEngine.close();
+        indexTree.close();
+    }
+}
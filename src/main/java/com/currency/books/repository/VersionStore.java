@@ -0,0 +1,98 @@
+package com.currency.books.repository;
+
+import java.util.Collection;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.LongConsumer;
+
+/**
+ * Previous versions of rows changed by writes committed while snapshots are open. Primary index always points
+ * at the latest version, a snapshot reads the key through the earliest change committed after the snapshot.
+ * Writer adds versions before it changes the index and stamps them with the commit timestamp afterwards,
+ * reader looks at the index before the versions, so it never sees a change without its version.
+ */
+class VersionStore {
+    /**
+     * Timestamp of a commit still in progress, its versions are visible for all snapshots.
+     */
+    static final long PENDING = Long.MAX_VALUE;
+
+    private final ConcurrentSkipListMap<Long, Version> versionsByKey = new ConcurrentSkipListMap<>();
+
+    /**
+     * Commit timestamp shared by versions of one write, so all of them become committed at once.
+     */
+    static final class Commit {
+        volatile long timestamp = PENDING;
+    }
+
+    /**
+     * Version of the key before the commit. Key of an indexed table had the record at the packed pointer,
+     * key of a key-value table had the values. Missing key has {@code LongLongHashIndex.NO_VALUE} pointer
+     * or {@code null} values.
+     */
+    record Version(long packedPointer, Object[] values, Commit commit, Version older) {
+    }
+
+    void add(final long primaryKey, final long packedPointer, final Object[] values, final Commit commit) {
+        versionsByKey.compute(primaryKey, (key, newer) -> new Version(packedPointer, values, commit, newer));
+    }
+
+    /**
+     * Returns version of the key seen by snapshot taken at the timestamp or {@code null} if it sees the latest one.
+     */
+    Version find(final long primaryKey, final long timestamp) {
+        Version visible = null;
+        for (Version version = versionsByKey.get(primaryKey); version != null; version = version.older()) {
+            final long committedAt = version.commit().timestamp;
+            // the same key may be written twice by one commit, the older version precedes both writes
+            if (committedAt > timestamp && (visible == null || committedAt <= visible.commit().timestamp)) {
+                visible = version;
+            }
+        }
+        return visible;
+    }
+
+    /**
+     * Calls consumer for keys in the inclusive range which have versions.
+     */
+    void forEachKey(final long fromPrimaryKey, final long toPrimaryKey, final LongConsumer consumer) {
+        for (final Long primaryKey : versionsByKey.subMap(fromPrimaryKey, true, toPrimaryKey, true).keySet()) {
+            consumer.accept(primaryKey);
+        }
+    }
+
+    /**
+     * Drops versions of the commit, used when no snapshot was open by the time it committed.
+     */
+    void remove(final Collection<Long> primaryKeys, final Commit commit) {
+        for (final Long primaryKey : primaryKeys) {
+            versionsByKey.computeIfPresent(primaryKey, (key, versions) -> retain(versions, commit, Long.MIN_VALUE));
+        }
+    }
+
+    /**
+     * Drops versions committed at or before the timestamp, snapshots taken at it or later don't need them.
+     */
+    void prune(final long timestamp) {
+        for (final Long primaryKey : versionsByKey.keySet()) {
+            versionsByKey.computeIfPresent(primaryKey, (key, versions) -> retain(versions, null, timestamp));
+        }
+    }
+
+    void clear() {
+        versionsByKey.clear();
+    }
+
+    private static Version retain(final Version version, final Commit removedCommit, final long prunedTimestamp) {
+        if (version == null) {
+            return null;
+        }
+        final Version older = retain(version.older(), removedCommit, prunedTimestamp);
+        final long committedAt = version.commit().timestamp;
+        if (version.commit() == removedCommit || committedAt <= prunedTimestamp && committedAt != PENDING) {
+            return older;
+        }
+        return older == version.older() ? version
+                : new Version(version.packedPointer(), version.values(), version.commit(), older);
+    }
+}
@@ -0,0 +1,50 @@
+package com.currency.books.sql;
+
+import com.currency.books.exception.SqlSyntaxException;
+import com.currency.books.model.RowBatch;
+import com.currency.books.model.SqlResult;
+import com.currency.books.model.TableSchema;
+import com.currency.books.repository.DatabaseRepository;
+
+import java.util.List;
+
+/**
+ * Inserts rows of the statement as one batch, ordinals of the named columns are resolved when planning.
+ */
+class InsertPlan implements SqlPlan {
+    private final DatabaseRepository databaseRepository;
+    private final TableSchema schema;
+    private final int[] ordinals;
+    private final List<int[]> rows;
+
+    InsertPlan(final DatabaseRepository databaseRepository, final SqlStatement.Insert insert) {
+        this.databaseRepository = databaseRepository;
+        this.schema = databaseRepository.getSchema(insert.tableName());
+        final List<String> columnNames = insert.columnNames();
+        this.ordinals = new int[columnNames.isEmpty() ? schema.getColumnCount() : columnNames.size()];
+        for (int i = 0; i < ordinals.length; i++) {
+            ordinals[i] = columnNames.isEmpty() ? i : SqlValues.getOrdinal(schema, columnNames.get(i));
+        }
+        for (final int[] row : insert.rows()) {
+            if (row.length != ordinals.length) {
+                throw new SqlSyntaxException("Row of " + row.length + " values is inserted into "
+                        + ordinals.length + " columns of table " + insert.tableName());
+            }
+        }
+        this.rows = insert.rows();
+    }
+
+    @Override
+    public SqlResult execute(final Object[] values) {
+        final RowBatch rowBatch = new RowBatch(schema, rows.size());
+        for (final int[] row : rows) {
+            final Object[] record = new Object[schema.getColumnCount()];
+            for (int i = 0; i < ordinals.length; i++) {
+                record[ordinals[i]] = SqlValues.bind(values[row[i]], schema, ordinals[i]);
+            }
+            rowBatch.add(record);
+        }
+        databaseRepository.insertInto(schema.getTableName(), rowBatch);
+        return SqlResult.affected(rows.size());
+    }
+}
@@ -0,0 +1,40 @@
+package com.currency.books.sql;
+
+import com.currency.books.exception.SqlSyntaxException;
+import com.currency.books.model.SqlResult;
+
+/**
+ * Statement with a cached plan. Literals of the text are bound when the statement is prepared, parameter
+ * markers are bound by {@link #execute(Object...)} in the order they appear in the text.
+ */
+public class PreparedSqlStatement {
+    private final SqlPlan plan;
+    private final Object[] literalValues;
+    private final int[] parameterSlots;
+
+    PreparedSqlStatement(final SqlPlan plan, final Object[] literalValues, final int[] parameterSlots) {
+        this.plan = plan;
+        this.literalValues = literalValues;
+        this.parameterSlots = parameterSlots;
+    }
+
+    SqlPlan getPlan() {
+        return plan;
+    }
+
+    public int getParameterCount() {
+        return parameterSlots.length;
+    }
+
+    public SqlResult execute(final Object... parameters) {
+        if (parameters.length != parameterSlots.length) {
+            throw new SqlSyntaxException("Statement has " + parameterSlots.length + " parameters, but "
+                    + parameters.length + " values are passed");
+        }
+        final Object[] values = literalValues.clone();
+        for (int i = 0; i < parameterSlots.length; i++) {
+            values[parameterSlots[i]] = parameters[i];
+        }
+        return plan.execute(values);
+    }
+}
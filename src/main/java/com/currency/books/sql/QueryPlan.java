@@ -0,0 +1,439 @@
+package com.currency.books.sql;
+
+import com.currency.books.exception.SqlSyntaxException;
+import com.currency.books.exception.TypeMismatchException;
+import com.currency.books.model.ColumnData;
+import com.currency.books.model.ColumnPredicate;
+import com.currency.books.model.ColumnType;
+import com.currency.books.model.PredicateOperator;
+import com.currency.books.model.Row;
+import com.currency.books.model.RowBatch;
+import com.currency.books.model.RowView;
+import com.currency.books.model.SqlResult;
+import com.currency.books.model.TableSchema;
+import com.currency.books.repository.DatabaseRepository;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+/**
+ * Plan of a statement reading rows by conditions: SELECT, UPDATE and DELETE. Rows are found by the primary
+ * index when conditions on the primary key allow it: equality is a point lookup, comparisons are a range read.
+ * Otherwise the table is scanned with all conditions pushed down to the scan. Rows are processed in chunks:
+ * remaining conditions narrow a selection vector of the chunk one condition at a time, then selected rows
+ * are projected, aggregated or collected for modification.
+ */
+class QueryPlan implements SqlPlan {
+    static final int CHUNK_SIZE = 1024;
+
+    enum Access {
+        POINT, RANGE, SCAN
+    }
+
+    enum Kind {
+        SELECT, UPDATE, DELETE
+    }
+
+    /**
+     * Condition with the resolved column.
+     */
+    private record PlannedCondition(SqlStatement.Condition condition, int ordinal) {
+    }
+
+    /**
+     * Consumer of a chunk of records and selection vector of its rows matching the conditions.
+     */
+    private interface ChunkConsumer {
+        /**
+         * Returns {@code false} once no more rows are needed.
+         */
+        boolean accept(List<Object[]> records, int[] selection, int selected);
+    }
+
+    private final DatabaseRepository databaseRepository;
+    private final TableSchema schema;
+    private final Kind kind;
+    private final Access access;
+    /**
+     * Conditions on the primary key used by the index, all conditions of a scan.
+     */
+    private final List<PlannedCondition> accessConditions = new ArrayList<>();
+    private final List<PlannedCondition> residualConditions = new ArrayList<>();
+    private final List<String> columnNames = new ArrayList<>();
+    /**
+     * Ordinals of projected columns or columns of aggregates, -1 for {@code COUNT(*)}.
+     */
+    private final int[] outputOrdinals;
+    private final SqlStatement.Aggregate[] aggregates;
+    private final int limitSlot;
+    private final List<SqlStatement.Assignment> assignments;
+    private final int[] assignmentOrdinals;
+
+    QueryPlan(final DatabaseRepository databaseRepository, final SqlStatement statement) {
+        this.databaseRepository = databaseRepository;
+        final List<SqlStatement.Condition> conditions;
+        final List<SqlStatement.SelectItem> items;
+        if (statement instanceof SqlStatement.Select select) {
+            this.kind = Kind.SELECT;
+            this.schema = databaseRepository.getSchema(select.tableName());
+            conditions = select.conditions();
+            items = select.items();
+            this.limitSlot = select.limitSlot();
+            this.assignments = List.of();
+        } else if (statement instanceof SqlStatement.Update update) {
+            this.kind = Kind.UPDATE;
+            this.schema = databaseRepository.getSchema(update.tableName());
+            conditions = update.conditions();
+            items = List.of();
+            this.limitSlot = SqlStatement.NO_SLOT;
+            this.assignments = update.assignments();
+        } else {
+            final SqlStatement.Delete delete = (SqlStatement.Delete) statement;
+            this.kind = Kind.DELETE;
+            this.schema = databaseRepository.getSchema(delete.tableName());
+            conditions = delete.conditions();
+            items = List.of();
+            this.limitSlot = SqlStatement.NO_SLOT;
+            this.assignments = List.of();
+        }
+
+        this.assignmentOrdinals = new int[assignments.size()];
+        for (int i = 0; i < assignmentOrdinals.length; i++) {
+            assignmentOrdinals[i] = SqlValues.getOrdinal(schema, assignments.get(i).columnName());
+            if (assignmentOrdinals[i] == schema.getPrimaryKeyOrdinal()) {
+                throw new SqlSyntaxException("Primary key of table " + schema.getTableName() + " can't be updated");
+            }
+        }
+        this.access = planAccess(conditions);
+
+        final boolean aggregated = !items.isEmpty() && items.get(0).aggregate() != null;
+        this.outputOrdinals = new int[items.isEmpty() ? schema.getColumnCount() : items.size()];
+        this.aggregates = new SqlStatement.Aggregate[aggregated ? items.size() : 0];
+        for (int i = 0; i < outputOrdinals.length; i++) {
+            if (items.isEmpty()) {
+                outputOrdinals[i] = i;
+                columnNames.add(schema.getColumnName(i));
+                continue;
+            }
+            final SqlStatement.SelectItem item = items.get(i);
+            if ((item.aggregate() != null) != aggregated) {
+                throw new SqlSyntaxException("Columns can't be selected together with aggregates");
+            }
+            outputOrdinals[i] = item.columnName() == null ? -1 : SqlValues.getOrdinal(schema, item.columnName());
+            if (aggregated) {
+                aggregates[i] = item.aggregate();
+                if (item.aggregate() == SqlStatement.Aggregate.SUM
+                        && schema.getColumnType(outputOrdinals[i]) != ColumnType.LONG) {
+                    throw new TypeMismatchException("SUM can't be applied to column " + item.columnName() + " of "
+                            + schema.getColumnType(outputOrdinals[i]) + " type");
+                }
+                columnNames.add(item.aggregate() + "(" + (item.columnName() == null ? "*" : item.columnName()) + ")");
+            } else {
+                columnNames.add(item.columnName());
+            }
+        }
+    }
+
+    Access getAccess() {
+        return access;
+    }
+
+    /**
+     * Picks the index access by conditions on the primary key, the rest of conditions is evaluated on chunks.
+     */
+    private Access planAccess(final List<SqlStatement.Condition> conditions) {
+        final List<PlannedCondition> plannedConditions = new ArrayList<>(conditions.size());
+        for (final SqlStatement.Condition condition : conditions) {
+            final int ordinal = SqlValues.getOrdinal(schema, condition.columnName());
+            if (condition.operator() == PredicateOperator.STARTS_WITH
+                    && schema.getColumnType(ordinal) != ColumnType.STRING) {
+                throw new TypeMismatchException("LIKE can't be applied to column " + condition.columnName() + " of "
+                        + schema.getColumnType(ordinal) + " type");
+            }
+            plannedConditions.add(new PlannedCondition(condition, ordinal));
+        }
+        final int primaryKeyOrdinal = schema.getPrimaryKeyOrdinal();
+        final PlannedCondition keyEquality = plannedConditions.stream()
+                .filter(planned -> planned.ordinal() == primaryKeyOrdinal
+                        && planned.condition().operator() == PredicateOperator.EQUALS)
+                .findFirst()
+                .orElse(null);
+        if (keyEquality != null) {
+            accessConditions.add(keyEquality);
+            plannedConditions.stream().filter(planned -> planned != keyEquality).forEach(residualConditions::add);
+            return Access.POINT;
+        }
+        for (final PlannedCondition planned : plannedConditions) {
+            (planned.ordinal() == primaryKeyOrdinal && isRangeOperator(planned.condition().operator())
+                    ? accessConditions : residualConditions).add(planned);
+        }
+        if (!accessConditions.isEmpty()) {
+            return Access.RANGE;
+        }
+        residualConditions.clear();
+        accessConditions.addAll(plannedConditions);
+        return Access.SCAN;
+    }
+
+    private static boolean isRangeOperator(final PredicateOperator operator) {
+        return operator == PredicateOperator.LESS_THAN || operator == PredicateOperator.LESS_THAN_OR_EQUALS
+                || operator == PredicateOperator.GREATER_THAN || operator == PredicateOperator.GREATER_THAN_OR_EQUALS;
+    }
+
+    @Override
+    public SqlResult execute(final Object[] values) {
+        return switch (kind) {
+            case SELECT -> aggregates.length == 0 ? select(values) : aggregate(values);
+            case UPDATE, DELETE -> modify(values);
+        };
+    }
+
+    private SqlResult select(final Object[] values) {
+        final long limit = getLimit(values);
+        final List<Object[]> rows = new ArrayList<>();
+        if (limit > 0) {
+            forEachChunk(values, (records, selection, selected) -> {
+                for (int i = 0; i < selected; i++) {
+                    final Object[] record = records.get(selection[i]);
+                    final Object[] row = new Object[outputOrdinals.length];
+                    for (int column = 0; column < row.length; column++) {
+                        row[column] = record[outputOrdinals[column]];
+                    }
+                    rows.add(row);
+                    if (rows.size() == limit) {
+                        return false;
+                    }
+                }
+                return true;
+            });
+        }
+        return new SqlResult(columnNames, rows, 0);
+    }
+
+    /**
+     * Aggregates every chunk column by column over the selection vector.
+     */
+    private SqlResult aggregate(final Object[] values) {
+        final long limit = getLimit(values);
+        final long[] counts = new long[aggregates.length];
+        final long[] sums = new long[aggregates.length];
+        final Object[] extremes = new Object[aggregates.length];
+        forEachChunk(values, (records, selection, selected) -> {
+            for (int item = 0; item < aggregates.length; item++) {
+                counts[item] += selected;
+                final int ordinal = outputOrdinals[item];
+                switch (aggregates[item]) {
+                    case SUM -> {
+                        long sum = sums[item];
+                        for (int i = 0; i < selected; i++) {
+                            sum += (Long) records.get(selection[i])[ordinal];
+                        }
+                        sums[item] = sum;
+                    }
+                    case MIN, MAX -> {
+                        final PredicateOperator better = aggregates[item] == SqlStatement.Aggregate.MIN
+                                ? PredicateOperator.LESS_THAN : PredicateOperator.GREATER_THAN;
+                        Object extreme = extremes[item];
+                        for (int i = 0; i < selected; i++) {
+                            final Object value = records.get(selection[i])[ordinal];
+                            if (extreme == null || better.test(value, extreme)) {
+                                extreme = value;
+                            }
+                        }
+                        extremes[item] = extreme;
+                    }
+                    default -> {
+                    }
+                }
+            }
+            return true;
+        });
+        final Object[] row = new Object[aggregates.length];
+        for (int item = 0; item < aggregates.length; item++) {
+            row[item] = switch (aggregates[item]) {
+                case COUNT -> counts[item];
+                case SUM -> counts[item] == 0 ? null : sums[item];
+                case MIN, MAX -> extremes[item];
+            };
+        }
+        return new SqlResult(columnNames, limit > 0 ? List.<Object[]>of(row) : List.of(), 0);
+    }
+
+    /**
+     * Collects primary keys of matching rows first, so rows are changed after the read is over.
+     * Rows changed concurrently in between are modified without checking the conditions again.
+     */
+    private SqlResult modify(final Object[] values) {
+        final List<Long> primaryKeys = new ArrayList<>();
+        final int primaryKeyOrdinal = schema.getPrimaryKeyOrdinal();
+        forEachChunk(values, (records, selection, selected) -> {
+            for (int i = 0; i < selected; i++) {
+                primaryKeys.add((Long) records.get(selection[i])[primaryKeyOrdinal]);
+            }
+            return true;
+        });
+        Row row = null;
+        if (kind == Kind.UPDATE) {
+            final List<ColumnData> columns = new ArrayList<>(assignments.size());
+            for (int i = 0; i < assignmentOrdinals.length; i++) {
+                columns.add(new ColumnData(schema.getColumnName(assignmentOrdinals[i]),
+                        SqlValues.bind(values[assignments.get(i).slot()], schema, assignmentOrdinals[i])));
+            }
+            row = new Row(columns);
+        }
+        long affectedRows = 0;
+        for (final Long primaryKey : primaryKeys) {
+            final boolean changed = kind == Kind.UPDATE
+                    ? databaseRepository.update(schema.getTableName(), primaryKey, row)
+                    : databaseRepository.delete(schema.getTableName(), primaryKey);
+            if (changed) {
+                affectedRows++;
+            }
+        }
+        return SqlResult.affected(affectedRows);
+    }
+
+    private long getLimit(final Object[] values) {
+        if (limitSlot == SqlStatement.NO_SLOT) {
+            return Long.MAX_VALUE;
+        }
+        final Object limit = values[limitSlot] instanceof Integer integer ? Long.valueOf(integer) : values[limitSlot];
+        if (!(limit instanceof Long) || (Long) limit < 0) {
+            throw new TypeMismatchException("LIMIT must be a non-negative LONG, but is " + limit);
+        }
+        return (Long) limit;
+    }
+
+    /**
+     * Reads rows by the access path in chunks and passes every chunk with its selection vector narrowed by
+     * the remaining conditions.
+     */
+    private void forEachChunk(final Object[] values, final ChunkConsumer consumer) {
+        final Object[] operands = new Object[residualConditions.size()];
+        for (int i = 0; i < operands.length; i++) {
+            operands[i] = bindCondition(residualConditions.get(i), values);
+        }
+        final int[] selection = new int[CHUNK_SIZE];
+        final Predicate<List<Object[]>> filteringConsumer = records -> {
+            final int size = records.size();
+            for (int i = 0; i < size; i++) {
+                selection[i] = i;
+            }
+            int selected = size;
+            for (int condition = 0; condition < operands.length && selected > 0; condition++) {
+                final PredicateOperator operator = residualConditions.get(condition).condition().operator();
+                final int ordinal = residualConditions.get(condition).ordinal();
+                final Object operand = operands[condition];
+                int kept = 0;
+                for (int i = 0; i < selected; i++) {
+                    if (operator.test(records.get(selection[i])[ordinal], operand)) {
+                        selection[kept++] = selection[i];
+                    }
+                }
+                selected = kept;
+            }
+            return selected == 0 || consumer.accept(records, selection, selected);
+        };
+        switch (access) {
+            case POINT -> readPoint(values, filteringConsumer);
+            case RANGE -> readRange(values, filteringConsumer);
+            case SCAN -> scan(values, filteringConsumer);
+        }
+    }
+
+    private void readPoint(final Object[] values, final Predicate<List<Object[]>> consumer) {
+        final long primaryKey = (Long) bindCondition(accessConditions.get(0), values);
+        final RowView view = new RowView();
+        if (databaseRepository.selectById(schema.getTableName(), primaryKey, view)) {
+            final Object[] record = new Object[view.getColumnCount()];
+            for (int i = 0; i < record.length; i++) {
+                record[i] = view.getValue(i);
+            }
+            consumer.test(List.<Object[]>of(record));
+        }
+    }
+
+    private void readRange(final Object[] values, final Predicate<List<Object[]>> consumer) {
+        long fromPrimaryKey = Long.MIN_VALUE;
+        long toPrimaryKey = Long.MAX_VALUE;
+        for (final PlannedCondition planned : accessConditions) {
+            final long bound = (Long) bindCondition(planned, values);
+            switch (planned.condition().operator()) {
+                case GREATER_THAN -> {
+                    if (bound == Long.MAX_VALUE) {
+                        return;
+                    }
+                    fromPrimaryKey = Math.max(fromPrimaryKey, bound + 1);
+                }
+                case GREATER_THAN_OR_EQUALS -> fromPrimaryKey = Math.max(fromPrimaryKey, bound);
+                case LESS_THAN -> {
+                    if (bound == Long.MIN_VALUE) {
+                        return;
+                    }
+                    toPrimaryKey = Math.min(toPrimaryKey, bound - 1);
+                }
+                default -> toPrimaryKey = Math.min(toPrimaryKey, bound);
+            }
+        }
+        if (fromPrimaryKey > toPrimaryKey) {
+            return;
+        }
+        // the range is read in slices of a chunk, so a satisfied consumer stops reading the rest of it
+        final RowBatch rowBatch = new RowBatch(schema, CHUNK_SIZE);
+        final int primaryKeyOrdinal = schema.getPrimaryKeyOrdinal();
+        while (true) {
+            final int read = databaseRepository.selectByIdRange(schema.getTableName(), fromPrimaryKey, toPrimaryKey,
+                    CHUNK_SIZE, rowBatch);
+            if (read == 0 || !consumer.test(rowBatch.getRecords())) {
+                return;
+            }
+            final long lastPrimaryKey = (Long) rowBatch.getRecords().get(read - 1)[primaryKeyOrdinal];
+            if (read < CHUNK_SIZE || lastPrimaryKey >= toPrimaryKey) {
+                return;
+            }
+            fromPrimaryKey = lastPrimaryKey + 1;
+            rowBatch.clear();
+        }
+    }
+
+    private void scan(final Object[] values, final Predicate<List<Object[]>> consumer) {
+        final List<ColumnPredicate> predicates = new ArrayList<>(accessConditions.size());
+        for (final PlannedCondition planned : accessConditions) {
+            predicates.add(new ColumnPredicate(planned.condition().columnName(), planned.condition().operator(),
+                    bindCondition(planned, values)));
+        }
+        try (Stream<Object[]> stream = databaseRepository.scanRecords(schema.getTableName(), predicates)) {
+            final Iterator<Object[]> iterator = stream.iterator();
+            final List<Object[]> chunk = new ArrayList<>(CHUNK_SIZE);
+            while (iterator.hasNext()) {
+                chunk.add(iterator.next());
+                if (chunk.size() == CHUNK_SIZE || !iterator.hasNext()) {
+                    if (!consumer.test(chunk)) {
+                        return;
+                    }
+                    chunk.clear();
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns operand of the condition, pattern of {@code LIKE} must be a prefix followed by {@code %}.
+     */
+    private Object bindCondition(final PlannedCondition planned, final Object[] values) {
+        final Object operand = SqlValues.bind(values[planned.condition().slot()], schema, planned.ordinal());
+        if (!planned.condition().like()) {
+            return operand;
+        }
+        final String pattern = (String) operand;
+        final String prefix = pattern.substring(0, Math.max(pattern.length() - 1, 0));
+        if (!pattern.endsWith("%") || prefix.contains("%") || prefix.contains("_")) {
+            throw new SqlSyntaxException("Only prefix LIKE patterns such as 'abc%' are supported, but found "
+                    + pattern);
+        }
+        return prefix;
+    }
+}
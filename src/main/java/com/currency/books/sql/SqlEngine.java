@@ -0,0 +1,80 @@
+package com.currency.books.sql;
+
+import com.currency.books.model.SqlResult;
+import com.currency.books.repository.DatabaseRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Executes SQL statements over {@link DatabaseRepository}. Plans are cached by normalized text of statements,
+ * literals are replaced by parameter markers in it, so statements differing only in values are parsed
+ * and planned once. Least recently used plans are dropped once the cache is full.
+ */
+@Slf4j
+@Component
+public class SqlEngine {
+    private final DatabaseRepository databaseRepository;
+    private final Map<String, SqlPlan> plansByText;
+
+    public SqlEngine(final DatabaseRepository databaseRepository,
+                     @Value("${simple-database.sql.plan-cache-size:1024}") final int planCacheSize) {
+        this.databaseRepository = databaseRepository;
+        this.plansByText = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, SqlPlan> eldest) {
+                return size() > planCacheSize;
+            }
+        });
+    }
+
+    public PreparedSqlStatement prepare(final String sql) {
+        final List<SqlToken> tokens = SqlLexer.tokenize(sql);
+        final String normalizedText = SqlLexer.normalize(tokens);
+        SqlPlan plan = plansByText.get(normalizedText);
+        if (plan == null) {
+            // concurrent misses of the same text plan it twice, both plans are equal
+            plan = plan(SqlParser.parse(tokens));
+            plansByText.put(normalizedText, plan);
+            log.debug("Planned statement {}", normalizedText);
+        }
+        final List<Object> literalValues = new ArrayList<>();
+        final List<Integer> parameterSlots = new ArrayList<>();
+        for (final SqlToken token : tokens) {
+            if (token.type() == SqlToken.Type.PARAMETER) {
+                parameterSlots.add(literalValues.size());
+            }
+            if (token.isSlot()) {
+                literalValues.add(token.value());
+            }
+        }
+        return new PreparedSqlStatement(plan, literalValues.toArray(),
+                parameterSlots.stream().mapToInt(Integer::intValue).toArray());
+    }
+
+    public SqlResult execute(final String sql, final Object... parameters) {
+        return prepare(sql).execute(parameters);
+    }
+
+    int getCachedPlanCount() {
+        return plansByText.size();
+    }
+
+    private SqlPlan plan(final SqlStatement statement) {
+        if (statement instanceof SqlStatement.CreateTable createTable) {
+            return values -> {
+                databaseRepository.createTable(createTable.tableName(), createTable.columns());
+                return SqlResult.affected(0);
+            };
+        } else if (statement instanceof SqlStatement.Insert insert) {
+            return new InsertPlan(databaseRepository, insert);
+        }
+        return new QueryPlan(databaseRepository, statement);
+    }
+}
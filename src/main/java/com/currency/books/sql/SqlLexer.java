@@ -0,0 +1,114 @@
+package com.currency.books.sql;
+
+import com.currency.books.exception.SqlSyntaxException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Splits SQL text into tokens. Keywords are case-insensitive and returned in upper case, identifiers keep
+ * their case, numbers are LONG literals and quoted strings are STRING literals with doubled quotes unescaped.
+ */
+final class SqlLexer {
+    private static final Set<String> KEYWORDS = Set.of("SELECT", "FROM", "WHERE", "AND", "LIMIT", "LIKE",
+            "BETWEEN", "INSERT", "INTO", "VALUES", "UPDATE", "SET", "DELETE", "CREATE", "TABLE", "PRIMARY", "KEY");
+    private static final String TWO_CHARACTER_SYMBOLS = "<=>=<>!=";
+    private static final String SYMBOLS = "(),*=<>;";
+
+    private SqlLexer() {
+    }
+
+    static List<SqlToken> tokenize(final String sql) {
+        final List<SqlToken> tokens = new ArrayList<>();
+        int position = 0;
+        while (position < sql.length()) {
+            final char character = sql.charAt(position);
+            if (Character.isWhitespace(character)) {
+                position++;
+            } else if (Character.isLetter(character) || character == '_') {
+                final int start = position;
+                while (position < sql.length()
+                        && (Character.isLetterOrDigit(sql.charAt(position)) || sql.charAt(position) == '_')) {
+                    position++;
+                }
+                final String word = sql.substring(start, position);
+                final String upperCase = word.toUpperCase(Locale.ROOT);
+                tokens.add(KEYWORDS.contains(upperCase) ? new SqlToken(SqlToken.Type.KEYWORD, upperCase, null)
+                        : new SqlToken(SqlToken.Type.IDENTIFIER, word, null));
+            } else if (Character.isDigit(character) || character == '-' && position + 1 < sql.length()
+                    && Character.isDigit(sql.charAt(position + 1))) {
+                final int start = position++;
+                while (position < sql.length() && Character.isDigit(sql.charAt(position))) {
+                    position++;
+                }
+                final String number = sql.substring(start, position);
+                try {
+                    tokens.add(new SqlToken(SqlToken.Type.LITERAL, number, Long.parseLong(number)));
+                } catch (NumberFormatException e) {
+                    throw new SqlSyntaxException("Number " + number + " is out of LONG range");
+                }
+            } else if (character == '\'') {
+                final StringBuilder value = new StringBuilder();
+                position++;
+                while (true) {
+                    if (position == sql.length()) {
+                        throw new SqlSyntaxException("String literal isn't closed: " + sql);
+                    }
+                    if (sql.charAt(position) == '\'') {
+                        if (position + 1 < sql.length() && sql.charAt(position + 1) == '\'') {
+                            value.append('\'');
+                            position += 2;
+                            continue;
+                        }
+                        position++;
+                        break;
+                    }
+                    value.append(sql.charAt(position++));
+                }
+                tokens.add(new SqlToken(SqlToken.Type.LITERAL, value.toString(), value.toString()));
+            } else if (character == '?') {
+                tokens.add(new SqlToken(SqlToken.Type.PARAMETER, "?", null));
+                position++;
+            } else if (position + 1 < sql.length() && isTwoCharacterSymbol(sql.substring(position, position + 2))) {
+                tokens.add(new SqlToken(SqlToken.Type.SYMBOL, sql.substring(position, position + 2), null));
+                position += 2;
+            } else if (SYMBOLS.indexOf(character) >= 0) {
+                tokens.add(new SqlToken(SqlToken.Type.SYMBOL, String.valueOf(character), null));
+                position++;
+            } else {
+                throw new SqlSyntaxException("Unexpected character '" + character + "' at " + position + ": " + sql);
+            }
+        }
+        tokens.add(new SqlToken(SqlToken.Type.END, "", null));
+        return tokens;
+    }
+
+    /**
+     * Returns text the statement is cached by: tokens separated by single spaces with every literal replaced
+     * by a parameter marker, so statements differing only in literals share one plan.
+     */
+    static String normalize(final List<SqlToken> tokens) {
+        final StringBuilder normalized = new StringBuilder();
+        for (final SqlToken token : tokens) {
+            if (token.type() == SqlToken.Type.END || token.isSymbol(";")) {
+                continue;
+            }
+            if (!normalized.isEmpty()) {
+                normalized.append(' ');
+            }
+            normalized.append(token.isSlot() ? "?" : token.text());
+        }
+        return normalized.toString();
+    }
+
+    private static boolean isTwoCharacterSymbol(final String symbol) {
+        for (int i = 0; i < TWO_CHARACTER_SYMBOLS.length(); i += 2) {
+            if (TWO_CHARACTER_SYMBOLS.startsWith(symbol, i)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
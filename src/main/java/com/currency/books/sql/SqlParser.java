@@ -0,0 +1,253 @@
+package com.currency.books.sql;
+
+import com.currency.books.exception.SqlSyntaxException;
+import com.currency.books.model.Column;
+import com.currency.books.model.ColumnType;
+import com.currency.books.model.PredicateOperator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Recursive descent parser of the supported subset of SQL:
+ * <pre>
+ * CREATE TABLE t (id LONG PRIMARY KEY, name STRING)
+ * INSERT INTO t [(id, name)] VALUES (1, 'a'), (?, ?)
+ * SELECT * | column, ... | COUNT(*), SUM(column), MIN(column), MAX(column) FROM t [WHERE ...] [LIMIT n]
+ * UPDATE t SET name = 'b' [WHERE ...]
+ * DELETE FROM t [WHERE ...]
+ * </pre>
+ * Conditions are joined by {@code AND} and compare a column with a value by {@code =, <>, !=, <, <=, >, >=},
+ * {@code BETWEEN a AND b} or prefix {@code LIKE 'a%'}.
+ */
+final class SqlParser {
+    private static final Map<String, ColumnType> COLUMN_TYPES = Map.of("LONG", ColumnType.LONG,
+            "BIGINT", ColumnType.LONG, "STRING", ColumnType.STRING, "VARCHAR", ColumnType.STRING,
+            "TEXT", ColumnType.STRING);
+    private static final Map<String, PredicateOperator> OPERATORS = Map.of("=", PredicateOperator.EQUALS,
+            "<>", PredicateOperator.NOT_EQUALS, "!=", PredicateOperator.NOT_EQUALS, "<", PredicateOperator.LESS_THAN,
+            "<=", PredicateOperator.LESS_THAN_OR_EQUALS, ">", PredicateOperator.GREATER_THAN,
+            ">=", PredicateOperator.GREATER_THAN_OR_EQUALS);
+
+    private final List<SqlToken> tokens;
+    private int position;
+    private int slotCount;
+
+    private SqlParser(final List<SqlToken> tokens) {
+        this.tokens = tokens;
+    }
+
+    static SqlStatement parse(final List<SqlToken> tokens) {
+        final SqlParser parser = new SqlParser(tokens);
+        final SqlStatement statement = parser.parseStatement();
+        parser.acceptSymbol(";");
+        if (parser.peek().type() != SqlToken.Type.END) {
+            throw parser.unexpected("end of statement");
+        }
+        return statement;
+    }
+
+    private SqlStatement parseStatement() {
+        final SqlToken token = next();
+        if (token.isKeyword("SELECT")) {
+            return parseSelect();
+        } else if (token.isKeyword("INSERT")) {
+            return parseInsert();
+        } else if (token.isKeyword("UPDATE")) {
+            return parseUpdate();
+        } else if (token.isKeyword("DELETE")) {
+            expectKeyword("FROM");
+            return new SqlStatement.Delete(expectIdentifier(), parseWhere());
+        } else if (token.isKeyword("CREATE")) {
+            return parseCreateTable();
+        }
+        position--;
+        throw unexpected("SELECT, INSERT, UPDATE, DELETE or CREATE TABLE");
+    }
+
+    private SqlStatement.Select parseSelect() {
+        final List<SqlStatement.SelectItem> items = new ArrayList<>();
+        if (!acceptSymbol("*")) {
+            do {
+                items.add(parseSelectItem());
+            } while (acceptSymbol(","));
+        }
+        expectKeyword("FROM");
+        final String tableName = expectIdentifier();
+        final List<SqlStatement.Condition> conditions = parseWhere();
+        int limitSlot = SqlStatement.NO_SLOT;
+        if (acceptKeyword("LIMIT")) {
+            limitSlot = expectSlot();
+        }
+        return new SqlStatement.Select(tableName, items, conditions, limitSlot);
+    }
+
+    private SqlStatement.SelectItem parseSelectItem() {
+        final String name = expectIdentifier();
+        if (!acceptSymbol("(")) {
+            return new SqlStatement.SelectItem(name, null);
+        }
+        final SqlStatement.Aggregate aggregate;
+        try {
+            aggregate = SqlStatement.Aggregate.valueOf(name.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new SqlSyntaxException("Unknown function " + name);
+        }
+        final String columnName = aggregate == SqlStatement.Aggregate.COUNT && acceptSymbol("*") ? null
+                : expectIdentifier();
+        expectSymbol(")");
+        return new SqlStatement.SelectItem(columnName, aggregate);
+    }
+
+    private SqlStatement.Insert parseInsert() {
+        expectKeyword("INTO");
+        final String tableName = expectIdentifier();
+        List<String> columnNames = List.of();
+        if (acceptSymbol("(")) {
+            columnNames = new ArrayList<>();
+            do {
+                columnNames.add(expectIdentifier());
+            } while (acceptSymbol(","));
+            expectSymbol(")");
+        }
+        expectKeyword("VALUES");
+        final List<int[]> rows = new ArrayList<>();
+        do {
+            expectSymbol("(");
+            final List<Integer> slots = new ArrayList<>();
+            do {
+                slots.add(expectSlot());
+            } while (acceptSymbol(","));
+            expectSymbol(")");
+            rows.add(slots.stream().mapToInt(Integer::intValue).toArray());
+        } while (acceptSymbol(","));
+        return new SqlStatement.Insert(tableName, columnNames, rows);
+    }
+
+    private SqlStatement.Update parseUpdate() {
+        final String tableName = expectIdentifier();
+        expectKeyword("SET");
+        final List<SqlStatement.Assignment> assignments = new ArrayList<>();
+        do {
+            final String columnName = expectIdentifier();
+            expectSymbol("=");
+            assignments.add(new SqlStatement.Assignment(columnName, expectSlot()));
+        } while (acceptSymbol(","));
+        return new SqlStatement.Update(tableName, assignments, parseWhere());
+    }
+
+    private SqlStatement.CreateTable parseCreateTable() {
+        expectKeyword("TABLE");
+        final String tableName = expectIdentifier();
+        expectSymbol("(");
+        final List<Column> columns = new ArrayList<>();
+        do {
+            final String columnName = expectIdentifier();
+            final String typeName = expectIdentifier();
+            final ColumnType columnType = COLUMN_TYPES.get(typeName.toUpperCase(Locale.ROOT));
+            if (columnType == null) {
+                throw new SqlSyntaxException("Unknown type " + typeName + " of column " + columnName);
+            }
+            final boolean primaryKey = acceptKeyword("PRIMARY");
+            if (primaryKey) {
+                expectKeyword("KEY");
+            }
+            columns.add(new Column(columnName, columnType, primaryKey));
+        } while (acceptSymbol(","));
+        expectSymbol(")");
+        return new SqlStatement.CreateTable(tableName, columns);
+    }
+
+    private List<SqlStatement.Condition> parseWhere() {
+        final List<SqlStatement.Condition> conditions = new ArrayList<>();
+        if (!acceptKeyword("WHERE")) {
+            return conditions;
+        }
+        do {
+            final String columnName = expectIdentifier();
+            if (acceptKeyword("BETWEEN")) {
+                conditions.add(new SqlStatement.Condition(columnName, PredicateOperator.GREATER_THAN_OR_EQUALS,
+                        expectSlot(), false));
+                expectKeyword("AND");
+                conditions.add(new SqlStatement.Condition(columnName, PredicateOperator.LESS_THAN_OR_EQUALS,
+                        expectSlot(), false));
+            } else if (acceptKeyword("LIKE")) {
+                conditions.add(new SqlStatement.Condition(columnName, PredicateOperator.STARTS_WITH,
+                        expectSlot(), true));
+            } else {
+                final SqlToken token = next();
+                final PredicateOperator operator = token.type() == SqlToken.Type.SYMBOL ? OPERATORS.get(token.text())
+                        : null;
+                if (operator == null) {
+                    position--;
+                    throw unexpected("comparison operator");
+                }
+                conditions.add(new SqlStatement.Condition(columnName, operator, expectSlot(), false));
+            }
+        } while (acceptKeyword("AND"));
+        return conditions;
+    }
+
+    private SqlToken peek() {
+        return tokens.get(position);
+    }
+
+    private SqlToken next() {
+        final SqlToken token = tokens.get(position);
+        if (token.type() != SqlToken.Type.END) {
+            position++;
+        }
+        return token;
+    }
+
+    private boolean acceptKeyword(final String keyword) {
+        if (peek().isKeyword(keyword)) {
+            position++;
+            return true;
+        }
+        return false;
+    }
+
+    private boolean acceptSymbol(final String symbol) {
+        if (peek().isSymbol(symbol)) {
+            position++;
+            return true;
+        }
+        return false;
+    }
+
+    private void expectKeyword(final String keyword) {
+        if (!acceptKeyword(keyword)) {
+            throw unexpected(keyword);
+        }
+    }
+
+    private void expectSymbol(final String symbol) {
+        if (!acceptSymbol(symbol)) {
+            throw unexpected("'" + symbol + "'");
+        }
+    }
+
+    private String expectIdentifier() {
+        if (peek().type() != SqlToken.Type.IDENTIFIER) {
+            throw unexpected("identifier");
+        }
+        return next().text();
+    }
+
+    private int expectSlot() {
+        if (!peek().isSlot()) {
+            throw unexpected("value or parameter");
+        }
+        next();
+        return slotCount++;
+    }
+
+    private SqlSyntaxException unexpected(final String expected) {
+        final SqlToken token = peek();
+        return new SqlSyntaxException("Expected " + expected + " but found "
+                + (token.type() == SqlToken.Type.END ? "end of statement" : "'" + token.text() + "'"));
+    }
+}
@@ -0,0 +1,12 @@
+package com.currency.books.sql;
+
+import com.currency.books.model.SqlResult;
+
+/**
+ * Compiled statement. Plan is immutable and shared by all executions of statements with the same normalized
+ * text, values of the statement are passed by slots on every execution.
+ */
+interface SqlPlan {
+
+    SqlResult execute(Object[] values);
+}
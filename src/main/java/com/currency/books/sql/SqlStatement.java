@@ -0,0 +1,54 @@
+package com.currency.books.sql;
+
+import com.currency.books.model.Column;
+import com.currency.books.model.PredicateOperator;
+
+import java.util.List;
+
+/**
+ * Parsed statement. Values are referenced by slots, positions of literals and parameter markers in the text,
+ * so a statement can be planned before its values are known.
+ */
+sealed interface SqlStatement {
+    int NO_SLOT = -1;
+
+    record CreateTable(String tableName, List<Column> columns) implements SqlStatement {
+    }
+
+    /**
+     * Insert of rows, each row has slots of values of the columns, all columns of the table if none are named.
+     */
+    record Insert(String tableName, List<String> columnNames, List<int[]> rows) implements SqlStatement {
+    }
+
+    record Select(String tableName, List<SelectItem> items, List<Condition> conditions, int limitSlot)
+            implements SqlStatement {
+    }
+
+    record Update(String tableName, List<Assignment> assignments, List<Condition> conditions)
+            implements SqlStatement {
+    }
+
+    record Delete(String tableName, List<Condition> conditions) implements SqlStatement {
+    }
+
+    /**
+     * Comparison of a column with a value, {@code LIKE} conditions have prefix patterns evaluated as
+     * {@link PredicateOperator#STARTS_WITH}.
+     */
+    record Condition(String columnName, PredicateOperator operator, int slot, boolean like) {
+    }
+
+    record Assignment(String columnName, int slot) {
+    }
+
+    /**
+     * Column or aggregate of a column of a query, {@code COUNT(*)} has no column.
+     */
+    record SelectItem(String columnName, Aggregate aggregate) {
+    }
+
+    enum Aggregate {
+        COUNT, SUM, MIN, MAX
+    }
+}
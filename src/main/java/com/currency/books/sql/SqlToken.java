@@ -0,0 +1,28 @@
+package com.currency.books.sql;
+
+/**
+ * Token of a SQL statement. Literals and parameter markers are both slots of bound values, literal carries
+ * its value.
+ */
+record SqlToken(Type type, String text, Object value) {
+
+    enum Type {
+        KEYWORD, IDENTIFIER, LITERAL, PARAMETER, SYMBOL, END
+    }
+
+    boolean is(final Type expectedType, final String expectedText) {
+        return type == expectedType && text.equals(expectedText);
+    }
+
+    boolean isKeyword(final String keyword) {
+        return is(Type.KEYWORD, keyword);
+    }
+
+    boolean isSymbol(final String symbol) {
+        return is(Type.SYMBOL, symbol);
+    }
+
+    boolean isSlot() {
+        return type == Type.LITERAL || type == Type.PARAMETER;
+    }
+}
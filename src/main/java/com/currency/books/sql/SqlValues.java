@@ -0,0 +1,36 @@
+package com.currency.books.sql;
+
+import com.currency.books.exception.TypeMismatchException;
+import com.currency.books.model.ColumnType;
+import com.currency.books.model.TableSchema;
+
+/**
+ * Checks values bound to statement slots against column types.
+ */
+final class SqlValues {
+
+    private SqlValues() {
+    }
+
+    /**
+     * Returns value of the slot as a value of the column, integers passed as parameters become LONG values.
+     */
+    static Object bind(final Object value, final TableSchema schema, final int ordinal) {
+        final ColumnType columnType = schema.getColumnType(ordinal);
+        final Object boundValue = value instanceof Integer integer ? Long.valueOf(integer) : value;
+        if (!columnType.getClazz().isInstance(boundValue)) {
+            throw new TypeMismatchException("Column " + schema.getColumnName(ordinal) + " must have " + columnType
+                    + " type, but has value " + value);
+        }
+        return boundValue;
+    }
+
+    static int getOrdinal(final TableSchema schema, final String columnName) {
+        final int ordinal = schema.getOrdinal(columnName);
+        if (ordinal == TableSchema.NO_ORDINAL) {
+            throw new TypeMismatchException("Column " + columnName + " doesn't exist in table "
+                    + schema.getTableName());
+        }
+        return ordinal;
+    }
+}
@@ -0,0 +1,562 @@
+package com.currency.books.storage;
+
+import com.currency.books.exception.DatabaseReadException;
+import com.currency.books.exception.DatabaseWriteException;
+import com.currency.books.model.Column;
+import com.currency.books.model.ColumnType;
+import com.currency.books.model.RecordPointer;
+import com.currency.books.model.TableOptions;
+import com.currency.books.utils.DataFileReader;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.zip.CRC32C;
+
+/**
+ * Stores records in fixed-size slotted pages.
+ * <p>
+ * Page layout: header with checksum, slot count and start of the record area, then slot directory
+ * with offset and length of every record. Records are written from the end of the page towards
+ * the slot directory. Checksum covers everything in the page except the checksum itself.
+ * <p>
+ * Record layout: values in column order, {@code LONG} as 8 bytes, {@code STRING} as var int length
+ * followed by UTF-8 bytes. Tombstone is the 8-byte primary key, the highest bit of its slot length is set.
+ * <p>
+ * Scan positions are page start plus slot number, so they point exactly between two records.
+ * <p>
+ * The last page is rewritten in place on every flush. Its version as of the last {@link #force()} is kept in
+ * {@link TailDoubleWrite}, so a torn rewrite doesn't lose records the write-ahead log no longer holds. Pages
+ * after it hold only records appended after the checkpoint, the first damaged one ends the file.
+ */
+public class BinaryPageStorageEngine implements PositionalStorageEngine {
+    public static final int PAGE_SIZE = 8192;
+    static final int CHECKSUM_OFFSET = 0;
+    static final int SLOT_COUNT_OFFSET = 4;
+    static final int DATA_START_OFFSET = 6;
+    static final int HEADER_SIZE = 8;
+    static final int SLOT_SIZE = 4;
+    static final int TOMBSTONE_FLAG = 0x8000;
+    private static final int MAX_RECORD_SIZE = PAGE_SIZE - HEADER_SIZE - SLOT_SIZE;
+    private static final int MAX_VAR_INT_SIZE = 5;
+    /**
+     * Pages fetched by a single read of a scan.
+     */
+    static final int SCAN_CHUNK_PAGES = 128;
+    private static final int MIN_SPLIT_PAGES = 16;
+    private static final int INITIAL_BATCH_BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_RETAINED_BATCH_BUFFER_SIZE = 1024 * 1024;
+
+    private final List<Column> columns;
+    private final FileChannel channel;
+    private final TailDoubleWrite tailDoubleWrite;
+    private final DataFileReader dataReader;
+    private final ByteBuffer currentPage = ByteBuffer.allocate(PAGE_SIZE);
+    private final ThreadLocal<ByteBuffer> recordBuffer =
+            ThreadLocal.withInitial(() -> ByteBuffer.allocate(MAX_RECORD_SIZE));
+    private final ThreadLocal<ByteBuffer> batchBuffer =
+            ThreadLocal.withInitial(() -> ByteBuffer.allocate(INITIAL_BATCH_BUFFER_SIZE));
+    private long currentPageNumber;
+    private boolean currentPageDirty;
+
+    public BinaryPageStorageEngine(final Path dataPath, final List<Column> columns,
+                                   final TableOptions tableOptions) throws IOException {
+        this.columns = columns;
+        this.channel = FileChannel.open(dataPath, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        this.tailDoubleWrite = new TailDoubleWrite(dataPath);
+        final long pageCount = channel.size() / PAGE_SIZE;
+        final TailDoubleWrite.Tail tail = tailDoubleWrite.load();
+        long validPages = 0;
+        if (tail != null) {
+            final long tailPageNumber = tail.start() / PAGE_SIZE;
+            if (pageCount < tailPageNumber) {
+                throw new DatabaseReadException("Data file ends before its checkpointed page " + tailPageNumber);
+            }
+            if (pageCount == tailPageNumber || !isValid(readFully(tailPageNumber * PAGE_SIZE, currentPage))) {
+                // rewrite of the page was torn by a crash, records indexed at the checkpoint are restored
+                writePage(tailPageNumber, currentPage.clear().put(tail.content()).clear());
+                channel.force(false);
+            }
+            validPages = tailPageNumber + 1;
+        }
+        // pages after the checkpointed one are covered by the write-ahead log
+        while (validPages < pageCount && isValid(readFully(validPages * PAGE_SIZE, currentPage))) {
+            validPages++;
+        }
+        if (validPages == 0) {
+            channel.truncate(0);
+            initPage(currentPage);
+        } else {
+            // continue filling the last page
+            currentPageNumber = validPages - 1;
+            readFully(currentPageNumber * PAGE_SIZE, currentPage);
+            channel.truncate(validPages * PAGE_SIZE);
+        }
+        // reader is opened after truncation, so memory mapping never covers removed part of the file
+        this.dataReader = DataFileReader.open(dataPath, tableOptions.isMemoryMapped());
+    }
+
+    @Override
+    public List<Column> getColumns() {
+        return columns;
+    }
+
+    @Override
+    public RecordPointer append(final Object[] values) throws IOException {
+        final ByteBuffer record = encode(values);
+        synchronized (this) {
+            return appendRecord(record.array(), 0, record.limit(), 0);
+        }
+    }
+
+    /**
+     * Records are encoded one after another before the lock is taken, under the lock they are only copied
+     * into pages, so concurrent writers serialize on copying and the lock is taken once per batch.
+     */
+    @Override
+    public RecordPointer[] append(final List<Object[]> batch) throws IOException {
+        ByteBuffer encoded = batchBuffer.get().clear();
+        final int[] recordEnds = new int[batch.size()];
+        for (int i = 0; i < recordEnds.length; i++) {
+            final ByteBuffer record = encode(batch.get(i));
+            if (encoded.remaining() < record.remaining()) {
+                encoded = growBatchBuffer(encoded, encoded.position() + record.remaining());
+            }
+            encoded.put(record);
+            recordEnds[i] = encoded.position();
+        }
+        final RecordPointer[] recordPointers = new RecordPointer[recordEnds.length];
+        synchronized (this) {
+            for (int i = 0; i < recordPointers.length; i++) {
+                final int recordStart = i == 0 ? 0 : recordEnds[i - 1];
+                recordPointers[i] = appendRecord(encoded.array(), recordStart, recordEnds[i] - recordStart, 0);
+            }
+        }
+        return recordPointers;
+    }
+
+    @Override
+    public synchronized RecordPointer appendTombstone(final long primaryKey) throws IOException {
+        final byte[] tombstone = new byte[Long.BYTES];
+        ByteBuffer.wrap(tombstone).putLong(primaryKey);
+        return appendRecord(tombstone, 0, Long.BYTES, TOMBSTONE_FLAG);
+    }
+
+    /**
+     * Copies encoded record to the current page.
+     */
+    private RecordPointer appendRecord(final byte[] record, final int recordStart, final int recordSize,
+                                       final int flags) throws IOException {
+        if (freeSpace(currentPage) < recordSize + SLOT_SIZE) {
+            writePage(currentPageNumber, currentPage);
+            currentPageNumber++;
+            initPage(currentPage);
+        }
+
+        final int slotCount = slotCount(currentPage);
+        final int recordOffset = dataStart(currentPage) - recordSize;
+        currentPage.put(recordOffset, record, recordStart, recordSize);
+        currentPage.putShort(HEADER_SIZE + slotCount * SLOT_SIZE, (short) recordOffset);
+        currentPage.putShort(HEADER_SIZE + slotCount * SLOT_SIZE + Short.BYTES, (short) (recordSize | flags));
+        currentPage.putShort(SLOT_COUNT_OFFSET, (short) (slotCount + 1));
+        currentPage.putShort(DATA_START_OFFSET, (short) recordOffset);
+        currentPageDirty = true;
+
+        return new RecordPointer(currentPageNumber * PAGE_SIZE + recordOffset, recordSize);
+    }
+
+    @Override
+    public void validate(final Object[] values) {
+        // UTF-8 takes at most 3 bytes per char, records which may not fit are encoded to check exact size
+        int maxRecordSize = 0;
+        for (int i = 0; i < values.length; i++) {
+            maxRecordSize += values[i] instanceof String string ? MAX_VAR_INT_SIZE + string.length() * 3 : Long.BYTES;
+        }
+        if (maxRecordSize > MAX_RECORD_SIZE) {
+            encode(values);
+        }
+    }
+
+    @Override
+    public synchronized void flush() throws IOException {
+        if (currentPageDirty) {
+            writePage(currentPageNumber, currentPage);
+            currentPageDirty = false;
+        }
+    }
+
+    @Override
+    public synchronized void force() throws IOException {
+        flush();
+        channel.force(false);
+        tailDoubleWrite.save(currentPageNumber * PAGE_SIZE, currentPage.duplicate().clear());
+    }
+
+    @Override
+    public synchronized long checkpointPosition() {
+        return currentPageNumber * PAGE_SIZE + slotCount(currentPage);
+    }
+
+    @Override
+    public long scan(final long fromPosition, final RecordConsumer consumer) throws IOException {
+        final long lastPageNumber;
+        synchronized (this) {
+            lastPageNumber = currentPageNumber;
+        }
+        int slotCount = 0;
+        for (long pageNumber = fromPosition / PAGE_SIZE; pageNumber <= lastPageNumber; pageNumber++) {
+            ByteBuffer page = copyCurrentPage(pageNumber);
+            if (page == null) {
+                page = readPage(pageNumber);
+            }
+            slotCount = slotCount(page);
+            final int firstSlot = pageNumber == fromPosition / PAGE_SIZE ? (int) (fromPosition % PAGE_SIZE) : 0;
+            for (int slot = firstSlot; slot < slotCount; slot++) {
+                final int recordOffset = Short.toUnsignedInt(page.getShort(HEADER_SIZE + slot * SLOT_SIZE));
+                final int slotLength = Short.toUnsignedInt(
+                        page.getShort(HEADER_SIZE + slot * SLOT_SIZE + Short.BYTES));
+                if ((slotLength & TOMBSTONE_FLAG) != 0) {
+                    consumer.acceptTombstone(page.getLong(recordOffset));
+                    continue;
+                }
+                page.position(recordOffset);
+                consumer.accept(new RecordPointer(pageNumber * PAGE_SIZE + recordOffset, slotLength), decode(page));
+            }
+        }
+        return lastPageNumber * PAGE_SIZE + slotCount;
+    }
+
+    /**
+     * Drops records starting from the slot of the position, page of the position becomes the current one.
+     * Torn pages are already restored or dropped when the file is opened.
+     */
+    @Override
+    public synchronized void truncate(final long position) throws IOException {
+        final long pageNumber = position / PAGE_SIZE;
+        final int slot = (int) (position % PAGE_SIZE);
+        if (pageNumber > currentPageNumber || pageNumber == currentPageNumber && slot >= slotCount(currentPage)) {
+            return;
+        }
+        if (pageNumber != currentPageNumber) {
+            readFully(pageNumber * PAGE_SIZE, currentPage);
+            if (!isValid(currentPage)) {
+                throw new DatabaseReadException("Checksum mismatch for page " + pageNumber);
+            }
+        }
+        // records are written from the end of the page, so the last kept record starts the record area
+        final int dataStart = slot == 0 ? PAGE_SIZE
+                : Short.toUnsignedInt(currentPage.getShort(HEADER_SIZE + (slot - 1) * SLOT_SIZE));
+        Arrays.fill(currentPage.array(), HEADER_SIZE + slot * SLOT_SIZE, dataStart, (byte) 0);
+        currentPage.putShort(SLOT_COUNT_OFFSET, (short) slot);
+        currentPage.putShort(DATA_START_OFFSET, (short) dataStart);
+        currentPageNumber = pageNumber;
+        writePage(currentPageNumber, currentPage);
+        currentPageDirty = false;
+        channel.truncate((currentPageNumber + 1) * PAGE_SIZE);
+    }
+
+    @Override
+    public Object[] read(final RecordPointer recordPointer) throws IOException {
+        final long pageNumber = recordPointer.getOffset() / PAGE_SIZE;
+        ByteBuffer page = copyCurrentPage(pageNumber);
+        if (page == null) {
+            // pages before the current one are never rewritten, so they can be read without lock
+            page = readPage(pageNumber);
+        }
+        page.position((int) (recordPointer.getOffset() % PAGE_SIZE));
+        return decode(page);
+    }
+
+    /**
+     * Pages of the records are sorted and adjacent pages are fetched by a single read, every page is verified
+     * and decoded once.
+     */
+    @Override
+    public Object[][] read(final List<RecordPointer> recordPointers) throws IOException {
+        final Object[][] records = new Object[recordPointers.size()][];
+        final long[] starts = new long[records.length];
+        final long[] ends = new long[records.length];
+        for (int i = 0; i < records.length; i++) {
+            starts[i] = recordPointers.get(i).getOffset() / PAGE_SIZE * PAGE_SIZE;
+            ends[i] = starts[i] + PAGE_SIZE;
+        }
+        ReadCoalescer.readGroups(starts, ends, 0, (start, length, recordNumbers) -> {
+            final ByteBuffer range = dataReader.read(start, length);
+            long pageNumber = -1;
+            ByteBuffer page = null;
+            // records of the group are sorted by offset, so every page is visited once
+            for (final int recordNumber : recordNumbers) {
+                final long offset = recordPointers.get(recordNumber).getOffset();
+                if (offset / PAGE_SIZE != pageNumber) {
+                    pageNumber = offset / PAGE_SIZE;
+                    page = copyCurrentPage(pageNumber);
+                    if (page == null) {
+                        page = range.slice((int) (pageNumber * PAGE_SIZE - start), PAGE_SIZE);
+                        if (!isValid(page)) {
+                            throw new DatabaseReadException("Checksum mismatch for page " + pageNumber);
+                        }
+                    }
+                }
+                page.position((int) (offset % PAGE_SIZE));
+                records[recordNumber] = decode(page);
+            }
+        });
+        return records;
+    }
+
+    /**
+     * Pages before the current one are never rewritten, they are read from the file in chunks. Current page
+     * is copied when the scan starts, so records appended later are not returned. Scan is split by pages.
+     */
+    @Override
+    public Spliterator<Object[]> spliterator(final boolean[] filterColumns, final RecordFilter filter,
+                                             final boolean[] projectedColumns) {
+        final long lastPageNumber;
+        final ByteBuffer lastPage;
+        synchronized (this) {
+            lastPageNumber = currentPageNumber;
+            lastPage = copyCurrentPage(currentPageNumber);
+        }
+        return new PageSpliterator(0, lastPageNumber + 1, lastPageNumber, lastPage,
+                filterColumns, filter, projectedColumns);
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+        channel.close();
+        dataReader.close();
+    }
+
+    private synchronized ByteBuffer copyCurrentPage(final long pageNumber) {
+        if (pageNumber != currentPageNumber) {
+            return null;
+        }
+        return ByteBuffer.wrap(currentPage.array().clone());
+    }
+
+    /**
+     * Encodes record into the buffer of the calling thread, returned buffer is valid until the next call.
+     */
+    private ByteBuffer encode(final Object[] values) {
+        final ByteBuffer record = recordBuffer.get().clear();
+        try {
+            for (int i = 0; i < values.length; i++) {
+                columns.get(i).getColumnType().write(values[i], record);
+            }
+        } catch (BufferOverflowException e) {
+            throw new DatabaseWriteException("Record is bigger than " + MAX_RECORD_SIZE + " bytes");
+        }
+        return record.flip();
+    }
+
+    private ByteBuffer growBatchBuffer(final ByteBuffer buffer, final int minCapacity) {
+        final ByteBuffer grown = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, minCapacity));
+        grown.put(buffer.flip());
+        if (grown.capacity() <= MAX_RETAINED_BATCH_BUFFER_SIZE) {
+            batchBuffer.set(grown);
+        }
+        return grown;
+    }
+
+    private Object[] decode(final ByteBuffer buffer) {
+        final Object[] values = new Object[columns.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = columns.get(i).getColumnType().read(buffer);
+        }
+        return values;
+    }
+
+    /**
+     * Decodes requested columns which aren't decoded yet, other values are skipped.
+     */
+    private void decode(final ByteBuffer page, final int recordOffset, final boolean[] decodedColumns,
+                        final Object[] values) {
+        page.position(recordOffset);
+        for (int i = 0; i < values.length; i++) {
+            final ColumnType columnType = columns.get(i).getColumnType();
+            if (decodedColumns[i] && values[i] == null) {
+                values[i] = columnType.read(page);
+            } else {
+                columnType.skip(page);
+            }
+        }
+    }
+
+    private ByteBuffer readPage(final long pageNumber) throws IOException {
+        final ByteBuffer page = dataReader.read(pageNumber * PAGE_SIZE, PAGE_SIZE);
+        if (!isValid(page)) {
+            throw new DatabaseReadException("Checksum mismatch for page " + pageNumber);
+        }
+        return page;
+    }
+
+    private ByteBuffer readFully(final long position, final ByteBuffer target) throws IOException {
+        target.clear();
+        while (target.hasRemaining()) {
+            if (channel.read(target, position + target.position()) < 0) {
+                throw new EOFException("Position " + position + " is out of file bounds");
+            }
+        }
+        return target.clear();
+    }
+
+    private void writePage(final long pageNumber, final ByteBuffer page) throws IOException {
+        page.putInt(CHECKSUM_OFFSET, checksum(page));
+        page.clear();
+        while (page.hasRemaining()) {
+            channel.write(page, pageNumber * PAGE_SIZE + page.position());
+        }
+        page.clear();
+    }
+
+    private static boolean isValid(final ByteBuffer page) {
+        return page.getInt(CHECKSUM_OFFSET) == checksum(page);
+    }
+
+    static int checksum(final ByteBuffer page) {
+        final CRC32C crc = new CRC32C();
+        crc.update(page.slice(CHECKSUM_OFFSET + Integer.BYTES, PAGE_SIZE - Integer.BYTES));
+        return (int) crc.getValue();
+    }
+
+    private static void initPage(final ByteBuffer page) {
+        page.clear();
+        Arrays.fill(page.array(), (byte) 0);
+        page.putShort(SLOT_COUNT_OFFSET, (short) 0);
+        page.putShort(DATA_START_OFFSET, (short) PAGE_SIZE);
+    }
+
+    static int slotCount(final ByteBuffer page) {
+        return Short.toUnsignedInt(page.getShort(SLOT_COUNT_OFFSET));
+    }
+
+    static int dataStart(final ByteBuffer page) {
+        return Short.toUnsignedInt(page.getShort(DATA_START_OFFSET));
+    }
+
+    private static int freeSpace(final ByteBuffer page) {
+        return dataStart(page) - HEADER_SIZE - slotCount(page) * SLOT_SIZE;
+    }
+
+    /**
+     * Scan of pages [nextPageNumber, endPageNumber), page {@code lastPageNumber} is served from its copy.
+     */
+    private final class PageSpliterator implements Spliterator<Object[]> {
+        private final long lastPageNumber;
+        private final ByteBuffer lastPage;
+        private final boolean[] filterColumns;
+        private final RecordFilter filter;
+        private final boolean[] projectedColumns;
+        private long nextPageNumber;
+        private long endPageNumber;
+        private ByteBuffer chunk;
+        private long chunkPageNumber;
+        private int chunkPages;
+        private int chunkPageIndex;
+        private ByteBuffer page;
+        private long pageNumber;
+        private int slot;
+        private int slotCount;
+
+        private PageSpliterator(final long nextPageNumber, final long endPageNumber, final long lastPageNumber,
+                                final ByteBuffer lastPage, final boolean[] filterColumns, final RecordFilter filter,
+                                final boolean[] projectedColumns) {
+            this.nextPageNumber = nextPageNumber;
+            this.endPageNumber = endPageNumber;
+            this.lastPageNumber = lastPageNumber;
+            this.lastPage = lastPage;
+            this.filterColumns = filterColumns;
+            this.filter = filter;
+            this.projectedColumns = projectedColumns;
+        }
+
+        @Override
+        public boolean tryAdvance(final Consumer<? super Object[]> action) {
+            while (true) {
+                while (slot < slotCount) {
+                    final int recordOffset = Short.toUnsignedInt(page.getShort(HEADER_SIZE + slot * SLOT_SIZE));
+                    final int slotLength = Short.toUnsignedInt(
+                            page.getShort(HEADER_SIZE + slot * SLOT_SIZE + Short.BYTES));
+                    slot++;
+                    if ((slotLength & TOMBSTONE_FLAG) != 0) {
+                        continue;
+                    }
+                    final Object[] values = new Object[columns.size()];
+                    decode(page, recordOffset, filterColumns, values);
+                    if (filter.test(RecordPointer.pack(pageNumber * PAGE_SIZE + recordOffset, slotLength), values)) {
+                        decode(page, recordOffset, projectedColumns, values);
+                        action.accept(values);
+                        return true;
+                    }
+                }
+                if (!nextPage()) {
+                    return false;
+                }
+            }
+        }
+
+        private boolean nextPage() {
+            if (chunk == null || chunkPageIndex == chunkPages) {
+                if (nextPageNumber >= endPageNumber) {
+                    return false;
+                }
+                if (nextPageNumber == lastPageNumber) {
+                    chunk = lastPage.duplicate();
+                    chunkPages = 1;
+                } else {
+                    chunkPages = (int) Math.min(SCAN_CHUNK_PAGES, Math.min(endPageNumber, lastPageNumber) - nextPageNumber);
+                    try {
+                        chunk = dataReader.read(nextPageNumber * PAGE_SIZE, chunkPages * PAGE_SIZE);
+                    } catch (IOException e) {
+                        throw new DatabaseReadException("Unable to read page " + nextPageNumber, e);
+                    }
+                }
+                chunkPageNumber = nextPageNumber;
+                chunkPageIndex = 0;
+                nextPageNumber += chunkPages;
+            }
+            pageNumber = chunkPageNumber + chunkPageIndex;
+            page = chunk.slice(chunkPageIndex * PAGE_SIZE, PAGE_SIZE);
+            chunkPageIndex++;
+            if (pageNumber != lastPageNumber && !isValid(page)) {
+                throw new DatabaseReadException("Checksum mismatch for page " + pageNumber);
+            }
+            slot = 0;
+            slotCount = slotCount(page);
+            return true;
+        }
+
+        @Override
+        public Spliterator<Object[]> trySplit() {
+            final long remainingPages = endPageNumber - nextPageNumber;
+            if (remainingPages < 2 * MIN_SPLIT_PAGES) {
+                return null;
+            }
+            final long middlePageNumber = nextPageNumber + remainingPages / 2;
+            final PageSpliterator suffix = new PageSpliterator(middlePageNumber, endPageNumber, lastPageNumber,
+                    lastPage, filterColumns, filter, projectedColumns);
+            endPageNumber = middlePageNumber;
+            return suffix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return endPageNumber - nextPageNumber + chunkPages - chunkPageIndex;
+        }
+
+        @Override
+        public int characteristics() {
+            return NONNULL;
+        }
+    }
+}
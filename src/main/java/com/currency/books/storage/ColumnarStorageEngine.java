@@ -0,0 +1,542 @@
+package com.currency.books.storage;
+
+import com.currency.books.exception.DatabaseReadException;
+import com.currency.books.model.Column;
+import com.currency.books.model.ColumnType;
+import com.currency.books.model.RecordPointer;
+import com.currency.books.model.TableOptions;
+import com.currency.books.utils.DataFileReader;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+
+/**
+ * Stores every column in its own file, so scans read only the columns they touch.
+ * <p>
+ * {@code LONG} column file is an array of 8-byte values indexed by row number. {@code STRING} column file is
+ * an array of 8-byte end offsets of the values in a heap file next to it, values are UTF-8 bytes without length.
+ * Data file itself is empty and marks the table layout, column files are named after it.
+ * <p>
+ * Offset of a record pointer is the row number. Appended values are buffered and written to column files
+ * by {@link #flush()}. Column files may have different number of rows after a crash, table is cut to the
+ * shortest one.
+ * <p>
+ * Tombstone is a row with the primary key and empty values of other columns, row numbers of tombstones are
+ * appended to a separate file, which is flushed before the column files. Tombstone rows are kept in memory.
+ */
+public class ColumnarStorageEngine implements PositionalStorageEngine {
+    /**
+     * Rows of a column fetched by a single read of a scan.
+     */
+    static final int SCAN_BLOCK_ROWS = 8192;
+    private static final int MIN_SPLIT_ROWS = 2 * SCAN_BLOCK_ROWS;
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+    private static final int ROW_LENGTH = 1;
+    private static final String HEAP_POST_FIX = ".heap";
+    private static final String TOMBSTONES_POST_FIX = ".tombstones";
+
+    private final List<Column> columns;
+    private final ColumnFile[] columnFiles;
+    /**
+     * Value bytes of {@code STRING} columns, {@code null} for {@code LONG} ones.
+     */
+    private final ColumnFile[] heapFiles;
+    private final long[] heapSizes;
+    private final int primaryKeyOrdinal;
+    private final boolean[] primaryKeyColumn;
+    private final ColumnFile tombstoneFile;
+    /**
+     * Ascending row numbers of tombstones, published by the count.
+     */
+    private volatile long[] tombstoneRows = new long[16];
+    private volatile int tombstoneCount;
+    private long rowCount;
+    private volatile long flushedRowCount;
+
+    public ColumnarStorageEngine(final Path dataPath, final List<Column> columns,
+                                 final TableOptions tableOptions) throws IOException {
+        this.columns = columns;
+        this.columnFiles = new ColumnFile[columns.size()];
+        this.heapFiles = new ColumnFile[columns.size()];
+        this.heapSizes = new long[columns.size()];
+        this.primaryKeyOrdinal = StorageEngine.getPrimaryKeyOrdinal(columns);
+        this.primaryKeyColumn = new boolean[columns.size()];
+        primaryKeyColumn[primaryKeyOrdinal] = true;
+        if (!Files.exists(dataPath)) {
+            Files.createFile(dataPath);
+        }
+        long rows = Long.MAX_VALUE;
+        for (int i = 0; i < columnFiles.length; i++) {
+            columnFiles[i] = new ColumnFile(getColumnPath(dataPath, i));
+            rows = Math.min(rows, columnFiles[i].size / Long.BYTES);
+            if (columns.get(i).getColumnType() == ColumnType.STRING) {
+                heapFiles[i] = new ColumnFile(getHeapPath(dataPath, i));
+            }
+        }
+        // end offsets grow with rows, so cutting rows for one column never breaks the check for another
+        for (int i = 0; i < columnFiles.length; i++) {
+            while (heapFiles[i] != null && rows > 0
+                    && columnFiles[i].readLong((rows - 1) * Long.BYTES) > heapFiles[i].size) {
+                rows--;
+            }
+        }
+        this.rowCount = rows;
+        this.flushedRowCount = rows;
+        for (int i = 0; i < columnFiles.length; i++) {
+            columnFiles[i].truncate(rows * Long.BYTES);
+            if (heapFiles[i] != null) {
+                heapSizes[i] = rows == 0 ? 0 : columnFiles[i].readLong((rows - 1) * Long.BYTES);
+                heapFiles[i].truncate(heapSizes[i]);
+            }
+        }
+        this.tombstoneFile = new ColumnFile(getTombstonesPath(dataPath));
+        final ByteBuffer tombstones = tombstoneFile.read(0, (int) (tombstoneFile.size / Long.BYTES * Long.BYTES));
+        while (tombstones.hasRemaining()) {
+            final long row = tombstones.getLong();
+            // tombstones are flushed first, so they may be ahead of the rows
+            if (row >= rows) {
+                break;
+            }
+            addTombstoneRow(row);
+        }
+        tombstoneFile.truncate((long) tombstoneCount * Long.BYTES);
+        // readers are opened after truncation, so memory mapping never covers removed part of the files
+        for (int i = 0; i < columnFiles.length; i++) {
+            columnFiles[i].openReader(tableOptions.isMemoryMapped());
+            if (heapFiles[i] != null) {
+                heapFiles[i].openReader(tableOptions.isMemoryMapped());
+            }
+        }
+    }
+
+    @Override
+    public List<Column> getColumns() {
+        return columns;
+    }
+
+    @Override
+    public synchronized RecordPointer append(final Object[] values) throws IOException {
+        for (int i = 0; i < values.length; i++) {
+            if (heapFiles[i] == null) {
+                columnFiles[i].appendLong((Long) values[i]);
+            } else {
+                final byte[] bytes = ((String) values[i]).getBytes(StandardCharsets.UTF_8);
+                heapFiles[i].appendBytes(bytes);
+                heapSizes[i] += bytes.length;
+                columnFiles[i].appendLong(heapSizes[i]);
+            }
+        }
+        return new RecordPointer(rowCount++, ROW_LENGTH);
+    }
+
+    @Override
+    public synchronized RecordPointer appendTombstone(final long primaryKey) throws IOException {
+        tombstoneFile.appendLong(rowCount);
+        addTombstoneRow(rowCount);
+        for (int i = 0; i < columnFiles.length; i++) {
+            if (heapFiles[i] == null) {
+                columnFiles[i].appendLong(i == primaryKeyOrdinal ? primaryKey : 0);
+            } else {
+                columnFiles[i].appendLong(heapSizes[i]);
+            }
+        }
+        return new RecordPointer(rowCount++, ROW_LENGTH);
+    }
+
+    private void addTombstoneRow(final long row) {
+        long[] rows = tombstoneRows;
+        if (tombstoneCount == rows.length) {
+            rows = Arrays.copyOf(rows, rows.length * 2);
+        }
+        rows[tombstoneCount] = row;
+        // array is published before the count, so readers of the count see the row
+        tombstoneRows = rows;
+        tombstoneCount++;
+    }
+
+    @Override
+    public synchronized void flush() throws IOException {
+        tombstoneFile.flush();
+        for (int i = 0; i < columnFiles.length; i++) {
+            // values are written before end offsets referencing them
+            if (heapFiles[i] != null) {
+                heapFiles[i].flush();
+            }
+            columnFiles[i].flush();
+        }
+        flushedRowCount = rowCount;
+    }
+
+    @Override
+    public synchronized void force() throws IOException {
+        flush();
+        tombstoneFile.channel.force(false);
+        for (int i = 0; i < columnFiles.length; i++) {
+            if (heapFiles[i] != null) {
+                heapFiles[i].channel.force(false);
+            }
+            columnFiles[i].channel.force(false);
+        }
+    }
+
+    @Override
+    public Object[] read(final RecordPointer recordPointer) throws IOException {
+        final long row = recordPointer.getOffset();
+        final Object[] values = new Object[columns.size()];
+        for (int i = 0; i < values.length; i++) {
+            if (heapFiles[i] == null) {
+                values[i] = columnFiles[i].reader.read(row * Long.BYTES, Long.BYTES).getLong(0);
+            } else {
+                // end offset of the previous row is the start of the value
+                final long firstRow = Math.max(0, row - 1);
+                final ByteBuffer offsets = columnFiles[i].reader.read(firstRow * Long.BYTES,
+                        (int) (row - firstRow + 1) * Long.BYTES);
+                final long start = row == 0 ? 0 : offsets.getLong(0);
+                final int length = (int) (offsets.getLong((int) (row - firstRow) * Long.BYTES) - start);
+                values[i] = decodeString(heapFiles[i].reader.read(start, length), 0, length);
+            }
+        }
+        return values;
+    }
+
+    @Override
+    public synchronized long checkpointPosition() {
+        return rowCount;
+    }
+
+    @Override
+    public long scan(final long fromPosition, final RecordConsumer consumer) throws IOException {
+        final boolean[] allColumns = new boolean[columns.size()];
+        Arrays.fill(allColumns, true);
+        final long[] packedPointer = new long[1];
+        final long endRow = flushedRowCount;
+        final BlockSpliterator spliterator = new BlockSpliterator(fromPosition, endRow, allColumns,
+                (recordPointer, values) -> {
+                    packedPointer[0] = recordPointer;
+                    return true;
+                }, allColumns);
+        spliterator.tombstoneConsumer = primaryKey -> {
+            try {
+                consumer.acceptTombstone(primaryKey);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        };
+        try {
+            spliterator.forEachRemaining(values -> {
+                try {
+                    consumer.accept(RecordPointer.unpack(packedPointer[0]), values);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return Math.max(fromPosition, endRow);
+    }
+
+    /**
+     * Reads only columns requested by the filter or the projection, block by block. Scan is split by blocks.
+     */
+    @Override
+    public Spliterator<Object[]> spliterator(final boolean[] filterColumns, final RecordFilter filter,
+                                             final boolean[] projectedColumns) {
+        return new BlockSpliterator(0, flushedRowCount, filterColumns, filter, projectedColumns);
+    }
+
+    @Override
+    public synchronized void truncate(final long position) throws IOException {
+        flush();
+        if (position >= rowCount) {
+            return;
+        }
+        for (int i = 0; i < columnFiles.length; i++) {
+            if (heapFiles[i] != null) {
+                heapSizes[i] = position == 0 ? 0 : columnFiles[i].readLong((position - 1) * Long.BYTES);
+                heapFiles[i].truncate(heapSizes[i]);
+            }
+            columnFiles[i].truncate(position * Long.BYTES);
+        }
+        while (tombstoneCount > 0 && tombstoneRows[tombstoneCount - 1] >= position) {
+            tombstoneCount--;
+        }
+        tombstoneFile.truncate((long) tombstoneCount * Long.BYTES);
+        rowCount = position;
+        flushedRowCount = position;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        flush();
+        for (int i = 0; i < columnFiles.length; i++) {
+            columnFiles[i].close();
+            if (heapFiles[i] != null) {
+                heapFiles[i].close();
+            }
+        }
+        tombstoneFile.close();
+    }
+
+    private static String decodeString(final ByteBuffer buffer, final int offset, final int length) {
+        if (buffer.hasArray()) {
+            return new String(buffer.array(), buffer.arrayOffset() + offset, length, StandardCharsets.UTF_8);
+        }
+        final byte[] bytes = new byte[length];
+        buffer.get(offset, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static Path getColumnPath(final Path dataPath, final int ordinal) {
+        return dataPath.resolveSibling(dataPath.getFileName() + "." + ordinal);
+    }
+
+    private static Path getTombstonesPath(final Path dataPath) {
+        return dataPath.resolveSibling(dataPath.getFileName() + TOMBSTONES_POST_FIX);
+    }
+
+    private static Path getHeapPath(final Path dataPath, final int ordinal) {
+        return dataPath.resolveSibling(dataPath.getFileName() + "." + ordinal + HEAP_POST_FIX);
+    }
+
+    /**
+     * Append-only file of a column with a write buffer. Readers see only flushed bytes.
+     */
+    private static final class ColumnFile {
+        private final Path path;
+        private final FileChannel channel;
+        private DataFileReader reader;
+        private ByteBuffer pending = ByteBuffer.allocate(WRITE_BUFFER_SIZE);
+        private long size;
+
+        private ColumnFile(final Path path) throws IOException {
+            this.path = path;
+            this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            this.size = channel.size();
+        }
+
+        private void openReader(final boolean memoryMapped) throws IOException {
+            reader = DataFileReader.open(path, memoryMapped);
+        }
+
+        private void appendLong(final long value) throws IOException {
+            ensureCapacity(Long.BYTES);
+            pending.putLong(value);
+        }
+
+        private void appendBytes(final byte[] bytes) throws IOException {
+            ensureCapacity(bytes.length);
+            pending.put(bytes);
+        }
+
+        private void ensureCapacity(final int length) throws IOException {
+            if (pending.remaining() < length) {
+                flush();
+                if (pending.capacity() < length) {
+                    pending = ByteBuffer.allocate(length);
+                }
+            }
+        }
+
+        private void flush() throws IOException {
+            pending.flip();
+            while (pending.hasRemaining()) {
+                size += channel.write(pending, size);
+            }
+            pending.clear();
+        }
+
+        private long readLong(final long position) throws IOException {
+            return read(position, Long.BYTES).getLong(0);
+        }
+
+        private ByteBuffer read(final long position, final int length) throws IOException {
+            final ByteBuffer buffer = ByteBuffer.allocate(length);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, position + buffer.position()) < 0) {
+                    throw new EOFException("Position " + position + " is out of bounds of " + path);
+                }
+            }
+            return buffer.flip();
+        }
+
+        private void truncate(final long newSize) throws IOException {
+            channel.truncate(newSize);
+            size = newSize;
+        }
+
+        private void close() throws IOException {
+            channel.close();
+            if (reader != null) {
+                reader.close();
+            }
+        }
+    }
+
+    /**
+     * Scan of rows [nextRow, endRow). Column blocks are read on first use, so a block of a projected column
+     * isn't read when no row of the block matches the filter.
+     */
+    private final class BlockSpliterator implements Spliterator<Object[]> {
+        private final boolean[] filterColumns;
+        private final RecordFilter filter;
+        private final boolean[] projectedColumns;
+        private final boolean[] loaded;
+        private final ByteBuffer[] blocks;
+        private final long[][] endOffsets;
+        private final long[] tombstones;
+        private final int tombstoneEnd;
+        /**
+         * Receives primary keys of tombstones, they are skipped when it is {@code null}.
+         */
+        private LongConsumer tombstoneConsumer;
+        private int nextTombstone;
+        private long nextRow;
+        private long endRow;
+        private long blockStart;
+        private int blockRows;
+        private int row;
+
+        private BlockSpliterator(final long nextRow, final long endRow, final boolean[] filterColumns,
+                                 final RecordFilter filter, final boolean[] projectedColumns) {
+            this.nextRow = nextRow;
+            this.endRow = endRow;
+            this.filterColumns = filterColumns;
+            this.filter = filter;
+            this.projectedColumns = projectedColumns;
+            this.loaded = new boolean[columns.size()];
+            this.blocks = new ByteBuffer[columns.size()];
+            this.endOffsets = new long[columns.size()][];
+            // count is read before the array, so the array has all tombstones before the end row
+            this.tombstoneEnd = tombstoneCount;
+            this.tombstones = tombstoneRows;
+            final int firstTombstone = Arrays.binarySearch(tombstones, 0, tombstoneEnd, nextRow);
+            this.nextTombstone = firstTombstone >= 0 ? firstTombstone : -firstTombstone - 1;
+        }
+
+        @Override
+        public boolean tryAdvance(final Consumer<? super Object[]> action) {
+            try {
+                while (true) {
+                    if (row == blockRows && !nextBlock()) {
+                        return false;
+                    }
+                    final int current = row++;
+                    if (isTombstone(blockStart + current)) {
+                        if (tombstoneConsumer != null) {
+                            final Object[] values = new Object[columns.size()];
+                            decode(primaryKeyColumn, current, values);
+                            tombstoneConsumer.accept((Long) values[primaryKeyOrdinal]);
+                        }
+                        continue;
+                    }
+                    final Object[] values = new Object[columns.size()];
+                    decode(filterColumns, current, values);
+                    if (filter.test(RecordPointer.pack(blockStart + current, ROW_LENGTH), values)) {
+                        decode(projectedColumns, current, values);
+                        action.accept(values);
+                        return true;
+                    }
+                }
+            } catch (IOException e) {
+                throw new DatabaseReadException("Unable to read rows of block " + blockStart, e);
+            }
+        }
+
+        /**
+         * Rows are visited in ascending order, so tombstones are found by moving a cursor.
+         */
+        private boolean isTombstone(final long current) {
+            while (nextTombstone < tombstoneEnd && tombstones[nextTombstone] < current) {
+                nextTombstone++;
+            }
+            return nextTombstone < tombstoneEnd && tombstones[nextTombstone] == current;
+        }
+
+        private boolean nextBlock() {
+            if (nextRow >= endRow) {
+                return false;
+            }
+            blockStart = nextRow;
+            blockRows = (int) Math.min(SCAN_BLOCK_ROWS, endRow - nextRow);
+            nextRow += blockRows;
+            row = 0;
+            Arrays.fill(loaded, false);
+            return true;
+        }
+
+        private void decode(final boolean[] decodedColumns, final int current, final Object[] values)
+                throws IOException {
+            for (int i = 0; i < values.length; i++) {
+                if (decodedColumns[i] && values[i] == null) {
+                    if (!loaded[i]) {
+                        load(i);
+                    }
+                    if (heapFiles[i] == null) {
+                        values[i] = blocks[i].getLong(current * Long.BYTES);
+                    } else {
+                        final long[] offsets = endOffsets[i];
+                        values[i] = decodeString(blocks[i], (int) (offsets[current] - offsets[0]),
+                                (int) (offsets[current + 1] - offsets[current]));
+                    }
+                }
+            }
+        }
+
+        private void load(final int ordinal) throws IOException {
+            final ColumnFile columnFile = columnFiles[ordinal];
+            if (heapFiles[ordinal] == null) {
+                blocks[ordinal] = columnFile.reader.read(blockStart * Long.BYTES, blockRows * Long.BYTES);
+            } else {
+                // end offset of the previous row is the start of the first value of the block
+                final long[] offsets = new long[blockRows + 1];
+                final long firstRow = blockStart == 0 ? 0 : blockStart - 1;
+                final int shift = blockStart == 0 ? 1 : 0;
+                final ByteBuffer buffer = columnFile.reader.read(firstRow * Long.BYTES,
+                        (blockRows + 1 - shift) * Long.BYTES);
+                for (int i = shift; i < offsets.length; i++) {
+                    offsets[i] = buffer.getLong((i - shift) * Long.BYTES);
+                }
+                endOffsets[ordinal] = offsets;
+                blocks[ordinal] = heapFiles[ordinal].reader.read(offsets[0], (int) (offsets[blockRows] - offsets[0]));
+            }
+            loaded[ordinal] = true;
+        }
+
+        @Override
+        public Spliterator<Object[]> trySplit() {
+            final long remainingRows = endRow - nextRow;
+            if (remainingRows < MIN_SPLIT_ROWS) {
+                return null;
+            }
+            final long middleRow = nextRow + remainingRows / 2 / SCAN_BLOCK_ROWS * SCAN_BLOCK_ROWS;
+            final BlockSpliterator suffix = new BlockSpliterator(middleRow, endRow, filterColumns, filter,
+                    projectedColumns);
+            endRow = middleRow;
+            return suffix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return endRow - nextRow + blockRows - row;
+        }
+
+        @Override
+        public int characteristics() {
+            return NONNULL;
+        }
+    }
+}
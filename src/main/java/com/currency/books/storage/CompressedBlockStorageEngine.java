@@ -0,0 +1,615 @@
+package com.currency.books.storage;
+
+import com.currency.books.exception.DatabaseReadException;
+import com.currency.books.model.Column;
+import com.currency.books.model.ColumnType;
+import com.currency.books.model.CompressionStatistics;
+import com.currency.books.model.RecordPointer;
+import com.currency.books.model.TableOptions;
+import com.currency.books.utils.DataFileReader;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+import java.util.zip.CRC32C;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Groups records into blocks of about {@link #BLOCK_SIZE} bytes compressed with {@link Deflater}.
+ * <p>
+ * Block layout: header with compressed length, uncompressed length and checksum of the compressed bytes,
+ * then compressed records. Record starts with a flag byte followed by values encoded like in
+ * {@link BinaryPageStorageEngine}, tombstone has the flag set and the 8-byte primary key after it.
+ * <p>
+ * Record pointer is the block start in the file and the record offset inside the uncompressed block, so
+ * a lookup decompresses a single block. Positions are packed pointers. Starts of the blocks are kept in
+ * memory and are found by walking block headers when the file is opened.
+ * <p>
+ * The last block is compressed again and rewritten in place on every flush until it is full, meanwhile
+ * it is served from memory. Its version as of the last {@link #force()} is kept in {@link TailDoubleWrite},
+ * so a torn rewrite doesn't lose records the write-ahead log no longer holds. Blocks after it hold only records
+ * appended after the checkpoint, the first damaged one ends the file.
+ */
+public class CompressedBlockStorageEngine implements PositionalStorageEngine {
+    public static final int BLOCK_SIZE = 64 * 1024;
+    static final int BLOCK_HEADER_SIZE = 12;
+    private static final int COMPRESSED_LENGTH_OFFSET = 0;
+    private static final int UNCOMPRESSED_LENGTH_OFFSET = 4;
+    private static final int CHECKSUM_OFFSET = 8;
+    private static final int SCAN_CHUNK_SIZE = 1024 * 1024;
+    private static final int MIN_SPLIT_BLOCKS = 8;
+    private static final long IN_BLOCK_OFFSET_MASK = (1L << 24) - 1;
+    private static final byte RECORD = 0;
+    private static final byte TOMBSTONE = 1;
+    private static final ThreadLocal<Inflater> INFLATERS = ThreadLocal.withInitial(Inflater::new);
+
+    private final List<Column> columns;
+    private final FileChannel channel;
+    private final TailDoubleWrite tailDoubleWrite;
+    private final DataFileReader dataReader;
+    private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    private final LongAdder decompressedBlocks = new LongAdder();
+    private final LongAdder decompressionNanos = new LongAdder();
+    /**
+     * Starts and uncompressed lengths of the blocks before the current one.
+     */
+    private long[] blockStarts = new long[16];
+    private int[] blockLengths = new int[16];
+    private int blockCount;
+    private long uncompressedBytes;
+    private long currentBlockStart;
+    private ByteBuffer currentBlock = ByteBuffer.allocate(2 * BLOCK_SIZE);
+    private boolean currentBlockDirty;
+    private byte[] compressed = new byte[2 * BLOCK_SIZE];
+    private long fileSize;
+
+    public CompressedBlockStorageEngine(final Path dataPath, final List<Column> columns,
+                                        final TableOptions tableOptions) throws IOException {
+        this.columns = columns;
+        this.channel = FileChannel.open(dataPath, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        this.tailDoubleWrite = new TailDoubleWrite(dataPath);
+        this.fileSize = channel.size();
+        final ByteBuffer header = ByteBuffer.allocate(BLOCK_HEADER_SIZE);
+        final TailDoubleWrite.Tail tail = tailDoubleWrite.load();
+        long position = 0;
+        // blocks before the checkpointed one are never rewritten
+        while (tail != null && position < tail.start()) {
+            readFully(header.clear(), position);
+            final int compressedLength = header.getInt(COMPRESSED_LENGTH_OFFSET);
+            if (compressedLength <= 0 || position + BLOCK_HEADER_SIZE + compressedLength > tail.start()) {
+                throw new DatabaseReadException("Block at " + position + " before the checkpointed block is damaged");
+            }
+            addBlock(position, header.getInt(UNCOMPRESSED_LENGTH_OFFSET));
+            position += BLOCK_HEADER_SIZE + compressedLength;
+        }
+        if (tail != null && tail.content().hasRemaining() && readValidBlock(position) == null) {
+            // rewrite of the block was torn by a crash, records indexed at the checkpoint are restored
+            final ByteBuffer tailBlock = tail.content().duplicate();
+            while (tailBlock.hasRemaining()) {
+                channel.write(tailBlock, position + tailBlock.position());
+            }
+            channel.truncate(position + tailBlock.limit());
+            channel.force(false);
+            fileSize = position + tailBlock.limit();
+        }
+        // blocks after the checkpointed one are covered by the write-ahead log
+        ByteBuffer lastBlock = null;
+        long lastBlockStart = position;
+        ByteBuffer block;
+        while ((block = readValidBlock(position)) != null) {
+            lastBlock = block;
+            lastBlockStart = position;
+            addBlock(position, block.getInt(UNCOMPRESSED_LENGTH_OFFSET));
+            position += block.limit();
+        }
+        currentBlockStart = position;
+        if (lastBlock != null && blockLengths[blockCount - 1] < BLOCK_SIZE) {
+            // continue filling the last block
+            blockCount--;
+            uncompressedBytes -= blockLengths[blockCount];
+            currentBlockStart = lastBlockStart;
+            currentBlock.put(decompress(lastBlock, lastBlockStart));
+        }
+        channel.truncate(position);
+        fileSize = position;
+        // reader is opened after truncation, so memory mapping never covers removed part of the file
+        this.dataReader = DataFileReader.open(dataPath, tableOptions.isMemoryMapped());
+    }
+
+    @Override
+    public List<Column> getColumns() {
+        return columns;
+    }
+
+    @Override
+    public synchronized RecordPointer append(final Object[] values) throws IOException {
+        return appendRecord(RECORD, values, 0);
+    }
+
+    @Override
+    public synchronized RecordPointer appendTombstone(final long primaryKey) throws IOException {
+        return appendRecord(TOMBSTONE, null, primaryKey);
+    }
+
+    private RecordPointer appendRecord(final byte flag, final Object[] values, final long primaryKey)
+            throws IOException {
+        if (currentBlock.position() >= BLOCK_SIZE) {
+            writeCurrentBlock();
+            addBlock(currentBlockStart, currentBlock.position());
+            currentBlockStart = fileSize;
+            currentBlock.clear();
+        }
+        final int recordOffset = currentBlock.position();
+        while (true) {
+            try {
+                currentBlock.put(flag);
+                if (flag == TOMBSTONE) {
+                    currentBlock.putLong(primaryKey);
+                }
+                for (int i = 0; values != null && i < values.length; i++) {
+                    columns.get(i).getColumnType().write(values[i], currentBlock);
+                }
+                break;
+            } catch (BufferOverflowException e) {
+                // record bigger than the block stays in a single block
+                final ByteBuffer grown = ByteBuffer.allocate(currentBlock.capacity() * 2);
+                currentBlock = grown.put(currentBlock.flip().limit(recordOffset));
+            }
+        }
+        currentBlockDirty = true;
+        return new RecordPointer(currentBlockStart, recordOffset);
+    }
+
+    @Override
+    public synchronized void flush() throws IOException {
+        if (currentBlockDirty) {
+            writeCurrentBlock();
+            currentBlockDirty = false;
+        }
+    }
+
+    @Override
+    public synchronized void force() throws IOException {
+        flush();
+        channel.force(false);
+        tailDoubleWrite.save(currentBlockStart, readBlock(currentBlockStart, (int) (fileSize - currentBlockStart)));
+    }
+
+    @Override
+    public Object[] read(final RecordPointer recordPointer) throws IOException {
+        final ByteBuffer block = getBlock(recordPointer.getOffset());
+        block.position(recordPointer.getLength() + 1);
+        return decode(block);
+    }
+
+    /**
+     * Records are grouped by block, every block is decompressed once.
+     */
+    @Override
+    public Object[][] read(final List<RecordPointer> recordPointers) throws IOException {
+        final Object[][] records = new Object[recordPointers.size()][];
+        final Map<Long, List<Integer>> recordNumbersByBlock = new TreeMap<>();
+        for (int i = 0; i < records.length; i++) {
+            recordNumbersByBlock.computeIfAbsent(recordPointers.get(i).getOffset(), blockStart -> new ArrayList<>())
+                    .add(i);
+        }
+        for (final Map.Entry<Long, List<Integer>> entry : recordNumbersByBlock.entrySet()) {
+            final ByteBuffer block = getBlock(entry.getKey());
+            for (final int recordNumber : entry.getValue()) {
+                block.position(recordPointers.get(recordNumber).getLength() + 1);
+                records[recordNumber] = decode(block);
+            }
+        }
+        return records;
+    }
+
+    @Override
+    public synchronized long checkpointPosition() {
+        return RecordPointer.pack(currentBlockStart, currentBlock.position());
+    }
+
+    @Override
+    public long scan(final long fromPosition, final RecordConsumer consumer) throws IOException {
+        final boolean[] allColumns = new boolean[columns.size()];
+        Arrays.fill(allColumns, true);
+        final long[] packedPointer = new long[1];
+        final BlockSpliterator spliterator = newSpliterator(allColumns, (recordPointer, values) -> {
+            packedPointer[0] = recordPointer;
+            return true;
+        }, allColumns);
+        spliterator.skipTo(fromPosition);
+        spliterator.tombstoneConsumer = primaryKey -> {
+            try {
+                consumer.acceptTombstone(primaryKey);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        };
+        try {
+            spliterator.forEachRemaining(values -> {
+                try {
+                    consumer.accept(RecordPointer.unpack(packedPointer[0]), values);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return Math.max(fromPosition, RecordPointer.pack(spliterator.lastBlockStart, spliterator.lastBlock.limit()));
+    }
+
+    /**
+     * Blocks before the current one are read in chunks, current block is copied when the scan starts.
+     * Scan is split by blocks.
+     */
+    @Override
+    public Spliterator<Object[]> spliterator(final boolean[] filterColumns, final RecordFilter filter,
+                                             final boolean[] projectedColumns) {
+        return newSpliterator(filterColumns, filter, projectedColumns);
+    }
+
+    private synchronized BlockSpliterator newSpliterator(final boolean[] filterColumns, final RecordFilter filter,
+                                                         final boolean[] projectedColumns) {
+        return new BlockSpliterator(Arrays.copyOf(blockStarts, blockCount), 0, blockCount, currentBlockStart,
+                copyCurrentBlock(currentBlockStart), filterColumns, filter, projectedColumns);
+    }
+
+    /**
+     * Drops records starting from the position, block of the position becomes the current one.
+     */
+    @Override
+    public synchronized void truncate(final long position) throws IOException {
+        final long blockStart = position >>> 24;
+        final int recordOffset = (int) (position & IN_BLOCK_OFFSET_MASK);
+        if (blockStart > currentBlockStart || blockStart == currentBlockStart && recordOffset >= currentBlock.position()) {
+            return;
+        }
+        if (blockStart != currentBlockStart) {
+            final int blockNumber = Arrays.binarySearch(blockStarts, 0, blockCount, blockStart);
+            final ByteBuffer block = getBlock(blockStart);
+            currentBlock.clear();
+            currentBlock.put(block.limit(recordOffset));
+            for (int i = blockNumber; i < blockCount; i++) {
+                uncompressedBytes -= blockLengths[i];
+            }
+            blockCount = blockNumber;
+            currentBlockStart = blockStart;
+        } else {
+            currentBlock.position(recordOffset);
+        }
+        channel.truncate(blockStart);
+        fileSize = blockStart;
+        currentBlockDirty = false;
+        if (recordOffset > 0) {
+            writeCurrentBlock();
+        }
+    }
+
+    public CompressionStatistics getCompressionStatistics() {
+        synchronized (this) {
+            return new CompressionStatistics(uncompressedBytes + currentBlock.position(), fileSize,
+                    decompressedBlocks.sum(), decompressionNanos.sum());
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+        channel.close();
+        dataReader.close();
+        deflater.end();
+    }
+
+    private void addBlock(final long blockStart, final int uncompressedLength) {
+        if (blockCount == blockStarts.length) {
+            blockStarts = Arrays.copyOf(blockStarts, blockCount * 2);
+            blockLengths = Arrays.copyOf(blockLengths, blockCount * 2);
+        }
+        blockStarts[blockCount] = blockStart;
+        blockLengths[blockCount] = uncompressedLength;
+        blockCount++;
+        uncompressedBytes += uncompressedLength;
+    }
+
+    /**
+     * Compresses current block and writes it at its start, previous version of the block is overwritten.
+     */
+    private void writeCurrentBlock() throws IOException {
+        deflater.reset();
+        deflater.setInput(currentBlock.array(), 0, currentBlock.position());
+        deflater.finish();
+        int compressedLength = BLOCK_HEADER_SIZE;
+        while (!deflater.finished()) {
+            if (compressedLength == compressed.length) {
+                compressed = Arrays.copyOf(compressed, compressed.length * 2);
+            }
+            compressedLength += deflater.deflate(compressed, compressedLength, compressed.length - compressedLength);
+        }
+        final ByteBuffer block = ByteBuffer.wrap(compressed, 0, compressedLength);
+        block.putInt(COMPRESSED_LENGTH_OFFSET, compressedLength - BLOCK_HEADER_SIZE);
+        block.putInt(UNCOMPRESSED_LENGTH_OFFSET, currentBlock.position());
+        block.putInt(CHECKSUM_OFFSET, checksum(block, compressedLength - BLOCK_HEADER_SIZE));
+        while (block.hasRemaining()) {
+            channel.write(block, currentBlockStart + block.position());
+        }
+        final long blockEnd = currentBlockStart + compressedLength;
+        if (blockEnd < fileSize) {
+            // tail of the previous version of the block
+            channel.truncate(blockEnd);
+        }
+        fileSize = blockEnd;
+    }
+
+    private static int checksum(final ByteBuffer block, final int compressedLength) {
+        final CRC32C crc = new CRC32C();
+        crc.update(block.slice(BLOCK_HEADER_SIZE, compressedLength));
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Returns uncompressed block, current block is copied from memory.
+     */
+    private ByteBuffer getBlock(final long blockStart) throws IOException {
+        final ByteBuffer block = copyCurrentBlock(blockStart);
+        if (block != null) {
+            return block;
+        }
+        final int compressedLength = dataReader.read(blockStart, BLOCK_HEADER_SIZE).getInt(COMPRESSED_LENGTH_OFFSET);
+        return decompress(dataReader.read(blockStart, BLOCK_HEADER_SIZE + compressedLength), blockStart);
+    }
+
+    private synchronized ByteBuffer copyCurrentBlock(final long blockStart) {
+        if (blockStart != currentBlockStart) {
+            return null;
+        }
+        return ByteBuffer.wrap(Arrays.copyOf(currentBlock.array(), currentBlock.position()));
+    }
+
+    /**
+     * Returns compressed block at the position if it is complete and its checksum matches, otherwise
+     * {@code null}.
+     */
+    private ByteBuffer readValidBlock(final long position) throws IOException {
+        if (position + BLOCK_HEADER_SIZE > fileSize) {
+            return null;
+        }
+        final int compressedLength = readBlock(position, BLOCK_HEADER_SIZE).getInt(COMPRESSED_LENGTH_OFFSET);
+        if (compressedLength <= 0 || position + BLOCK_HEADER_SIZE + compressedLength > fileSize) {
+            return null;
+        }
+        final ByteBuffer block = readBlock(position, BLOCK_HEADER_SIZE + compressedLength);
+        return block.getInt(CHECKSUM_OFFSET) == checksum(block, compressedLength) ? block : null;
+    }
+
+    private ByteBuffer readBlock(final long blockStart, final int length) throws IOException {
+        final ByteBuffer block = ByteBuffer.allocate(length);
+        readFully(block, blockStart);
+        return block.clear();
+    }
+
+    /**
+     * Verifies and decompresses block which starts at the buffer position.
+     */
+    private ByteBuffer decompress(final ByteBuffer block, final long blockStart) {
+        final int start = block.position();
+        final int compressedLength = block.getInt(start + COMPRESSED_LENGTH_OFFSET);
+        final ByteBuffer compressedBlock = block.slice(start, BLOCK_HEADER_SIZE + compressedLength);
+        if (compressedBlock.getInt(CHECKSUM_OFFSET) != checksum(compressedBlock, compressedLength)) {
+            throw new DatabaseReadException("Checksum mismatch for block at " + blockStart);
+        }
+        final long startedAt = System.nanoTime();
+        final byte[] uncompressed = new byte[compressedBlock.getInt(UNCOMPRESSED_LENGTH_OFFSET)];
+        final Inflater inflater = INFLATERS.get();
+        inflater.reset();
+        inflater.setInput(compressedBlock.slice(BLOCK_HEADER_SIZE, compressedLength));
+        try {
+            int length = 0;
+            while (length < uncompressed.length && !inflater.finished()) {
+                length += inflater.inflate(uncompressed, length, uncompressed.length - length);
+            }
+        } catch (DataFormatException e) {
+            throw new DatabaseReadException("Unable to decompress block at " + blockStart, e);
+        }
+        decompressionNanos.add(System.nanoTime() - startedAt);
+        decompressedBlocks.increment();
+        return ByteBuffer.wrap(uncompressed);
+    }
+
+    private Object[] decode(final ByteBuffer buffer) {
+        final Object[] values = new Object[columns.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = columns.get(i).getColumnType().read(buffer);
+        }
+        return values;
+    }
+
+    /**
+     * Decodes requested columns which aren't decoded yet and leaves buffer at the end of the record.
+     */
+    private void decode(final ByteBuffer block, final int recordOffset, final boolean[] decodedColumns,
+                        final Object[] values) {
+        block.position(recordOffset);
+        for (int i = 0; i < values.length; i++) {
+            final ColumnType columnType = columns.get(i).getColumnType();
+            if (decodedColumns[i] && values[i] == null) {
+                values[i] = columnType.read(block);
+            } else {
+                columnType.skip(block);
+            }
+        }
+    }
+
+    private void readFully(final ByteBuffer target, final long position) throws IOException {
+        while (target.hasRemaining()) {
+            if (channel.read(target, position + target.position()) < 0) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Scan of blocks [nextBlockNumber, endBlockNumber) of the copied block index, the block after the index
+     * is served from its copy when the range reaches the end of the index.
+     */
+    private final class BlockSpliterator implements Spliterator<Object[]> {
+        private final long[] starts;
+        private final long lastBlockStart;
+        private final ByteBuffer lastBlock;
+        private final boolean[] filterColumns;
+        private final RecordFilter filter;
+        private final boolean[] projectedColumns;
+        private int nextBlockNumber;
+        private int endBlockNumber;
+        private boolean includesLastBlock;
+        private ByteBuffer chunk;
+        private long chunkStart;
+        private int chunkBlockNumber;
+        private int chunkEndBlockNumber;
+        private ByteBuffer block;
+        private long blockStart;
+        private int firstRecordOffset;
+        /**
+         * Receives primary keys of tombstones, they are skipped when it is {@code null}.
+         */
+        private LongConsumer tombstoneConsumer;
+
+        private BlockSpliterator(final long[] starts, final int nextBlockNumber, final int endBlockNumber,
+                                 final long lastBlockStart, final ByteBuffer lastBlock, final boolean[] filterColumns,
+                                 final RecordFilter filter, final boolean[] projectedColumns) {
+            this.starts = starts;
+            this.nextBlockNumber = nextBlockNumber;
+            this.endBlockNumber = endBlockNumber;
+            this.includesLastBlock = endBlockNumber == starts.length;
+            this.lastBlockStart = lastBlockStart;
+            this.lastBlock = lastBlock;
+            this.filterColumns = filterColumns;
+            this.filter = filter;
+            this.projectedColumns = projectedColumns;
+        }
+
+        /**
+         * Moves scan to the position, which is a record boundary.
+         */
+        private void skipTo(final long position) {
+            final long positionBlockStart = position >>> 24;
+            while (nextBlockNumber < endBlockNumber && starts[nextBlockNumber] < positionBlockStart) {
+                nextBlockNumber++;
+            }
+            if (nextBlockNumber == endBlockNumber && positionBlockStart > lastBlockStart) {
+                includesLastBlock = false;
+            }
+            firstRecordOffset = (int) (position & IN_BLOCK_OFFSET_MASK);
+        }
+
+        @Override
+        public boolean tryAdvance(final Consumer<? super Object[]> action) {
+            while (true) {
+                while (block != null && block.hasRemaining()) {
+                    final int recordOffset = block.position();
+                    if (block.get() == TOMBSTONE) {
+                        final long primaryKey = block.getLong();
+                        if (tombstoneConsumer != null) {
+                            tombstoneConsumer.accept(primaryKey);
+                        }
+                        continue;
+                    }
+                    final Object[] values = new Object[columns.size()];
+                    decode(block, recordOffset + 1, filterColumns, values);
+                    final int recordEnd = block.position();
+                    if (filter.test(RecordPointer.pack(blockStart, recordOffset), values)) {
+                        decode(block, recordOffset + 1, projectedColumns, values);
+                        block.position(recordEnd);
+                        action.accept(values);
+                        return true;
+                    }
+                }
+                if (!nextBlock()) {
+                    return false;
+                }
+            }
+        }
+
+        private boolean nextBlock() {
+            if (nextBlockNumber < endBlockNumber) {
+                if (chunk == null || nextBlockNumber >= chunkEndBlockNumber) {
+                    readChunk();
+                }
+                blockStart = starts[nextBlockNumber];
+                block = decompress(chunk.position((int) (blockStart - chunkStart)), blockStart);
+                nextBlockNumber++;
+            } else if (includesLastBlock) {
+                blockStart = lastBlockStart;
+                block = lastBlock.duplicate();
+                includesLastBlock = false;
+            } else {
+                return false;
+            }
+            // records before the start position of a scan are skipped
+            if (firstRecordOffset > 0) {
+                block.position(Math.min(firstRecordOffset, block.limit()));
+                firstRecordOffset = 0;
+            }
+            return true;
+        }
+
+        /**
+         * Reads consecutive blocks of about {@link #SCAN_CHUNK_SIZE} bytes by a single read.
+         */
+        private void readChunk() {
+            chunkBlockNumber = nextBlockNumber;
+            chunkStart = starts[nextBlockNumber];
+            chunkEndBlockNumber = nextBlockNumber + 1;
+            while (chunkEndBlockNumber < endBlockNumber && starts[chunkEndBlockNumber] - chunkStart < SCAN_CHUNK_SIZE) {
+                chunkEndBlockNumber++;
+            }
+            final long chunkEnd = chunkEndBlockNumber < starts.length ? starts[chunkEndBlockNumber] : lastBlockStart;
+            try {
+                chunk = dataReader.read(chunkStart, (int) (chunkEnd - chunkStart));
+            } catch (IOException e) {
+                throw new DatabaseReadException("Unable to read block at " + chunkStart, e);
+            }
+        }
+
+        @Override
+        public Spliterator<Object[]> trySplit() {
+            final int remainingBlocks = endBlockNumber - nextBlockNumber;
+            if (remainingBlocks < 2 * MIN_SPLIT_BLOCKS) {
+                return null;
+            }
+            final int middleBlockNumber = nextBlockNumber + remainingBlocks / 2;
+            final BlockSpliterator suffix = new BlockSpliterator(starts, middleBlockNumber, endBlockNumber,
+                    lastBlockStart, lastBlock, filterColumns, filter, projectedColumns);
+            suffix.includesLastBlock = includesLastBlock;
+            endBlockNumber = middleBlockNumber;
+            includesLastBlock = false;
+            return suffix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return endBlockNumber - nextBlockNumber + (includesLastBlock ? 1 : 0);
+        }
+
+        @Override
+        public int characteristics() {
+            return NONNULL;
+        }
+    }
+}
@@ -0,0 +1,372 @@
+package com.currency.books.storage;
+
+import com.currency.books.exception.DatabaseReadException;
+import com.currency.books.model.Column;
+import com.currency.books.model.RecordPointer;
+import com.currency.books.model.TableOptions;
+import com.currency.books.utils.DataFileReader;
+import com.currency.books.utils.MultiThreadCsvPrinter;
+import com.opencsv.CSVParser;
+import com.opencsv.CSVWriter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * Stores every record as a CSV line, values are converted with {@link String#valueOf(Object)}. Tombstone is
+ * a line with one value more than the columns: the primary key followed by empty values.
+ */
+public class CsvStorageEngine implements PositionalStorageEngine {
+    // CSVWriter escapes quotes by doubling them, so backslash must not be treated as escape character
+    private static final CSVParser LINE_PARSER = new CSVParser(CSVParser.DEFAULT_SEPARATOR,
+            CSVParser.DEFAULT_QUOTE_CHARACTER, CSVParser.NULL_CHARACTER);
+
+    private static final int SCAN_BUFFER_SIZE = 1024 * 1024;
+    private static final int MIN_SPLIT_SIZE = 2 * SCAN_BUFFER_SIZE;
+    private static final byte HOLE = 0;
+    private static final byte QUOTE = (byte) CSVWriter.DEFAULT_QUOTE_CHARACTER;
+    private static final byte LINE_END = (byte) '\n';
+
+    private final Path dataPath;
+    private final List<Column> columns;
+    private final DataFileReader dataReader;
+    private volatile MultiThreadCsvPrinter dataWriter;
+
+    public CsvStorageEngine(final Path dataPath, final List<Column> columns,
+                            final TableOptions tableOptions) throws IOException {
+        this.dataPath = dataPath;
+        this.columns = columns;
+        this.dataWriter = new MultiThreadCsvPrinter(dataPath, Files.exists(dataPath) ? Files.size(dataPath) : 0);
+        this.dataReader = DataFileReader.open(dataPath, tableOptions.isMemoryMapped());
+    }
+
+    @Override
+    public List<Column> getColumns() {
+        return columns;
+    }
+
+    @Override
+    public RecordPointer append(final Object[] values) throws IOException {
+        return dataWriter.writeLine(toLine(values));
+    }
+
+    @Override
+    public RecordPointer[] append(final List<Object[]> batch) throws IOException {
+        final List<String[]> lines = new ArrayList<>(batch.size());
+        for (final Object[] values : batch) {
+            lines.add(toLine(values));
+        }
+        return dataWriter.writeLines(lines);
+    }
+
+    @Override
+    public RecordPointer appendTombstone(final long primaryKey) throws IOException {
+        final String[] line = new String[columns.size() + 1];
+        Arrays.fill(line, "");
+        line[0] = String.valueOf(primaryKey);
+        return dataWriter.writeLine(line);
+    }
+
+    private boolean isTombstone(final String[] parsedLine) {
+        return parsedLine.length > columns.size();
+    }
+
+    private static String[] toLine(final Object[] values) {
+        final String[] line = new String[values.length];
+        for (int i = 0; i < values.length; i++) {
+            line[i] = String.valueOf(values[i]);
+        }
+        return line;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        dataWriter.flush();
+    }
+
+    @Override
+    public void force() throws IOException {
+        dataWriter.force();
+    }
+
+    @Override
+    public Object[] read(final RecordPointer recordPointer) throws IOException {
+        return parse(dataReader.read(recordPointer));
+    }
+
+    @Override
+    public Object[][] read(final List<RecordPointer> recordPointers) throws IOException {
+        final Object[][] records = new Object[recordPointers.size()][];
+        final long[] starts = new long[records.length];
+        final long[] ends = new long[records.length];
+        for (int i = 0; i < records.length; i++) {
+            starts[i] = recordPointers.get(i).getOffset();
+            ends[i] = starts[i] + recordPointers.get(i).getLength();
+        }
+        ReadCoalescer.readGroups(starts, ends, ReadCoalescer.MAX_GAP, (start, length, recordNumbers) -> {
+            final ByteBuffer range = dataReader.read(start, length);
+            for (final int recordNumber : recordNumbers) {
+                final RecordPointer recordPointer = recordPointers.get(recordNumber);
+                records[recordNumber] = parse(range.slice((int) (recordPointer.getOffset() - start),
+                        recordPointer.getLength()));
+            }
+        });
+        return records;
+    }
+
+    @Override
+    public long checkpointPosition() {
+        return dataWriter.getPosition();
+    }
+
+    /**
+     * Splits file into lines by line ends outside of quotes. CSVWriter quotes every value and doubles quotes
+     * inside values, so quote parity tells whether line end belongs to a value.
+     * <p>
+     * Concurrent writers fill reserved space in any order, so after a crash the file may have a hole of zeros
+     * in front of records written by later writers. Line which doesn't start with a quote is such a hole,
+     * scan stops there.
+     */
+    @Override
+    public long scan(final long fromPosition, final RecordConsumer consumer) throws IOException {
+        try (final FileChannel channel = FileChannel.open(dataPath, StandardOpenOption.READ)) {
+            final ByteBuffer chunk = ByteBuffer.allocate(SCAN_BUFFER_SIZE);
+            ByteBuffer record = ByteBuffer.allocate(SCAN_BUFFER_SIZE);
+            long recordStart = fromPosition;
+            long position = fromPosition;
+            boolean inQuotes = false;
+            while (channel.read(chunk.clear(), position) > 0) {
+                chunk.flip();
+                position += chunk.remaining();
+                while (chunk.hasRemaining()) {
+                    final byte current = chunk.get();
+                    if (!record.hasRemaining()) {
+                        record = ByteBuffer.allocate(record.capacity() * 2).put(record.flip());
+                    }
+                    if (record.position() == 0 && current != QUOTE) {
+                        return recordStart;
+                    }
+                    record.put(current);
+                    if (current == QUOTE) {
+                        inQuotes = !inQuotes;
+                    } else if (current == LINE_END && !inQuotes) {
+                        final int length = record.position();
+                        final String[] parsedLine = parseLine(record.flip());
+                        if (isTombstone(parsedLine)) {
+                            consumer.acceptTombstone(Long.parseLong(parsedLine[0]));
+                        } else {
+                            consumer.accept(new RecordPointer(recordStart, length), convert(parsedLine));
+                        }
+                        record.clear();
+                        recordStart += length;
+                    }
+                }
+            }
+            return recordStart;
+        }
+    }
+
+    /**
+     * Reads lines in chunks starting at a record boundary. Every record has even number of quotes, so quote
+     * parity counted from a record boundary tells whether a line end in the middle of the file ends a record,
+     * that's how scan is split. Scan ends at completed writes, so it doesn't reach space which a concurrent
+     * writer reserved but hasn't written yet.
+     */
+    @Override
+    public Spliterator<Object[]> spliterator(final boolean[] filterColumns, final RecordFilter filter,
+                                             final boolean[] projectedColumns) {
+        return new LineSpliterator(0, dataWriter.getCompletedPosition(), filterColumns, filter, projectedColumns);
+    }
+
+    @Override
+    public void truncate(final long position) throws IOException {
+        dataWriter.close();
+        final long size;
+        try (final FileChannel channel = FileChannel.open(dataPath, StandardOpenOption.WRITE)) {
+            size = Math.min(position, channel.size());
+            channel.truncate(size);
+        }
+        dataWriter = new MultiThreadCsvPrinter(dataPath, size);
+    }
+
+    private Object[] parse(final ByteBuffer buffer) throws IOException {
+        return convert(parseLine(buffer));
+    }
+
+    private Object[] convert(final String[] parsedLine) {
+        final Object[] values = new Object[parsedLine.length];
+        for (int i = 0; i < parsedLine.length; i++) {
+            values[i] = columns.get(i).getColumnType().parse(parsedLine[i]);
+        }
+        return values;
+    }
+
+    private static String[] parseLine(final ByteBuffer buffer) throws IOException {
+        // line end is skipped, otherwise parser appends it to the last value
+        final String line = StandardCharsets.UTF_8.decode(
+                buffer.limit(buffer.limit() - CSVWriter.DEFAULT_LINE_END.length())).toString();
+        return LINE_PARSER.parseLine(line);
+    }
+
+    @Override
+    public void close() throws IOException {
+        dataWriter.close();
+        dataReader.close();
+    }
+
+    /**
+     * Scan of records in [position, endPosition), both are record boundaries.
+     */
+    private final class LineSpliterator implements Spliterator<Object[]> {
+        private final boolean[] filterColumns;
+        private final RecordFilter filter;
+        private final boolean[] projectedColumns;
+        private long position;
+        private long endPosition;
+        private ByteBuffer chunk;
+        private long chunkPosition;
+
+        private LineSpliterator(final long position, final long endPosition, final boolean[] filterColumns,
+                                final RecordFilter filter, final boolean[] projectedColumns) {
+            this.position = position;
+            this.endPosition = endPosition;
+            this.filterColumns = filterColumns;
+            this.filter = filter;
+            this.projectedColumns = projectedColumns;
+        }
+
+        @Override
+        public boolean tryAdvance(final Consumer<? super Object[]> action) {
+            try {
+                while (position < endPosition) {
+                    final int length = nextLineLength();
+                    if (length == 0) {
+                        continue;
+                    }
+                    final long recordStart = position;
+                    final ByteBuffer line = chunk.slice((int) (position - chunkPosition), length);
+                    position += length;
+                    final String[] parsedLine = parseLine(line);
+                    if (isTombstone(parsedLine)) {
+                        continue;
+                    }
+                    final Object[] values = new Object[parsedLine.length];
+                    convert(parsedLine, filterColumns, values);
+                    if (filter.test(RecordPointer.pack(recordStart, length), values)) {
+                        convert(parsedLine, projectedColumns, values);
+                        action.accept(values);
+                        return true;
+                    }
+                }
+                return false;
+            } catch (IOException e) {
+                throw new DatabaseReadException("Unable to scan " + dataPath, e);
+            }
+        }
+
+        /**
+         * Returns length of the line at the position, holes are skipped by one byte and 0 is returned for them.
+         */
+        private int nextLineLength() throws IOException {
+            int chunkSize = SCAN_BUFFER_SIZE;
+            while (true) {
+                if (chunk == null || position >= chunkPosition + chunk.limit()) {
+                    chunk = dataReader.read(position, (int) Math.min(chunkSize, endPosition - position));
+                    chunkPosition = position;
+                }
+                final int offset = (int) (position - chunkPosition);
+                if (chunk.get(offset) == HOLE) {
+                    position++;
+                    return 0;
+                }
+                boolean inQuotes = false;
+                for (int i = offset; i < chunk.limit(); i++) {
+                    final byte current = chunk.get(i);
+                    if (current == QUOTE) {
+                        inQuotes = !inQuotes;
+                    } else if (current == LINE_END && !inQuotes) {
+                        return i - offset + 1;
+                    }
+                }
+                if (chunkPosition + chunk.limit() >= endPosition) {
+                    // the last record is still being written by a concurrent insert
+                    position = endPosition;
+                    return 0;
+                }
+                // line continues after the chunk, it is read again from the line start
+                chunkSize = Math.max(SCAN_BUFFER_SIZE, 2 * (chunk.limit() - offset));
+                chunk = null;
+            }
+        }
+
+        private void convert(final String[] parsedLine, final boolean[] convertedColumns, final Object[] values) {
+            for (int i = 0; i < values.length; i++) {
+                if (convertedColumns[i] && values[i] == null) {
+                    values[i] = columns.get(i).getColumnType().parse(parsedLine[i]);
+                }
+            }
+        }
+
+        @Override
+        public Spliterator<Object[]> trySplit() {
+            if (endPosition - position < MIN_SPLIT_SIZE) {
+                return null;
+            }
+            try {
+                final long boundary = findRecordBoundary(position + (endPosition - position) / 2);
+                if (boundary >= endPosition) {
+                    return null;
+                }
+                final LineSpliterator suffix = new LineSpliterator(boundary, endPosition, filterColumns, filter,
+                        projectedColumns);
+                endPosition = boundary;
+                return suffix;
+            } catch (IOException e) {
+                throw new DatabaseReadException("Unable to scan " + dataPath, e);
+            }
+        }
+
+        /**
+         * Counts quotes from the current position, which is a record boundary, to the middle and returns
+         * the end of the first line after the middle which is outside of quotes.
+         */
+        private long findRecordBoundary(final long middle) throws IOException {
+            boolean inQuotes = false;
+            long current = position;
+            while (current < endPosition) {
+                final int size = (int) Math.min(SCAN_BUFFER_SIZE, endPosition - current);
+                final ByteBuffer buffer = dataReader.read(current, size);
+                for (int i = 0; i < size; i++) {
+                    final byte value = buffer.get(i);
+                    if (value == QUOTE) {
+                        inQuotes = !inQuotes;
+                    } else if (value == LINE_END && !inQuotes && current + i >= middle) {
+                        return current + i + 1;
+                    }
+                }
+                current += size;
+            }
+            return endPosition;
+        }
+
+        @Override
+        public long estimateSize() {
+            return endPosition - position;
+        }
+
+        @Override
+        public int characteristics() {
+            return NONNULL;
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.currency.books.storage;
+
+import java.io.IOException;
+import java.util.function.Consumer;
+
+/**
+ * Storage engine which finds records by primary key itself, tables using it don't keep a primary index.
+ * Appending a record with an existing primary key replaces the record. Record pointers returned by such
+ * engine don't locate records and positions are only compared with each other.
+ */
+public interface KeyValueStorageEngine extends StorageEngine {
+
+    /**
+     * Returns current record of the primary key or {@code null} if there is none.
+     */
+    Object[] get(long primaryKey) throws IOException;
+
+    /**
+     * Calls consumer for current records with primary key in the inclusive range in the order of primary keys.
+     */
+    default void forEachInRange(long fromPrimaryKey, long toPrimaryKey, Consumer<Object[]> consumer)
+            throws IOException {
+        forEachInRange(fromPrimaryKey, toPrimaryKey, Integer.MAX_VALUE, consumer);
+    }
+
+    /**
+     * Calls consumer for at most {@code limit} first current records with primary key in the inclusive range.
+     */
+    void forEachInRange(long fromPrimaryKey, long toPrimaryKey, int limit, Consumer<Object[]> consumer)
+            throws IOException;
+}
@@ -0,0 +1,941 @@
+package com.currency.books.storage;
+
+import com.currency.books.exception.DatabaseReadException;
+import com.currency.books.exception.DatabaseWriteException;
+import com.currency.books.model.Column;
+import com.currency.books.model.RecordPointer;
+import com.currency.books.model.TableOptions;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Log-structured merge tree keyed by primary key, appending a record with an existing key replaces it.
+ * <p>
+ * Records and tombstones are put into a concurrent skip list memtable. Full memtable becomes immutable and is written by
+ * a background thread into a level 0 {@link SortedRun}. Level 0 runs may overlap, when there are
+ * {@link #LEVEL0_COMPACTION_RUNS} of them they are merged into the single run of level 1. Run of level N is
+ * merged into level N + 1 when it is {@link #LEVEL_SIZE_RATIO} times bigger than allowed for level N - 1.
+ * Compactions run one at a time on the dedicated executor and never block memtable flushes.
+ * <p>
+ * Point lookup checks memtables and then runs from the newest, runs whose bloom filter rejects the key are
+ * skipped, so it reads about one block. Writers slow down when level 0 grows and wait only while all
+ * memtables are full or level 0 reaches {@link #LEVEL0_STOP_RUNS}, so stalls last at most one flush or
+ * level 0 compaction. Tombstones hide older records of their keys and are dropped by compaction into the last
+ * non-empty level.
+ * <p>
+ * Data file is the manifest with runs of every level and the number of records they contain, run files are
+ * named after it. Memtable isn't logged by the engine, records appended after the last flush are recovered
+ * from the table write-ahead log. Positions are numbers of appended records.
+ */
+public class LsmStorageEngine implements KeyValueStorageEngine {
+    public static final long DEFAULT_MEMTABLE_SIZE = 4 * 1024 * 1024;
+    static final int MAX_IMMUTABLE_MEMTABLES = 2;
+    static final int LEVEL0_COMPACTION_RUNS = 4;
+    static final int LEVEL0_SLOWDOWN_RUNS = 8;
+    static final int LEVEL0_STOP_RUNS = 12;
+    static final long LEVEL1_MAX_SIZE = 16 * 1024 * 1024;
+    static final int LEVEL_SIZE_RATIO = 10;
+    static final int MAX_LEVEL = 6;
+    /**
+     * Blocks of the biggest run which a parallel scan split has at least.
+     */
+    private static final int MIN_SPLIT_BLOCKS = 16;
+    private static final long SLOWDOWN_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    /**
+     * Approximate memory used by a skip list entry besides values.
+     */
+    private static final int RECORD_OVERHEAD = 64;
+    private static final int MAGIC = 0x4c534d4d;
+
+    private final Path dataPath;
+    private final List<Column> columns;
+    private final int primaryKeyOrdinal;
+    private final boolean memoryMapped;
+    private final long memtableSize;
+    private final boolean[] allColumns;
+    private final ExecutorService backgroundExecutor;
+    /**
+     * Appends hold read lock, so they run in parallel, memtable is replaced under write lock.
+     */
+    private final ReadWriteLock memtableLock = new ReentrantReadWriteLock();
+    private final Object flushLock = new Object();
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicLong nextRunId = new AtomicLong();
+    private volatile Version current;
+    /**
+     * Number of records in runs, records after it are in memtables.
+     */
+    private long flushedSequence;
+    private boolean compactionScheduled;
+    private Exception backgroundError;
+
+    public LsmStorageEngine(final Path dataPath, final List<Column> columns,
+                            final TableOptions tableOptions) throws IOException {
+        this(dataPath, columns, tableOptions, DEFAULT_MEMTABLE_SIZE);
+    }
+
+    public LsmStorageEngine(final Path dataPath, final List<Column> columns, final TableOptions tableOptions,
+                            final long memtableSize) throws IOException {
+        this.dataPath = dataPath;
+        this.columns = columns;
+        this.memoryMapped = tableOptions.isMemoryMapped();
+        this.memtableSize = memtableSize;
+        this.allColumns = new boolean[columns.size()];
+        Arrays.fill(allColumns, true);
+        this.primaryKeyOrdinal = StorageEngine.getPrimaryKeyOrdinal(columns);
+
+        final List<SortedRun> level0 = new ArrayList<>();
+        final SortedRun[] levels = new SortedRun[MAX_LEVEL + 1];
+        if (Files.exists(dataPath) && Files.size(dataPath) > 0) {
+            readManifest(level0, levels);
+        }
+        deleteUnusedRuns(level0, levels);
+        level0.sort(Comparator.comparingLong(SortedRun::getId).reversed());
+        sequence.set(flushedSequence);
+        current = new Version(new Memtable(), List.of(), level0, levels);
+        writeManifest(current);
+        this.backgroundExecutor = Executors.newFixedThreadPool(2, runnable -> {
+            final Thread thread = new Thread(runnable, "lsm-" + dataPath.getFileName());
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduleCompaction();
+    }
+
+    @Override
+    public List<Column> getColumns() {
+        return columns;
+    }
+
+    @Override
+    public RecordPointer append(final Object[] values) throws IOException {
+        return append(List.<Object[]>of(values))[0];
+    }
+
+    /**
+     * Puts records into the memtable. Returned pointers hold sequence numbers of records.
+     */
+    @Override
+    public RecordPointer[] append(final List<Object[]> batch) throws IOException {
+        awaitWriteCapacity();
+        final RecordPointer[] recordPointers = new RecordPointer[batch.size()];
+        final Memtable memtable;
+        memtableLock.readLock().lock();
+        try {
+            memtable = current.active;
+            for (int i = 0; i < recordPointers.length; i++) {
+                final Object[] values = batch.get(i);
+                recordPointers[i] = put(memtable, (Long) values[primaryKeyOrdinal], values);
+            }
+        } finally {
+            memtableLock.readLock().unlock();
+        }
+        rotateIfFull(memtable);
+        return recordPointers;
+    }
+
+    @Override
+    public RecordPointer appendTombstone(final long primaryKey) throws IOException {
+        awaitWriteCapacity();
+        final Memtable memtable;
+        final RecordPointer recordPointer;
+        memtableLock.readLock().lock();
+        try {
+            memtable = current.active;
+            recordPointer = put(memtable, primaryKey, SortedRun.TOMBSTONE);
+        } finally {
+            memtableLock.readLock().unlock();
+        }
+        rotateIfFull(memtable);
+        return recordPointer;
+    }
+
+    private RecordPointer put(final Memtable memtable, final long primaryKey, final Object[] values) {
+        memtable.records.put(primaryKey, values);
+        memtable.size.addAndGet(estimateSize(values));
+        return RecordPointer.unpack(sequence.incrementAndGet());
+    }
+
+    private void rotateIfFull(final Memtable memtable) throws IOException {
+        if (memtable.size.get() >= memtableSize) {
+            rotate(memtable);
+            scheduleFlush();
+        }
+    }
+
+    /**
+     * Records are visible in the memtable right after appending.
+     */
+    @Override
+    public void flush() {
+    }
+
+    /**
+     * Writes memtables into runs, so records appended before the call don't depend on the write-ahead log.
+     */
+    @Override
+    public void force() throws IOException {
+        rotate(null);
+        flushMemtables();
+        scheduleCompaction();
+    }
+
+    @Override
+    public Object[] get(final long primaryKey) throws IOException {
+        final Version version = acquireVersion();
+        try {
+            Object[] values = version.active.records.get(primaryKey);
+            for (int i = 0; values == null && i < version.immutables.size(); i++) {
+                values = version.immutables.get(i).records.get(primaryKey);
+            }
+            final List<SortedRun> runs = version.runs();
+            for (int i = 0; values == null && i < runs.size(); i++) {
+                if (runs.get(i).mightContain(primaryKey)) {
+                    values = runs.get(i).get(primaryKey);
+                }
+            }
+            return values == SortedRun.TOMBSTONE ? null : values;
+        } finally {
+            version.release();
+        }
+    }
+
+    @Override
+    public void forEachInRange(final long fromPrimaryKey, final long toPrimaryKey, final int limit,
+                               final Consumer<Object[]> consumer) throws IOException {
+        final Version version = acquireVersion();
+        try {
+            final MergeCursor<Source> cursor = MergeCursor.of(version, fromPrimaryKey, toPrimaryKey);
+            int remaining = limit;
+            while (remaining > 0 && cursor.next()) {
+                if (cursor.isTombstone()) {
+                    continue;
+                }
+                final Object[] values = new Object[columns.size()];
+                cursor.decode(allColumns, values);
+                consumer.accept(values);
+                remaining--;
+            }
+        } finally {
+            version.release();
+        }
+    }
+
+    @Override
+    public long checkpointPosition() {
+        return sequence.get();
+    }
+
+    /**
+     * Returns scan of current records in the order of primary keys, the filter gets zero pointer. Runs used by
+     * the scan are kept until it is exhausted. Scan is split by key ranges of the biggest run.
+     */
+    @Override
+    public Spliterator<Object[]> spliterator(final boolean[] filterColumns, final RecordFilter filter,
+                                             final boolean[] projectedColumns) {
+        return new KeyRangeSpliterator(acquireVersion(), Long.MIN_VALUE, Long.MAX_VALUE, filterColumns, filter,
+                projectedColumns);
+    }
+
+    @Override
+    public void close() throws IOException {
+        force();
+        backgroundExecutor.shutdown();
+        try {
+            // running compaction is finished, so its output isn't left behind
+            backgroundExecutor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (final SortedRun run : current.runs()) {
+            run.close();
+        }
+    }
+
+    private long estimateSize(final Object[] values) {
+        long size = RECORD_OVERHEAD;
+        for (final Object value : values) {
+            size += value instanceof String string ? Integer.BYTES + string.length() : Long.BYTES;
+        }
+        return size;
+    }
+
+    /**
+     * Delays writer while level 0 is big and blocks it while flushes or compactions can't keep up.
+     */
+    private void awaitWriteCapacity() {
+        final boolean slowDown;
+        synchronized (this) {
+            while (true) {
+                if (backgroundError != null) {
+                    throw new DatabaseWriteException("Background flush of " + dataPath + " failed", backgroundError);
+                }
+                final Version version = current;
+                if (version.immutables.size() < MAX_IMMUTABLE_MEMTABLES && version.level0.size() < LEVEL0_STOP_RUNS) {
+                    slowDown = version.level0.size() >= LEVEL0_SLOWDOWN_RUNS;
+                    break;
+                }
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new DatabaseWriteException("Interrupted while waiting for flush of " + dataPath, e);
+                }
+            }
+        }
+        if (slowDown) {
+            LockSupport.parkNanos(SLOWDOWN_NANOS);
+        }
+    }
+
+    /**
+     * Makes the active memtable immutable, {@code null} expected memtable rotates any non-empty one.
+     */
+    private void rotate(final Memtable expected) throws IOException {
+        memtableLock.writeLock().lock();
+        try {
+            synchronized (this) {
+                final Version version = current;
+                if (expected != null && version.active != expected || version.active.records.isEmpty()) {
+                    return;
+                }
+                version.active.endSequence = sequence.get();
+                final List<Memtable> immutables = new ArrayList<>(version.immutables.size() + 1);
+                immutables.add(version.active);
+                immutables.addAll(version.immutables);
+                install(new Version(new Memtable(), immutables, version.level0, version.levels));
+            }
+        } finally {
+            memtableLock.writeLock().unlock();
+        }
+    }
+
+    private void scheduleFlush() {
+        backgroundExecutor.execute(() -> {
+            try {
+                flushMemtables();
+                scheduleCompaction();
+            } catch (IOException | RuntimeException e) {
+                failBackground(e);
+            }
+        });
+    }
+
+    /**
+     * Writes immutable memtables into level 0 runs from the oldest one.
+     */
+    private void flushMemtables() throws IOException {
+        synchronized (flushLock) {
+            while (true) {
+                final Memtable memtable;
+                synchronized (this) {
+                    final List<Memtable> immutables = current.immutables;
+                    if (immutables.isEmpty()) {
+                        return;
+                    }
+                    memtable = immutables.get(immutables.size() - 1);
+                }
+                final SortedRun run = writeRun(0, memtable.records.size(), writer -> {
+                    for (final Map.Entry<Long, Object[]> entry : memtable.records.entrySet()) {
+                        if (entry.getValue() == SortedRun.TOMBSTONE) {
+                            writer.addTombstone(entry.getKey());
+                        } else {
+                            writer.add(entry.getKey(), entry.getValue());
+                        }
+                    }
+                });
+                synchronized (this) {
+                    final Version version = current;
+                    final List<Memtable> immutables = new ArrayList<>(version.immutables);
+                    immutables.remove(memtable);
+                    final List<SortedRun> level0 = new ArrayList<>(version.level0.size() + 1);
+                    level0.add(run);
+                    level0.addAll(version.level0);
+                    flushedSequence = memtable.endSequence;
+                    install(new Version(version.active, immutables, level0, version.levels));
+                    notifyAll();
+                }
+            }
+        }
+    }
+
+    private synchronized void scheduleCompaction() {
+        if (compactionScheduled || backgroundExecutor.isShutdown() || pickCompaction(current, new ArrayList<>()) < 0) {
+            return;
+        }
+        compactionScheduled = true;
+        backgroundExecutor.execute(this::compact);
+    }
+
+    /**
+     * Collects runs to merge from the newest one, returns level of the merged run or -1 if nothing to merge.
+     */
+    private static int pickCompaction(final Version version, final List<SortedRun> inputs) {
+        if (version.level0.size() >= LEVEL0_COMPACTION_RUNS) {
+            inputs.addAll(version.level0);
+            if (version.levels[1] != null) {
+                inputs.add(version.levels[1]);
+            }
+            return 1;
+        }
+        long maxSize = LEVEL1_MAX_SIZE;
+        for (int level = 1; level < MAX_LEVEL; level++) {
+            if (version.levels[level] != null && version.levels[level].getFileSize() > maxSize) {
+                inputs.add(version.levels[level]);
+                if (version.levels[level + 1] != null) {
+                    inputs.add(version.levels[level + 1]);
+                }
+                return level + 1;
+            }
+            maxSize *= LEVEL_SIZE_RATIO;
+        }
+        return -1;
+    }
+
+    private static boolean isLastLevel(final Version version, final int level) {
+        for (int deeper = level + 1; deeper <= MAX_LEVEL; deeper++) {
+            if (version.levels[deeper] != null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void compact() {
+        try {
+            while (true) {
+                final List<SortedRun> inputs = new ArrayList<>();
+                final int level;
+                final boolean dropTombstones;
+                synchronized (this) {
+                    level = pickCompaction(current, inputs);
+                    if (level < 0) {
+                        compactionScheduled = false;
+                        return;
+                    }
+                    // nothing older than the inputs remains, so tombstones have no records to hide
+                    dropTombstones = isLastLevel(current, level);
+                }
+                long expectedRecords = 0;
+                final List<RunSource> sources = new ArrayList<>(inputs.size());
+                for (final SortedRun input : inputs) {
+                    expectedRecords += input.getRecordCount();
+                    sources.add(new RunSource(input.cursor(Long.MIN_VALUE, Long.MAX_VALUE)));
+                }
+                final MergeCursor<RunSource> cursor = new MergeCursor<>(sources);
+                final SortedRun output = writeRun(level, expectedRecords, writer -> {
+                    while (cursor.next()) {
+                        if (!dropTombstones || !cursor.isTombstone()) {
+                            writer.add(cursor.key(), cursor.current().values());
+                        }
+                    }
+                });
+                synchronized (this) {
+                    final Version version = current;
+                    // runs flushed during the compaction are newer than its inputs
+                    final List<SortedRun> level0 = new ArrayList<>(version.level0);
+                    level0.removeAll(inputs);
+                    final SortedRun[] levels = version.levels.clone();
+                    for (final SortedRun input : inputs) {
+                        levels[input.getLevel()] = null;
+                    }
+                    levels[level] = output;
+                    install(new Version(version.active, version.immutables, level0, levels));
+                    notifyAll();
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            failBackground(e);
+        }
+    }
+
+    private synchronized void failBackground(final Exception e) {
+        backgroundError = e;
+        compactionScheduled = false;
+        notifyAll();
+    }
+
+    private SortedRun writeRun(final int level, final long expectedRecords, final RunContent content)
+            throws IOException {
+        final long id = nextRunId.getAndIncrement();
+        final Path path = getRunPath(id);
+        try (SortedRun.Writer writer = new SortedRun.Writer(path, columns, expectedRecords)) {
+            content.writeTo(writer);
+            writer.finish();
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(path);
+            throw e;
+        }
+        return SortedRun.open(id, level, path, columns, memoryMapped);
+    }
+
+    /**
+     * Saves the manifest of the version and makes it current. Caller holds the engine monitor.
+     */
+    private void install(final Version version) throws IOException {
+        writeManifest(version);
+        final Version previous = current;
+        current = version;
+        previous.release();
+    }
+
+    private Version acquireVersion() {
+        while (true) {
+            final Version version = current;
+            if (version.tryAcquire()) {
+                return version;
+            }
+        }
+    }
+
+    private Path getRunPath(final long id) {
+        return dataPath.resolveSibling(dataPath.getFileName() + "." + id);
+    }
+
+    /**
+     * Writes manifest to a temporary file and moves it in place, so a crash keeps the previous one.
+     */
+    private void writeManifest(final Version version) throws IOException {
+        final Path tempPath = dataPath.resolveSibling(dataPath.getFileName() + ".tmp");
+        final CRC32 crc = new CRC32();
+        final List<SortedRun> runs = version.runs();
+        try (DataOutputStream output = new DataOutputStream(new CheckedOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(tempPath)), crc))) {
+            output.writeInt(MAGIC);
+            output.writeLong(nextRunId.get());
+            output.writeLong(flushedSequence);
+            output.writeInt(runs.size());
+            for (final SortedRun run : runs) {
+                output.writeLong(run.getId());
+                output.writeInt(run.getLevel());
+            }
+            output.flush();
+            output.writeLong(crc.getValue());
+        }
+        try (FileChannel channel = FileChannel.open(tempPath, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(tempPath, dataPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void readManifest(final List<SortedRun> level0, final SortedRun[] levels) throws IOException {
+        final CRC32 crc = new CRC32();
+        try (DataInputStream input = new DataInputStream(new CheckedInputStream(
+                new BufferedInputStream(Files.newInputStream(dataPath)), crc))) {
+            if (input.readInt() != MAGIC) {
+                throw new DatabaseReadException("Manifest " + dataPath + " is damaged");
+            }
+            nextRunId.set(input.readLong());
+            flushedSequence = input.readLong();
+            final int runCount = input.readInt();
+            final long[] ids = new long[runCount];
+            final int[] runLevels = new int[runCount];
+            for (int i = 0; i < runCount; i++) {
+                ids[i] = input.readLong();
+                runLevels[i] = input.readInt();
+            }
+            final long expectedCrc = crc.getValue();
+            if (input.readLong() != expectedCrc) {
+                throw new DatabaseReadException("Checksum mismatch for manifest " + dataPath);
+            }
+            for (int i = 0; i < runCount; i++) {
+                final SortedRun run = SortedRun.open(ids[i], runLevels[i], getRunPath(ids[i]), columns, memoryMapped);
+                if (runLevels[i] == 0) {
+                    level0.add(run);
+                } else {
+                    levels[runLevels[i]] = run;
+                }
+            }
+        } catch (EOFException e) {
+            throw new DatabaseReadException("Manifest " + dataPath + " is truncated", e);
+        }
+    }
+
+    /**
+     * Deletes runs left by flushes and compactions which didn't reach the manifest before a crash.
+     */
+    private void deleteUnusedRuns(final List<SortedRun> level0, final SortedRun[] levels) throws IOException {
+        final Set<String> usedFileNames = new HashSet<>();
+        for (final SortedRun run : level0) {
+            usedFileNames.add(getRunPath(run.getId()).getFileName().toString());
+        }
+        for (final SortedRun run : levels) {
+            if (run != null) {
+                usedFileNames.add(getRunPath(run.getId()).getFileName().toString());
+            }
+        }
+        final String prefix = dataPath.getFileName() + ".";
+        try (Stream<Path> files = Files.list(dataPath.toAbsolutePath().getParent())) {
+            for (final Path file : files.toList()) {
+                final String fileName = file.getFileName().toString();
+                if (fileName.startsWith(prefix) && !usedFileNames.contains(fileName)) {
+                    Files.delete(file);
+                }
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface RunContent {
+        void writeTo(SortedRun.Writer writer) throws IOException;
+    }
+
+    private static final class Memtable {
+        private final ConcurrentSkipListMap<Long, Object[]> records = new ConcurrentSkipListMap<>();
+        private final AtomicLong size = new AtomicLong();
+        /**
+         * Sequence number of the last record, set when the memtable becomes immutable.
+         */
+        private long endSequence;
+    }
+
+    /**
+     * Memtables and runs of the table at some moment. Readers acquire the version, so runs replaced by
+     * a compaction are deleted only after readers which may still use them release it.
+     */
+    private static final class Version {
+        private final Memtable active;
+        /**
+         * From the newest one.
+         */
+        private final List<Memtable> immutables;
+        private final List<SortedRun> level0;
+        /**
+         * Single run of every level starting from 1, element 0 isn't used.
+         */
+        private final SortedRun[] levels;
+        private final AtomicInteger references = new AtomicInteger(1);
+
+        private Version(final Memtable active, final List<Memtable> immutables, final List<SortedRun> level0,
+                        final SortedRun[] levels) {
+            this.active = active;
+            this.immutables = immutables;
+            this.level0 = level0;
+            this.levels = levels;
+            for (final SortedRun run : runs()) {
+                run.acquire();
+            }
+        }
+
+        /**
+         * Returns runs from the newest one.
+         */
+        private List<SortedRun> runs() {
+            final List<SortedRun> runs = new ArrayList<>(level0);
+            for (final SortedRun run : levels) {
+                if (run != null) {
+                    runs.add(run);
+                }
+            }
+            return runs;
+        }
+
+        /**
+         * Fails if the version was already released by all its users.
+         */
+        private boolean tryAcquire() {
+            while (true) {
+                final int count = references.get();
+                if (count == 0) {
+                    return false;
+                }
+                if (references.compareAndSet(count, count + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        private void release() throws IOException {
+            if (references.decrementAndGet() == 0) {
+                for (final SortedRun run : runs()) {
+                    run.release();
+                }
+            }
+        }
+    }
+
+    /**
+     * Records of a memtable or a run in the order of keys.
+     */
+    private abstract static class Source {
+        /**
+         * Lower priority is a newer source, its record replaces records of the same key in other sources.
+         */
+        int priority;
+
+        abstract boolean next() throws IOException;
+
+        abstract long key();
+
+        abstract boolean isTombstone();
+
+        abstract void decode(boolean[] decodedColumns, Object[] values);
+    }
+
+    private static final class MemtableSource extends Source {
+        private final Iterator<Map.Entry<Long, Object[]>> iterator;
+        private Map.Entry<Long, Object[]> entry;
+
+        private MemtableSource(final Memtable memtable, final long fromKey, final long toKey) {
+            this.iterator = memtable.records.subMap(fromKey, true, toKey, true).entrySet().iterator();
+        }
+
+        @Override
+        boolean next() {
+            entry = iterator.hasNext() ? iterator.next() : null;
+            return entry != null;
+        }
+
+        @Override
+        long key() {
+            return entry.getKey();
+        }
+
+        @Override
+        boolean isTombstone() {
+            return entry.getValue() == SortedRun.TOMBSTONE;
+        }
+
+        @Override
+        void decode(final boolean[] decodedColumns, final Object[] values) {
+            for (int i = 0; i < values.length; i++) {
+                if (decodedColumns[i] && values[i] == null) {
+                    values[i] = entry.getValue()[i];
+                }
+            }
+        }
+    }
+
+    private static final class RunSource extends Source {
+        private final SortedRun.Cursor cursor;
+
+        private RunSource(final SortedRun.Cursor cursor) {
+            this.cursor = cursor;
+        }
+
+        @Override
+        boolean next() throws IOException {
+            return cursor.next();
+        }
+
+        @Override
+        long key() {
+            return cursor.key();
+        }
+
+        @Override
+        boolean isTombstone() {
+            return cursor.isTombstone();
+        }
+
+        @Override
+        void decode(final boolean[] decodedColumns, final Object[] values) {
+            cursor.decode(decodedColumns, values);
+        }
+
+        /**
+         * Returns encoded values of the current record, compaction copies them without decoding.
+         */
+        ByteBuffer values() {
+            return cursor.values();
+        }
+    }
+
+    /**
+     * Merges sources into current records, only the newest record or tombstone of every key is returned.
+     */
+    private static final class MergeCursor<S extends Source> {
+        private final List<S> sources;
+        private final PriorityQueue<S> queue;
+        private S current;
+        private boolean started;
+
+        /**
+         * Merges sources given from the newest one.
+         */
+        private MergeCursor(final List<S> sources) {
+            this.sources = sources;
+            this.queue = new PriorityQueue<>(Math.max(1, sources.size()),
+                    Comparator.comparingLong(Source::key).thenComparingInt(source -> source.priority));
+            for (int i = 0; i < sources.size(); i++) {
+                sources.get(i).priority = i;
+            }
+        }
+
+        /**
+         * Merges memtables and runs of the version within the inclusive range of keys.
+         */
+        private static MergeCursor<Source> of(final Version version, final long fromKey, final long toKey) {
+            final List<Source> sources = new ArrayList<>();
+            sources.add(new MemtableSource(version.active, fromKey, toKey));
+            for (final Memtable memtable : version.immutables) {
+                sources.add(new MemtableSource(memtable, fromKey, toKey));
+            }
+            for (final SortedRun run : version.runs()) {
+                sources.add(new RunSource(run.cursor(fromKey, toKey)));
+            }
+            return new MergeCursor<>(sources);
+        }
+
+        private boolean next() throws IOException {
+            if (!started) {
+                started = true;
+                for (final S source : sources) {
+                    if (source.next()) {
+                        queue.add(source);
+                    }
+                }
+            } else if (current != null && current.next()) {
+                queue.add(current);
+            }
+            current = queue.poll();
+            if (current == null) {
+                return false;
+            }
+            // older records of the key are replaced by the current one
+            while (!queue.isEmpty() && queue.peek().key() == current.key()) {
+                final S older = queue.poll();
+                if (older.next()) {
+                    queue.add(older);
+                }
+            }
+            return true;
+        }
+
+        private long key() {
+            return current.key();
+        }
+
+        private boolean isTombstone() {
+            return current.isTombstone();
+        }
+
+        private void decode(final boolean[] decodedColumns, final Object[] values) {
+            current.decode(decodedColumns, values);
+        }
+
+        private S current() {
+            return current;
+        }
+    }
+
+    /**
+     * Scan of an inclusive range of keys, splits before the scan starts divide the range.
+     */
+    private final class KeyRangeSpliterator implements Spliterator<Object[]> {
+        private final Version version;
+        private final long fromKey;
+        private long toKey;
+        private final boolean[] filterColumns;
+        private final RecordFilter filter;
+        private final boolean[] projectedColumns;
+        private MergeCursor<Source> cursor;
+        private boolean released;
+
+        private KeyRangeSpliterator(final Version version, final long fromKey, final long toKey,
+                                    final boolean[] filterColumns, final RecordFilter filter,
+                                    final boolean[] projectedColumns) {
+            this.version = version;
+            this.fromKey = fromKey;
+            this.toKey = toKey;
+            this.filterColumns = filterColumns;
+            this.filter = filter;
+            this.projectedColumns = projectedColumns;
+        }
+
+        @Override
+        public boolean tryAdvance(final Consumer<? super Object[]> action) {
+            if (released) {
+                return false;
+            }
+            try {
+                if (cursor == null) {
+                    cursor = MergeCursor.of(version, fromKey, toKey);
+                }
+                while (cursor.next()) {
+                    if (cursor.isTombstone()) {
+                        continue;
+                    }
+                    final Object[] values = new Object[columns.size()];
+                    cursor.decode(filterColumns, values);
+                    if (filter.test(0, values)) {
+                        cursor.decode(projectedColumns, values);
+                        action.accept(values);
+                        return true;
+                    }
+                }
+                released = true;
+                version.release();
+                return false;
+            } catch (IOException e) {
+                throw new DatabaseReadException("Unable to scan " + dataPath, e);
+            }
+        }
+
+        @Override
+        public Spliterator<Object[]> trySplit() {
+            if (cursor != null || released) {
+                return null;
+            }
+            SortedRun biggest = null;
+            for (final SortedRun run : version.runs()) {
+                if (biggest == null || run.getRecordCount() > biggest.getRecordCount()) {
+                    biggest = run;
+                }
+            }
+            final Long middleKey = biggest == null ? null : biggest.findMiddleKey(fromKey, toKey, MIN_SPLIT_BLOCKS);
+            if (middleKey == null || !version.tryAcquire()) {
+                return null;
+            }
+            final KeyRangeSpliterator suffix = new KeyRangeSpliterator(version, middleKey, toKey, filterColumns,
+                    filter, projectedColumns);
+            toKey = middleKey - 1;
+            return suffix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return Long.MAX_VALUE;
+        }
+
+        @Override
+        public int characteristics() {
+            return NONNULL | ORDERED;
+        }
+    }
+}
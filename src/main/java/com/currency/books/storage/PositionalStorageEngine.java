@@ -0,0 +1,44 @@
+package com.currency.books.storage;
+
+import com.currency.books.model.RecordPointer;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Storage engine which keeps records in the order of appending, record pointers locate them in the data file.
+ * Tables using it keep a primary index of pointers.
+ */
+public interface PositionalStorageEngine extends StorageEngine {
+
+    Object[] read(RecordPointer recordPointer) throws IOException;
+
+    /**
+     * Reads records, values are returned in the order of pointers. Nearby records may be fetched by a single read.
+     */
+    default Object[][] read(List<RecordPointer> recordPointers) throws IOException {
+        final Object[][] records = new Object[recordPointers.size()][];
+        for (int i = 0; i < records.length; i++) {
+            records[i] = read(recordPointers.get(i));
+        }
+        return records;
+    }
+
+    /**
+     * Returns position such that scan started from it finds exactly the records appended after this call.
+     */
+    @Override
+    long checkpointPosition();
+
+    /**
+     * Calls consumer for every flushed record and tombstone starting from the position in the order of appending.
+     * Returns position right after the last complete record, the rest of the file is a torn write.
+     */
+    long scan(long fromPosition, RecordConsumer consumer) throws IOException;
+
+    /**
+     * Drops everything after the position returned by {@link #scan(long, RecordConsumer)} or
+     * {@link #checkpointPosition()}. Position after the end of the file is ignored.
+     */
+    void truncate(long position) throws IOException;
+}
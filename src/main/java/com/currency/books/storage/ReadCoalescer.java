@@ -0,0 +1,92 @@
+package com.currency.books.storage;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Plans reads of many records: ranges are sorted by file position and ranges which overlap or are separated
+ * by a small gap are merged, so every group is fetched by a single read. Groups are read and decoded
+ * in parallel when there are enough records.
+ */
+final class ReadCoalescer {
+    static final int MAX_GAP = 4096;
+    static final int MAX_READ_SIZE = 1024 * 1024;
+    static final int PARALLEL_THRESHOLD = 64;
+
+    interface GroupReader {
+        /**
+         * Reads the range of the file and decodes records of the group from it.
+         */
+        void read(long start, int length, int[] recordNumbers) throws IOException;
+    }
+
+    private ReadCoalescer() {
+    }
+
+    /**
+     * Calls reader for every group of records. Range of a record is [starts[i], ends[i]).
+     */
+    static void readGroups(final long[] starts, final long[] ends, final long maxGap, final GroupReader reader)
+            throws IOException {
+        final Integer[] order = new Integer[starts.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingLong(i -> starts[i]));
+
+        final List<int[]> groups = new ArrayList<>();
+        final List<long[]> ranges = new ArrayList<>();
+        int groupStart = 0;
+        long rangeStart = 0;
+        long rangeEnd = 0;
+        for (int i = 0; i < order.length; i++) {
+            final int recordNumber = order[i];
+            if (i > 0 && (starts[recordNumber] > rangeEnd + maxGap
+                    || Math.max(rangeEnd, ends[recordNumber]) - rangeStart > MAX_READ_SIZE)) {
+                groups.add(recordNumbers(order, groupStart, i));
+                ranges.add(new long[]{rangeStart, rangeEnd});
+                groupStart = i;
+            }
+            if (i == groupStart) {
+                rangeStart = starts[recordNumber];
+                rangeEnd = ends[recordNumber];
+            } else {
+                rangeEnd = Math.max(rangeEnd, ends[recordNumber]);
+            }
+        }
+        if (order.length > 0) {
+            groups.add(recordNumbers(order, groupStart, order.length));
+            ranges.add(new long[]{rangeStart, rangeEnd});
+        }
+
+        IntStream groupNumbers = IntStream.range(0, groups.size());
+        if (groups.size() > 1 && starts.length >= PARALLEL_THRESHOLD) {
+            groupNumbers = groupNumbers.parallel();
+        }
+        try {
+            groupNumbers.forEach(group -> {
+                final long[] range = ranges.get(group);
+                try {
+                    reader.read(range[0], (int) (range[1] - range[0]), groups.get(group));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static int[] recordNumbers(final Integer[] order, final int from, final int to) {
+        final int[] recordNumbers = new int[to - from];
+        for (int i = from; i < to; i++) {
+            recordNumbers[i - from] = order[i];
+        }
+        return recordNumbers;
+    }
+}
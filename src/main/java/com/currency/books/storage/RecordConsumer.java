@@ -0,0 +1,19 @@
+package com.currency.books.storage;
+
+import com.currency.books.model.RecordPointer;
+
+import java.io.IOException;
+
+/**
+ * Consumer of records found by {@link PositionalStorageEngine#scan(long, RecordConsumer)}.
+ */
+@FunctionalInterface
+public interface RecordConsumer {
+    void accept(RecordPointer recordPointer, Object[] values) throws IOException;
+
+    /**
+     * Called for a tombstone of the primary key, tombstones are ignored by default.
+     */
+    default void acceptTombstone(long primaryKey) throws IOException {
+    }
+}
@@ -0,0 +1,12 @@
+package com.currency.books.storage;
+
+/**
+ * Decides which records are returned by {@link StorageEngine#spliterator(boolean[], RecordFilter, boolean[])}.
+ */
+@FunctionalInterface
+public interface RecordFilter {
+    /**
+     * Tests partially decoded record, values of columns which weren't requested are {@code null}.
+     */
+    boolean test(long packedPointer, Object[] values);
+}
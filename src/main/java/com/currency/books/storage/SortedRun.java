@@ -0,0 +1,444 @@
+package com.currency.books.storage;
+
+import com.currency.books.exception.DatabaseReadException;
+import com.currency.books.index.BloomFilter;
+import com.currency.books.model.Column;
+import com.currency.books.utils.DataFileReader;
+
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+
+/**
+ * Immutable file of records sorted by primary key, written once by a memtable flush or a compaction.
+ * <p>
+ * Record is the primary key and a flag byte followed by values encoded like in {@link BinaryPageStorageEngine},
+ * tombstone has the flag set and no values. Records are
+ * grouped into blocks of about {@link #BLOCK_SIZE} bytes without gaps between them. Blocks are followed by
+ * sparse index with first key and offset of every block, bloom filter of the keys and fixed-size footer.
+ * Index and filter are kept in memory, so a point lookup reads at most one block.
+ */
+final class SortedRun {
+    static final int BLOCK_SIZE = 4096;
+    private static final int BLOOM_BITS_PER_KEY = 10;
+    private static final int SCAN_CHUNK_SIZE = 256 * 1024;
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+    private static final int MAGIC = 0x4c534d53;
+    private static final byte RECORD_FLAG = 0;
+    private static final byte TOMBSTONE_FLAG = 1;
+    /**
+     * Values returned for a key deleted by a tombstone.
+     */
+    static final Object[] TOMBSTONE = new Object[0];
+    /**
+     * Meta offset, record count, min and max keys, checksum of meta and footer, magic.
+     */
+    private static final int FOOTER_SIZE = 4 * Long.BYTES + 2 * Integer.BYTES;
+
+    private final long id;
+    private final int level;
+    private final Path path;
+    private final List<Column> columns;
+    private final DataFileReader dataReader;
+    private final long[] firstKeys;
+    private final long[] blockOffsets;
+    private final long metaOffset;
+    private final BloomFilter bloomFilter;
+    private final long recordCount;
+    private final long minKey;
+    private final long maxKey;
+    private final long fileSize;
+    /**
+     * Versions of the table using the run, file is deleted when the last one is released.
+     */
+    private final AtomicInteger references = new AtomicInteger();
+
+    private SortedRun(final long id, final int level, final Path path, final List<Column> columns,
+                      final boolean memoryMapped) throws IOException {
+        this.id = id;
+        this.level = level;
+        this.path = path;
+        this.columns = columns;
+        final ByteBuffer footer;
+        final ByteBuffer meta;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            fileSize = channel.size();
+            if (fileSize < FOOTER_SIZE) {
+                throw new DatabaseReadException("Sorted run " + path + " is truncated");
+            }
+            footer = readFully(channel, fileSize - FOOTER_SIZE, FOOTER_SIZE);
+            metaOffset = footer.getLong();
+            if (footer.getInt(FOOTER_SIZE - Integer.BYTES) != MAGIC || metaOffset < 0
+                    || metaOffset > fileSize - FOOTER_SIZE) {
+                throw new DatabaseReadException("Sorted run " + path + " is damaged");
+            }
+            meta = readFully(channel, metaOffset, (int) (fileSize - FOOTER_SIZE - metaOffset));
+        }
+        final CRC32 crc = new CRC32();
+        crc.update(meta.duplicate());
+        crc.update(footer.duplicate().position(0).limit(FOOTER_SIZE - 2 * Integer.BYTES));
+        if ((int) crc.getValue() != footer.getInt(FOOTER_SIZE - 2 * Integer.BYTES)) {
+            throw new DatabaseReadException("Checksum mismatch for sorted run " + path);
+        }
+        recordCount = footer.getLong();
+        minKey = footer.getLong();
+        maxKey = footer.getLong();
+        final int blockCount = meta.getInt();
+        firstKeys = new long[blockCount];
+        blockOffsets = new long[blockCount];
+        for (int i = 0; i < blockCount; i++) {
+            firstKeys[i] = meta.getLong();
+            blockOffsets[i] = meta.getLong();
+        }
+        bloomFilter = BloomFilter.readFrom(meta);
+        dataReader = DataFileReader.open(path, memoryMapped);
+    }
+
+    static SortedRun open(final long id, final int level, final Path path, final List<Column> columns,
+                          final boolean memoryMapped) throws IOException {
+        return new SortedRun(id, level, path, columns, memoryMapped);
+    }
+
+    long getId() {
+        return id;
+    }
+
+    int getLevel() {
+        return level;
+    }
+
+    long getRecordCount() {
+        return recordCount;
+    }
+
+    long getFileSize() {
+        return fileSize;
+    }
+
+    boolean mightContain(final long key) {
+        return key >= minKey && key <= maxKey && bloomFilter.mightContain(key);
+    }
+
+    /**
+     * Returns record of the key, {@link #TOMBSTONE} if it was deleted or {@code null} if the run doesn't have it.
+     */
+    Object[] get(final long key) throws IOException {
+        final int blockNumber = findBlock(key);
+        if (blockNumber < 0) {
+            return null;
+        }
+        final ByteBuffer block = readBlocks(blockNumber, blockNumber + 1);
+        while (block.hasRemaining()) {
+            final long recordKey = block.getLong();
+            final boolean tombstone = block.get() == TOMBSTONE_FLAG;
+            if (recordKey == key && tombstone) {
+                return TOMBSTONE;
+            }
+            if (recordKey == key) {
+                final Object[] values = new Object[columns.size()];
+                for (int i = 0; i < values.length; i++) {
+                    values[i] = columns.get(i).getColumnType().read(block);
+                }
+                return values;
+            }
+            if (recordKey > key) {
+                return null;
+            }
+            if (!tombstone) {
+                skipValues(block);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns first key of a block in the middle of blocks with first key in the exclusive range,
+     * {@code null} if there are less than twice the minimal number of such blocks.
+     */
+    Long findMiddleKey(final long fromKey, final long toKey, final int minBlocks) {
+        int from = Arrays.binarySearch(firstKeys, fromKey);
+        from = from < 0 ? -from - 1 : from + 1;
+        int to = Arrays.binarySearch(firstKeys, toKey);
+        to = to < 0 ? -to - 1 : to;
+        return to - from >= 2 * minBlocks ? firstKeys[(from + to) >>> 1] : null;
+    }
+
+    /**
+     * Returns cursor over records with keys in the inclusive range.
+     */
+    Cursor cursor(final long fromKey, final long toKey) {
+        return new Cursor(fromKey, toKey);
+    }
+
+    void acquire() {
+        references.incrementAndGet();
+    }
+
+    /**
+     * Releases the run for a version which doesn't use it anymore, file of unused run is deleted.
+     */
+    void release() throws IOException {
+        if (references.decrementAndGet() == 0) {
+            close();
+            Files.deleteIfExists(path);
+        }
+    }
+
+    void close() throws IOException {
+        dataReader.close();
+    }
+
+    /**
+     * Returns number of the last block with first key not greater than the key, -1 if there is none.
+     */
+    private int findBlock(final long key) {
+        final int position = Arrays.binarySearch(firstKeys, key);
+        return position >= 0 ? position : -position - 2;
+    }
+
+    private ByteBuffer readBlocks(final int fromBlock, final int toBlock) throws IOException {
+        final long end = toBlock < blockOffsets.length ? blockOffsets[toBlock] : metaOffset;
+        return dataReader.read(blockOffsets[fromBlock], (int) (end - blockOffsets[fromBlock]));
+    }
+
+    private void skipValues(final ByteBuffer buffer) {
+        for (final Column column : columns) {
+            column.getColumnType().skip(buffer);
+        }
+    }
+
+    private static ByteBuffer readFully(final FileChannel channel, final long position, final int length)
+            throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new DatabaseReadException("Unexpected end of sorted run at " + position);
+            }
+        }
+        return buffer.flip();
+    }
+
+    /**
+     * Sequential reader of records, consecutive blocks are fetched by a single read.
+     */
+    final class Cursor {
+        private final long fromKey;
+        private final long toKey;
+        private int nextBlock;
+        private ByteBuffer chunk;
+        private long key;
+        private boolean tombstone;
+        private int recordOffset;
+
+        private Cursor(final long fromKey, final long toKey) {
+            this.fromKey = fromKey;
+            this.toKey = toKey;
+            this.nextBlock = Math.max(0, findBlock(fromKey));
+        }
+
+        /**
+         * Moves to the next record in the range, returns {@code false} when there are no more records.
+         */
+        boolean next() throws IOException {
+            while (true) {
+                if (chunk == null || !chunk.hasRemaining()) {
+                    if (nextBlock >= blockOffsets.length || firstKeys[nextBlock] > toKey) {
+                        return false;
+                    }
+                    final int toBlock = chunkEnd(nextBlock);
+                    chunk = readBlocks(nextBlock, toBlock);
+                    nextBlock = toBlock;
+                }
+                recordOffset = chunk.position();
+                key = chunk.getLong();
+                tombstone = chunk.get() == TOMBSTONE_FLAG;
+                if (!tombstone) {
+                    skipValues(chunk);
+                }
+                if (key > toKey) {
+                    chunk.position(chunk.limit());
+                    nextBlock = blockOffsets.length;
+                    return false;
+                }
+                if (key >= fromKey) {
+                    return true;
+                }
+            }
+        }
+
+        long key() {
+            return key;
+        }
+
+        boolean isTombstone() {
+            return tombstone;
+        }
+
+        /**
+         * Decodes requested columns which aren't decoded yet, current record must not be a tombstone.
+         */
+        void decode(final boolean[] decodedColumns, final Object[] values) {
+            final ByteBuffer record = chunk.duplicate().position(recordOffset + Long.BYTES + 1);
+            for (int i = 0; i < values.length; i++) {
+                if (decodedColumns[i] && values[i] == null) {
+                    values[i] = columns.get(i).getColumnType().read(record);
+                } else {
+                    columns.get(i).getColumnType().skip(record);
+                }
+            }
+        }
+
+        /**
+         * Returns the flag and encoded values of the current record.
+         */
+        ByteBuffer values() {
+            return chunk.slice(recordOffset + Long.BYTES, chunk.position() - recordOffset - Long.BYTES);
+        }
+
+        private int chunkEnd(final int fromBlock) {
+            int toBlock = fromBlock + 1;
+            while (toBlock < blockOffsets.length && firstKeys[toBlock] <= toKey
+                    && blockOffsets[toBlock] - blockOffsets[fromBlock] < SCAN_CHUNK_SIZE) {
+                toBlock++;
+            }
+            return toBlock;
+        }
+    }
+
+    /**
+     * Writes records in ascending order of keys. File is complete only after {@link #finish()}.
+     */
+    static final class Writer implements AutoCloseable {
+        private final Path path;
+        private final List<Column> columns;
+        private final FileChannel channel;
+        private final BloomFilter bloomFilter;
+        private ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER_SIZE);
+        private ByteBuffer record = ByteBuffer.allocate(BLOCK_SIZE);
+        private long[] firstKeys = new long[64];
+        private long[] blockOffsets = new long[64];
+        private int blockCount;
+        private long position;
+        private long blockStart;
+        private long recordCount;
+        private long minKey;
+        private long maxKey;
+
+        Writer(final Path path, final List<Column> columns, final long expectedRecords) throws IOException {
+            this.path = path;
+            this.columns = columns;
+            this.channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+            this.bloomFilter = new BloomFilter(expectedRecords, BLOOM_BITS_PER_KEY);
+        }
+
+        void add(final long key, final Object[] values) throws IOException {
+            while (true) {
+                try {
+                    record.clear();
+                    record.put(RECORD_FLAG);
+                    for (int i = 0; i < values.length; i++) {
+                        columns.get(i).getColumnType().write(values[i], record);
+                    }
+                    break;
+                } catch (BufferOverflowException e) {
+                    record = ByteBuffer.allocate(record.capacity() * 2);
+                }
+            }
+            add(key, record.flip());
+        }
+
+        void addTombstone(final long key) throws IOException {
+            add(key, ByteBuffer.wrap(new byte[]{TOMBSTONE_FLAG}));
+        }
+
+        /**
+         * Adds record with the flag and encoded values, e.g. copied from another run.
+         */
+        void add(final long key, final ByteBuffer values) throws IOException {
+            if (recordCount == 0) {
+                minKey = key;
+            } else if (key <= maxKey) {
+                throw new IllegalArgumentException("Keys of a sorted run must ascend, " + key + " after " + maxKey);
+            }
+            if (buffer.remaining() < Long.BYTES + values.remaining()) {
+                writeBuffer();
+                if (buffer.capacity() < Long.BYTES + values.remaining()) {
+                    buffer = ByteBuffer.allocate(Long.BYTES + values.remaining());
+                }
+            }
+            final int start = buffer.position();
+            buffer.putLong(key).put(values);
+            endRecord(start);
+        }
+
+        private void endRecord(final int start) {
+            final long recordStart = position + start;
+            final int recordLength = buffer.position() - start;
+            if (blockCount == 0 || recordStart - blockStart + recordLength > BLOCK_SIZE && recordStart > blockStart) {
+                if (blockCount == firstKeys.length) {
+                    firstKeys = Arrays.copyOf(firstKeys, blockCount * 2);
+                    blockOffsets = Arrays.copyOf(blockOffsets, blockCount * 2);
+                }
+                firstKeys[blockCount] = buffer.getLong(start);
+                blockOffsets[blockCount] = recordStart;
+                blockCount++;
+                blockStart = recordStart;
+            }
+            maxKey = buffer.getLong(start);
+            bloomFilter.add(maxKey);
+            recordCount++;
+        }
+
+        private void writeBuffer() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+            buffer.clear();
+        }
+
+        long getRecordCount() {
+            return recordCount;
+        }
+
+        /**
+         * Writes index, filter and footer and forces the file to the storage device.
+         */
+        void finish() throws IOException {
+            writeBuffer();
+            final ByteBuffer meta = ByteBuffer.allocate(Integer.BYTES + blockCount * 2 * Long.BYTES
+                    + bloomFilter.serializedSize() + FOOTER_SIZE);
+            meta.putInt(blockCount);
+            for (int i = 0; i < blockCount; i++) {
+                meta.putLong(firstKeys[i]).putLong(blockOffsets[i]);
+            }
+            bloomFilter.writeTo(meta);
+            meta.putLong(position).putLong(recordCount).putLong(minKey).putLong(maxKey);
+            final CRC32 crc = new CRC32();
+            crc.update(meta.array(), 0, meta.position());
+            meta.putInt((int) crc.getValue()).putInt(MAGIC);
+            meta.flip();
+            while (meta.hasRemaining()) {
+                position += channel.write(meta, position);
+            }
+            channel.force(true);
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+
+        Path getPath() {
+            return path;
+        }
+    }
+}
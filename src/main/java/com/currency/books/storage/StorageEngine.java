@@ -0,0 +1,76 @@
+package com.currency.books.storage;
+
+import com.currency.books.model.Column;
+import com.currency.books.model.RecordPointer;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Spliterator;
+
+/**
+ * Storage format of a single table data file. Values are passed in the order of {@link #getColumns()}.
+ * Engines either locate records by position, see {@link PositionalStorageEngine}, or find them by primary key,
+ * see {@link KeyValueStorageEngine}.
+ */
+public interface StorageEngine extends AutoCloseable {
+
+    List<Column> getColumns();
+
+    /**
+     * Appends record to the data file. Record is guaranteed to be readable only after {@link #flush()}.
+     */
+    RecordPointer append(Object[] values) throws IOException;
+
+    /**
+     * Appends records of the batch, returns pointers in the order of records.
+     */
+    default RecordPointer[] append(List<Object[]> batch) throws IOException {
+        final RecordPointer[] recordPointers = new RecordPointer[batch.size()];
+        for (int i = 0; i < recordPointers.length; i++) {
+            recordPointers[i] = append(batch.get(i));
+        }
+        return recordPointers;
+    }
+
+    /**
+     * Appends tombstone of the primary key which hides records of the key appended before it. Scans pass
+     * tombstones to {@link RecordConsumer#acceptTombstone(long)}, spliterators skip them.
+     */
+    RecordPointer appendTombstone(long primaryKey) throws IOException;
+
+    /**
+     * Checks that the record can be appended, so an invalid batch is rejected before anything is written.
+     */
+    default void validate(Object[] values) {
+    }
+
+    void flush() throws IOException;
+
+    /**
+     * Flushes records and forces them to the storage device.
+     */
+    void force() throws IOException;
+
+    /**
+     * Returns position of the records appended so far, write-ahead log written after this call starts at it.
+     */
+    long checkpointPosition();
+
+    /**
+     * Returns scan of records flushed before the call. Columns set in {@code filterColumns} are decoded and
+     * passed to the filter, columns set in {@code projectedColumns} are decoded only for accepted records,
+     * values of other columns are {@code null}. Data file is read sequentially by chunks, so memory used by
+     * the scan doesn't depend on the table size, and is split at record boundaries for parallel scans.
+     */
+    Spliterator<Object[]> spliterator(boolean[] filterColumns, RecordFilter filter, boolean[] projectedColumns);
+
+    void close() throws IOException;
+
+    static int getPrimaryKeyOrdinal(final List<Column> columns) {
+        int ordinal = 0;
+        while (ordinal < columns.size() && !columns.get(ordinal).isPrimaryIndex()) {
+            ordinal++;
+        }
+        return ordinal;
+    }
+}
@@ -0,0 +1,85 @@
+package com.currency.books.storage;
+
+import com.currency.books.exception.DatabaseReadException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+
+/**
+ * Copy of the last page or block of a data file as of the last {@link StorageEngine#force()}. Engines rewrite
+ * their last page in place on every flush, a crash can tear the rewrite together with records written before
+ * the checkpoint, which the write-ahead log doesn't hold anymore. The torn page is restored from the copy when
+ * the file is opened. Copy is written to a temporary file which is moved over the previous copy, so the copy
+ * itself is never torn.
+ * <p>
+ * File layout: start of the page in the data file, page length, checksum of the rest of the file, page.
+ */
+final class TailDoubleWrite {
+    static final String POST_FIX = ".dwb";
+    private static final String TEMPORARY_POST_FIX = ".tmp";
+    private static final int START_OFFSET = 0;
+    private static final int LENGTH_OFFSET = 8;
+    private static final int CHECKSUM_OFFSET = 12;
+    private static final int HEADER_SIZE = 16;
+
+    private final Path path;
+    private final Path temporaryPath;
+
+    /**
+     * Page saved by the last force.
+     */
+    record Tail(long start, ByteBuffer content) {
+    }
+
+    TailDoubleWrite(final Path dataPath) {
+        this.path = dataPath.resolveSibling(dataPath.getFileName() + POST_FIX);
+        this.temporaryPath = path.resolveSibling(path.getFileName() + TEMPORARY_POST_FIX);
+    }
+
+    /**
+     * Returns the saved page or {@code null} if the data file was never forced.
+     */
+    Tail load() throws IOException {
+        if (!Files.exists(path)) {
+            return null;
+        }
+        final ByteBuffer file = ByteBuffer.wrap(Files.readAllBytes(path));
+        if (file.limit() < HEADER_SIZE || file.getInt(LENGTH_OFFSET) != file.limit() - HEADER_SIZE
+                || file.getInt(CHECKSUM_OFFSET) != checksum(file)) {
+            throw new DatabaseReadException("Copy of the last page " + path + " is damaged");
+        }
+        return new Tail(file.getLong(START_OFFSET), file.slice(HEADER_SIZE, file.limit() - HEADER_SIZE));
+    }
+
+    /**
+     * Replaces the saved page, the page must already be forced to the data file.
+     */
+    void save(final long start, final ByteBuffer content) throws IOException {
+        final ByteBuffer file = ByteBuffer.allocate(HEADER_SIZE + content.remaining());
+        file.putLong(START_OFFSET, start);
+        file.putInt(LENGTH_OFFSET, content.remaining());
+        file.put(HEADER_SIZE, content, content.position(), content.remaining());
+        file.putInt(CHECKSUM_OFFSET, checksum(file));
+        try (FileChannel channel = FileChannel.open(temporaryPath, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            while (file.hasRemaining()) {
+                channel.write(file);
+            }
+            channel.force(false);
+        }
+        Files.move(temporaryPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static int checksum(final ByteBuffer file) {
+        final CRC32C crc = new CRC32C();
+        crc.update(file.slice(START_OFFSET, CHECKSUM_OFFSET));
+        crc.update(file.slice(HEADER_SIZE, file.limit() - HEADER_SIZE));
+        return (int) crc.getValue();
+    }
+}
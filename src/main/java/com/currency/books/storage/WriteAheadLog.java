@@ -0,0 +1,397 @@
+package com.currency.books.storage;
+
+import com.currency.books.exception.DatabaseWriteException;
+import com.currency.books.model.ColumnType;
+import com.currency.books.model.Durability;
+import com.currency.books.model.WalStatistics;
+import com.currency.books.utils.BinaryUtils;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32C;
+
+/**
+ * Write-ahead log of a table. Every insert batch or delete is a single entry, so after a crash the batch is replayed
+ * completely or not at all.
+ * <p>
+ * Commits are grouped: the first waiting writer writes entries of all concurrent writers and forces the file
+ * once for the whole group, the others wait for it.
+ * <p>
+ * File layout: header with magic, checksum and data position the log starts from, then entries with payload
+ * length, checksum, log sequence number and payload. Payload is row count followed by rows encoded by
+ * {@link ColumnType#write}, then count and primary keys of tombstones, which are absent in logs written
+ * before tombstones existed. Log is reset on every checkpoint.
+ */
+public class WriteAheadLog implements AutoCloseable {
+    public static final long NO_POSITION = -1;
+    static final int MAGIC = 0x57414C31;
+    static final int HEADER_SIZE = 16;
+    static final int HEADER_CHECKSUM_OFFSET = 4;
+    static final int HEADER_START_POSITION_OFFSET = 8;
+    static final int ENTRY_HEADER_SIZE = 16;
+    static final int ENTRY_CHECKSUM_OFFSET = 4;
+    static final int ENTRY_LSN_OFFSET = 8;
+    private static final int INITIAL_BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_RETAINED_ENTRY_BUFFER_SIZE = 1024 * 1024;
+    private static final long[] NO_TOMBSTONES = new long[0];
+
+    public interface BatchConsumer {
+        /**
+         * Receives rows of the entry and primary keys of its tombstones, which are applied after the rows.
+         */
+        void accept(List<Object[]> rows, long[] tombstones) throws IOException;
+    }
+
+    private final ColumnType[] columnTypes;
+    private final Durability durability;
+    private final FileChannel channel;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition synced = lock.newCondition();
+    private final LongAdder commits = new LongAdder();
+    private final LongAdder syncs = new LongAdder();
+    private final LongAdder commitLatencyNanos = new LongAdder();
+    private final LongAccumulator maxCommitLatencyNanos = new LongAccumulator(Math::max, 0);
+    private final ThreadLocal<ByteBuffer> entryBuffer =
+            ThreadLocal.withInitial(() -> ByteBuffer.allocate(INITIAL_BUFFER_SIZE));
+    private final ThreadLocal<CRC32C> entryCrc = ThreadLocal.withInitial(CRC32C::new);
+    private ByteBuffer appendBuffer = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+    private ByteBuffer writeBuffer = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+    private long startPosition;
+    private long fileSize;
+    private long appendedLsn;
+    private long durableLsn;
+    private boolean syncInProgress;
+    private IOException failure;
+
+    /**
+     * Opens the log, torn entries at the end of the file are dropped. New log starts from the data position 0.
+     */
+    public WriteAheadLog(final Path path, final ColumnType[] columnTypes, final Durability durability)
+            throws IOException {
+        if (durability == Durability.NONE) {
+            throw new DatabaseWriteException("Write-ahead log can't be opened without durability");
+        }
+        this.columnTypes = columnTypes;
+        this.durability = durability;
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        if (channel.size() == 0) {
+            writeHeader(0);
+        } else {
+            startPosition = readStartPosition();
+        }
+        fileSize = HEADER_SIZE;
+        if (startPosition != NO_POSITION) {
+            fileSize = scanEntries(null);
+        }
+        channel.truncate(fileSize);
+        durableLsn = appendedLsn;
+    }
+
+    /**
+     * Returns data position the log starts from or {@link #NO_POSITION} if log header is damaged.
+     */
+    public long getStartPosition() {
+        return startPosition;
+    }
+
+    /**
+     * Adds batch to the log, it becomes durable only after {@link #commit(long)}. Batch is encoded before
+     * the log lock is taken, under the lock it is only copied. Returns log sequence number of the batch.
+     */
+    public long append(final List<Object[]> rows) {
+        return append(rows, NO_TOMBSTONES);
+    }
+
+    /**
+     * Adds entry with tombstones of the primary keys, it becomes durable only after {@link #commit(long)}.
+     */
+    public long appendTombstones(final long[] primaryKeys) {
+        return append(List.of(), primaryKeys);
+    }
+
+    private long append(final List<Object[]> rows, final long[] tombstones) {
+        final ByteBuffer entry = encodeEntry(rows, tombstones);
+        final CRC32C crc = entryCrc.get();
+        lock.lock();
+        try {
+            final long lsn = ++appendedLsn;
+            entry.putLong(ENTRY_LSN_OFFSET, lsn);
+            // checksum of the payload is extended by the log sequence number known only now
+            crc.update(entry.slice(ENTRY_LSN_OFFSET, Long.BYTES));
+            entry.putInt(ENTRY_CHECKSUM_OFFSET, (int) crc.getValue());
+            if (appendBuffer.remaining() < entry.remaining()) {
+                appendBuffer = grow(appendBuffer, appendBuffer.position() + entry.remaining());
+            }
+            appendBuffer.put(entry);
+            return lsn;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits until the batch and all batches appended before it are written according to durability.
+     */
+    public void commit(final long lsn) throws IOException {
+        final long startedAt = System.nanoTime();
+        lock.lock();
+        try {
+            while (durableLsn < lsn) {
+                if (failure != null) {
+                    throw new IOException("Write-ahead log is broken", failure);
+                }
+                if (syncInProgress) {
+                    synced.awaitUninterruptibly();
+                } else {
+                    sync();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        final long latency = System.nanoTime() - startedAt;
+        commits.increment();
+        commitLatencyNanos.add(latency);
+        maxCommitLatencyNanos.accumulate(latency);
+    }
+
+    /**
+     * Writes all appended entries as a group, lock is released for the time of writing,
+     * so writers arriving meanwhile form the next group.
+     */
+    private void sync() throws IOException {
+        syncInProgress = true;
+        final ByteBuffer group = appendBuffer;
+        final long groupLsn = appendedLsn;
+        appendBuffer = writeBuffer;
+        appendBuffer.clear();
+        writeBuffer = group;
+        lock.unlock();
+        IOException syncFailure = null;
+        try {
+            group.flip();
+            while (group.hasRemaining()) {
+                fileSize += channel.write(group, fileSize);
+            }
+            if (durability == Durability.FSYNC) {
+                channel.force(false);
+            }
+            syncs.increment();
+        } catch (IOException e) {
+            syncFailure = e;
+        } finally {
+            lock.lock();
+            syncInProgress = false;
+            if (syncFailure == null) {
+                durableLsn = groupLsn;
+            } else {
+                failure = syncFailure;
+            }
+            synced.signalAll();
+        }
+        if (syncFailure != null) {
+            throw syncFailure;
+        }
+    }
+
+    /**
+     * Calls consumer for every batch in the log in the order of appending.
+     */
+    public void replay(final BatchConsumer consumer) throws IOException {
+        if (startPosition != NO_POSITION) {
+            scanEntries(consumer);
+        }
+    }
+
+    /**
+     * Drops all entries and starts the log from the data position. Must not be called concurrently with
+     * writers, all appended batches must be committed.
+     */
+    public void reset(final long dataPosition) throws IOException {
+        lock.lock();
+        try {
+            if (appendBuffer.position() > 0 || syncInProgress) {
+                throw new DatabaseWriteException("Write-ahead log can't be reset with uncommitted entries");
+            }
+            // entries are removed before the new position is written, so they never apply to it
+            channel.truncate(0);
+            channel.force(false);
+            writeHeader(dataPosition);
+            fileSize = HEADER_SIZE;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public WalStatistics getStatistics() {
+        return new WalStatistics(commits.sum(), syncs.sum(), commitLatencyNanos.sum(), maxCommitLatencyNanos.get());
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            if (failure == null && !syncInProgress && appendBuffer.position() > 0) {
+                sync();
+            }
+        } finally {
+            lock.unlock();
+        }
+        channel.close();
+    }
+
+    private ByteBuffer encodeEntry(final List<Object[]> rows, final long[] tombstones) {
+        ByteBuffer entry = entryBuffer.get();
+        while (true) {
+            try {
+                entry.clear();
+                entry.position(ENTRY_HEADER_SIZE);
+                BinaryUtils.putVarInt(entry, rows.size());
+                for (final Object[] values : rows) {
+                    for (int i = 0; i < columnTypes.length; i++) {
+                        columnTypes[i].write(values[i], entry);
+                    }
+                }
+                BinaryUtils.putVarInt(entry, tombstones.length);
+                for (final long primaryKey : tombstones) {
+                    entry.putLong(primaryKey);
+                }
+                break;
+            } catch (BufferOverflowException e) {
+                entry = ByteBuffer.allocate(entry.capacity() * 2);
+                if (entry.capacity() <= MAX_RETAINED_ENTRY_BUFFER_SIZE) {
+                    entryBuffer.set(entry);
+                }
+            }
+        }
+        final int payloadLength = entry.position() - ENTRY_HEADER_SIZE;
+        entry.putInt(0, payloadLength);
+        final CRC32C crc = entryCrc.get();
+        crc.reset();
+        crc.update(entry.slice(ENTRY_HEADER_SIZE, payloadLength));
+        return entry.flip();
+    }
+
+    /**
+     * Reads entries from the beginning of the log, returns position after the last valid entry.
+     */
+    private long scanEntries(final BatchConsumer consumer) throws IOException {
+        final ByteBuffer entryHeader = ByteBuffer.allocate(ENTRY_HEADER_SIZE);
+        final long size = channel.size();
+        long position = HEADER_SIZE;
+        while (position + ENTRY_HEADER_SIZE <= size) {
+            readFully(position, entryHeader);
+            final int payloadLength = entryHeader.getInt(0);
+            if (payloadLength < 0 || position + ENTRY_HEADER_SIZE + payloadLength > size) {
+                break;
+            }
+            final ByteBuffer entry = ByteBuffer.allocate(ENTRY_HEADER_SIZE + payloadLength);
+            readFully(position, entry);
+            if (entry.getInt(ENTRY_CHECKSUM_OFFSET) != entryChecksum(entry, payloadLength)) {
+                break;
+            }
+            appendedLsn = entry.getLong(ENTRY_LSN_OFFSET);
+            if (consumer != null) {
+                entry.position(ENTRY_HEADER_SIZE);
+                final List<Object[]> rows = decodeRows(entry);
+                consumer.accept(rows, decodeTombstones(entry));
+            }
+            position += ENTRY_HEADER_SIZE + payloadLength;
+        }
+        return position;
+    }
+
+    private List<Object[]> decodeRows(final ByteBuffer payload) {
+        final int rowCount = BinaryUtils.getVarInt(payload);
+        final List<Object[]> rows = new ArrayList<>(rowCount);
+        for (int row = 0; row < rowCount; row++) {
+            final Object[] values = new Object[columnTypes.length];
+            for (int i = 0; i < columnTypes.length; i++) {
+                values[i] = columnTypes[i].read(payload);
+            }
+            rows.add(values);
+        }
+        return rows;
+    }
+
+    private static long[] decodeTombstones(final ByteBuffer payload) {
+        if (!payload.hasRemaining()) {
+            return NO_TOMBSTONES;
+        }
+        final long[] tombstones = new long[BinaryUtils.getVarInt(payload)];
+        for (int i = 0; i < tombstones.length; i++) {
+            tombstones[i] = payload.getLong();
+        }
+        return tombstones;
+    }
+
+    private long readStartPosition() throws IOException {
+        if (channel.size() < HEADER_SIZE) {
+            return NO_POSITION;
+        }
+        final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        readFully(0, header);
+        if (header.getInt(0) != MAGIC || header.getInt(HEADER_CHECKSUM_OFFSET) != headerChecksum(header)) {
+            return NO_POSITION;
+        }
+        return header.getLong(HEADER_START_POSITION_OFFSET);
+    }
+
+    private void writeHeader(final long dataPosition) throws IOException {
+        final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(0, MAGIC);
+        header.putLong(HEADER_START_POSITION_OFFSET, dataPosition);
+        header.putInt(HEADER_CHECKSUM_OFFSET, headerChecksum(header));
+        while (header.hasRemaining()) {
+            channel.write(header, header.position());
+        }
+        channel.force(false);
+        startPosition = dataPosition;
+    }
+
+    private void readFully(final long position, final ByteBuffer target) throws IOException {
+        target.clear();
+        while (target.hasRemaining()) {
+            if (channel.read(target, position + target.position()) < 0) {
+                throw new EOFException("Position " + position + " is out of file bounds");
+            }
+        }
+        target.clear();
+    }
+
+    private static int headerChecksum(final ByteBuffer header) {
+        final CRC32C crc = new CRC32C();
+        crc.update(header.slice(HEADER_START_POSITION_OFFSET, HEADER_SIZE - HEADER_START_POSITION_OFFSET));
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Checksum covers payload followed by log sequence number. Writers compute the payload part before
+     * the log lock is taken and extend it by the log sequence number under the lock.
+     */
+    private static int entryChecksum(final ByteBuffer entry, final int payloadLength) {
+        final CRC32C crc = new CRC32C();
+        crc.update(entry.slice(ENTRY_HEADER_SIZE, payloadLength));
+        crc.update(entry.slice(ENTRY_LSN_OFFSET, Long.BYTES));
+        return (int) crc.getValue();
+    }
+
+    private static ByteBuffer grow(final ByteBuffer buffer, final int minCapacity) {
+        final ByteBuffer grown = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, minCapacity));
+        buffer.flip();
+        grown.put(buffer);
+        return grown;
+    }
+}
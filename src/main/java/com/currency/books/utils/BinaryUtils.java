@@ -0,0 +1,36 @@
+package com.currency.books.utils;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Helpers for variable length integer encoding used by binary storage formats.
+ */
+public final class BinaryUtils {
+    private static final int VAR_INT_PAYLOAD_BITS = 7;
+    private static final int VAR_INT_PAYLOAD_MASK = 0x7F;
+    private static final int VAR_INT_CONTINUATION_BIT = 0x80;
+
+    private BinaryUtils() {
+    }
+
+    public static void putVarInt(final ByteBuffer buffer, final int value) {
+        int remaining = value;
+        while ((remaining & ~VAR_INT_PAYLOAD_MASK) != 0) {
+            buffer.put((byte) ((remaining & VAR_INT_PAYLOAD_MASK) | VAR_INT_CONTINUATION_BIT));
+            remaining >>>= VAR_INT_PAYLOAD_BITS;
+        }
+        buffer.put((byte) remaining);
+    }
+
+    public static int getVarInt(final ByteBuffer buffer) {
+        int value = 0;
+        int shift = 0;
+        byte current;
+        do {
+            current = buffer.get();
+            value |= (current & VAR_INT_PAYLOAD_MASK) << shift;
+            shift += VAR_INT_PAYLOAD_BITS;
+        } while ((current & VAR_INT_CONTINUATION_BIT) != 0);
+        return value;
+    }
+}
@@ -0,0 +1,29 @@
+package com.currency.books.utils;
+
+import com.currency.books.model.RecordPointer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+
+/**
+ * Random access reader of a table data file. Implementations are shared between threads.
+ */
+public interface DataFileReader extends AutoCloseable {
+
+    static DataFileReader open(final Path path, final boolean memoryMapped) throws IOException {
+        return memoryMapped ? new MappedFileReader(path) : new PositionalFileReader(path);
+    }
+
+    /**
+     * Returns buffer with position 0 and limit equal to the requested length. Buffer may be a read-only view
+     * of the file, so it must not be modified and shouldn't be retained longer than needed.
+     */
+    ByteBuffer read(long offset, int length) throws IOException;
+
+    default ByteBuffer read(final RecordPointer recordPointer) throws IOException {
+        return read(recordPointer.getOffset(), recordPointer.getLength());
+    }
+
+    void close() throws IOException;
+}
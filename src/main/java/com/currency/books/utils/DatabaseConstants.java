@@ -2,8 +2,18 @@ package com.currency.books.utils;
 
 public interface DatabaseConstants {
     String DATABASE_DATA_FOLDER = System.getProperty("java.io.tmpdir") + "/data-folder";
-    String INDEX_POST_FIX = "-primary-index.csv";
+    String INDEX_POST_FIX = "-primary-index.bpt";
     String DATA_POSTFIX = "-data.csv";
+    String BINARY_DATA_POST_FIX = "-data.bin";
+    String COLUMNAR_DATA_POST_FIX = "-data.col";
+    String COMPRESSED_DATA_POST_FIX = "-data.cmp";
+    String LSM_DATA_POST_FIX = "-data.lsm";
     String METADATA_POST_FIX = "-metadata.csv";
+    String OPTIONS_POST_FIX = "-options.csv";
+    String WAL_POST_FIX = "-wal.log";
+    String INDEXES_POST_FIX = "-indexes.csv";
+    String SECONDARY_INDEX_POST_FIX = "-index.idx";
+    String VACUUM_POST_FIX = ".vacuum";
+    String VACUUM_MARKER_POST_FIX = "-vacuum.done";
     String TABLES_FILE = DATABASE_DATA_FOLDER + "/" + "tables.csv";
 }
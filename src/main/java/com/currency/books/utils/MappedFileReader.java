@@ -0,0 +1,101 @@
+package com.currency.books.utils;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Reads records from memory-mapped segments of the file, so reads are served straight from the page cache.
+ * <p>
+ * File is mapped by segments of fixed size. Only the last segment can be partial, it is remapped when a read
+ * reaches beyond the mapped area, e.g. after new records were appended. Segments array is replaced as a whole,
+ * so readers never observe partially remapped state and keep using previous mapping until they finish.
+ * JDK doesn't allow to unmap buffers explicitly, {@link #close()} drops all references and mappings are
+ * released by garbage collector. Reads racing with close fail with {@link ClosedChannelException}.
+ */
+public class MappedFileReader implements DataFileReader {
+    public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+    private static final MappedByteBuffer[] NO_SEGMENTS = new MappedByteBuffer[0];
+
+    private final FileChannel channel;
+    private final int segmentSize;
+    private volatile MappedByteBuffer[] segments = NO_SEGMENTS;
+    private volatile long mappedSize;
+
+    public MappedFileReader(final Path path) throws IOException {
+        this(path, DEFAULT_SEGMENT_SIZE);
+    }
+
+    public MappedFileReader(final Path path, final int segmentSize) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        this.segmentSize = segmentSize;
+        remap(0);
+    }
+
+    @Override
+    public ByteBuffer read(final long offset, final int length) throws IOException {
+        final long end = offset + length;
+        if (end > mappedSize) {
+            remap(end);
+        }
+        final MappedByteBuffer[] currentSegments = segments;
+        if (currentSegments.length == 0) {
+            // segments are dropped by concurrent close, open reader has none only for an empty file
+            if (length > 0 || !channel.isOpen()) {
+                throw new ClosedChannelException();
+            }
+            return ByteBuffer.allocate(0);
+        }
+        final int segmentIndex = (int) (offset / segmentSize);
+        final int segmentOffset = (int) (offset % segmentSize);
+        if (segmentOffset + length <= segmentSize) {
+            return currentSegments[segmentIndex].slice(segmentOffset, length);
+        }
+
+        // record crosses segment boundary, so it is copied
+        final ByteBuffer buffer = ByteBuffer.allocate(length);
+        int currentSegment = segmentIndex;
+        int currentOffset = segmentOffset;
+        while (buffer.hasRemaining()) {
+            final int chunkLength = Math.min(buffer.remaining(), segmentSize - currentOffset);
+            buffer.put(currentSegments[currentSegment].slice(currentOffset, chunkLength));
+            currentSegment++;
+            currentOffset = 0;
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        segments = NO_SEGMENTS;
+        mappedSize = 0;
+        channel.close();
+    }
+
+    private synchronized void remap(final long requiredSize) throws IOException {
+        if (requiredSize <= mappedSize && requiredSize > 0) {
+            return;
+        }
+        final long fileSize = channel.size();
+        if (requiredSize > fileSize) {
+            throw new EOFException("Record at offset " + requiredSize + " is out of file bounds");
+        }
+        final int segmentCount = (int) ((fileSize + segmentSize - 1) / segmentSize);
+        final MappedByteBuffer[] remappedSegments = Arrays.copyOf(segments, segmentCount);
+        // last mapped segment could be partial, so it is mapped again together with new segments
+        for (int i = Math.max(segments.length - 1, 0); i < segmentCount; i++) {
+            final long segmentStart = (long) i * segmentSize;
+            remappedSegments[i] = channel.map(FileChannel.MapMode.READ_ONLY, segmentStart,
+                    Math.min(segmentSize, fileSize - segmentStart));
+        }
+        segments = remappedSegments;
+        mappedSize = fileSize;
+    }
+}
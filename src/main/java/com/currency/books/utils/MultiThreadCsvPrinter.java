@@ -1,35 +1,163 @@
 package com.currency.books.utils;
 
+import com.currency.books.model.RecordPointer;
 import com.opencsv.CSVWriter;
 
-import java.io.FileWriter;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Appends CSV lines to a file without locks. Every writer encodes its lines in a thread local buffer,
+ * reserves space for them by advancing an atomic offset and writes them with a positional write, so writers
+ * of the same file run in parallel. Lines written by one call are contiguous in the file.
+ * <p>
+ * Writers finish out of the order of their reservations, so the end of reserved space isn't the end of written
+ * lines. Completed writes advance a watermark below which the file has no holes, writes which finish ahead of
+ * an earlier one are remembered until the earlier one completes.
+ */
 public class MultiThreadCsvPrinter implements AutoCloseable {
-    private final CSVWriter csvWriter;
-    private Integer rowIndex;
+    private static final ThreadLocal<LineEncoder> LINE_ENCODER = ThreadLocal.withInitial(LineEncoder::new);
 
-    public MultiThreadCsvPrinter(final Path path, final Integer rowIndex) throws IOException {
-        this.csvWriter = writerFromPath(path);
-        this.rowIndex = rowIndex;
+    private final FileChannel channel;
+    private final AtomicLong position;
+    /**
+     * Ends of writes completed after the watermark by their starts, guarded by the printer monitor.
+     */
+    private final Map<Long, Long> pendingCompletions = new HashMap<>();
+    /**
+     * End of written space which isn't followed by a hole, space after it may be reserved but not written yet.
+     */
+    private volatile long completedPosition;
+
+    /**
+     * Opens printer for the file. Zero position truncates the file, otherwise lines are appended
+     * to the end of the file and position must be equal to the current file size.
+     */
+    public MultiThreadCsvPrinter(final Path path, final long position) throws IOException {
+        this.channel = position > 0
+                ? FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE)
+                : FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        this.position = new AtomicLong(position);
+        this.completedPosition = position;
     }
 
-    private CSVWriter writerFromPath(final Path path) throws IOException {
-        final FileWriter fileWriter = new FileWriter(path.toFile());
-        return new CSVWriter(fileWriter);
+    public RecordPointer writeLine(final String... line) throws IOException {
+        final byte[] bytes = LINE_ENCODER.get().encode(line);
+        final long offset = position.getAndAdd(bytes.length);
+        write(ByteBuffer.wrap(bytes), offset);
+        complete(offset, offset + bytes.length);
+        return new RecordPointer(offset, bytes.length);
     }
 
-    public synchronized Integer writeLine(final String... line) throws IOException {
-        this.csvWriter.writeNext(line);
-        return rowIndex++;
+    /**
+     * Writes lines with a single reservation and a single write. Returns pointers in the order of lines.
+     */
+    public RecordPointer[] writeLines(final List<String[]> lines) throws IOException {
+        final LineEncoder lineEncoder = LINE_ENCODER.get();
+        final ByteArrayOutputStream batch = lineEncoder.batchBuffer();
+        final int[] lengths = new int[lines.size()];
+        for (int i = 0; i < lengths.length; i++) {
+            final byte[] bytes = lineEncoder.encode(lines.get(i));
+            batch.write(bytes, 0, bytes.length);
+            lengths[i] = bytes.length;
+        }
+        final long offset = position.getAndAdd(batch.size());
+        write(ByteBuffer.wrap(batch.toByteArray()), offset);
+        complete(offset, offset + batch.size());
+
+        final RecordPointer[] recordPointers = new RecordPointer[lengths.length];
+        long lineOffset = offset;
+        for (int i = 0; i < lengths.length; i++) {
+            recordPointers[i] = new RecordPointer(lineOffset, lengths[i]);
+            lineOffset += lengths[i];
+        }
+        return recordPointers;
     }
 
-    public synchronized void flush() throws IOException {
-        this.csvWriter.flush();
+    /**
+     * Lines are passed to the operating system by the write itself, so there is nothing to flush.
+     */
+    public void flush() {
+    }
+
+    /**
+     * Forces written lines to the storage device.
+     */
+    public void force() throws IOException {
+        channel.force(false);
+    }
+
+    /**
+     * Returns end of the reserved space, lines of writers which haven't returned yet may be still missing
+     * before it.
+     */
+    public long getPosition() {
+        return position.get();
+    }
+
+    /**
+     * Returns end of written lines, every line before it is complete. Write which failed keeps it before its
+     * space, so readers never reach a hole.
+     */
+    public long getCompletedPosition() {
+        return completedPosition;
     }
 
     public void close() throws IOException {
-        this.csvWriter.close();
+        channel.close();
+    }
+
+    private synchronized void complete(final long start, final long end) {
+        if (start != completedPosition) {
+            pendingCompletions.put(start, end);
+            return;
+        }
+        long completed = end;
+        Long pendingEnd;
+        while ((pendingEnd = pendingCompletions.remove(completed)) != null) {
+            completed = pendingEnd;
+        }
+        completedPosition = completed;
+    }
+
+    private void write(final ByteBuffer buffer, final long offset) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, offset + buffer.position());
+        }
+    }
+
+    private static class LineEncoder {
+        private static final int MAX_RETAINED_BUFFER_SIZE = 1024 * 1024;
+
+        private final StringWriter lineBuffer = new StringWriter();
+        private final CSVWriter lineWriter = new CSVWriter(lineBuffer);
+        private ByteArrayOutputStream batchBuffer = new ByteArrayOutputStream();
+
+        private byte[] encode(final String[] line) throws IOException {
+            lineBuffer.getBuffer().setLength(0);
+            lineWriter.writeNext(line);
+            lineWriter.flush();
+            return lineBuffer.toString().getBytes(StandardCharsets.UTF_8);
+        }
+
+        private ByteArrayOutputStream batchBuffer() {
+            // buffer of a huge batch isn't kept by the thread forever
+            if (batchBuffer.size() > MAX_RETAINED_BUFFER_SIZE) {
+                batchBuffer = new ByteArrayOutputStream();
+            }
+            batchBuffer.reset();
+            return batchBuffer;
+        }
     }
 }
@@ -0,0 +1,38 @@
+package com.currency.books.utils;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads records by their byte offset. Channel is opened once and shared between threads,
+ * positional reads don't change channel position so no synchronization is required.
+ */
+public class PositionalFileReader implements DataFileReader {
+    private final FileChannel channel;
+
+    public PositionalFileReader(final Path path) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+    }
+
+    @Override
+    public ByteBuffer read(final long offset, final int length) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            final int read = channel.read(buffer, offset + buffer.position());
+            if (read < 0) {
+                throw new EOFException("Record at offset " + offset + " is out of file bounds");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
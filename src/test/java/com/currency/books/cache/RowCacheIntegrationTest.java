@@ -0,0 +1,86 @@
+package com.currency.books.cache;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RowCacheIntegrationTest {
+
+    private static final long CACHE_BYTES = 64 * 1024;
+    private static final int HOT_KEYS = 50;
+    private static final int SCANNED_KEYS = 100_000;
+
+    @Test
+    public void testHotKeysSurviveScan() {
+        final RowCache rowCache = new RowCache(CACHE_BYTES);
+        for (int round = 0; round < 10; round++) {
+            for (long key = 0; key < HOT_KEYS; key++) {
+                if (rowCache.get(key, key) == null) {
+                    rowCache.put(key, key, row(key));
+                }
+            }
+        }
+
+        for (long key = HOT_KEYS; key < HOT_KEYS + SCANNED_KEYS; key++) {
+            if (rowCache.get(key, key) == null) {
+                rowCache.put(key, key, row(key));
+            }
+        }
+
+        int hotHits = 0;
+        for (long key = 0; key < HOT_KEYS; key++) {
+            if (rowCache.get(key, key) != null) {
+                hotHits++;
+            }
+        }
+        assertTrue(hotHits > HOT_KEYS * 9 / 10, "Only " + hotHits + " hot keys survived the scan");
+
+        final var statistics = rowCache.getStatistics();
+        assertTrue(statistics.getBytes() <= CACHE_BYTES);
+        assertTrue(statistics.getEvictions() > 0);
+        assertTrue(statistics.getHits() >= HOT_KEYS * 9L);
+    }
+
+    @Test
+    public void testRecordIsServedOnlyForSamePointer() {
+        final RowCache rowCache = new RowCache(CACHE_BYTES);
+        rowCache.put(1, 100, row(1));
+        assertNotNull(rowCache.get(1, 100));
+        assertNull(rowCache.get(1, 200));
+
+        rowCache.update(1, 200, row(2));
+        assertArrayEquals(row(2), rowCache.get(1, 200));
+
+        // absent keys are not added by writes
+        rowCache.update(2, 300, row(2));
+        assertNull(rowCache.get(2, 300));
+
+        rowCache.invalidate(1);
+        assertNull(rowCache.get(1, 200));
+        assertEquals(0, rowCache.getStatistics().getEntries());
+    }
+
+    @Test
+    public void testClearDropsAllRecords() {
+        final RowCache rowCache = new RowCache(CACHE_BYTES);
+        for (long key = 0; key < HOT_KEYS; key++) {
+            rowCache.put(key, key, row(key));
+            rowCache.get(key, key);
+        }
+        rowCache.clear();
+        assertNull(rowCache.get(1, 1));
+        assertEquals(0, rowCache.getStatistics().getEntries());
+        assertEquals(0, rowCache.getStatistics().getBytes());
+
+        rowCache.put(1, 1, row(1));
+        assertArrayEquals(row(1), rowCache.get(1, 1));
+    }
+
+    private static Object[] row(final long key) {
+        return new Object[]{key, "value" + key};
+    }
+}
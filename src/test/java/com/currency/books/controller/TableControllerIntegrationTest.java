@@ -0,0 +1,104 @@
+package com.currency.books.controller;
+
+import com.currency.books.repository.DatabaseRepository;
+import com.currency.books.repository.MetadataRepository;
+import com.currency.books.repository.SchemaCatalog;
+import com.currency.books.repository.TablesRepository;
+import com.currency.books.utils.DatabaseConstants;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(classes = {DatabaseRepository.class, MetadataRepository.class, TablesRepository.class,
+        SchemaCatalog.class, SimpleMeterRegistry.class})
+class TableControllerIntegrationTest {
+
+    private static final String HTTP_TABLE = "http_table";
+
+    @Autowired
+    private DatabaseRepository databaseRepository;
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        cleanUpTable();
+        mockMvc = MockMvcBuilders.standaloneSetup(new TableController(databaseRepository, new ObjectMapper()))
+                .setControllerAdvice(new ApiExceptionHandler())
+                .build();
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        databaseRepository.closeWriters();
+        cleanUpTable();
+        databaseRepository.setupDatabaseDataFolder();
+    }
+
+    @Test
+    public void testRequests() throws Exception {
+        mockMvc.perform(post("/tables/" + HTTP_TABLE).contentType(MediaType.APPLICATION_JSON).content("""
+                        {"columns": [{"columnName": "id", "columnType": "LONG", "primaryIndex": true},
+                                     {"columnName": "value", "columnType": "STRING"}]}"""))
+                .andExpect(status().isCreated());
+        mockMvc.perform(post("/tables/" + HTTP_TABLE).contentType(MediaType.APPLICATION_JSON).content("""
+                        {"columns": [{"columnName": "id", "columnType": "LONG", "primaryIndex": true}]}"""))
+                .andExpect(status().isConflict());
+        mockMvc.perform(post("/tables/" + HTTP_TABLE + "/rows").contentType(MediaType.APPLICATION_JSON).content("""
+                        [{"id": 1, "value": "first"}, {"id": 2, "value": "second"}, {"id": 3, "value": "third"}]"""))
+                .andExpect(status().isNoContent());
+        mockMvc.perform(post("/tables/" + HTTP_TABLE + "/rows").contentType(MediaType.APPLICATION_JSON).content("""
+                        [{"id": "4", "value": "fourth"}]"""))
+                .andExpect(status().isBadRequest());
+
+        mockMvc.perform(get("/tables/" + HTTP_TABLE + "/rows/2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id").value(2))
+                .andExpect(jsonPath("$.value").value("second"));
+        mockMvc.perform(get("/tables/" + HTTP_TABLE + "/rows/4")).andExpect(status().isNotFound());
+        mockMvc.perform(get("/tables/missing_table/rows/1")).andExpect(status().isNotFound());
+        mockMvc.perform(get("/tables/" + HTTP_TABLE + "/rows").param("id", "3", "4", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].value").value("third"))
+                .andExpect(jsonPath("$[1]").isEmpty())
+                .andExpect(jsonPath("$[2].value").value("first"));
+
+        mockMvc.perform(get("/tables/" + HTTP_TABLE + "/scan").param("filter", "id:GREATER_THAN:1")
+                        .param("column", "value"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(TableController.NDJSON))
+                .andExpect(content().string("{\"value\":\"second\"}\n{\"value\":\"third\"}\n"));
+        mockMvc.perform(get("/tables/" + HTTP_TABLE + "/scan").param("filter", "id:GREATER_THAN:one"))
+                .andExpect(status().isBadRequest());
+    }
+
+    private static void cleanUpTable() throws IOException {
+        final Path dataFolder = Paths.get(DatabaseConstants.DATABASE_DATA_FOLDER);
+        if (!Files.exists(dataFolder)) {
+            return;
+        }
+        try (final DirectoryStream<Path> tableFiles = Files.newDirectoryStream(dataFolder, HTTP_TABLE + "-*")) {
+            for (final Path tableFile : tableFiles) {
+                Files.deleteIfExists(tableFile);
+            }
+        }
+    }
+}
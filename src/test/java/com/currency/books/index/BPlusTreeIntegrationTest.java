@@ -0,0 +1,90 @@
+package com.currency.books.index;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class BPlusTreeIntegrationTest {
+
+    private static final String TEST_INDEX_FILE = "test-index.bpt";
+    // enough for three levels with 8 KB pages
+    private static final int KEY_COUNT = 300_000;
+    private static final int CACHED_PAGES = 64;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testRandomInsertsSurviveReopen() throws IOException {
+        final Path path = tempDir.resolve(TEST_INDEX_FILE);
+        final List<Long> keys = new ArrayList<>();
+        for (long i = 0; i < KEY_COUNT; i++) {
+            keys.add(i * 2);
+        }
+        Collections.shuffle(keys, new Random(42));
+
+        try (final BPlusTree tree = new BPlusTree(path, CACHED_PAGES)) {
+            for (final Long key : keys) {
+                tree.put(key, key + 1);
+            }
+            tree.put(10, 100);
+        }
+
+        try (final BPlusTree tree = new BPlusTree(path, CACHED_PAGES)) {
+            assertEquals(KEY_COUNT, tree.size());
+            assertEquals(100, tree.get(10));
+            assertEquals(1001, tree.get(1000));
+            assertEquals(BPlusTree.NO_VALUE, tree.get(1001));
+            assertRange(tree, 999, 200_001);
+            assertRange(tree, Long.MIN_VALUE, Long.MAX_VALUE);
+            final List<Long> limitedKeys = new ArrayList<>();
+            tree.forEachInRange(999, Long.MAX_VALUE, 1000, (key, value) -> limitedKeys.add(key));
+            assertEquals(1000, limitedKeys.size());
+            assertEquals(2998, limitedKeys.get(limitedKeys.size() - 1));
+        }
+    }
+
+    @Test
+    public void testBulkLoad() throws IOException {
+        final Path path = tempDir.resolve(TEST_INDEX_FILE);
+        final long[] keys = new long[KEY_COUNT];
+        final long[] values = new long[KEY_COUNT];
+        for (int i = 0; i < KEY_COUNT; i++) {
+            keys[i] = i * 2L;
+            values[i] = i * 2L + 1;
+        }
+        try (final BPlusTree tree = new BPlusTree(path, CACHED_PAGES)) {
+            tree.bulkLoad(keys, values, KEY_COUNT);
+            tree.put(-1, 0);
+            tree.put(3, 4);
+            assertEquals(KEY_COUNT + 2, tree.size());
+            assertEquals(0, tree.get(-1));
+            assertEquals(4, tree.get(3));
+            assertEquals(2L * KEY_COUNT - 1, tree.get(2L * KEY_COUNT - 2));
+        }
+    }
+
+    private static void assertRange(final BPlusTree tree, final long from, final long to) throws IOException {
+        final List<Long> visitedKeys = new ArrayList<>();
+        tree.forEachInRange(from, to, (key, value) -> {
+            if (key != 10) {
+                assertEquals(key + 1, value);
+            }
+            visitedKeys.add(key);
+        });
+        final long firstKey = Math.max(from + Math.floorMod(from, 2), 0);
+        final long lastKey = Math.min(to - Math.floorMod(to, 2), (KEY_COUNT - 1) * 2L);
+        assertEquals((lastKey - firstKey) / 2 + 1, visitedKeys.size());
+        for (int i = 0; i < visitedKeys.size(); i++) {
+            assertEquals(firstKey + i * 2L, visitedKeys.get(i));
+        }
+    }
+}
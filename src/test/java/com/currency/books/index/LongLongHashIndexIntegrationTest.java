@@ -0,0 +1,56 @@
+package com.currency.books.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LongLongHashIndexIntegrationTest {
+
+    private static final int KEY_COUNT = 200_000;
+
+    @Test
+    public void testLookupsDuringInsertsAndResizes() throws Exception {
+        final LongLongHashIndex index = new LongLongHashIndex();
+        final AtomicLong lastInserted = new AtomicLong(-1);
+        final AtomicBoolean writing = new AtomicBoolean(true);
+        final ExecutorService executorService = Executors.newFixedThreadPool(2);
+        try {
+            final Future<?> reader = executorService.submit(() -> {
+                while (writing.get()) {
+                    final long inserted = lastInserted.get();
+                    for (long i = Math.max(inserted - 100, 0); i <= inserted; i++) {
+                        assertEquals(i * 10, index.get(key(i)));
+                    }
+                }
+            });
+            for (long i = 0; i < KEY_COUNT; i++) {
+                index.put(key(i), i * 10);
+                lastInserted.set(i);
+            }
+            writing.set(false);
+            reader.get(10, TimeUnit.SECONDS);
+        } finally {
+            executorService.shutdownNow();
+        }
+
+        assertEquals(KEY_COUNT, index.size());
+        index.put(key(1), 1);
+        assertEquals(KEY_COUNT, index.size());
+        assertEquals(1, index.get(key(1)));
+        assertEquals(LongLongHashIndex.NO_VALUE, index.get(key(KEY_COUNT)));
+        assertTrue(index.memoryUsageBytes() < (long) index.capacity() * 4 * Long.BYTES);
+    }
+
+    private static long key(final long i) {
+        // covers zero and negative keys
+        return i % 2 == 0 ? i / 2 : -(i / 2) - 1;
+    }
+}
@@ -0,0 +1,62 @@
+package com.currency.books.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PrimaryKeySetIntegrationTest {
+
+    private static final int OPERATION_COUNT = 200_000;
+    private static final int KEY_RANGE = 5_000;
+
+    @Test
+    public void testKeysMatchSetAfterRandomAddsAndRemoves() {
+        PrimaryKeySet primaryKeys = new PrimaryKeySet();
+        final Set<Long> expected = new HashSet<>();
+        final Random random = new Random(42);
+        for (int i = 0; i < OPERATION_COUNT; i++) {
+            // covers zero and negative keys, removals keep probe sequences of colliding keys
+            final long key = random.nextInt(KEY_RANGE) - KEY_RANGE / 2;
+            if (random.nextInt(3) == 0) {
+                expected.remove(key);
+                if (primaryKeys.remove(key)) {
+                    assertTrue(expected.isEmpty());
+                    primaryKeys = new PrimaryKeySet();
+                }
+            } else {
+                expected.add(key);
+                assertTrue(primaryKeys.add(key));
+            }
+        }
+        assertArrayEquals(sorted(expected), sorted(primaryKeys.toArray()));
+    }
+
+    @Test
+    public void testEmptiedSetIsDropped() {
+        final PrimaryKeySet primaryKeys = new PrimaryKeySet();
+        assertTrue(primaryKeys.add(0));
+        assertTrue(primaryKeys.add(7));
+        assertFalse(primaryKeys.remove(0));
+        assertFalse(primaryKeys.remove(8));
+        assertTrue(primaryKeys.remove(7));
+        assertFalse(primaryKeys.add(7));
+        assertArrayEquals(new long[0], primaryKeys.toArray());
+    }
+
+    private static long[] sorted(final Set<Long> keys) {
+        return keys.stream().mapToLong(Long::longValue).sorted().toArray();
+    }
+
+    private static long[] sorted(final long[] keys) {
+        final long[] copy = keys.clone();
+        Arrays.sort(copy);
+        return copy;
+    }
+}
@@ -0,0 +1,145 @@
+package com.currency.books.repository;
+
+import com.currency.books.exception.DatabaseOverloadedException;
+import com.currency.books.exception.TableDoesNotExistException;
+import com.currency.books.exception.TypeMismatchException;
+import com.currency.books.model.Column;
+import com.currency.books.model.ColumnData;
+import com.currency.books.model.ColumnType;
+import com.currency.books.model.Row;
+import com.currency.books.model.StorageType;
+import com.currency.books.model.TableOptions;
+import com.currency.books.utils.DatabaseConstants;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+@SpringBootTest(classes = {DatabaseRepository.class, MetadataRepository.class, TablesRepository.class,
+        SchemaCatalog.class, SimpleMeterRegistry.class, AsyncDatabaseRepository.class},
+        properties = "simple-database.async.max-in-flight=64")
+class AsyncDatabaseRepositoryIntegrationTest {
+
+    private static final String ASYNC_TABLE = "async_table";
+    private static final int BATCH_COUNT = 20;
+    private static final int BATCH_SIZE = 100;
+    private static final String ID_COLUMN = "id";
+    private static final String VALUE_COLUMN = "value";
+
+    @Autowired
+    private DatabaseRepository databaseRepository;
+    @Autowired
+    private AsyncDatabaseRepository asyncDatabaseRepository;
+
+    @ParameterizedTest
+    @EnumSource(StorageType.class)
+    public void testAsyncInsertsAndLookups(final StorageType storageType) throws IOException {
+        try {
+            databaseRepository.createTable(ASYNC_TABLE, List.of(new Column(ID_COLUMN, ColumnType.LONG, true),
+                    new Column(VALUE_COLUMN, ColumnType.STRING, false)), new TableOptions(storageType, false));
+            final List<CompletableFuture<Void>> inserts = new ArrayList<>();
+            for (int batch = 0; batch < BATCH_COUNT; batch++) {
+                final List<Row> rows = new ArrayList<>(BATCH_SIZE);
+                for (long id = (long) batch * BATCH_SIZE; id < (batch + 1L) * BATCH_SIZE; id++) {
+                    rows.add(new Row(List.of(new ColumnData(ID_COLUMN, id),
+                            new ColumnData(VALUE_COLUMN, "value" + id))));
+                }
+                inserts.add(asyncDatabaseRepository.insertIntoAsync(ASYNC_TABLE, rows));
+            }
+            CompletableFuture.allOf(inserts.toArray(CompletableFuture[]::new)).join();
+
+            // more lookups than operations allowed in flight, so later lookups wait for earlier ones
+            final List<CompletableFuture<Optional<Row>>> lookups = new ArrayList<>();
+            for (long id = 0; id <= BATCH_COUNT * BATCH_SIZE; id++) {
+                lookups.add(asyncDatabaseRepository.selectByIdAsync(ASYNC_TABLE, id));
+            }
+            for (int id = 0; id < BATCH_COUNT * BATCH_SIZE; id++) {
+                final Optional<Row> row = lookups.get(id).join();
+                assertTrue(row.isPresent());
+                assertEquals("value" + id, row.get().getColumns().get(1).getData());
+            }
+            assertTrue(lookups.get(BATCH_COUNT * BATCH_SIZE).join().isEmpty());
+
+            final CompletionException missingTable = assertThrows(CompletionException.class,
+                    () -> asyncDatabaseRepository.selectByIdAsync("missing_table", 1).join());
+            assertInstanceOf(TableDoesNotExistException.class, missingTable.getCause());
+            final CompletionException invalidRow = assertThrows(CompletionException.class,
+                    () -> asyncDatabaseRepository.insertIntoAsync(ASYNC_TABLE,
+                            List.of(new Row(List.of(new ColumnData(ID_COLUMN, "id"))))).join());
+            assertInstanceOf(TypeMismatchException.class, invalidRow.getCause());
+        } finally {
+            databaseRepository.closeWriters();
+            cleanUpFolders();
+            databaseRepository.setupDatabaseDataFolder();
+        }
+    }
+
+    @Test
+    public void testOverload() throws InterruptedException {
+        final DatabaseRepository blockedRepository = mock(DatabaseRepository.class);
+        final CountDownLatch insertStarted = new CountDownLatch(1);
+        final CountDownLatch insertReleased = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            insertStarted.countDown();
+            insertReleased.await();
+            return null;
+        }).when(blockedRepository).insertInto(any(), anyList());
+        final AsyncDatabaseRepository overloadedRepository = new AsyncDatabaseRepository(blockedRepository,
+                new SimpleMeterRegistry(), 1, 1, 1);
+        try {
+            final CompletableFuture<Void> running = overloadedRepository.insertIntoAsync(ASYNC_TABLE, List.of());
+            insertStarted.await();
+            // the only permit is taken, so the next insert waits and the one after it is rejected without blocking
+            final CompletableFuture<Void> waiting = overloadedRepository.insertIntoAsync(ASYNC_TABLE, List.of());
+            final CompletableFuture<Void> rejected = overloadedRepository.insertIntoAsync(ASYNC_TABLE, List.of());
+            assertFalse(waiting.isDone());
+            final CompletionException overloaded = assertThrows(CompletionException.class, rejected::join);
+            assertInstanceOf(DatabaseOverloadedException.class, overloaded.getCause());
+
+            insertReleased.countDown();
+            running.join();
+            waiting.join();
+        } finally {
+            insertReleased.countDown();
+            overloadedRepository.close();
+        }
+    }
+
+    @BeforeAll
+    public static void cleanUpFolders() throws IOException {
+        final Path dataFolder = Paths.get(DatabaseConstants.DATABASE_DATA_FOLDER);
+        if (!Files.exists(dataFolder)) {
+            return;
+        }
+        try (final DirectoryStream<Path> tableFiles = Files.newDirectoryStream(dataFolder, ASYNC_TABLE + "-*")) {
+            for (final Path tableFile : tableFiles) {
+                Files.deleteIfExists(tableFile);
+            }
+        }
+    }
+}
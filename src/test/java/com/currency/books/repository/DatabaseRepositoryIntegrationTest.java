@@ -2,37 +2,85 @@ package com.currency.books.repository;
 
 import com.currency.books.model.Column;
 import com.currency.books.model.ColumnData;
+import com.currency.books.model.ColumnPredicate;
+import com.currency.books.exception.IndexIsNotSupportedException;
+import com.currency.books.exception.TypeMismatchException;
+import com.currency.books.exception.UniqueConstraintViolationException;
 import com.currency.books.model.ColumnType;
+import com.currency.books.model.IndexType;
+import com.currency.books.model.PredicateOperator;
 import com.currency.books.model.Row;
+import com.currency.books.model.RowBatch;
+import com.currency.books.model.RowView;
+import com.currency.books.model.StorageType;
+import com.currency.books.model.TableOptions;
+import com.currency.books.model.TableSchema;
 import com.currency.books.utils.DatabaseConstants;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.junit.jupiter.params.provider.MethodSource;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 
 import java.io.IOException;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
-@SpringBootTest(classes = {DatabaseRepository.class, MetadataRepository.class})
+@SpringBootTest(classes = {DatabaseRepository.class, MetadataRepository.class, TablesRepository.class,
+        SchemaCatalog.class, SimpleMeterRegistry.class})
 class DatabaseRepositoryIntegrationTest {
 
     private static final String TEST_TABLE = "test_table";
+    private static final String SPECIAL_CHARACTERS_TABLE = "special_characters_table";
+    private static final String MULTIPLE_BATCHES_TABLE = "multiple_batches_table";
+    private static final String RESTART_TABLE = "restart_table";
+    private static final String INDEXED_TABLE = "indexed_table";
+    private static final String SCAN_TABLE = "scan_table";
+    private static final String UPDATE_TABLE = "update_table";
+    private static final String ROW_BATCH_TABLE = "row_batch_table";
+    private static final String BULK_LOAD_TABLE = "bulk_load_table";
+    private static final int SCAN_TABLE_SIZE = 40_000;
+    // makes CSV data file big enough to be split
+    private static final String SCAN_VALUE_SUFFIX = " ".repeat(100);
+    private static final int BATCH_COUNT = 3;
+    private static final int BATCH_SIZE = 1000;
+    private static final int CONCURRENT_WRITES = 200;
+    private static final long ROW_CACHE_BYTES = 64 * 1024;
     private static final Long FIRST_ID = 13L;
     private static final String FIRST_DATA = "test1";
     private static final Long SECOND_ID = 32L;
     private static final String SECOND_DATA = "test2";
     private static final String ID_COLUMN = "id";
     private static final String VALUE_COLUMN = "value";
+    private static final String CATEGORY_COLUMN = "category";
+    private static final long CATEGORY_COUNT = 10;
 
     @Autowired
     private DatabaseRepository databaseRepository;
+    @Autowired
+    private MeterRegistry meterRegistry;
 
 
     @Test
@@ -58,20 +106,551 @@ class DatabaseRepositoryIntegrationTest {
             assertEquals(VALUE_COLUMN, optionalRow.get().getColumns().get(1).getColumnName());
             assertEquals(SECOND_DATA, optionalRow.get().getColumns().get(1).getData());
 
+            assertEquals(1, meterRegistry.get("simple-database.insert").tag("table", TEST_TABLE).timer().count());
+            assertEquals(1, meterRegistry.get("simple-database.select").tag("table", TEST_TABLE).timer().count());
+            databaseRepository.selectByIds(TEST_TABLE, List.of(1L, 2L));
+            assertEquals(2, meterRegistry.get("simple-database.select").tag("table", TEST_TABLE).timer().count());
+            assertEquals(2, meterRegistry.get("simple-database.batch.rows").tag("table", TEST_TABLE)
+                    .summary().totalAmount());
+            assertTrue(meterRegistry.get("simple-database.bytes.written").tag("table", TEST_TABLE)
+                    .counter().count() > 0);
+            assertEquals(2, meterRegistry.get("simple-database.index.entries").tag("table", TEST_TABLE)
+                    .gauge().value());
+        } finally {
+            databaseRepository.closeWriters();
+            cleanUpFolders();
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(StorageType.class)
+    public void testSelectByIdWithSpecialCharacters(final StorageType storageType) throws IOException {
+        final String[] values = {"comma, value", "quote \" value", "back\\slash", "multi\nline", "юникод"};
+        try {
+            final var metadata = new ArrayList<Column>();
+            metadata.add(new Column(ID_COLUMN, ColumnType.LONG, true));
+            metadata.add(new Column(VALUE_COLUMN, ColumnType.STRING, false));
+
+            databaseRepository.createTable(SPECIAL_CHARACTERS_TABLE, metadata, new TableOptions(storageType, false));
+            final List<Row> rows = new ArrayList<>();
+            for (int i = 0; i < values.length; i++) {
+                rows.add(new Row(List.of(new ColumnData(ID_COLUMN, (long) i),
+                        new ColumnData(VALUE_COLUMN, values[i]))));
+            }
+            databaseRepository.insertInto(SPECIAL_CHARACTERS_TABLE, rows);
+
+            for (int i = values.length - 1; i >= 0; i--) {
+                final var optionalRow = databaseRepository.selectById(SPECIAL_CHARACTERS_TABLE, (long) i);
+                assertTrue(optionalRow.isPresent());
+                assertEquals(values[i], optionalRow.get().getColumns().get(1).getData());
+            }
+            assertTrue(databaseRepository.selectById(SPECIAL_CHARACTERS_TABLE, (long) values.length).isEmpty());
+        } finally {
+            databaseRepository.closeWriters();
+            cleanUpFolders();
+        }
+    }
+
+    @ParameterizedTest
+    @MethodSource("tableOptions")
+    public void testSelectByIdAfterMultipleBatches(final TableOptions tableOptions) throws IOException {
+        try {
+            final var metadata = new ArrayList<Column>();
+            metadata.add(new Column(ID_COLUMN, ColumnType.LONG, true));
+            metadata.add(new Column(VALUE_COLUMN, ColumnType.STRING, false));
+
+            databaseRepository.createTable(MULTIPLE_BATCHES_TABLE, metadata, tableOptions);
+            for (int batch = 0; batch < BATCH_COUNT; batch++) {
+                final List<Row> rows = new ArrayList<>();
+                for (long id = (long) batch * BATCH_SIZE; id < (long) (batch + 1) * BATCH_SIZE; id++) {
+                    rows.add(new Row(List.of(new ColumnData(ID_COLUMN, id),
+                            new ColumnData(VALUE_COLUMN, "value" + id))));
+                }
+                databaseRepository.insertInto(MULTIPLE_BATCHES_TABLE, rows);
+            }
+
+            for (long id = 0; id < BATCH_COUNT * BATCH_SIZE; id += 7) {
+                final var optionalRow = databaseRepository.selectById(MULTIPLE_BATCHES_TABLE, id);
+                assertTrue(optionalRow.isPresent());
+                assertEquals("value" + id, optionalRow.get().getColumns().get(1).getData());
+            }
+
+            final var rangeRows = databaseRepository.selectByIdRange(MULTIPLE_BATCHES_TABLE,
+                    BATCH_SIZE - 10, BATCH_SIZE + 10);
+            assertEquals(21, rangeRows.size());
+            for (int i = 0; i < rangeRows.size(); i++) {
+                assertEquals((long) BATCH_SIZE - 10 + i, rangeRows.get(i).getColumns().get(0).getData());
+            }
+
+            final List<Long> ids = new ArrayList<>();
+            for (long id = BATCH_COUNT * BATCH_SIZE + 5; id >= 0; id -= 3) {
+                ids.add(id);
+            }
+            final var multiGetRows = databaseRepository.selectByIds(MULTIPLE_BATCHES_TABLE, ids);
+            assertEquals(ids.size(), multiGetRows.size());
+            for (int i = 0; i < ids.size(); i++) {
+                final long id = ids.get(i);
+                if (id < BATCH_COUNT * BATCH_SIZE) {
+                    assertEquals("value" + id, multiGetRows.get(i).orElseThrow().getColumns().get(1).getData());
+                } else {
+                    assertTrue(multiGetRows.get(i).isEmpty());
+                }
+            }
+        } finally {
+            databaseRepository.closeWriters();
+            cleanUpFolders();
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(StorageType.class)
+    public void testSelectAfterRestart(final StorageType storageType) throws IOException {
+        try {
+            final var metadata = new ArrayList<Column>();
+            metadata.add(new Column(ID_COLUMN, ColumnType.LONG, true));
+            metadata.add(new Column(VALUE_COLUMN, ColumnType.STRING, false));
+
+            databaseRepository.createTable(RESTART_TABLE, metadata, new TableOptions(storageType, false));
+            final List<Row> rows = new ArrayList<>();
+            for (long id = 0; id < BATCH_SIZE; id++) {
+                rows.add(new Row(List.of(new ColumnData(ID_COLUMN, id),
+                        new ColumnData(VALUE_COLUMN, "value" + id))));
+            }
+            databaseRepository.insertInto(RESTART_TABLE, rows);
+
+            databaseRepository.closeWriters();
+            databaseRepository.setupDatabaseDataFolder();
+            assertRestartTableRows();
+            if (storageType == StorageType.COMPRESSED) {
+                final var statistics = databaseRepository.getCompressionStatistics().get(RESTART_TABLE);
+                assertTrue(statistics.getCompressionRatio() > 1);
+                assertTrue(statistics.getDecompressedBlocks() > 0);
+            }
+
+            // without index checkpoint the whole data file is replayed
+            databaseRepository.closeWriters();
+            Files.deleteIfExists(Paths.get(DatabaseConstants.DATABASE_DATA_FOLDER, RESTART_TABLE + DatabaseConstants.INDEX_POST_FIX));
+            databaseRepository.setupDatabaseDataFolder();
+            assertRestartTableRows();
+        } finally {
+            databaseRepository.closeWriters();
+            cleanUpFolders();
+        }
+    }
+
+    private void assertRestartTableRows() {
+        for (long id = 0; id < BATCH_SIZE; id += 7) {
+            final var optionalRow = databaseRepository.selectById(RESTART_TABLE, id);
+            assertTrue(optionalRow.isPresent());
+            assertEquals("value" + id, optionalRow.get().getColumns().get(1).getData());
+        }
+        assertEquals(BATCH_SIZE, databaseRepository.selectByIdRange(RESTART_TABLE, 0, BATCH_SIZE).size());
+    }
+
+    @ParameterizedTest
+    @EnumSource(StorageType.class)
+    public void testSecondaryIndexes(final StorageType storageType) throws Exception {
+        try {
+            final var metadata = new ArrayList<Column>();
+            metadata.add(new Column(ID_COLUMN, ColumnType.LONG, true));
+            metadata.add(new Column(VALUE_COLUMN, ColumnType.STRING, false));
+            metadata.add(new Column(CATEGORY_COLUMN, ColumnType.LONG, false));
+
+            databaseRepository.createTable(INDEXED_TABLE, metadata, new TableOptions(storageType, false));
+            final List<Row> rows = new ArrayList<>();
+            for (long id = 0; id < BATCH_SIZE; id++) {
+                rows.add(indexedRow(id, String.format("value%04d", id)));
+            }
+            databaseRepository.insertInto(INDEXED_TABLE, rows);
+
+            // unique index can't be built over duplicates and is dropped
+            final var duplicateIndex = databaseRepository.createIndex(INDEXED_TABLE, CATEGORY_COLUMN, IndexType.HASH, true);
+            assertThrows(ExecutionException.class, duplicateIndex::get);
+
+            // existing records are indexed by the build, new ones by inserts
+            databaseRepository.createIndex(INDEXED_TABLE, VALUE_COLUMN, IndexType.ORDERED, true).get();
+            databaseRepository.createIndex(INDEXED_TABLE, CATEGORY_COLUMN, IndexType.HASH, false).get();
+            databaseRepository.insertInto(INDEXED_TABLE, List.of(indexedRow(BATCH_SIZE, "new value")));
+            assertIndexedTableRows();
+
+            // replaced value isn't found anymore, unique value can't be reused by another record
+            databaseRepository.insertInto(INDEXED_TABLE, List.of(indexedRow(1, "replaced value")));
+            assertTrue(databaseRepository.selectByIndex(INDEXED_TABLE, VALUE_COLUMN, "value0001").isEmpty());
+            assertEquals(1, databaseRepository.selectByIndex(INDEXED_TABLE, VALUE_COLUMN, "replaced value").size());
+            assertThrows(UniqueConstraintViolationException.class, () ->
+                    databaseRepository.insertInto(INDEXED_TABLE, List.of(indexedRow(BATCH_SIZE + 1, "value0002"))));
+            assertTrue(databaseRepository.selectById(INDEXED_TABLE, BATCH_SIZE + 1L).isEmpty());
+            databaseRepository.insertInto(INDEXED_TABLE, List.of(indexedRow(BATCH_SIZE + 1, "value0001")));
+
+
+            databaseRepository.closeWriters();
+            databaseRepository.setupDatabaseDataFolder();
+            assertIndexedTableRows();
+            assertEquals(BATCH_SIZE + 1L, databaseRepository.selectByIndex(INDEXED_TABLE, VALUE_COLUMN, "value0001")
+                    .get(0).getColumns().get(0).getData());
+        } finally {
+            databaseRepository.closeWriters();
+            cleanUpFolders();
+        }
+    }
+
+    private void assertIndexedTableRows() {
+        final var row = databaseRepository.selectByIndex(INDEXED_TABLE, VALUE_COLUMN, "value0042");
+        assertEquals(1, row.size());
+        assertEquals(42L, row.get(0).getColumns().get(0).getData());
+        assertEquals(1, databaseRepository.selectByIndex(INDEXED_TABLE, VALUE_COLUMN, "new value").size());
+        assertEquals(BATCH_SIZE / CATEGORY_COUNT + 1,
+                databaseRepository.selectByIndex(INDEXED_TABLE, CATEGORY_COLUMN, 0L).size());
+
+        final var prefixRows = databaseRepository.selectByIndexPrefix(INDEXED_TABLE, VALUE_COLUMN, "value001");
+        assertEquals(10, prefixRows.size());
+        assertEquals("value0010", prefixRows.get(0).getColumns().get(1).getData());
+        final var rangeRows = databaseRepository.selectByIndexRange(INDEXED_TABLE, VALUE_COLUMN, "value0100", "value0199");
+        assertEquals(100, rangeRows.size());
+        assertEquals("value0199", rangeRows.get(99).getColumns().get(1).getData());
+        assertThrows(IndexIsNotSupportedException.class, () ->
+                databaseRepository.selectByIndexRange(INDEXED_TABLE, CATEGORY_COLUMN, 0L, 1L));
+    }
+
+    @ParameterizedTest
+    @EnumSource(StorageType.class)
+    public void testScan(final StorageType storageType) throws IOException {
+        try {
+            final var metadata = new ArrayList<Column>();
+            metadata.add(new Column(VALUE_COLUMN, ColumnType.STRING, false));
+            metadata.add(new Column(ID_COLUMN, ColumnType.LONG, true));
+            metadata.add(new Column(CATEGORY_COLUMN, ColumnType.LONG, false));
+
+            databaseRepository.createTable(SCAN_TABLE, metadata, new TableOptions(storageType, false));
+            final List<Row> rows = new ArrayList<>();
+            for (long id = 0; id < SCAN_TABLE_SIZE; id++) {
+                // quotes and line ends inside values must not be taken for record boundaries by splits
+                final String value = (id % 3 == 0 ? "multi\"\n\"line value " : "scanned value, ") + id + SCAN_VALUE_SUFFIX;
+                rows.add(new Row(List.of(new ColumnData(ID_COLUMN, id), new ColumnData(VALUE_COLUMN, value),
+                        new ColumnData(CATEGORY_COLUMN, id % CATEGORY_COUNT))));
+                if (rows.size() == BATCH_SIZE) {
+                    databaseRepository.insertInto(SCAN_TABLE, rows);
+                    rows.clear();
+                }
+            }
+            // replaced records stay in the data file, scan returns only the latest version
+            databaseRepository.insertInto(SCAN_TABLE, List.of(new Row(List.of(new ColumnData(ID_COLUMN, 1L),
+                    new ColumnData(VALUE_COLUMN, "replaced"), new ColumnData(CATEGORY_COLUMN, CATEGORY_COUNT)))));
+
+            assertEquals(SCAN_TABLE_SIZE, databaseRepository.scan(SCAN_TABLE, List.of(), List.of()).count());
+            assertEquals(SCAN_TABLE_SIZE, databaseRepository.scan(SCAN_TABLE, List.of(), List.of()).parallel().count());
+            final long idSum = (long) SCAN_TABLE_SIZE * (SCAN_TABLE_SIZE - 1) / 2;
+            assertEquals(idSum, databaseRepository.scan(SCAN_TABLE, List.of(), List.of(ID_COLUMN)).parallel()
+                    .mapToLong(row -> (Long) row.getColumns().get(0).getData()).sum());
+
+            final var predicates = List.of(new ColumnPredicate(CATEGORY_COLUMN, PredicateOperator.EQUALS, 3L),
+                    new ColumnPredicate(VALUE_COLUMN, PredicateOperator.STARTS_WITH, "multi"));
+            final List<Row> matching = databaseRepository.scan(SCAN_TABLE, predicates, List.of(ID_COLUMN))
+                    .parallel().toList();
+            assertEquals(LongStream.range(0, SCAN_TABLE_SIZE).filter(id -> id % CATEGORY_COUNT == 3 && id % 3 == 0).count(),
+                    matching.size());
+            for (final Row row : matching) {
+                assertEquals(1, row.getColumns().size());
+                assertEquals(0, (Long) row.getColumns().get(0).getData() % 3);
+            }
+            final List<Row> replaced = databaseRepository.scan(SCAN_TABLE,
+                    List.of(new ColumnPredicate(CATEGORY_COLUMN, PredicateOperator.GREATER_THAN_OR_EQUALS, CATEGORY_COUNT)),
+                    List.of()).toList();
+            assertEquals(1, replaced.size());
+            assertEquals("replaced", replaced.get(0).getColumns().get(0).getData());
+        } finally {
+            databaseRepository.closeWriters();
+            cleanUpFolders();
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(StorageType.class)
+    public void testUpdateDeleteAndVacuum(final StorageType storageType) throws Exception {
+        try {
+            final var metadata = new ArrayList<Column>();
+            metadata.add(new Column(ID_COLUMN, ColumnType.LONG, true));
+            metadata.add(new Column(VALUE_COLUMN, ColumnType.STRING, false));
+
+            databaseRepository.createTable(UPDATE_TABLE, metadata, new TableOptions(storageType, false));
+            final List<Row> rows = new ArrayList<>();
+            for (long id = 0; id < BATCH_SIZE; id++) {
+                rows.add(new Row(List.of(new ColumnData(ID_COLUMN, id), new ColumnData(VALUE_COLUMN, "value" + id))));
+            }
+            databaseRepository.insertInto(UPDATE_TABLE, rows);
+            for (long id = 0; id < BATCH_SIZE; id += 2) {
+                assertTrue(databaseRepository.update(UPDATE_TABLE, id,
+                        new Row(List.of(new ColumnData(VALUE_COLUMN, "updated" + id)))));
+            }
+            for (long id = 0; id < BATCH_SIZE; id += 3) {
+                assertTrue(databaseRepository.delete(UPDATE_TABLE, id));
+            }
+            assertFalse(databaseRepository.delete(UPDATE_TABLE, 0L));
+            assertFalse(databaseRepository.update(UPDATE_TABLE, 0L,
+                    new Row(List.of(new ColumnData(VALUE_COLUMN, "missing")))));
+            assertUpdatedRows();
+
+            databaseRepository.closeWriters();
+            databaseRepository.setupDatabaseDataFolder();
+            assertUpdatedRows();
+
+            databaseRepository.vacuum(UPDATE_TABLE).get();
+            assertUpdatedRows();
+            assertTrue(databaseRepository.update(UPDATE_TABLE, 1L,
+                    new Row(List.of(new ColumnData(VALUE_COLUMN, "value1")))));
+
+            databaseRepository.closeWriters();
+            databaseRepository.setupDatabaseDataFolder();
+            assertUpdatedRows();
+        } finally {
+            databaseRepository.closeWriters();
+            cleanUpFolders();
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(StorageType.class)
+    public void testSnapshotReads(final StorageType storageType) throws Exception {
+        try {
+            final var metadata = new ArrayList<Column>();
+            metadata.add(new Column(ID_COLUMN, ColumnType.LONG, true));
+            metadata.add(new Column(VALUE_COLUMN, ColumnType.STRING, false));
+
+            databaseRepository.createTable(UPDATE_TABLE, metadata, new TableOptions(storageType, false));
+            final List<Row> rows = new ArrayList<>();
+            for (long id = 0; id < BATCH_SIZE; id++) {
+                rows.add(new Row(List.of(new ColumnData(ID_COLUMN, id), new ColumnData(VALUE_COLUMN, "value" + id))));
+            }
+            databaseRepository.insertInto(UPDATE_TABLE, rows);
+
+            try (Snapshot snapshot = databaseRepository.beginSnapshot()) {
+                for (long id = 0; id < BATCH_SIZE; id += 2) {
+                    databaseRepository.update(UPDATE_TABLE, id,
+                            new Row(List.of(new ColumnData(VALUE_COLUMN, "updated" + id))));
+                }
+                for (long id = 0; id < BATCH_SIZE; id += 3) {
+                    databaseRepository.delete(UPDATE_TABLE, id);
+                }
+                databaseRepository.insertInto(UPDATE_TABLE, List.of(new Row(List.of(
+                        new ColumnData(ID_COLUMN, (long) BATCH_SIZE), new ColumnData(VALUE_COLUMN, "inserted")))));
+
+                for (long id = 0; id < BATCH_SIZE; id++) {
+                    final var optionalRow = snapshot.selectById(UPDATE_TABLE, id);
+                    assertTrue(optionalRow.isPresent());
+                    assertEquals("value" + id, optionalRow.get().getColumns().get(1).getData());
+                }
+                assertTrue(snapshot.selectById(UPDATE_TABLE, (long) BATCH_SIZE).isEmpty());
+                final List<Row> range = snapshot.selectByIdRange(UPDATE_TABLE, 0, BATCH_SIZE);
+                assertEquals(BATCH_SIZE, range.size());
+                assertEquals("value0", range.get(0).getColumns().get(1).getData());
+                if (storageType != StorageType.LSM) {
+                    assertEquals(BATCH_SIZE, snapshot.scan(UPDATE_TABLE, List.of(), List.of())
+                            .filter(row -> ((String) row.getColumns().get(1).getData()).startsWith("value"))
+                            .count());
+                }
+                assertEquals("inserted", databaseRepository.selectById(UPDATE_TABLE, (long) BATCH_SIZE)
+                        .orElseThrow().getColumns().get(1).getData());
+            }
+            assertUpdatedRows(1);
+        } finally {
+            databaseRepository.closeWriters();
+            cleanUpFolders();
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(StorageType.class)
+    public void testSnapshotWithConcurrentWritersOfOneKey(final StorageType storageType) throws Exception {
+        try {
+            final var metadata = new ArrayList<Column>();
+            metadata.add(new Column(ID_COLUMN, ColumnType.LONG, true));
+            metadata.add(new Column(VALUE_COLUMN, ColumnType.STRING, false));
+
+            databaseRepository.createTable(UPDATE_TABLE, metadata, new TableOptions(storageType, false));
+            databaseRepository.insertInto(UPDATE_TABLE, List.of(new Row(List.of(new ColumnData(ID_COLUMN, FIRST_ID),
+                    new ColumnData(VALUE_COLUMN, FIRST_DATA)))));
+            final AtomicInteger committedWrites = new AtomicInteger();
+            // open snapshot makes writers keep versions of the key
+            try (Snapshot holder = databaseRepository.beginSnapshot()) {
+                final ExecutorService writers = Executors.newFixedThreadPool(2);
+                try {
+                    final Future<?> inserts = writers.submit(() -> {
+                        for (int i = 0; i < CONCURRENT_WRITES; i++) {
+                            databaseRepository.insertInto(UPDATE_TABLE, List.of(new Row(List.of(
+                                    new ColumnData(ID_COLUMN, FIRST_ID), new ColumnData(VALUE_COLUMN, "inserted" + i)))));
+                            committedWrites.incrementAndGet();
+                        }
+                    });
+                    final Future<?> updates = writers.submit(() -> {
+                        for (int i = 0; i < CONCURRENT_WRITES; i++) {
+                            databaseRepository.update(UPDATE_TABLE, FIRST_ID,
+                                    new Row(List.of(new ColumnData(VALUE_COLUMN, "updated" + i))));
+                            committedWrites.incrementAndGet();
+                        }
+                    });
+                    while (!inserts.isDone() || !updates.isDone()) {
+                        final boolean written = committedWrites.get() > 0;
+                        try (Snapshot snapshot = databaseRepository.beginSnapshot()) {
+                            final Object value = snapshot.selectById(UPDATE_TABLE, FIRST_ID).orElseThrow()
+                                    .getColumns().get(1).getData();
+                            // a write committed before the snapshot hides the original row
+                            if (written) {
+                                assertNotEquals(FIRST_DATA, value);
+                            }
+                            assertEquals(value, snapshot.selectById(UPDATE_TABLE, FIRST_ID).orElseThrow()
+                                    .getColumns().get(1).getData());
+                        }
+                    }
+                    inserts.get();
+                    updates.get();
+                } finally {
+                    writers.shutdownNow();
+                }
+                assertEquals(FIRST_DATA, holder.selectById(UPDATE_TABLE, FIRST_ID).orElseThrow()
+                        .getColumns().get(1).getData());
+            }
+        } finally {
+            databaseRepository.closeWriters();
+            cleanUpFolders();
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(StorageType.class)
+    public void testRowBatchAndView(final StorageType storageType) throws Exception {
+        try {
+            final var metadata = new ArrayList<Column>();
+            metadata.add(new Column(ID_COLUMN, ColumnType.LONG, true));
+            metadata.add(new Column(VALUE_COLUMN, ColumnType.STRING, false));
+
+            databaseRepository.createTable(ROW_BATCH_TABLE, metadata, new TableOptions(storageType, false));
+            final TableSchema schema = databaseRepository.getSchema(ROW_BATCH_TABLE);
+            final RowBatch rowBatch = new RowBatch(schema, BATCH_SIZE);
+            for (long id = 0; id < BATCH_SIZE; id++) {
+                rowBatch.addRow().setLong(0, id).setString(1, "value" + id);
+            }
+            databaseRepository.insertInto(ROW_BATCH_TABLE, rowBatch);
+            assertEquals(0, rowBatch.size());
+            assertThrows(TypeMismatchException.class, () -> rowBatch.addRow().setString(0, "id"));
+            rowBatch.clear();
+
+            final RowView view = new RowView();
+            assertTrue(databaseRepository.selectById(ROW_BATCH_TABLE, 7L, view));
+            assertEquals(7L, view.getLong(0));
+            assertEquals("value7", view.getString(1));
+            assertEquals(databaseRepository.selectById(ROW_BATCH_TABLE, 7L).orElseThrow(), view.toRow());
+            assertFalse(databaseRepository.selectById(ROW_BATCH_TABLE, BATCH_SIZE, view));
+
+            assertEquals(11, databaseRepository.selectByIdRange(ROW_BATCH_TABLE, 10, 20, rowBatch));
+            for (int i = 0; i < rowBatch.size(); i++) {
+                assertEquals(10 + i, rowBatch.get(i, view).getLong(0));
+            }
+        } finally {
+            databaseRepository.closeWriters();
+            cleanUpFolders();
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(StorageType.class)
+    public void testBulkLoad(final StorageType storageType) throws Exception {
+        try {
+            final var metadata = new ArrayList<Column>();
+            metadata.add(new Column(ID_COLUMN, ColumnType.LONG, true));
+            metadata.add(new Column(VALUE_COLUMN, ColumnType.STRING, false));
+
+            databaseRepository.createTable(BULK_LOAD_TABLE, metadata, new TableOptions(storageType, false));
+            final Path source = Paths.get(DatabaseConstants.DATABASE_DATA_FOLDER, BULK_LOAD_TABLE + "-source.csv");
+            final StringBuilder csv = new StringBuilder();
+            for (long id = 0; id < BATCH_SIZE; id++) {
+                csv.append(id).append(",value").append(id).append('\n');
+            }
+            csv.append("5,\"multi\nline, \"\"quoted\"\"\"\n");
+            Files.writeString(source, csv);
+            final var statistics = databaseRepository.bulkLoad(BULK_LOAD_TABLE, source);
+            assertEquals(BATCH_SIZE + 1, statistics.getRows());
+            assertEquals(Files.size(source), statistics.getSourceBytes());
+
+            // loading into a table with rows replaces rows of the same keys
+            Files.writeString(source, "7,reloaded\n" + BATCH_SIZE + ",added\n");
+            databaseRepository.bulkLoad(BULK_LOAD_TABLE, source);
+            assertBulkLoadTableRows();
+            // failed load leaves no rows of the file in the table
+            Files.writeString(source, "3,failed\n" + (BATCH_SIZE + 1) + ",failed\n8\n");
+            assertThrows(TypeMismatchException.class, () -> databaseRepository.bulkLoad(BULK_LOAD_TABLE, source));
+            assertBulkLoadTableRows();
+
+            databaseRepository.closeWriters();
+            databaseRepository.setupDatabaseDataFolder();
+            assertBulkLoadTableRows();
         } finally {
             databaseRepository.closeWriters();
             cleanUpFolders();
         }
     }
 
+    private void assertBulkLoadTableRows() {
+        assertEquals("value3", databaseRepository.selectById(BULK_LOAD_TABLE, 3L).orElseThrow().getColumns().get(1).getData());
+        assertEquals("multi\nline, \"quoted\"",
+                databaseRepository.selectById(BULK_LOAD_TABLE, 5L).orElseThrow().getColumns().get(1).getData());
+        assertEquals("reloaded", databaseRepository.selectById(BULK_LOAD_TABLE, 7L).orElseThrow().getColumns().get(1).getData());
+        assertEquals(BATCH_SIZE + 1, databaseRepository.selectByIdRange(BULK_LOAD_TABLE, 0, BATCH_SIZE).size());
+    }
+
+    private void assertUpdatedRows() {
+        assertUpdatedRows(0);
+    }
+
+    private void assertUpdatedRows(final long insertedRows) {
+        long liveRows = 0;
+        for (long id = 0; id < BATCH_SIZE; id++) {
+            final var optionalRow = databaseRepository.selectById(UPDATE_TABLE, id);
+            if (id % 3 == 0) {
+                assertTrue(optionalRow.isEmpty());
+                continue;
+            }
+            liveRows++;
+            assertTrue(optionalRow.isPresent());
+            assertEquals((id % 2 == 0 ? "updated" : "value") + id, optionalRow.get().getColumns().get(1).getData());
+        }
+        assertEquals(liveRows + insertedRows, databaseRepository.selectByIdRange(UPDATE_TABLE, 0, BATCH_SIZE).size());
+        assertEquals(liveRows + insertedRows, databaseRepository.scan(UPDATE_TABLE, List.of(), List.of()).count());
+    }
+
+    private static Row indexedRow(final long id, final String value) {
+        return new Row(List.of(new ColumnData(ID_COLUMN, id), new ColumnData(VALUE_COLUMN, value),
+                new ColumnData(CATEGORY_COLUMN, id % CATEGORY_COUNT)));
+    }
+
+    private static Stream<TableOptions> tableOptions() {
+        return Arrays.stream(StorageType.values())
+                .flatMap(storageType -> Stream.of(new TableOptions(storageType, false),
+                        new TableOptions(storageType, true), new TableOptions(storageType, false, ROW_CACHE_BYTES)));
+    }
+
     @BeforeAll
     public static void cleanUpFolders() throws IOException {
-        Path dataPath = Paths.get(DatabaseConstants.DATABASE_DATA_FOLDER + "/" + TEST_TABLE + DatabaseConstants.DATA_POSTFIX);
-        Path indexPath = Paths.get(DatabaseConstants.DATABASE_DATA_FOLDER + "/" + TEST_TABLE + DatabaseConstants.INDEX_POST_FIX);
-        Path metadataPath = Paths.get(DatabaseConstants.DATABASE_DATA_FOLDER + "/" + TEST_TABLE + DatabaseConstants.METADATA_POST_FIX);
-        Files.deleteIfExists(dataPath);
-        Files.deleteIfExists(indexPath);
-        Files.deleteIfExists(metadataPath);
+        cleanUpTable(TEST_TABLE);
+        cleanUpTable(SPECIAL_CHARACTERS_TABLE);
+        cleanUpTable(MULTIPLE_BATCHES_TABLE);
+        cleanUpTable(RESTART_TABLE);
+        cleanUpTable(INDEXED_TABLE);
+        cleanUpTable(SCAN_TABLE);
+        cleanUpTable(UPDATE_TABLE);
+        cleanUpTable(ROW_BATCH_TABLE);
+        cleanUpTable(BULK_LOAD_TABLE);
+    }
+
+    private static void cleanUpTable(final String tableName) throws IOException {
+        final Path dataFolder = Paths.get(DatabaseConstants.DATABASE_DATA_FOLDER);
+        if (!Files.exists(dataFolder)) {
+            return;
+        }
+        try (final DirectoryStream<Path> tableFiles = Files.newDirectoryStream(dataFolder, tableName + "-*")) {
+            for (final Path tableFile : tableFiles) {
+                Files.deleteIfExists(tableFile);
+            }
+        }
     }
 
 }
\ No newline at end of file
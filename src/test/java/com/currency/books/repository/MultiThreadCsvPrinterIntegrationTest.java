@@ -1,5 +1,6 @@
 package com.currency.books.repository;
 
+import com.currency.books.model.RecordPointer;
 import com.currency.books.utils.MultiThreadCsvPrinter;
 import com.opencsv.CSVParser;
 import com.opencsv.CSVReader;
@@ -8,6 +9,7 @@ import org.junit.jupiter.api.Test;
 
 import java.io.FileReader;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -22,11 +24,14 @@ import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @Slf4j
 public class MultiThreadCsvPrinterIntegrationTest {
 
     private static final String TEST_DATA_CSV = "test-data.csv";
+    private static final String TEST_BATCHES_CSV = "test-batches.csv";
     private static final CountDownLatch waitFirstLineInserted = new CountDownLatch(1);
     private static final CountDownLatch waitSecondLineInserted = new CountDownLatch(1);
     private static final String[] FIRST_LINE = {"1", "1"};
@@ -69,6 +74,52 @@ public class MultiThreadCsvPrinterIntegrationTest {
 
     }
 
+    @Test
+    public void testConcurrentBatchWrites() throws IOException, ExecutionException, InterruptedException {
+        final Path path = Paths.get(TEST_BATCHES_CSV);
+        final int threads = 8;
+        final int batchesPerThread = 100;
+        final int batchSize = 10;
+        try (final MultiThreadCsvPrinter dataPrinter = new MultiThreadCsvPrinter(path, 0)) {
+            final ExecutorService executorService = Executors.newFixedThreadPool(threads);
+            final List<Future<List<RecordPointer>>> futures = new ArrayList<>();
+            for (int thread = 0; thread < threads; thread++) {
+                final int threadNumber = thread;
+                futures.add(executorService.submit(() -> {
+                    final List<RecordPointer> recordPointers = new ArrayList<>();
+                    for (int batch = 0; batch < batchesPerThread; batch++) {
+                        final List<String[]> lines = new ArrayList<>();
+                        for (int line = 0; line < batchSize; line++) {
+                            lines.add(new String[]{threadNumber + "-" + batch + "-" + line, "value"});
+                        }
+                        recordPointers.addAll(List.of(dataPrinter.writeLines(lines)));
+                    }
+                    return recordPointers;
+                }));
+            }
+            final List<RecordPointer> recordPointers = new ArrayList<>();
+            for (final Future<List<RecordPointer>> future : futures) {
+                recordPointers.addAll(future.get());
+            }
+            executorService.shutdown();
+
+            final byte[] content = Files.readAllBytes(path);
+            assertEquals(dataPrinter.getPosition(), content.length);
+            assertEquals(dataPrinter.getPosition(), dataPrinter.getCompletedPosition());
+            assertEquals(threads * batchesPerThread * batchSize, recordPointers.size());
+            long totalLength = 0;
+            for (final RecordPointer recordPointer : recordPointers) {
+                final String line = new String(content, (int) recordPointer.getOffset(), recordPointer.getLength(),
+                        StandardCharsets.UTF_8);
+                assertTrue(line.startsWith("\"") && line.endsWith("\"value\"\n"));
+                totalLength += recordPointer.getLength();
+            }
+            assertEquals(content.length, totalLength);
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
     private static String[] readLine(final int rowIndex) throws IOException {
         final CSVReader reader = new CSVReader(new FileReader(TEST_DATA_CSV),
                 CSVParser.DEFAULT_SEPARATOR, CSVParser.DEFAULT_QUOTE_CHARACTER, rowIndex);
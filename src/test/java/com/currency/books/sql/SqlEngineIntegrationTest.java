@@ -0,0 +1,128 @@
+package com.currency.books.sql;
+
+import com.currency.books.exception.SqlSyntaxException;
+import com.currency.books.exception.TypeMismatchException;
+import com.currency.books.model.SqlResult;
+import com.currency.books.repository.DatabaseRepository;
+import com.currency.books.repository.MetadataRepository;
+import com.currency.books.repository.SchemaCatalog;
+import com.currency.books.repository.TablesRepository;
+import com.currency.books.utils.DatabaseConstants;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@SpringBootTest(classes = {DatabaseRepository.class, MetadataRepository.class, TablesRepository.class,
+        SchemaCatalog.class, SimpleMeterRegistry.class, SqlEngine.class})
+class SqlEngineIntegrationTest {
+
+    private static final String SQL_TABLE = "sql_table";
+    private static final int ROW_COUNT = 3000;
+
+    @Autowired
+    private DatabaseRepository databaseRepository;
+    @Autowired
+    private SqlEngine sqlEngine;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        cleanUpTable();
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        databaseRepository.closeWriters();
+        cleanUpTable();
+        databaseRepository.setupDatabaseDataFolder();
+    }
+
+    @Test
+    public void testStatements() {
+        sqlEngine.execute("CREATE TABLE " + SQL_TABLE + " (id LONG PRIMARY KEY, name VARCHAR, amount BIGINT)");
+        assertEquals(2, sqlEngine.execute("insert into " + SQL_TABLE + " (name, id, amount) values ('it''s', -1, 7),"
+                + " ('first', 0, 0);").getAffectedRows());
+        final PreparedSqlStatement insert = sqlEngine.prepare("INSERT INTO " + SQL_TABLE + " VALUES (?, ?, ?)");
+        for (long id = 1; id < ROW_COUNT; id++) {
+            insert.execute(id, "name" + id, id % 10);
+        }
+
+        final PreparedSqlStatement point = sqlEngine.prepare("SELECT * FROM " + SQL_TABLE + " WHERE id = -1");
+        assertEquals(QueryPlan.Access.POINT, ((QueryPlan) point.getPlan()).getAccess());
+        final SqlResult pointResult = point.execute();
+        assertEquals(List.of("id", "name", "amount"), pointResult.getColumnNames());
+        assertArrayEquals(new Object[]{-1L, "it's", 7L}, pointResult.getRows().get(0));
+        // statements differing in literals and formatting share the plan
+        assertSame(point.getPlan(), sqlEngine.prepare("select *  from " + SQL_TABLE + " where id = 5").getPlan());
+
+        final PreparedSqlStatement range = sqlEngine.prepare("SELECT name, id FROM " + SQL_TABLE
+                + " WHERE id BETWEEN ? AND 1999 AND amount >= 5 AND id != 1005");
+        assertEquals(QueryPlan.Access.RANGE, ((QueryPlan) range.getPlan()).getAccess());
+        final List<Object[]> rangeRows = range.execute(1000).getRows();
+        assertEquals(499, rangeRows.size());
+        assertArrayEquals(new Object[]{"name1006", 1006L}, rangeRows.get(0));
+        assertEquals(10, sqlEngine.execute("SELECT * FROM " + SQL_TABLE + " WHERE id > 100 LIMIT ?", 10)
+                .getRows().size());
+        // the range is read in slices of a chunk, limit and aggregates continue across them
+        final List<Object[]> limitedRows = sqlEngine.execute("SELECT id FROM " + SQL_TABLE
+                + " WHERE id > 100 LIMIT 1500").getRows();
+        assertEquals(1500, limitedRows.size());
+        assertArrayEquals(new Object[]{1600L}, limitedRows.get(limitedRows.size() - 1));
+        assertArrayEquals(new Object[]{ROW_COUNT + 1L, -1L, ROW_COUNT - 1L}, sqlEngine.execute(
+                "SELECT COUNT(*), MIN(id), MAX(id) FROM " + SQL_TABLE + " WHERE id >= -1").getRows().get(0));
+
+        final PreparedSqlStatement aggregate = sqlEngine.prepare("SELECT COUNT(*), SUM(amount), MIN(name), MAX(id)"
+                + " FROM " + SQL_TABLE + " WHERE name LIKE 'name1%' AND amount < 3");
+        assertEquals(QueryPlan.Access.SCAN, ((QueryPlan) aggregate.getPlan()).getAccess());
+        final SqlResult aggregateResult = aggregate.execute();
+        assertEquals(List.of("COUNT(*)", "SUM(amount)", "MIN(name)", "MAX(id)"), aggregateResult.getColumnNames());
+        // 1, 10..19, 100..199, 1000..1999 with amounts 0, 1 and 2
+        assertArrayEquals(new Object[]{334L, 334L, "name1", 1992L}, aggregateResult.getRows().get(0));
+        assertEquals(0L, sqlEngine.execute("SELECT COUNT(id) FROM " + SQL_TABLE + " WHERE id > 5000")
+                .getRows().get(0)[0]);
+
+        assertEquals(3, sqlEngine.execute("UPDATE " + SQL_TABLE + " SET name = 'updated' WHERE id < 2")
+                .getAffectedRows());
+        assertEquals(3, sqlEngine.execute("SELECT id FROM " + SQL_TABLE + " WHERE name = 'updated'")
+                .getRows().size());
+        assertEquals(ROW_COUNT / 10, sqlEngine.execute("DELETE FROM " + SQL_TABLE + " WHERE amount = 3")
+                .getAffectedRows());
+        assertEquals((long) ROW_COUNT + 1 - ROW_COUNT / 10,
+                sqlEngine.execute("SELECT COUNT(*) FROM " + SQL_TABLE).getRows().get(0)[0]);
+
+        assertThrows(SqlSyntaxException.class, () -> sqlEngine.execute("SELECT FROM " + SQL_TABLE));
+        assertThrows(SqlSyntaxException.class, () -> sqlEngine.execute("SELECT id, COUNT(*) FROM " + SQL_TABLE));
+        assertThrows(SqlSyntaxException.class, () -> sqlEngine.execute("SELECT * FROM " + SQL_TABLE
+                + " WHERE name LIKE '%1'"));
+        assertThrows(SqlSyntaxException.class, () -> point.execute(1));
+        assertThrows(TypeMismatchException.class, () -> sqlEngine.execute("SELECT missing FROM " + SQL_TABLE));
+        assertThrows(TypeMismatchException.class, () -> sqlEngine.execute("SELECT * FROM " + SQL_TABLE
+                + " WHERE id = 'one'"));
+    }
+
+    private static void cleanUpTable() throws IOException {
+        final Path dataFolder = Paths.get(DatabaseConstants.DATABASE_DATA_FOLDER);
+        if (!Files.exists(dataFolder)) {
+            return;
+        }
+        try (final DirectoryStream<Path> tableFiles = Files.newDirectoryStream(dataFolder, SQL_TABLE + "-*")) {
+            for (final Path tableFile : tableFiles) {
+                Files.deleteIfExists(tableFile);
+            }
+        }
+    }
+}
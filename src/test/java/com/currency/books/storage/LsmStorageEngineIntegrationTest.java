@@ -0,0 +1,95 @@
+package com.currency.books.storage;
+
+import com.currency.books.model.Column;
+import com.currency.books.model.ColumnType;
+import com.currency.books.model.StorageType;
+import com.currency.books.model.TableOptions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LsmStorageEngineIntegrationTest {
+
+    private static final long MEMTABLE_SIZE = 64 * 1024;
+    private static final int KEY_COUNT = 50_000;
+    private static final int ROUNDS = 3;
+    private static final int BATCH_SIZE = 500;
+    /**
+     * Manifest, less than 4 runs of level 0 and a run of every other level.
+     */
+    private static final int MAX_FILES_AFTER_COMPACTION = 10;
+    private static final List<Column> COLUMNS = List.of(new Column("id", ColumnType.LONG, true),
+            new Column("value", ColumnType.STRING, false));
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testReplacedRecordsSurviveFlushesCompactionsAndRestart() throws IOException {
+        final Path dataPath = tempDir.resolve("table" + StorageType.LSM.getDataPostFix());
+        final TableOptions tableOptions = new TableOptions(StorageType.LSM, false);
+        try (LsmStorageEngine engine = new LsmStorageEngine(dataPath, COLUMNS, tableOptions, MEMTABLE_SIZE)) {
+            for (int round = 0; round < ROUNDS; round++) {
+                final List<Object[]> batch = new ArrayList<>(BATCH_SIZE);
+                for (long key = 0; key < KEY_COUNT; key++) {
+                    // every round replaces records of keys written by the previous one
+                    batch.add(record(key * 7 % KEY_COUNT, round));
+                    if (batch.size() == BATCH_SIZE) {
+                        engine.append(batch);
+                        batch.clear();
+                    }
+                }
+            }
+            assertRecords(engine);
+            engine.force();
+            assertRecords(engine);
+        }
+        // level 0 runs were merged, so there are much fewer runs than memtable flushes
+        try (Stream<Path> files = Files.list(tempDir)) {
+            assertTrue(files.count() <= MAX_FILES_AFTER_COMPACTION);
+        }
+
+        try (LsmStorageEngine engine = new LsmStorageEngine(dataPath, COLUMNS, tableOptions, MEMTABLE_SIZE)) {
+            assertRecords(engine);
+            engine.append(record(KEY_COUNT / 2, ROUNDS));
+            assertArrayEquals(record(KEY_COUNT / 2, ROUNDS), engine.get(KEY_COUNT / 2));
+        }
+    }
+
+    private static void assertRecords(final LsmStorageEngine engine) throws IOException {
+        for (long key = 0; key < KEY_COUNT; key += 13) {
+            assertArrayEquals(record(key, ROUNDS - 1), engine.get(key));
+        }
+        assertNull(engine.get(KEY_COUNT));
+        assertNull(engine.get(-1));
+
+        final List<Object[]> range = new ArrayList<>();
+        engine.forEachInRange(100, 199, range::add);
+        assertEquals(100, range.size());
+        for (int i = 0; i < range.size(); i++) {
+            assertArrayEquals(record(100 + i, ROUNDS - 1), range.get(i));
+        }
+
+        final boolean[] keyColumn = {true, false};
+        final boolean[] allColumns = {true, true};
+        final long count = StreamSupport.stream(engine.spliterator(keyColumn, (pointer, values) -> true, allColumns),
+                true).count();
+        assertEquals(KEY_COUNT, count);
+    }
+
+    private static Object[] record(final long key, final int round) {
+        return new Object[]{key, "value-" + round + "-" + key};
+    }
+}
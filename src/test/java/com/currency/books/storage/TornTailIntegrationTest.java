@@ -0,0 +1,71 @@
+package com.currency.books.storage;
+
+import com.currency.books.model.Column;
+import com.currency.books.model.ColumnType;
+import com.currency.books.model.StorageType;
+import com.currency.books.model.TableOptions;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TornTailIntegrationTest {
+
+    private static final List<Column> COLUMNS = List.of(new Column("id", ColumnType.LONG, true),
+            new Column("value", ColumnType.STRING, false));
+    private static final int CHECKPOINTED_RECORDS = 200;
+    private static final int LATER_RECORDS = 100;
+
+    @TempDir
+    Path tempDir;
+
+    @ParameterizedTest
+    @EnumSource(value = StorageType.class, names = {"BINARY_PAGE", "COMPRESSED"})
+    public void testTornLastPageIsRestoredAsOfCheckpoint(final StorageType storageType) throws IOException {
+        final Path dataPath = tempDir.resolve("table" + storageType.getDataPostFix());
+        final TableOptions tableOptions = new TableOptions(storageType, false);
+        try (final PositionalStorageEngine storageEngine = (PositionalStorageEngine) storageType.openEngine(dataPath,
+                COLUMNS, tableOptions)) {
+            for (long id = 0; id < CHECKPOINTED_RECORDS; id++) {
+                storageEngine.append(new Object[]{id, "value" + id});
+            }
+            storageEngine.force();
+            // records appended after the checkpoint are in the write-ahead log
+            for (long id = CHECKPOINTED_RECORDS; id < CHECKPOINTED_RECORDS + LATER_RECORDS; id++) {
+                storageEngine.append(new Object[]{id, "value" + id});
+            }
+        }
+
+        // crash tears the last rewrite of the page which also holds the checkpointed records
+        try (final FileChannel channel = FileChannel.open(dataPath, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(64), channel.size() / 2);
+        }
+
+        try (final PositionalStorageEngine storageEngine = (PositionalStorageEngine) storageType.openEngine(dataPath,
+                COLUMNS, tableOptions)) {
+            final List<Object[]> records = new ArrayList<>();
+            storageEngine.scan(0, (recordPointer, values) -> records.add(values));
+            assertEquals(CHECKPOINTED_RECORDS, records.size());
+            for (int id = 0; id < CHECKPOINTED_RECORDS; id++) {
+                assertEquals((long) id, records.get(id)[0]);
+                assertEquals("value" + id, records.get(id)[1]);
+            }
+            // appends continue after the restored records
+            storageEngine.append(new Object[]{-1L, "appended"});
+            storageEngine.flush();
+            final List<Object[]> recordsAfterAppend = new ArrayList<>();
+            storageEngine.scan(0, (recordPointer, values) -> recordsAfterAppend.add(values));
+            assertEquals(CHECKPOINTED_RECORDS + 1, recordsAfterAppend.size());
+            assertEquals("appended", recordsAfterAppend.get(CHECKPOINTED_RECORDS)[1]);
+        }
+    }
+}
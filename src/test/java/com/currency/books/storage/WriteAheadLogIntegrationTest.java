@@ -0,0 +1,127 @@
+package com.currency.books.storage;
+
+import com.currency.books.model.ColumnType;
+import com.currency.books.model.Durability;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WriteAheadLogIntegrationTest {
+
+    private static final ColumnType[] COLUMN_TYPES = {ColumnType.LONG, ColumnType.STRING};
+    private static final int THREADS = 8;
+    private static final int BATCHES_PER_THREAD = 200;
+    private static final int BATCH_SIZE = 10;
+    private static final int HEADER_SIZE = 16;
+    private static final int ENTRY_HEADER_SIZE = 16;
+    private static final int ENTRY_LSN_OFFSET = 8;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testGroupCommitAndReplay() throws Exception {
+        final Path walPath = tempDir.resolve("test-wal.log");
+        try (final WriteAheadLog writeAheadLog = new WriteAheadLog(walPath, COLUMN_TYPES, Durability.FSYNC)) {
+            final ExecutorService executorService = Executors.newFixedThreadPool(THREADS);
+            final List<Future<?>> futures = new ArrayList<>();
+            for (int thread = 0; thread < THREADS; thread++) {
+                final int threadNumber = thread;
+                futures.add(executorService.submit(() -> {
+                    for (int batch = 0; batch < BATCHES_PER_THREAD; batch++) {
+                        writeAheadLog.commit(writeAheadLog.append(batch(threadNumber, batch)));
+                    }
+                    return null;
+                }));
+            }
+            for (final Future<?> future : futures) {
+                future.get();
+            }
+            executorService.shutdown();
+
+            final var statistics = writeAheadLog.getStatistics();
+            assertEquals(THREADS * BATCHES_PER_THREAD, statistics.getCommits());
+            assertTrue(statistics.getSyncs() <= statistics.getCommits());
+        }
+
+        // torn entry at the end of the log is dropped
+        try (final FileChannel channel = FileChannel.open(walPath, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 1);
+        }
+
+        try (final WriteAheadLog writeAheadLog = new WriteAheadLog(walPath, COLUMN_TYPES, Durability.FSYNC)) {
+            assertEquals(0, writeAheadLog.getStartPosition());
+            final List<List<Object[]>> batches = new ArrayList<>();
+            writeAheadLog.replay((rows, tombstones) -> batches.add(rows));
+            assertEquals(THREADS * BATCHES_PER_THREAD - 1, batches.size());
+            for (final List<Object[]> rows : batches) {
+                assertEquals(BATCH_SIZE, rows.size());
+                final long firstId = (Long) rows.get(0)[0];
+                for (int i = 0; i < rows.size(); i++) {
+                    assertArrayEquals(new Object[]{firstId + i, "value" + (firstId + i)}, rows.get(i));
+                }
+            }
+
+            writeAheadLog.reset(42);
+        }
+
+        try (final WriteAheadLog writeAheadLog = new WriteAheadLog(walPath, COLUMN_TYPES, Durability.FSYNC)) {
+            assertEquals(42, writeAheadLog.getStartPosition());
+            final List<List<Object[]>> batches = new ArrayList<>();
+            writeAheadLog.replay((rows, tombstones) -> batches.add(rows));
+            assertTrue(batches.isEmpty());
+        }
+    }
+
+    @Test
+    public void testDamagedSequenceNumber() throws Exception {
+        final Path walPath = tempDir.resolve("test-wal.log");
+        try (final WriteAheadLog writeAheadLog = new WriteAheadLog(walPath, COLUMN_TYPES, Durability.FSYNC)) {
+            for (int batch = 0; batch < 3; batch++) {
+                writeAheadLog.commit(writeAheadLog.append(batch(0, batch)));
+            }
+        }
+
+        // checksum covers the log sequence number, so an entry with a damaged one ends the log
+        try (final FileChannel channel = FileChannel.open(walPath, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            final ByteBuffer payloadLength = ByteBuffer.allocate(Integer.BYTES);
+            channel.read(payloadLength, HEADER_SIZE);
+            final long secondEntry = HEADER_SIZE + ENTRY_HEADER_SIZE + payloadLength.getInt(0);
+            final ByteBuffer lsn = ByteBuffer.allocate(Long.BYTES);
+            channel.read(lsn, secondEntry + ENTRY_LSN_OFFSET);
+            channel.write(ByteBuffer.allocate(Long.BYTES).putLong(0, lsn.getLong(0) + 1),
+                    secondEntry + ENTRY_LSN_OFFSET);
+        }
+
+        try (final WriteAheadLog writeAheadLog = new WriteAheadLog(walPath, COLUMN_TYPES, Durability.FSYNC)) {
+            final List<List<Object[]>> batches = new ArrayList<>();
+            writeAheadLog.replay((rows, tombstones) -> batches.add(rows));
+            assertEquals(1, batches.size());
+            assertArrayEquals(new Object[]{0L, "value0"}, batches.get(0).get(0));
+        }
+    }
+
+    private static List<Object[]> batch(final int thread, final int batch) {
+        final List<Object[]> rows = new ArrayList<>();
+        final long firstId = ((long) thread * BATCHES_PER_THREAD + batch) * BATCH_SIZE;
+        for (long id = firstId; id < firstId + BATCH_SIZE; id++) {
+            rows.add(new Object[]{id, "value" + id});
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,54 @@
+package com.currency.books.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class MappedFileReaderIntegrationTest {
+
+    private static final String TEST_DATA_FILE = "test-mapped-data.bin";
+    private static final int SEGMENT_SIZE = 16;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testReadsAcrossSegmentsAndAfterFileGrows() throws IOException {
+        final Path path = tempDir.resolve(TEST_DATA_FILE);
+        Files.write(path, bytes(0, 20));
+        final MappedFileReader reader = new MappedFileReader(path, SEGMENT_SIZE);
+        try (reader) {
+            assertArrayEquals(bytes(2, 10), toArray(reader.read(2, 8)));
+            assertArrayEquals(bytes(12, 20), toArray(reader.read(12, 8)));
+
+            Files.write(path, bytes(20, 50), StandardOpenOption.APPEND);
+
+            assertArrayEquals(bytes(18, 40), toArray(reader.read(18, 22)));
+            assertArrayEquals(bytes(45, 50), toArray(reader.read(45, 5)));
+        }
+        assertThrows(ClosedChannelException.class, () -> reader.read(2, 8));
+    }
+
+    private static byte[] bytes(final int from, final int to) {
+        final byte[] bytes = new byte[to - from];
+        for (int i = from; i < to; i++) {
+            bytes[i - from] = (byte) i;
+        }
+        return bytes;
+    }
+
+    private static byte[] toArray(final ByteBuffer buffer) {
+        final byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+}